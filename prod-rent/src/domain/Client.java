@@ -1,294 +1,693 @@
-package domain;
-
-import utils.PackUtils;
-
-import java.util.Arrays;
-
-public class Client {
-
-    private static final int MAX_PRODUCTS = 3;
-    public static final int NAME_LIMIT = 10;
-    public static final int SIZE = 8 + (NAME_LIMIT*2) + 4 + (MAX_PRODUCTS*8) + (MAX_PRODUCTS*4);
-
-    private final long id;
-    private final String name;
-    private int balance;
-    private final long[] rentedIds;
-    private final int[] rentedUnits;
-    // HINT: More instance variables will be needed
-
-    /**
-     * constructor per a crear un client amb els paràmetres indicats
-     * @param id
-     * @param name
-     * @param balance
-     */
-    public Client(long id, String name, int balance) {
-        this.id = id;
-        this.name = name;
-        this.balance = balance;
-        this.rentedIds = new long[MAX_PRODUCTS];
-        this.rentedUnits = new int[MAX_PRODUCTS];
-
-    }
-
-    /**
-     * mètode per a obtenir el id del client
-     * @return id
-     */
-    public long getId() {
-        return this.id;
-    }
-
-    /**
-     * mètode per a obtenir el nom del client
-     * @return name
-     */
-    public String getName() {
-        return this.name;
-    }
-
-    /**
-     * mètode per a obtenir el balanç del client
-     * @return balance
-     */
-    public int getBalance() {
-        return this.balance;
-    }
-
-    /**
-     * mètode per a afegir balanç al client
-     * @param amount
-     */
-    public void addBalance(int amount) {
-        if(amount > 0) {
-            this.balance += amount;
-        }
-    }
-
-    /**
-     * mètode per a restar balanç al client
-     * @param amount
-     */
-    public void subBalance(int amount){
-        if(this.balance >= amount && amount > 0){
-            this.balance -= amount;
-        }
-    }
-
-    /**
-     * mètode per a comprovar si un client pot llogar un producte o no
-     * recorrem l'array rentedIds per a mirar quants productes té ja llogats
-     * @param idProduct
-     * @return true si encara pot llogar un producte (productCount < 3), false altrament
-     */
-    public boolean canAddProduct(long idProduct) {
-        int productCount = 0;
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            if(rentedIds[i] != 0){
-                productCount++;
-            }
-        }
-        return productCount < 3;
-    }
-
-    /**
-     * mètode per saber si el client ja té un producte
-     * busquem dins l'array rentedIds buscant un idProduct que coincideixi amb el donat
-     * @param idProduct
-     * @return true si el client té el producte dins l'array, false altrament
-     */
-    public boolean hasProduct(long idProduct){
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            if(rentedIds[i] == idProduct) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * mètode per a llogar un producte, si aquest existeix l'incrementem en 1, si no existeix l'afegim a l'array
-     * @param idProduct
-     * @return true si s'ha pogut afegir el producte, false altrament
-     */
-    public boolean rentProduct(long idProduct) {
-        for (int i = 0; i < MAX_PRODUCTS; i++) {
-            if (rentedIds[i] == idProduct) {
-                rentedUnits[i]++;
-                return true;
-            }
-        }
-
-        for (int i = 0; i < MAX_PRODUCTS; i++) {
-            if (rentedIds[i] == 0) {
-                rentedIds[i] = idProduct;
-                rentedUnits[i] = 1;
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * mètode per a retornar un producte,
-     * el busquem dins l'array rentedIds i si el trobem el restem de l'array rentedUnits
-     * @param idProduct
-     * @return true si s'ha pogut retornar el producte, false altrament
-     */
-    public boolean returnProduct(long idProduct) {
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            if(rentedIds[i] == idProduct) {
-                rentedUnits[i]--;
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * mètode per a obtenir les unitats llogades d'un determinat producte
-     * @param idProduct
-     * @return unitats del producte
-     */
-    public int getRentedUnits(long idProduct) {
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            if(rentedIds[i] == idProduct) {
-                return rentedUnits[i];
-            }
-        }
-        return 0;
-    }
-
-    /**
-     * contem els productes diferents llogats, si es 0 retornem directament
-     * un array buit, si no, creem un array de la mida necessària i l'emplenem amb les id llogades
-     * @return array long[] amb les id llogades
-     */
-    public long[] getRentedIds() {
-        int count = 0;
-
-        for (int i = 0; i < MAX_PRODUCTS; i++) {
-            if (rentedUnits[i] > 0) {
-                count++;
-            }
-        }
-
-        if(count == 0){
-            return new long[0];
-        }
-
-        long[] result = new long[count];
-        int j = 0;
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            if(rentedUnits[i] > 0){
-                result[j++] = rentedIds[i];
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * mètode per a convertir la informació d'un CLient a bytes, creem un array de bytes
-     * i anem empaquetant els diferents paràmetres dins, cada cop afegim els bytes corresponents
-     * al offset
-     * @return bytes
-     */
-    public byte[] toBytes() {
-        byte[] bytes = new byte[SIZE];
-        int offset = 0;
-
-        PackUtils.packLong(id, bytes, offset);
-        offset += 8;
-
-        PackUtils.packLimitedString(name, NAME_LIMIT, bytes, offset);
-        offset += 2*NAME_LIMIT;
-
-        PackUtils.packInt(balance, bytes, offset);
-        offset += 4;
-
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            PackUtils.packLong(rentedIds[i], bytes, offset);
-            offset += 8;
-        }
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            PackUtils.packInt(rentedUnits[i], bytes, offset);
-            offset += 4;
-        }
-        return bytes;
-    }
-
-    /**
-     * mètode per a transformar informació d'un client emmagatzemada en bytes a un objecte Client
-     * desempaquetem els bytes i construïm un nou Client amb els paràmnetres obtinguts
-     * @param record
-     * @return client
-     */
-    public static Client fromBytes(byte[] record) {
-        int offset = 0;
-
-        long id = PackUtils.unpackLong(record, offset);
-        offset += 8;
-
-        String name = PackUtils.unpackLimitedString(NAME_LIMIT, record, offset);
-        offset += 2*NAME_LIMIT;
-
-        int balance = PackUtils.unpackInt(record, offset);
-        offset += 4;
-
-        Client client = new Client(id, name, balance);
-
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            client.rentedIds[i] = PackUtils.unpackLong(record, offset);
-            offset += 8;
-        }
-
-        for(int i = 0; i < MAX_PRODUCTS; i++){
-            client.rentedUnits[i] = PackUtils.unpackInt(record, offset);
-            offset += 4;
-        }
-
-        return client;
-    }
-
-    public boolean isEqualTo(Client other) {
-        if (id != other.id
-                || !name.equals(other.name)
-                || balance != other.balance) {
-            return false;
-        }
-        long[] myProductIds = getRentedIds();
-        long[] theirProductIds = other.getRentedIds();
-        Arrays.sort(myProductIds);
-        Arrays.sort(theirProductIds);
-        int[] myStocks = getStocks(myProductIds);
-        int[] theirStocks = getStocks(theirProductIds);
-        return Arrays.equals(myProductIds, theirProductIds)
-                && Arrays.equals(myStocks, theirStocks);
-    }
-
-    @Override
-    public String toString() {
-        long[] productIds = getRentedIds();
-        Arrays.sort(productIds);
-        int[] stocks = getStocks(productIds);
-        return "Client{" +
-                "id=" + id +
-                ", name='" + name + '\'' +
-                ", balance=" + balance +
-                ", productIds=" + Arrays.toString(productIds) +
-                ", stocks=" + Arrays.toString(stocks) +
-                '}';
-    }
-
-    private int[] getStocks(long[] productIds) {
-        int[] stocks = new int[productIds.length];
-        for (int i = 0; i < stocks.length; i++) {
-            stocks[i] = this.getRentedUnits(productIds[i]);
-        }
-
-        return stocks;
-    }
-}
+package domain;
+
+import utils.PackUtils;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+public class Client {
+
+    public static final int INLINE_PRODUCTS = 3;
+    public static final int DEFAULT_CAPACITY = 3;
+    public static final int MAX_CAPACITY = 0xFFFF;
+    public static final int NAME_LIMIT = 10;
+    // posició de cada camp al registre; les fan servir els formats i ClientView
+    public static final int ID_OFFSET = 0;
+    public static final int NAME_OFFSET = ID_OFFSET + 8;
+    public static final int BALANCE_OFFSET = NAME_OFFSET + NAME_LIMIT*2;
+    public static final int IDS_OFFSET = BALANCE_OFFSET + 4;
+    public static final int UNITS_OFFSET = IDS_OFFSET + INLINE_PRODUCTS*8;
+    public static final int SIZE = UNITS_OFFSET + INLINE_PRODUCTS*4;
+    // el format compacte posa el nom al final
+    public static final int COMPACT_IDS_OFFSET = ID_OFFSET + 8;
+    public static final int COMPACT_BALANCE_OFFSET = COMPACT_IDS_OFFSET + INLINE_PRODUCTS*8;
+    public static final int COMPACT_UNITS_OFFSET = COMPACT_BALANCE_OFFSET + 4;
+    public static final int COMPACT_NAME_OFFSET = COMPACT_UNITS_OFFSET + INLINE_PRODUCTS*4;
+    public static final int COMPACT_SIZE = COMPACT_NAME_OFFSET + PackUtils.compactStringSize(NAME_LIMIT);
+    // a partir d'aquest nombre de productes diferents es busquen amb una taula de dispersió
+    private static final int INDEX_THRESHOLD = 8;
+
+    private final long id;
+    private final String name;
+    private int balance;
+    private final int capacity;
+    // productes llogats, en l'ordre en què es van llogar per primer cop
+    private long[] rentedIds;
+    private int[] rentedUnits;
+    private int slots;
+    // productes que encara són a les pàgines de desbordament i no s'han carregat
+    private int missingSlots;
+    // posició+1 de cada producte, per adreçament obert, o null si n'hi ha pocs
+    private int[] index;
+    private long overflowPage;
+
+    /**
+     * constructor per a crear un client amb els paràmetres indicats
+     * pot llogar fins a DEFAULT_CAPACITY productes diferents
+     * @param id
+     * @param name
+     * @param balance
+     */
+    public Client(long id, String name, int balance) {
+        this(id, name, balance, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor per a crear un client que pot llogar fins a capacity productes diferents
+     * @param id
+     * @param name
+     * @param balance
+     * @param capacity
+     * @throws IllegalArgumentException si la capacitat no està entre 1 i MAX_CAPACITY
+     */
+    public Client(long id, String name, int balance, int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid client capacity: " + capacity);
+        }
+        this.id = id;
+        this.name = name;
+        this.balance = balance;
+        this.capacity = capacity;
+        this.rentedIds = new long[Math.min(capacity, INLINE_PRODUCTS)];
+        this.rentedUnits = new int[rentedIds.length];
+    }
+
+    /**
+     * mètode per a obtenir el id del client
+     * @return id
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * mètode per a obtenir el nom del client
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * mètode per a obtenir el balanç del client
+     * @return balance
+     */
+    public int getBalance() {
+        return this.balance;
+    }
+
+    /**
+     * mètode per a obtenir el nombre màxim de productes diferents que pot llogar el client
+     * @return capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * mètode per a afegir balanç al client
+     * @param amount
+     */
+    public void addBalance(int amount) {
+        if(amount > 0) {
+            this.balance += amount;
+        }
+    }
+
+    /**
+     * mètode per a restar balanç al client
+     * @param amount
+     */
+    public void subBalance(int amount){
+        if(this.balance >= amount && amount > 0){
+            this.balance -= amount;
+        }
+    }
+
+    /**
+     * mètode per a comprovar si un client pot llogar un producte o no
+     * mirem quants productes diferents ha llogat, encara que ja els hagi retornat
+     * @param idProduct
+     * @return true si encara pot llogar un producte (menys productes que la seva capacitat), false altrament
+     */
+    public boolean canAddProduct(long idProduct) {
+        return getSlotCount() < capacity;
+    }
+
+    /**
+     * mètode per saber si el client ja té un producte
+     * busquem la posició del producte entre els productes llogats
+     * @param idProduct
+     * @return true si el client té el producte, false altrament
+     */
+    public boolean hasProduct(long idProduct){
+        return find(idProduct) >= 0;
+    }
+
+    /**
+     * mètode per a llogar un producte, si aquest existeix l'incrementem en 1, si no existeix l'afegim
+     * @param idProduct
+     * @return true si s'ha pogut afegir el producte, false altrament
+     */
+    public boolean rentProduct(long idProduct) {
+        int slot = find(idProduct);
+        if (slot >= 0) {
+            rentedUnits[slot]++;
+            return true;
+        }
+        if (slots >= capacity) {
+            return false;
+        }
+        addSlot(idProduct, 1);
+        return true;
+    }
+
+    /**
+     * mètode per a retornar un producte,
+     * el busquem entre els productes llogats i si el trobem en restem una unitat
+     * @param idProduct
+     * @return true si s'ha pogut retornar el producte, false altrament
+     */
+    public boolean returnProduct(long idProduct) {
+        int slot = find(idProduct);
+        if (slot >= 0) {
+            rentedUnits[slot]--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * mètode per a treure la posició d'un producte que el client ja ha retornat del tot
+     * s'ha de fer abans d'esborrar el producte: si no, el client podria retornar el producte nou
+     * que en reaprofiti el id; la posició queda lliure per a un altre producte
+     * @param idProduct
+     * @return true si s'ha tret, false si el client no l'havia llogat o encara en té unitats
+     */
+    public boolean forgetProduct(long idProduct) {
+        int slot = find(idProduct);
+        if (slot < 0 || rentedUnits[slot] > 0) {
+            return false;
+        }
+        slots--;
+        System.arraycopy(rentedIds, slot + 1, rentedIds, slot, slots - slot);
+        System.arraycopy(rentedUnits, slot + 1, rentedUnits, slot, slots - slot);
+        rentedIds[slots] = 0;
+        rentedUnits[slots] = 0;
+        if (index != null) {
+            // les posicions de després s'han desplaçat
+            index = null;
+            if (slots > INDEX_THRESHOLD) {
+                index = new int[Integer.highestOneBit(4 * slots)];
+                for (int i = 0; i < slots; i++) {
+                    insert(i);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * mètode per a obtenir les unitats llogades d'un determinat producte
+     * @param idProduct
+     * @return unitats del producte
+     */
+    public int getRentedUnits(long idProduct) {
+        int slot = find(idProduct);
+        return slot >= 0 ? rentedUnits[slot] : 0;
+    }
+
+    /**
+     * contem els productes diferents llogats, si es 0 retornem directament
+     * un array buit, si no, creem un array de la mida necessària i l'emplenem amb les id llogades
+     * @return array long[] amb les id llogades
+     */
+    public long[] getRentedIds() {
+        requireComplete();
+        int count = 0;
+
+        for (int i = 0; i < slots; i++) {
+            if (rentedUnits[i] > 0) {
+                count++;
+            }
+        }
+
+        if(count == 0){
+            return new long[0];
+        }
+
+        long[] result = new long[count];
+        int j = 0;
+        for(int i = 0; i < slots; i++){
+            if(rentedUnits[i] > 0){
+                result[j++] = rentedIds[i];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * mètode per a buscar la posició d'un producte entre els productes llogats
+     * amb pocs productes es recorren tots; amb molts es fa servir la taula de dispersió
+     * @param idProduct
+     * @return posició, o -1 si el client no ha llogat el producte
+     */
+    private int find(long idProduct) {
+        requireComplete();
+        if (index != null) {
+            int mask = index.length - 1;
+            for (int i = hash(idProduct) & mask; index[i] != 0; i = (i + 1) & mask) {
+                if (rentedIds[index[i] - 1] == idProduct) {
+                    return index[i] - 1;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < slots; i++) {
+            if (rentedIds[i] == idProduct) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * mètode per a afegir un producte al final dels productes llogats
+     * @param idProduct
+     * @param units
+     */
+    private void addSlot(long idProduct, int units) {
+        if (slots == rentedIds.length) {
+            int length = Math.max(INLINE_PRODUCTS, 2 * slots);
+            rentedIds = Arrays.copyOf(rentedIds, length);
+            rentedUnits = Arrays.copyOf(rentedUnits, length);
+        }
+        rentedIds[slots] = idProduct;
+        rentedUnits[slots] = units;
+        slots++;
+        if (index != null && 2 * slots <= index.length) {
+            insert(slots - 1);
+        } else if (slots > INDEX_THRESHOLD) {
+            index = new int[Integer.highestOneBit(4 * slots)];
+            for (int i = 0; i < slots; i++) {
+                insert(i);
+            }
+        }
+    }
+
+    private void insert(int slot) {
+        int mask = index.length - 1;
+        int i = hash(rentedIds[slot]) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    private static int hash(long idProduct) {
+        return (int) ((idProduct * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private void requireComplete() {
+        if (missingSlots > 0) {
+            throw new IllegalStateException("The overflow pages of client " + id + " have not been loaded");
+        }
+    }
+
+    /**
+     * mètode per a saber si el registre del client guarda la capacitat i les pàgines de desbordament
+     * ho fan els clients amb una capacitat diferent de DEFAULT_CAPACITY: l'última posició del
+     * registre guarda la primera pàgina, la capacitat i el nombre de productes, i els productes
+     * que no caben a la resta de posicions van a les pàgines de desbordament
+     * @return cert si el client no té la capacitat per defecte
+     */
+    public boolean hasOverflow() {
+        return capacity != DEFAULT_CAPACITY;
+    }
+
+    /**
+     * mètode per a obtenir el nombre de productes diferents que ha llogat el client
+     * inclou els que encara són a les pàgines de desbordament
+     * @return slots
+     */
+    public int getSlotCount() {
+        return slots + missingSlots;
+    }
+
+    /**
+     * mètode per a obtenir el producte llogat a una posició, per a escriure les pàgines de desbordament
+     * @param slot entre 0 i getSlotCount()-1
+     * @return id del producte
+     */
+    public long getSlotId(int slot) {
+        requireComplete();
+        return rentedIds[slot];
+    }
+
+    /**
+     * mètode per a obtenir les unitats llogades a una posició, per a escriure les pàgines de desbordament
+     * @param slot entre 0 i getSlotCount()-1
+     * @return unitats
+     */
+    public int getSlotUnits(int slot) {
+        requireComplete();
+        return rentedUnits[slot];
+    }
+
+    /**
+     * mètode per a obtenir la primera pàgina de desbordament del client
+     * @return id de la pàgina, o 0 si no en té
+     */
+    public long getOverflowPage() {
+        return overflowPage;
+    }
+
+    /**
+     * mètode per a canviar la primera pàgina de desbordament del client, abans de desar-lo
+     * @param overflowPage id de la pàgina, o 0 si no en té
+     */
+    public void setOverflowPage(long overflowPage) {
+        this.overflowPage = overflowPage;
+    }
+
+    /**
+     * mètode per a obtenir quants productes llogats encara s'han de carregar de les pàgines de desbordament
+     * @return 0 si el client ja és complet
+     */
+    public int getMissingSlots() {
+        return missingSlots;
+    }
+
+    /**
+     * mètode per a afegir el següent producte llegit de les pàgines de desbordament
+     * @param idProduct
+     * @param units
+     * @throws IllegalStateException si ja s'han carregat tots els productes
+     */
+    public void addOverflowSlot(long idProduct, int units) {
+        if (missingSlots == 0) {
+            throw new IllegalStateException("Client " + id + " has no more overflow products");
+        }
+        missingSlots--;
+        addSlot(idProduct, units);
+    }
+
+    /**
+     * mètode per a obtenir el id de producte que es guarda a una posició del registre
+     * l'última posició dels clients amb desbordament guarda -1-pàgina
+     * @param i
+     * @return id
+     */
+    private long inlineId(int i) {
+        if (hasOverflow() && i == INLINE_PRODUCTS - 1) {
+            return -1 - overflowPage;
+        }
+        return i < slots ? rentedIds[i] : 0;
+    }
+
+    /**
+     * mètode per a obtenir les unitats que es guarden a una posició del registre
+     * l'última posició dels clients amb desbordament guarda la capacitat i el nombre de productes
+     * @param i
+     * @return unitats
+     */
+    private int inlineUnits(int i) {
+        if (hasOverflow() && i == INLINE_PRODUCTS - 1) {
+            return capacity << 16 | getSlotCount();
+        }
+        return i < slots ? rentedUnits[i] : 0;
+    }
+
+    /**
+     * mètode per a construir un client a partir dels camps llegits del registre
+     * si el client té desbordament, queda incomplet fins que s'afegeixen els productes de les pàgines
+     * @param id
+     * @param name
+     * @param balance
+     * @param ids ids guardats a les posicions del registre
+     * @param units unitats guardades a les posicions del registre
+     * @return client
+     */
+    private static Client fromFields(long id, String name, int balance, long[] ids, int[] units) {
+        int last = INLINE_PRODUCTS - 1;
+        if (ids[last] >= 0) {
+            Client client = new Client(id, name, balance);
+            for (int i = 0; i < INLINE_PRODUCTS; i++) {
+                if (ids[i] != 0) {
+                    client.addSlot(ids[i], units[i]);
+                }
+            }
+            return client;
+        }
+        int total = units[last] & 0xFFFF;
+        Client client = new Client(id, name, balance, units[last] >>> 16);
+        client.overflowPage = -1 - ids[last];
+        for (int i = 0; i < last && i < total; i++) {
+            client.addSlot(ids[i], units[i]);
+        }
+        client.missingSlots = total - client.slots;
+        return client;
+    }
+
+    /**
+     * mètode per a convertir la informació d'un CLient a bytes, creem un array de bytes
+     * i anem empaquetant els diferents paràmetres dins, cada cop afegim els bytes corresponents
+     * al offset
+     * @return bytes
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[SIZE];
+
+        PackUtils.packLong(id, bytes, ID_OFFSET);
+        PackUtils.packLimitedString(name, NAME_LIMIT, bytes, NAME_OFFSET);
+        PackUtils.packInt(balance, bytes, BALANCE_OFFSET);
+
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packLong(inlineId(i), bytes, IDS_OFFSET + 8*i);
+        }
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packInt(inlineUnits(i), bytes, UNITS_OFFSET + 4*i);
+        }
+        return bytes;
+    }
+
+    /**
+     * mètode per a transformar informació d'un client emmagatzemada en bytes a un objecte Client
+     * desempaquetem els bytes i construïm un nou Client amb els paràmnetres obtinguts
+     * @param record
+     * @return client
+     */
+    public static Client fromBytes(byte[] record) {
+        long id = PackUtils.unpackLong(record, ID_OFFSET);
+        String name = PackUtils.unpackLimitedString(NAME_LIMIT, record, NAME_OFFSET);
+        int balance = PackUtils.unpackInt(record, BALANCE_OFFSET);
+
+        long[] ids = new long[INLINE_PRODUCTS];
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            ids[i] = PackUtils.unpackLong(record, IDS_OFFSET + 8*i);
+        }
+
+        int[] units = new int[INLINE_PRODUCTS];
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            units[i] = PackUtils.unpackInt(record, UNITS_OFFSET + 4*i);
+        }
+
+        return fromFields(id, name, balance, ids, units);
+    }
+
+    /**
+     * mètode per a escriure la informació del client a la posició actual del buffer
+     * amb el mateix format que toBytes, avançant SIZE bytes
+     * @param buffer
+     */
+    public void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        PackUtils.packLong(id, buffer.position(start + ID_OFFSET));
+        PackUtils.packLimitedString(name, NAME_LIMIT, buffer.position(start + NAME_OFFSET));
+        PackUtils.packInt(balance, buffer.position(start + BALANCE_OFFSET));
+        buffer.position(start + IDS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packLong(inlineId(i), buffer);
+        }
+        buffer.position(start + UNITS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packInt(inlineUnits(i), buffer);
+        }
+        buffer.position(start + SIZE);
+    }
+
+    /**
+     * mètode per a llegir un client a partir de la posició actual del buffer
+     * amb el mateix format que fromBytes, avançant SIZE bytes
+     * @param buffer
+     * @return client
+     */
+    public static Client decode(ByteBuffer buffer) {
+        return decode(buffer, null);
+    }
+
+    /**
+     * mètode per a llegir un client a partir de la posició actual del buffer
+     * els textos es comparteixen a través de la memòria cau indicada, si n'hi ha
+     * @param buffer
+     * @param strings memòria cau de textos o null
+     * @return client
+     */
+    public static Client decode(ByteBuffer buffer, StringCache strings) {
+        int start = buffer.position();
+        long id = PackUtils.unpackLong(buffer.position(start + ID_OFFSET));
+        buffer.position(start + NAME_OFFSET);
+        String name = strings != null
+                ? strings.unpackLimitedString(NAME_LIMIT, buffer)
+                : PackUtils.unpackLimitedString(NAME_LIMIT, buffer);
+        int balance = PackUtils.unpackInt(buffer.position(start + BALANCE_OFFSET));
+
+        long[] ids = new long[INLINE_PRODUCTS];
+        buffer.position(start + IDS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            ids[i] = PackUtils.unpackLong(buffer);
+        }
+        int[] units = new int[INLINE_PRODUCTS];
+        buffer.position(start + UNITS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            units[i] = PackUtils.unpackInt(buffer);
+        }
+        buffer.position(start + SIZE);
+        return fromFields(id, name, balance, ids, units);
+    }
+
+    /**
+     * mètode per a saber si el nom es pot guardar en el format compacte sense perdre'n cap caràcter
+     * @return cert si el nom és Latin-1 o el seu UTF-8 cap als NAME_LIMIT bytes
+     */
+    public boolean fitsCompact() {
+        return PackUtils.fitsCompactString(name, NAME_LIMIT);
+    }
+
+    /**
+     * mètode per a escriure el client a la posició actual del buffer en el format compacte
+     * primer els camps numèrics i després el nom en Latin-1 o UTF-8, avançant COMPACT_SIZE bytes
+     * @param buffer
+     */
+    public void encodeCompact(ByteBuffer buffer) {
+        int start = buffer.position();
+        PackUtils.packLong(id, buffer.position(start + ID_OFFSET));
+        buffer.position(start + COMPACT_IDS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packLong(inlineId(i), buffer);
+        }
+        PackUtils.packInt(balance, buffer.position(start + COMPACT_BALANCE_OFFSET));
+        buffer.position(start + COMPACT_UNITS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            PackUtils.packInt(inlineUnits(i), buffer);
+        }
+        PackUtils.packCompactString(name, NAME_LIMIT, buffer.position(start + COMPACT_NAME_OFFSET));
+        buffer.position(start + COMPACT_SIZE);
+    }
+
+    /**
+     * mètode per a llegir un client en el format compacte a partir de la posició actual del buffer
+     * @param buffer
+     * @param strings memòria cau de textos o null
+     * @return client
+     */
+    public static Client decodeCompact(ByteBuffer buffer, StringCache strings) {
+        int start = buffer.position();
+        long id = PackUtils.unpackLong(buffer.position(start + ID_OFFSET));
+        long[] ids = new long[INLINE_PRODUCTS];
+        buffer.position(start + COMPACT_IDS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            ids[i] = PackUtils.unpackLong(buffer);
+        }
+        int balance = PackUtils.unpackInt(buffer.position(start + COMPACT_BALANCE_OFFSET));
+        int[] units = new int[INLINE_PRODUCTS];
+        buffer.position(start + COMPACT_UNITS_OFFSET);
+        for(int i = 0; i < INLINE_PRODUCTS; i++){
+            units[i] = PackUtils.unpackInt(buffer);
+        }
+        buffer.position(start + COMPACT_NAME_OFFSET);
+        String name = strings != null
+                ? strings.unpackCompactString(NAME_LIMIT, buffer)
+                : PackUtils.unpackCompactString(NAME_LIMIT, buffer);
+        buffer.position(start + COMPACT_SIZE);
+        return fromFields(id, name, balance, ids, units);
+    }
+
+    /**
+     * mètode per a obtenir una còpia del client amb un altre id i els ids de producte canviats
+     * els productes que passen a tenir id 0 deixen la seva posició lliure
+     * la còpia encara no té pàgines de desbordament
+     * @param newId
+     * @param productIds funció que dona el nou id de cada producte
+     * @return client
+     */
+    public Client renumber(long newId, LongUnaryOperator productIds) {
+        requireComplete();
+        Client client = new Client(newId, name, balance, capacity);
+        for(int i = 0; i < slots; i++){
+            long productId = productIds.applyAsLong(rentedIds[i]);
+            if(productId != 0){
+                client.addSlot(productId, rentedUnits[i]);
+            }
+        }
+        return client;
+    }
+
+    /**
+     * mètode per a obtenir una còpia independent del client, amb la mateixa pàgina de desbordament
+     * @return client
+     */
+    public Client copy() {
+        requireComplete();
+        Client client = new Client(id, name, balance, capacity);
+        for(int i = 0; i < slots; i++){
+            client.addSlot(rentedIds[i], rentedUnits[i]);
+        }
+        client.overflowPage = overflowPage;
+        return client;
+    }
+
+    public boolean isEqualTo(Client other) {
+        if (id != other.id
+                || !name.equals(other.name)
+                || balance != other.balance
+                || capacity != other.capacity) {
+            return false;
+        }
+        long[] myProductIds = getRentedIds();
+        long[] theirProductIds = other.getRentedIds();
+        Arrays.sort(myProductIds);
+        Arrays.sort(theirProductIds);
+        int[] myStocks = getStocks(myProductIds);
+        int[] theirStocks = getStocks(theirProductIds);
+        return Arrays.equals(myProductIds, theirProductIds)
+                && Arrays.equals(myStocks, theirStocks);
+    }
+
+    @Override
+    public String toString() {
+        long[] productIds = getRentedIds();
+        Arrays.sort(productIds);
+        int[] stocks = getStocks(productIds);
+        return "Client{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", balance=" + balance +
+                ", productIds=" + Arrays.toString(productIds) +
+                ", stocks=" + Arrays.toString(stocks) +
+                (hasOverflow() ? ", capacity=" + capacity : "") +
+                '}';
+    }
+
+    private int[] getStocks(long[] productIds) {
+        int[] stocks = new int[productIds.length];
+        for (int i = 0; i < stocks.length; i++) {
+            stocks[i] = this.getRentedUnits(productIds[i]);
+        }
+
+        return stocks;
+    }
+}
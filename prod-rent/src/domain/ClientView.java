@@ -0,0 +1,223 @@
+package domain;
+
+import utils.PackUtils;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Vista de només lectura sobre la imatge codificada d'un client.
+ *
+ * Els camps es llegeixen directament dels bytes del registre quan es
+ * demanen, de manera que comprovar el balanç o les posicions ocupades no
+ * crea cap objecte. La mateixa vista es reutilitza per a cada lectura, i
+ * només quan cal modificar el client es construeix el Client complet.
+ * Els productes de les pàgines de desbordament els afegeix el fitxer de
+ * clients a uns arrays de la vista que també es reutilitzen.
+ */
+public class ClientView {
+
+    private static final int MAX_PRODUCTS = Client.INLINE_PRODUCTS;
+    private static final int NOT_FOUND = -1;
+
+    private final byte[] record = new byte[Math.max(Client.SIZE, Client.COMPACT_SIZE)];
+    private final ByteBuffer buffer = ByteBuffer.wrap(record);
+    private boolean compact;
+    private StringCache strings;
+    private int capacity;
+    // productes diferents llogats, i quants d'aquests són al registre
+    private int slots;
+    private int inlineSlots;
+    private long overflowPage;
+    private long[] overflowIds = new long[0];
+    private int[] overflowUnits = new int[0];
+    private int overflowSlots;
+
+    /**
+     * mètode per a carregar a la vista la imatge d'un client
+     * la imatge es copia, per tant l'array es pot reutilitzar després
+     * @param image imatge codificada del client
+     * @param compact cert si la imatge té el format compacte
+     * @param strings memòria cau de textos per a llegir el nom, o null
+     */
+    public void load(byte[] image, boolean compact, StringCache strings) {
+        int size = compact ? Client.COMPACT_SIZE : Client.SIZE;
+        System.arraycopy(image, 0, record, 0, size);
+        this.compact = compact;
+        this.strings = strings;
+        this.overflowSlots = 0;
+        long last = rentedId(MAX_PRODUCTS - 1);
+        if (last < 0) {
+            // descriptor del client amb desbordament, com a Client
+            int descriptor = rentedUnits(MAX_PRODUCTS - 1);
+            capacity = descriptor >>> 16;
+            slots = descriptor & 0xFFFF;
+            inlineSlots = Math.min(MAX_PRODUCTS - 1, slots);
+            overflowPage = -1 - last;
+        } else {
+            capacity = Client.DEFAULT_CAPACITY;
+            inlineSlots = 0;
+            for (int i = 0; i < MAX_PRODUCTS; i++) {
+                if (rentedId(i) != 0) {
+                    inlineSlots++;
+                }
+            }
+            slots = inlineSlots;
+            overflowPage = 0;
+        }
+    }
+
+    /**
+     * mètode per a obtenir la primera pàgina de desbordament del client
+     * @return id de la pàgina, o 0 si no en té
+     */
+    public long getOverflowPage() {
+        return overflowPage;
+    }
+
+    /**
+     * mètode per a obtenir quants productes de les pàgines de desbordament falten per afegir a la vista
+     * @return 0 si la vista ja és completa
+     */
+    public int getMissingSlots() {
+        return slots - inlineSlots - overflowSlots;
+    }
+
+    /**
+     * mètode per a afegir a la vista el següent producte llegit de les pàgines de desbordament
+     * @param idProduct
+     * @param units
+     */
+    public void addOverflowSlot(long idProduct, int units) {
+        if (overflowSlots == overflowIds.length) {
+            int length = Math.max(16, 2 * overflowSlots);
+            overflowIds = Arrays.copyOf(overflowIds, length);
+            overflowUnits = Arrays.copyOf(overflowUnits, length);
+        }
+        overflowIds[overflowSlots] = idProduct;
+        overflowUnits[overflowSlots] = units;
+        overflowSlots++;
+    }
+
+    /**
+     * mètode per a obtenir el id del client
+     * @return id
+     */
+    public long getId() {
+        return PackUtils.unpackLong(record, Client.ID_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir el nom del client, que es llegeix cada cop que es demana
+     * @return name
+     */
+    public String getName() {
+        if (compact) {
+            return strings != null
+                    ? strings.unpackCompactString(Client.NAME_LIMIT, record, Client.COMPACT_NAME_OFFSET)
+                    : PackUtils.unpackCompactString(Client.NAME_LIMIT, record, Client.COMPACT_NAME_OFFSET);
+        }
+        return strings != null
+                ? strings.unpackLimitedString(Client.NAME_LIMIT, record, Client.NAME_OFFSET)
+                : PackUtils.unpackLimitedString(Client.NAME_LIMIT, record, Client.NAME_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir el balanç del client
+     * @return balance
+     */
+    public int getBalance() {
+        return PackUtils.unpackInt(record, compact ? Client.COMPACT_BALANCE_OFFSET : Client.BALANCE_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir el id del producte llogat a la posició indicada
+     * @param slot
+     * @return id del producte, o 0 si la posició és lliure
+     */
+    private long rentedId(int slot) {
+        int offset = compact ? Client.COMPACT_IDS_OFFSET : Client.IDS_OFFSET;
+        return PackUtils.unpackLong(record, offset + 8*slot);
+    }
+
+    /**
+     * mètode per a obtenir les unitats llogades a la posició indicada
+     * @param slot
+     * @return unitats
+     */
+    private int rentedUnits(int slot) {
+        int offset = compact ? Client.COMPACT_UNITS_OFFSET : Client.UNITS_OFFSET;
+        return PackUtils.unpackInt(record, offset + 4*slot);
+    }
+
+    /**
+     * mètode per a comprovar si el client pot llogar un producte, amb el mateix criteri que Client
+     * @param idProduct
+     * @return true si encara pot llogar un producte, false altrament
+     */
+    public boolean canAddProduct(long idProduct) {
+        return slots < capacity;
+    }
+
+    /**
+     * mètode per saber si el client ja té un producte
+     * @param idProduct
+     * @return true si el client té el producte, false altrament
+     */
+    public boolean hasProduct(long idProduct) {
+        return find(idProduct) != NOT_FOUND;
+    }
+
+    /**
+     * mètode per a obtenir les unitats llogades d'un determinat producte
+     * @param idProduct
+     * @return unitats del producte
+     */
+    public int getRentedUnits(long idProduct) {
+        int slot = find(idProduct);
+        if (slot == NOT_FOUND) {
+            return 0;
+        }
+        return slot < MAX_PRODUCTS ? rentedUnits(slot) : overflowUnits[slot - MAX_PRODUCTS];
+    }
+
+    /**
+     * mètode per a buscar un producte, primer al registre i després entre els de les pàgines de desbordament
+     * @param idProduct
+     * @return posició del registre, MAX_PRODUCTS més la posició entre els de les pàgines, o NOT_FOUND
+     */
+    private int find(long idProduct) {
+        int positions = capacity != Client.DEFAULT_CAPACITY ? inlineSlots : MAX_PRODUCTS;
+        for (int i = 0; i < positions; i++) {
+            long id = rentedId(i);
+            if (id == idProduct && id != 0) {
+                return i;
+            }
+        }
+        for (int i = 0; i < overflowSlots; i++) {
+            if (overflowIds[i] == idProduct) {
+                return MAX_PRODUCTS + i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * mètode per a construir el client complet a partir de la imatge
+     * @return client nou, independent de la vista
+     */
+    public Client toClient() {
+        buffer.clear();
+        Client client = compact ? Client.decodeCompact(buffer, strings) : Client.decode(buffer, strings);
+        for (int i = 0; i < overflowSlots; i++) {
+            client.addOverflowSlot(overflowIds[i], overflowUnits[i]);
+        }
+        return client;
+    }
+
+    @Override
+    public String toString() {
+        return toClient().toString();
+    }
+}
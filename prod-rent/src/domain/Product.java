@@ -1,11 +1,24 @@
 package domain;
 
 import utils.PackUtils;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
 
 public class Product {
 
     public static final int DESCRIPTION_LIMIT = 20;
-    public static final int SIZE = 8 +(DESCRIPTION_LIMIT*2) + 4*2;
+    // posició de cada camp al registre; les fan servir els formats i ProductView
+    public static final int ID_OFFSET = 0;
+    public static final int DESCRIPTION_OFFSET = ID_OFFSET + 8;
+    public static final int PRICE_OFFSET = DESCRIPTION_OFFSET + DESCRIPTION_LIMIT*2;
+    public static final int STOCK_OFFSET = PRICE_OFFSET + 4;
+    public static final int SIZE = STOCK_OFFSET + 4;
+    // el format compacte posa la descripció al final
+    public static final int COMPACT_PRICE_OFFSET = ID_OFFSET + 8;
+    public static final int COMPACT_STOCK_OFFSET = COMPACT_PRICE_OFFSET + 4;
+    public static final int COMPACT_DESCRIPTION_OFFSET = COMPACT_STOCK_OFFSET + 4;
+    public static final int COMPACT_SIZE = COMPACT_DESCRIPTION_OFFSET + PackUtils.compactStringSize(DESCRIPTION_LIMIT);
 
     private final long id;
     private final String description;
@@ -82,19 +95,11 @@ public class Product {
      */
     public byte[] toBytes() {
         byte[] bytes = new byte[SIZE];
-        int offset = 0;
-
-        PackUtils.packLong(id, bytes, offset);
-        offset += 8;
-
-        PackUtils.packLimitedString(description, DESCRIPTION_LIMIT,  bytes, offset);
-        offset += 2*DESCRIPTION_LIMIT;
-
-        PackUtils.packInt(price, bytes, offset);
-        offset += 4;
 
-        PackUtils.packInt(stock, bytes, offset);
-        offset += 4;
+        PackUtils.packLong(id, bytes, ID_OFFSET);
+        PackUtils.packLimitedString(description, DESCRIPTION_LIMIT,  bytes, DESCRIPTION_OFFSET);
+        PackUtils.packInt(price, bytes, PRICE_OFFSET);
+        PackUtils.packInt(stock, bytes, STOCK_OFFSET);
 
         return bytes;
     }
@@ -106,21 +111,98 @@ public class Product {
      * @return producte creat a partir de la informació desempaquetada
      */
     public static Product fromBytes(byte[] record) {
-        int offset = 0;
+        long id = PackUtils.unpackLong(record, ID_OFFSET);
+        String description = PackUtils.unpackLimitedString(DESCRIPTION_LIMIT, record, DESCRIPTION_OFFSET);
+        int price = PackUtils.unpackInt(record, PRICE_OFFSET);
+        int stock = PackUtils.unpackInt(record, STOCK_OFFSET);
+
+        Product product = new Product(id, description, price, stock);
+        return product;
+    }
 
-        long id = PackUtils.unpackLong(record, offset);
-        offset += 8;
+    /**
+     * mètode per a escriure la informació del producte a la posició actual del buffer
+     * amb el mateix format que toBytes, avançant SIZE bytes
+     * @param buffer
+     */
+    public void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        PackUtils.packLong(id, buffer.position(start + ID_OFFSET));
+        PackUtils.packLimitedString(description, DESCRIPTION_LIMIT, buffer.position(start + DESCRIPTION_OFFSET));
+        PackUtils.packInt(price, buffer.position(start + PRICE_OFFSET));
+        PackUtils.packInt(stock, buffer.position(start + STOCK_OFFSET));
+        buffer.position(start + SIZE);
+    }
+
+    /**
+     * mètode per a llegir un producte a partir de la posició actual del buffer
+     * amb el mateix format que fromBytes, avançant SIZE bytes
+     * @param buffer
+     * @return producte
+     */
+    public static Product decode(ByteBuffer buffer) {
+        return decode(buffer, null);
+    }
 
-        String description = PackUtils.unpackLimitedString(DESCRIPTION_LIMIT, record, offset);
-        offset += 2*DESCRIPTION_LIMIT;
+    /**
+     * mètode per a llegir un producte a partir de la posició actual del buffer
+     * els textos es comparteixen a través de la memòria cau indicada, si n'hi ha
+     * @param buffer
+     * @param strings memòria cau de textos o null
+     * @return producte
+     */
+    public static Product decode(ByteBuffer buffer, StringCache strings) {
+        int start = buffer.position();
+        long id = PackUtils.unpackLong(buffer.position(start + ID_OFFSET));
+        buffer.position(start + DESCRIPTION_OFFSET);
+        String description = strings != null
+                ? strings.unpackLimitedString(DESCRIPTION_LIMIT, buffer)
+                : PackUtils.unpackLimitedString(DESCRIPTION_LIMIT, buffer);
+        int price = PackUtils.unpackInt(buffer.position(start + PRICE_OFFSET));
+        int stock = PackUtils.unpackInt(buffer.position(start + STOCK_OFFSET));
+        buffer.position(start + SIZE);
+        return new Product(id, description, price, stock);
+    }
 
-        int price = PackUtils.unpackInt(record, offset);
-        offset += 4;
+    /**
+     * mètode per a saber si la descripció es pot guardar en el format compacte sense perdre'n cap caràcter
+     * @return cert si la descripció és Latin-1 o el seu UTF-8 cap als DESCRIPTION_LIMIT bytes
+     */
+    public boolean fitsCompact() {
+        return PackUtils.fitsCompactString(description, DESCRIPTION_LIMIT);
+    }
 
-        int stock = PackUtils.unpackInt(record, offset);
+    /**
+     * mètode per a escriure el producte a la posició actual del buffer en el format compacte
+     * primer els camps numèrics i després la descripció en Latin-1 o UTF-8, avançant COMPACT_SIZE bytes
+     * @param buffer
+     */
+    public void encodeCompact(ByteBuffer buffer) {
+        int start = buffer.position();
+        PackUtils.packLong(id, buffer.position(start + ID_OFFSET));
+        PackUtils.packInt(price, buffer.position(start + COMPACT_PRICE_OFFSET));
+        PackUtils.packInt(stock, buffer.position(start + COMPACT_STOCK_OFFSET));
+        PackUtils.packCompactString(description, DESCRIPTION_LIMIT, buffer.position(start + COMPACT_DESCRIPTION_OFFSET));
+        buffer.position(start + COMPACT_SIZE);
+    }
 
-        Product product = new Product(id, description, price, stock);
-        return product;
+    /**
+     * mètode per a llegir un producte en el format compacte a partir de la posició actual del buffer
+     * @param buffer
+     * @param strings memòria cau de textos o null
+     * @return producte
+     */
+    public static Product decodeCompact(ByteBuffer buffer, StringCache strings) {
+        int start = buffer.position();
+        long id = PackUtils.unpackLong(buffer.position(start + ID_OFFSET));
+        int price = PackUtils.unpackInt(buffer.position(start + COMPACT_PRICE_OFFSET));
+        int stock = PackUtils.unpackInt(buffer.position(start + COMPACT_STOCK_OFFSET));
+        buffer.position(start + COMPACT_DESCRIPTION_OFFSET);
+        String description = strings != null
+                ? strings.unpackCompactString(DESCRIPTION_LIMIT, buffer)
+                : PackUtils.unpackCompactString(DESCRIPTION_LIMIT, buffer);
+        buffer.position(start + COMPACT_SIZE);
+        return new Product(id, description, price, stock);
     }
 
     public boolean isEqualTo(Product other) {
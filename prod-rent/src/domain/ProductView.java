@@ -0,0 +1,88 @@
+package domain;
+
+import utils.PackUtils;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Vista de només lectura sobre la imatge codificada d'un producte.
+ *
+ * El preu i l'estoc es llegeixen directament dels bytes del registre i la
+ * descripció només es descodifica si es demana. La mateixa vista es
+ * reutilitza per a cada lectura.
+ */
+public class ProductView {
+
+    private final byte[] record = new byte[Math.max(Product.SIZE, Product.COMPACT_SIZE)];
+    private final ByteBuffer buffer = ByteBuffer.wrap(record);
+    private boolean compact;
+    private StringCache strings;
+
+    /**
+     * mètode per a carregar a la vista la imatge d'un producte
+     * la imatge es copia, per tant l'array es pot reutilitzar després
+     * @param image imatge codificada del producte
+     * @param compact cert si la imatge té el format compacte
+     * @param strings memòria cau de textos per a llegir la descripció, o null
+     */
+    public void load(byte[] image, boolean compact, StringCache strings) {
+        int size = compact ? Product.COMPACT_SIZE : Product.SIZE;
+        System.arraycopy(image, 0, record, 0, size);
+        this.compact = compact;
+        this.strings = strings;
+    }
+
+    /**
+     * mètode per a obtenir el id del producte
+     * @return id
+     */
+    public long getId() {
+        return PackUtils.unpackLong(record, Product.ID_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir la descripció del producte, que es llegeix cada cop que es demana
+     * @return description
+     */
+    public String getDescription() {
+        if (compact) {
+            return strings != null
+                    ? strings.unpackCompactString(Product.DESCRIPTION_LIMIT, record, Product.COMPACT_DESCRIPTION_OFFSET)
+                    : PackUtils.unpackCompactString(Product.DESCRIPTION_LIMIT, record, Product.COMPACT_DESCRIPTION_OFFSET);
+        }
+        return strings != null
+                ? strings.unpackLimitedString(Product.DESCRIPTION_LIMIT, record, Product.DESCRIPTION_OFFSET)
+                : PackUtils.unpackLimitedString(Product.DESCRIPTION_LIMIT, record, Product.DESCRIPTION_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir el preu del producte
+     * @return price
+     */
+    public int getPrice() {
+        return PackUtils.unpackInt(record, compact ? Product.COMPACT_PRICE_OFFSET : Product.PRICE_OFFSET);
+    }
+
+    /**
+     * mètode per a obtenir les unitats en estoc
+     * @return stock
+     */
+    public int getStock() {
+        return PackUtils.unpackInt(record, compact ? Product.COMPACT_STOCK_OFFSET : Product.STOCK_OFFSET);
+    }
+
+    /**
+     * mètode per a construir el producte complet a partir de la imatge
+     * @return producte nou, independent de la vista
+     */
+    public Product toProduct() {
+        buffer.clear();
+        return compact ? Product.decodeCompact(buffer, strings) : Product.decode(buffer, strings);
+    }
+
+    @Override
+    public String toString() {
+        return toProduct().toString();
+    }
+}
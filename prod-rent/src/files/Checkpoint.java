@@ -0,0 +1,147 @@
+package files;
+
+import utils.PackUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Punt de control del mode persistent de ProdRent.
+ *
+ * Indica fins on del fitxer de moviments s'han aplicat els moviments a les
+ * bases de dades: la posició on comença el primer moviment pendent i
+ * quantes línies hi ha abans. L'empremta identifica el fitxer: és un CRC32C
+ * dels primers i dels últims FINGERPRINT_BYTES bytes abans de la posició,
+ * que no canvien si al fitxer només s'hi afegeixen moviments al final.
+ *
+ * Es guarda com l'únic registre, d'identificador ID, d'un fitxer registrat
+ * al diari, de manera que s'escriu en el mateix grup que les dades del lot.
+ */
+public class Checkpoint {
+
+    public static final long ID = 1;
+    public static final int SIZE = 8 + 8 + 8 + 8;
+    public static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    private final long position;
+    private final long lines;
+    private final long fingerprint;
+
+    /**
+     * constructor per a crear un punt de control amb els paràmetres indicats
+     * @param position posició del fitxer on comença el primer moviment pendent
+     * @param lines línies aplicades
+     * @param fingerprint empremta del fitxer fins a la posició
+     */
+    public Checkpoint(long position, long lines, long fingerprint) {
+        this.position = position;
+        this.lines = lines;
+        this.fingerprint = fingerprint;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * mètode per a calcular l'empremta d'un fitxer de moviments fins a la posició indicada
+     * @param fileName
+     * @param position
+     * @return empremta
+     * @throws IOException si el fitxer és més curt que la posició
+     */
+    public static long fingerprint(String fileName, long position) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (file.size() < position) {
+                throw new IOException(fileName + " is shorter than the checkpoint position " + position);
+            }
+            return fingerprint(file, position);
+        }
+    }
+
+    /**
+     * mètode per a saber si el fitxer indicat és el del punt de control
+     * si el fitxer ha crescut, l'última línia aplicada s'ha d'haver acabat amb un salt de línia:
+     * si no, el que s'hi ha afegit en formaria part
+     * @param fileName
+     * @return cert si arriba fins a la posició i hi té la mateixa empremta
+     * @throws IOException
+     */
+    public boolean matches(String fileName) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (file.size() < position || fingerprint(file, position) != fingerprint) {
+                return false;
+            }
+            if (position == 0 || file.size() == position) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            file.read(last, position - 1);
+            return last.get(0) == '\n' || last.get(0) == '\r';
+        }
+    }
+
+    private static long fingerprint(FileChannel file, long position) throws IOException {
+        CRC32C crc = new CRC32C();
+        long head = Math.min(position, FINGERPRINT_BYTES);
+        update(crc, file, 0, head);
+        update(crc, file, Math.max(head, position - FINGERPRINT_BYTES), position);
+        crc.update(Long.hashCode(position));
+        return crc.getValue();
+    }
+
+    private static void update(CRC32C crc, FileChannel file, long from, long to) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        while (bytes.hasRemaining()) {
+            if (file.read(bytes, from + bytes.position()) < 0) {
+                throw new IOException("Unexpected end of movements file");
+            }
+        }
+        bytes.flip();
+        crc.update(bytes);
+    }
+
+    /**
+     * mètode per a escriure el punt de control a la posició actual del buffer, avançant SIZE bytes
+     * @param buffer
+     */
+    public void encode(ByteBuffer buffer) {
+        PackUtils.packLong(ID, buffer);
+        PackUtils.packLong(position, buffer);
+        PackUtils.packLong(lines, buffer);
+        PackUtils.packLong(fingerprint, buffer);
+    }
+
+    /**
+     * mètode per a llegir un punt de control a partir de la posició actual del buffer, avançant SIZE bytes
+     * @param buffer
+     * @return punt de control
+     */
+    public static Checkpoint decode(ByteBuffer buffer) {
+        PackUtils.unpackLong(buffer);
+        long position = PackUtils.unpackLong(buffer);
+        long lines = PackUtils.unpackLong(buffer);
+        long fingerprint = PackUtils.unpackLong(buffer);
+        return new Checkpoint(position, lines, fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{" +
+                "position=" + position +
+                ", lines=" + lines +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package files;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format del registre del fitxer de punt de control del mode persistent.
+ */
+public class CheckpointCodec implements RecordCodec<Checkpoint> {
+
+    @Override
+    public String name() {
+        return "checkpoint";
+    }
+
+    @Override
+    public int size() {
+        return Checkpoint.SIZE;
+    }
+
+    @Override
+    public long id(Checkpoint checkpoint) {
+        return Checkpoint.ID;
+    }
+
+    @Override
+    public void encode(Checkpoint checkpoint, ByteBuffer buffer) {
+        checkpoint.encode(buffer);
+    }
+
+    @Override
+    public Checkpoint decode(ByteBuffer buffer) {
+        return Checkpoint.decode(buffer);
+    }
+}
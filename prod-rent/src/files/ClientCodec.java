@@ -0,0 +1,105 @@
+package files;
+
+import domain.Client;
+import utils.StringCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formats dels registres de clients.
+ *
+ * La versió FileHeader.VERSION guarda els textos amb dos bytes per caràcter
+ * i la versió FileHeader.COMPACT_VERSION, a la qual els converteix
+ * FormatConverter, els guarda en Latin-1 o UTF-8 després dels camps
+ * numèrics.
+ */
+public class ClientCodec implements RecordCodec<Client> {
+    private final short version;
+    private StringCache strings;
+
+    /**
+     * constructor per a crear el format compacte
+     */
+    public ClientCodec() {
+        this(FileHeader.COMPACT_VERSION);
+    }
+
+    /**
+     * constructor per a crear el format de la versió indicada
+     * @param version
+     * @throws IllegalArgumentException si la versió no existeix
+     */
+    public ClientCodec(short version) {
+        if (version != FileHeader.VERSION && version != FileHeader.COMPACT_VERSION) {
+            throw new IllegalArgumentException("Unsupported client format version: " + version);
+        }
+        this.version = version;
+    }
+
+    /**
+     * mètode per a compartir els textos llegits a través d'una memòria cau
+     * @param strings memòria cau de textos o null per a desactivar-la
+     */
+    public void setStringCache(StringCache strings) {
+        this.strings = strings;
+    }
+
+    public StringCache getStringCache() {
+        return strings;
+    }
+
+    @Override
+    public String name() {
+        return "client";
+    }
+
+    @Override
+    public int size() {
+        return version == FileHeader.COMPACT_VERSION ? Client.COMPACT_SIZE : Client.SIZE;
+    }
+
+    @Override
+    public short version() {
+        return version;
+    }
+
+    @Override
+    public RecordCodec<Client> forVersion(short version) throws IOException {
+        if (version == this.version) {
+            return this;
+        }
+        if (version != FileHeader.VERSION && version != FileHeader.COMPACT_VERSION) {
+            throw new IOException("Unsupported client format version: " + version);
+        }
+        ClientCodec codec = new ClientCodec(version);
+        codec.setStringCache(strings);
+        return codec;
+    }
+
+    @Override
+    public long id(Client client) {
+        return client.getId();
+    }
+
+    @Override
+    public boolean fits(Client client) {
+        return version != FileHeader.COMPACT_VERSION || client.fitsCompact();
+    }
+
+    @Override
+    public void encode(Client client, ByteBuffer buffer) {
+        if (version == FileHeader.COMPACT_VERSION) {
+            client.encodeCompact(buffer);
+        } else {
+            client.encode(buffer);
+        }
+    }
+
+    @Override
+    public Client decode(ByteBuffer buffer) {
+        return version == FileHeader.COMPACT_VERSION
+                ? Client.decodeCompact(buffer, strings)
+                : Client.decode(buffer, strings);
+    }
+}
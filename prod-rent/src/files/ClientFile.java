@@ -1,86 +1,386 @@
 package files;
 
 import domain.Client;
+import domain.ClientView;
+import utils.StringCache;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 
-public class ClientFile {
-    private final RandomAccessFile clients;
+/**
+ * Fitxer de clients.
+ *
+ * Els clients amb la capacitat per defecte caben sencers al seu registre.
+ * La resta guarden a l'última posició del registre la seva capacitat i la
+ * primera pàgina de desbordament, i els productes que no caben al registre
+ * van a una cadena de pàgines d'un fitxer a part, que s'activa amb
+ * enableOverflow. Els clients es llegeixen sempre sencers.
+ */
+public class ClientFile extends FixedRecordFile<Client> {
+    // productes que caben al registre d'un client amb desbordament
+    private static final int INLINE_SLOTS = Client.INLINE_PRODUCTS - 1;
+
+    private ClientNameIndex nameIndex;
+    private FixedRecordFile<OverflowPage> overflow;
 
     public ClientFile(String fileName) throws IOException {
-        this.clients = new RandomAccessFile(fileName, "rw");
+        this(fileName, StorageMode.RANDOM_ACCESS);
     }
 
     /**
-     * mètode per a escriure un client al fitxer
-     * col·loca el punter a la posició corresponent i escriu les dades del client
-     * @param client
+     * constructor per a crear un fitxer de clients amb el tipus d'emmagatzematge indicat
+     * si el fitxer no existeix es crea amb el format FileHeader.VERSION
+     * @param fileName
+     * @param mode
      * @throws IOException
      */
-    public void write(Client client) throws IOException {
-        long pos = (client.getId() - 1) * Client.SIZE;
-        clients.seek(pos);
-        clients.write(client.toBytes());
+    public ClientFile(String fileName, StorageMode mode) throws IOException {
+        this(fileName, mode, FileHeader.VERSION);
     }
 
     /**
-     * mètode per a llegir un client del fitxer donat el seu identificador
-     * comprova que l'identificador sigui vàlid i retorna el client corresponent
+     * constructor per a crear un fitxer amb el tipus d'emmagatzematge indicat
+     * si el fitxer no existeix es crea amb la versió de format indicada; si existeix, es llegeix amb la seva
+     * @param fileName
+     * @param mode
+     * @param version
+     * @throws IOException
+     */
+    public ClientFile(String fileName, StorageMode mode, short version) throws IOException {
+        this(fileName, mode, version, false);
+    }
+
+    /**
+     * constructor per a crear un fitxer indicant també si els registres porten suma de verificació
+     * si el fitxer ja existeix es llegeix amb la seva versió i les seves opcions
+     * @param fileName
+     * @param mode
+     * @param version
+     * @param checksums cert si cada registre porta un CRC32C que es comprova en llegir-lo
+     * @throws IOException
+     */
+    public ClientFile(String fileName, StorageMode mode, short version, boolean checksums) throws IOException {
+        super(fileName, mode, new ClientCodec(version), checksums);
+    }
+
+    /**
+     * mètode per a compartir els noms dels clients llegits a través d'una memòria cau de textos
+     * @param capacity nombre de textos que es poden guardar
+     */
+    public void enableStringCache(int capacity) {
+        ((ClientCodec) getCodec()).setStringCache(new StringCache(capacity));
+    }
+
+    /**
+     * mètode per a obtenir la memòria cau de textos
+     * @return cache o null si no està activada
+     */
+    public StringCache getStringCache() {
+        return ((ClientCodec) getCodec()).getStringCache();
+    }
+
+    /**
+     * mètode per a llegir un client a la vista indicada sense construir el Client
      * @param id
-     * @return client
+     * @param view vista que es reutilitza per a cada lectura
      * @throws IOException id no vàlid
      */
-    public Client read(long id) throws IOException {
-        long pos = (id - 1) * Client.SIZE;
-        if(!isValid(id)){
-            throw new IOException("Invalid client ID: " + id);
+    public void read(long id, ClientView view) throws IOException {
+        view.load(readImage(id), getCodec().version() == FileHeader.COMPACT_VERSION, getStringCache());
+        long page = view.getOverflowPage();
+        while (view.getMissingSlots() > 0) {
+            requireOverflow(id, page);
+            byte[] image = overflow.readImage(page);
+            int count = OverflowPage.countOf(image);
+            if (count > view.getMissingSlots()) {
+                throw new IOException("Overflow page " + page + " of client " + id + " has too many products");
+            }
+            for (int i = 0; i < count; i++) {
+                view.addOverflowSlot(OverflowPage.productIdOf(image, i), OverflowPage.unitsOf(image, i));
+            }
+            page = OverflowPage.nextOf(image);
         }
-        clients.seek(pos);
-        byte[] buffer = new byte[Client.SIZE];
-        clients.readFully(buffer);
-        return Client.fromBytes(buffer);
     }
 
     /**
-     * mètode per a obtenir el següent identificador disponible
-     * calcula id basant-se en la longitud actual del fitxer
-     * @return next id
+     * mètode per a comprovar que es pot llegir la pàgina següent de la cadena d'un client
+     * @param id client
+     * @param page
+     * @throws IOException si la cadena s'acaba abans d'hora o el fitxer de desbordament no està actiu
+     */
+    private void requireOverflow(long id, long page) throws IOException {
+        if (overflow == null) {
+            throw new IOException("Client " + id + " has overflow pages but the overflow file is not enabled");
+        }
+        if (page == 0) {
+            throw new IOException("Overflow chain of client " + id + " is too short");
+        }
+    }
+
+    /**
+     * mètode per a afegir al client llegit els productes que té a les pàgines de desbordament
+     * @param client
+     * @return client amb tots els productes
+     * @throws IOException si la cadena de pàgines no correspon al client
+     */
+    @Override
+    protected Client complete(Client client) throws IOException {
+        long page = client.getOverflowPage();
+        while (client.getMissingSlots() > 0) {
+            requireOverflow(client.getId(), page);
+            OverflowPage overflowPage = overflow.read(page);
+            if (overflowPage.getOwner() != client.getId() || overflowPage.getCount() > client.getMissingSlots()) {
+                throw new IOException("Overflow page " + page + " does not belong to client " + client.getId());
+            }
+            for (int i = 0; i < overflowPage.getCount(); i++) {
+                client.addOverflowSlot(overflowPage.getProductId(i), overflowPage.getUnits(i));
+            }
+            page = overflowPage.getNext();
+        }
+        return client;
+    }
+
+    /**
+     * mètode per a escriure un client al fitxer
+     * els productes que no caben al registre s'escriuen abans a les pàgines de desbordament
+     * si l'índex de noms està actiu i el client és nou, s'hi afegeix
+     * @param client
+     * @throws IOException
+     */
+    @Override
+    public void write(Client client) throws IOException {
+        boolean isNew = !isValid(client.getId());
+        if (client.hasOverflow()) {
+            writeOverflow(complete(client));
+        }
+        super.write(client);
+        if (nameIndex != null && isNew) {
+            nameIndex.add(client);
+        }
+    }
+
+    /**
+     * mètode per a escriure molts clients de cop, amb escriptures seqüencials grans
+     * les pàgines de desbordament i l'índex de noms s'actualitzen com amb write
+     * @param clients
      * @throws IOException
      */
-    public long nextId() throws IOException {
-        return clients.length() / Client.SIZE + 1;
+    @Override
+    public void writeAll(Collection<? extends Client> clients) throws IOException {
+        List<Client> created = new ArrayList<>();
+        for (Client client : clients) {
+            if (!isValid(client.getId())) {
+                created.add(client);
+            }
+            if (client.hasOverflow()) {
+                writeOverflow(complete(client));
+            }
+        }
+        super.writeAll(clients);
+        if (nameIndex != null) {
+            for (Client client : created) {
+                nameIndex.add(client);
+            }
+        }
     }
 
     /**
-     * mètode per a comprovar si un identificador és vàlid
-     * verifica que estigui dins del rang de registres existents
-     * @param id
-     * @return cert si és vàlid, fals altrament
+     * mètode per a escriure les pàgines de desbordament d'un client i guardar-ne la primera al client
+     * es reaprofiten les pàgines que ja tenia, només s'escriuen les que han canviat
+     * i s'esborren les que sobren; les pàgines s'escriuen de l'última a la primera
+     * perquè cadascuna sàpiga el id de la següent
+     * @param client
      * @throws IOException
      */
-    public boolean isValid(long id) throws IOException {
-        if(id < 1){
+    private void writeOverflow(Client client) throws IOException {
+        List<OverflowPage> existing = new ArrayList<>();
+        for (long page = client.getOverflowPage(); page != 0; ) {
+            requireOverflow(client.getId(), page);
+            OverflowPage overflowPage = overflow.read(page);
+            existing.add(overflowPage);
+            page = overflowPage.getNext();
+        }
+        int slots = client.getSlotCount() - INLINE_SLOTS;
+        int needed = slots > 0 ? (slots + OverflowPage.ENTRIES - 1) / OverflowPage.ENTRIES : 0;
+        if (needed > 0 && overflow == null) {
+            throw new IOException("Client " + client.getId() + " needs overflow pages but the overflow file is not enabled");
+        }
+        for (int i = needed; i < existing.size(); i++) {
+            overflow.delete(existing.get(i).getId());
+        }
+        long[] ids = new long[OverflowPage.ENTRIES];
+        int[] units = new int[OverflowPage.ENTRIES];
+        long next = 0;
+        for (int i = needed - 1; i >= 0; i--) {
+            int first = INLINE_SLOTS + i * OverflowPage.ENTRIES;
+            int count = Math.min(OverflowPage.ENTRIES, client.getSlotCount() - first);
+            for (int j = 0; j < OverflowPage.ENTRIES; j++) {
+                ids[j] = j < count ? client.getSlotId(first + j) : 0;
+                units[j] = j < count ? client.getSlotUnits(first + j) : 0;
+            }
+            boolean reused = i < existing.size();
+            long id = reused ? existing.get(i).getId() : overflow.nextId();
+            OverflowPage page = new OverflowPage(id, client.getId(), next, ids, units, count);
+            if (!reused || !page.isEqualTo(existing.get(i))) {
+                overflow.write(page);
+            }
+            next = id;
+        }
+        client.setOverflowPage(next);
+    }
+
+    /**
+     * mètode per a treure d'un client un producte que ja ha retornat del tot, abans d'esborrar el producte
+     * si el client en tenia la posició a les pàgines de desbordament, les que sobren s'esborren
+     * @param idClient
+     * @param idProduct
+     * @return true si s'ha tret, false si el client no l'havia llogat o encara en té unitats
+     * @throws IOException id de client no vàlid
+     */
+    public boolean forgetProduct(long idClient, long idProduct) throws IOException {
+        // el client llegit pot ser el de la memòria cau
+        Client client = read(idClient).copy();
+        if (!client.forgetProduct(idProduct)) {
             return false;
         }
-        long totalRecords = clients.length() / Client.SIZE;
-        return id <= totalRecords;
+        write(client);
+        return true;
     }
 
     /**
-     * mètode per a buidar el contingut del fitxer
-     * posa la longitud del fitxer a zero
+     * mètode per a esborrar un client del fitxer, les seves pàgines de desbordament i de l'índex de noms
+     * @param id
+     * @throws IOException id no vàlid
+     */
+    @Override
+    public void delete(long id) throws IOException {
+        Client client = read(id);
+        super.delete(id);
+        for (long page = client.getOverflowPage(); page != 0; ) {
+            long next = overflow.read(page).getNext();
+            overflow.delete(page);
+            page = next;
+        }
+        if (nameIndex != null) {
+            nameIndex.remove(client);
+        }
+    }
+
+    /**
+     * mètode per a activar el fitxer de pàgines de desbordament dels clients
+     * s'ha d'activar abans del mode per lots; si el fitxer és nou, porta sumes de verificació
+     * si les porta el fitxer de clients
+     * @param fileName
+     * @param mode
      * @throws IOException
      */
-    public void reset() throws IOException {
-        clients.setLength(0);
+    public void enableOverflow(String fileName, StorageMode mode) throws IOException {
+        overflow = new FixedRecordFile<>(fileName, mode, new OverflowCodec(), hasChecksums());
+    }
+
+    /**
+     * mètode per a obtenir el fitxer de pàgines de desbordament
+     * @return fitxer o null si no està actiu
+     */
+    public FixedRecordFile<OverflowPage> getOverflowFile() {
+        return overflow;
     }
 
     /**
-     * mètode per a tancar el fitxer
+     * mètode per a activar l'índex de noms de client
+     * si l'índex no correspon al fitxer de clients es torna a construir
+     * @param fileName nom del fitxer de l'índex
+     * @param mode
      * @throws IOException
      */
+    public void enableNameIndex(String fileName, StorageMode mode) throws IOException {
+        nameIndex = new ClientNameIndex(fileName, mode);
+        if (nameIndex.size() != count()) {
+            nameIndex.rebuild(this);
+        }
+    }
+
+    /**
+     * mètode per a buscar els clients amb un nom que comença pel prefix indicat, sense distingir majúscules
+     * si l'índex no està actiu es recorre tot el fitxer
+     * @param prefix
+     * @return identificadors dels clients, ordenats per nom
+     * @throws IOException
+     */
+    public List<Long> findByNamePrefix(String prefix) throws IOException {
+        if (nameIndex != null) {
+            return nameIndex.findByPrefix(prefix);
+        }
+        String normalized = ClientNameIndex.normalize(prefix);
+        List<Client> found = new ArrayList<>();
+        forEach(client -> {
+            if (ClientNameIndex.normalize(client.getName()).startsWith(normalized)) {
+                found.add(client);
+            }
+        });
+        found.sort(Comparator.comparing((Client client) -> ClientNameIndex.normalize(client.getName()))
+                .thenComparingLong(Client::getId));
+        List<Long> ids = new ArrayList<>(found.size());
+        for (Client client : found) {
+            ids.add(client.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public void enableBatching() {
+        super.enableBatching();
+        if (overflow != null) {
+            overflow.enableBatching();
+        }
+    }
+
+    @Override
+    public void commitBatch() throws IOException {
+        super.commitBatch();
+        if (overflow != null) {
+            overflow.commitBatch();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        super.flush();
+        if (overflow != null) {
+            overflow.flush();
+        }
+    }
+
+    @Override
+    public void force() throws IOException {
+        super.force();
+        if (overflow != null) {
+            overflow.force();
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        if (overflow != null) {
+            overflow.reset();
+        }
+        if (nameIndex != null) {
+            nameIndex.reset();
+        }
+    }
+
+    @Override
     public void close() throws IOException {
-        clients.close();
+        super.close();
+        if (overflow != null) {
+            overflow.close();
+        }
+        if (nameIndex != null) {
+            nameIndex.close();
+        }
     }
 }
@@ -0,0 +1,173 @@
+package files;
+
+import domain.Client;
+import utils.PackUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Índex dels clients pel seu nom que permet cerques exactes i per prefix.
+ *
+ * Els noms normalitzats es guarden ordenats en memòria i cada alta
+ * s'afegeix al final d'un fitxer d'entrades de mida fixa, que es torna a
+ * llegir de manera seqüencial en obrir l'índex. Les baixes s'afegeixen
+ * com una entrada més que anul·la l'alta corresponent. La clau de cada
+ * entrada és el nom seguit de l'identificador, per a admetre noms repetits.
+ */
+public class ClientNameIndex {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int ENTRY_SIZE = 1 + 8 + 2 * Client.NAME_LIMIT;
+    private static final int LOAD_BLOCK = 4096;
+
+    private final Storage storage;
+    private final TreeMap<String, Long> names = new TreeMap<>();
+    private final byte[] entry = new byte[ENTRY_SIZE];
+    private long entries;
+
+    /**
+     * constructor per a obrir l'índex amb el nom i el tipus d'emmagatzematge indicats
+     * @param fileName
+     * @param mode
+     * @throws IOException
+     */
+    public ClientNameIndex(String fileName, StorageMode mode) throws IOException {
+        this.storage = mode.open(fileName);
+        load();
+    }
+
+    private void load() throws IOException {
+        long total = storage.length() / ENTRY_SIZE;
+        byte[] block = new byte[LOAD_BLOCK * ENTRY_SIZE];
+        for (long first = 0; first < total; first += LOAD_BLOCK) {
+            int count = (int) Math.min(LOAD_BLOCK, total - first);
+            storage.read(first * ENTRY_SIZE, block, 0, count * ENTRY_SIZE);
+            for (int i = 0; i < count; i++) {
+                int offset = i * ENTRY_SIZE;
+                long id = PackUtils.unpackLong(block, offset + 1);
+                String name = PackUtils.unpackLimitedString(Client.NAME_LIMIT, block, offset + 9);
+                if (block[offset] == ADD) {
+                    names.put(key(normalize(name), id), id);
+                } else if (block[offset] == REMOVE) {
+                    names.remove(key(normalize(name), id));
+                }
+            }
+        }
+        entries = total;
+    }
+
+    /**
+     * mètode per a normalitzar un nom tal com es compara a l'índex
+     * es retalla a la longitud que es guarda al fitxer, sense espais als extrems i en minúscules
+     * @param name
+     * @return nom normalitzat
+     */
+    public static String normalize(String name) {
+        if (name.length() > Client.NAME_LIMIT) {
+            name = name.substring(0, Client.NAME_LIMIT);
+        }
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String normalized, long id) {
+        String digits = Long.toString(id);
+        StringBuilder key = new StringBuilder(normalized.length() + 20).append(normalized).append('\0');
+        for (int i = digits.length(); i < 19; i++) {
+            key.append('0');
+        }
+        return key.append(digits).toString();
+    }
+
+    public long size() {
+        return names.size();
+    }
+
+    /**
+     * mètode per a afegir un client a l'índex
+     * @param client
+     * @throws IOException
+     */
+    public void add(Client client) throws IOException {
+        append(ADD, client.getId(), client.getName());
+        names.put(key(normalize(client.getName()), client.getId()), client.getId());
+    }
+
+    /**
+     * mètode per a treure un client esborrat de l'índex
+     * @param client
+     * @throws IOException
+     */
+    public void remove(Client client) throws IOException {
+        append(REMOVE, client.getId(), client.getName());
+        names.remove(key(normalize(client.getName()), client.getId()));
+    }
+
+    private void append(byte kind, long id, String name) throws IOException {
+        entry[0] = kind;
+        PackUtils.packLong(id, entry, 1);
+        PackUtils.packLimitedString(name, Client.NAME_LIMIT, entry, 9);
+        storage.write(entries * ENTRY_SIZE, entry);
+        entries++;
+    }
+
+    /**
+     * mètode per a obtenir els identificadors dels clients amb un nom que comença pel prefix indicat
+     * @param prefix
+     * @return ids ordenats per nom i, per a noms iguals, per identificador
+     */
+    public List<Long> findByPrefix(String prefix) {
+        String normalized = normalize(prefix);
+        return ids(names.subMap(normalized, true, normalized + Character.MAX_VALUE, false));
+    }
+
+    /**
+     * mètode per a obtenir els identificadors dels clients amb el nom indicat
+     * @param name
+     * @return ids ordenats
+     */
+    public List<Long> findByName(String name) {
+        String normalized = normalize(name);
+        return ids(names.subMap(normalized + '\0', true, normalized + '\u0001', false));
+    }
+
+    private static List<Long> ids(NavigableMap<String, Long> matches) {
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * mètode per a tornar a construir l'índex a partir de tots els clients del fitxer
+     * @param clients
+     * @throws IOException
+     */
+    public void rebuild(FixedRecordFile<Client> clients) throws IOException {
+        reset();
+        for (long id = 1; id <= clients.lastId(); id += LOAD_BLOCK) {
+            for (Client client : clients.readRange(id, LOAD_BLOCK)) {
+                add(client);
+            }
+        }
+    }
+
+    /**
+     * mètode per a buidar l'índex
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        names.clear();
+        entries = 0;
+        storage.setLength(0);
+    }
+
+    /**
+     * mètode per a tancar l'índex
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        storage.close();
+    }
+}
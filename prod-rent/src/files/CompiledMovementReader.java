@@ -0,0 +1,296 @@
+package files;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector dels fitxers de moviments compilats amb MovementCompiler.
+ *
+ * La taula de textos es carrega sencera en obrir el fitxer, i cada línia
+ * es llegeix d'un buffer que es va omplint del fitxer, sense tallar ni
+ * convertir cap camp i sense crear cap objecte. Dona els mateixos camps i
+ * les mateixes excepcions que MovementReader sobre el text original. Els
+ * camps de les operacions que Operation no coneix estan guardats com a text
+ * i es converteixen quan es llegeixen; els fitxers de la versió 1 no en
+ * tenen.
+ */
+public class CompiledMovementReader implements MovementSource {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 2 + Operation.MAX_FIELDS * Long.BYTES;
+
+    private final FileChannel channel;
+    private final long lines;
+    private final long stringsOffset;
+    private final String[] strings;
+    private final boolean unknownFields;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private long position = MovementCompiler.HEADER_SIZE;
+    private long line;
+    // línia actual
+    private Operation operation;
+    private String operationName;
+    private boolean operationPending;
+    private String fields = "";
+    private int count;
+    private int field;
+    private boolean malformed;
+    private final long[] numbers = new long[Operation.MAX_FIELDS];
+    // textos dels camps, o tots els camps si l'operació és desconeguda
+    private String[] texts = new String[Operation.MAX_FIELDS];
+
+    /**
+     * constructor per a obrir el fitxer compilat indicat
+     * @param fileName
+     * @throws IOException si no es pot obrir o no és un fitxer de moviments compilat
+     */
+    public CompiledMovementReader(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(MovementCompiler.HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != MovementCompiler.MAGIC) {
+                throw new IOException(fileName + " is not a compiled movements file");
+            }
+            short version = header.getShort();
+            if (version != 1 && version != MovementCompiler.VERSION) {
+                throw new IOException("Unsupported compiled movements version " + version);
+            }
+            unknownFields = version >= 2;
+            header.getShort();
+            lines = header.getLong();
+            stringsOffset = header.getLong();
+            strings = new String[header.getInt()];
+            loadStrings();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        buffer.limit(0);
+    }
+
+    /**
+     * mètode per a saber si el fitxer indicat és un fitxer de moviments compilat
+     * @param fileName
+     * @return cert si comença amb la marca dels fitxers compilats
+     * @throws IOException
+     */
+    public static boolean isCompiled(String fileName) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && file.read(magic) > 0) {
+                // llegeix fins a tenir els quatre bytes o arribar al final
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MovementCompiler.MAGIC;
+        }
+    }
+
+    private void loadStrings() throws IOException {
+        long length = channel.size() - stringsOffset;
+        if (stringsOffset < MovementCompiler.HEADER_SIZE || length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt compiled movements header");
+        }
+        MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, stringsOffset, length);
+        try {
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[table.getInt()];
+                table.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException ex) {
+            throw new IOException("Corrupt compiled movements string table", ex);
+        }
+    }
+
+    private void readFully(ByteBuffer target, long from) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, from);
+            if (read < 0) {
+                throw new EOFException("Truncated compiled movements file");
+            }
+            from += read;
+        }
+    }
+
+    /**
+     * mètode per a omplir el buffer quan no hi cap segur la línia següent
+     * mai es llegeix més enllà de la taula de textos
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+        if (buffer.remaining() >= MAX_LINE_BYTES || position == stringsOffset) {
+            return;
+        }
+        buffer.compact();
+        buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + stringsOffset - position));
+        int start = buffer.position();
+        readFully(buffer, position);
+        position += buffer.position() - start;
+        buffer.flip();
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        if (line == lines) {
+            return false;
+        }
+        line++;
+        fill();
+        count = 0;
+        field = 0;
+        malformed = false;
+        try {
+            int code = buffer.get() & 0xFF;
+            if (code == MovementCompiler.BLANK) {
+                operation = null;
+                operationName = null;
+                operationPending = false;
+                return true;
+            }
+            operationPending = true;
+            if (code == MovementCompiler.UNKNOWN) {
+                operation = null;
+                operationName = string(buffer.getInt());
+                if (unknownFields) {
+                    readRawFields();
+                }
+                return true;
+            }
+            operation = Operation.fromCode(code);
+            if (operation == null) {
+                throw new IOException("Unknown operation code " + code + " at movement " + line);
+            }
+            operationName = operation.name();
+            fields = operation.getFields();
+            int flags = buffer.get() & 0xFF;
+            count = flags & ~MovementCompiler.MALFORMED;
+            malformed = (flags & MovementCompiler.MALFORMED) != 0;
+            if (count > fields.length()) {
+                throw new IOException("Too many fields at movement " + line);
+            }
+            for (int i = 0; i < count; i++) {
+                char type = fields.charAt(i);
+                if (type == 'l') {
+                    numbers[i] = buffer.getLong();
+                } else if (type == 's') {
+                    texts[i] = string(buffer.getInt());
+                } else {
+                    numbers[i] = buffer.getInt();
+                }
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new EOFException("Truncated compiled movements file at movement " + line);
+        }
+        return true;
+    }
+
+    /**
+     * mètode per a llegir els textos dels camps d'una operació desconeguda
+     * el buffer es torna a omplir per a cada camp, ja que la línia pot tenir-ne molts
+     * @throws IOException
+     */
+    private void readRawFields() throws IOException {
+        int fields = buffer.getInt();
+        if (fields < 0) {
+            throw new IOException("Invalid field count at movement " + line);
+        }
+        for (int i = 0; i < fields; i++) {
+            fill();
+            if (i == texts.length) {
+                texts = Arrays.copyOf(texts, 2 * i);
+            }
+            texts[i] = string(buffer.getInt());
+        }
+        count = fields;
+    }
+
+    @Override
+    public long getPosition() {
+        return position - buffer.remaining();
+    }
+
+    private String string(int index) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Unknown string " + index + " at movement " + line);
+        }
+        return strings[index];
+    }
+
+    @Override
+    public boolean hasMoreFields() {
+        return operationPending || field < count || malformed;
+    }
+
+    @Override
+    public Operation nextOperation() {
+        if (!operationPending) {
+            throw new NoSuchElementException();
+        }
+        operationPending = false;
+        return operation;
+    }
+
+    @Override
+    public String getOperationName() {
+        return operationName;
+    }
+
+    @Override
+    public String nextString() {
+        return texts[nextField('s')];
+    }
+
+    @Override
+    public long nextLong() {
+        int i = nextField('l');
+        return operation != null ? numbers[i] : Long.parseLong(texts[i]);
+    }
+
+    @Override
+    public int nextInt() {
+        int i = nextField('i');
+        return operation != null ? (int) numbers[i] : Integer.parseInt(texts[i]);
+    }
+
+    @Override
+    public int nextTrimmedInt() {
+        int i = nextField('t');
+        return operation != null ? (int) numbers[i] : Integer.parseInt(texts[i].trim());
+    }
+
+    /**
+     * mètode per a passar al camp següent
+     * @param type tipus amb què es llegeix, que ha de ser el tipus amb què es va compilar si l'operació és coneguda
+     * @return posició del camp
+     * @throws NumberFormatException si el camp del text original no era un número vàlid
+     * @throws NoSuchElementException si no queden camps
+     */
+    private int nextField(char type) {
+        if (operationPending || field == count) {
+            if (!operationPending && malformed) {
+                malformed = false;
+                throw new NumberFormatException("Malformed number at movement " + line);
+            }
+            throw new NoSuchElementException();
+        }
+        if (operation != null && fields.charAt(field) != type) {
+            throw new IllegalStateException("Field " + field + " of " + operation + " was compiled as '"
+                    + fields.charAt(field) + "', not '" + type + "'");
+        }
+        return field++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
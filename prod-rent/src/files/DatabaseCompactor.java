@@ -0,0 +1,167 @@
+package files;
+
+import domain.Client;
+import domain.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compactació fora de línia dels fitxers de clients i productes.
+ *
+ * Els registres no esborrats es tornen a escriure, en el mateix ordre i per
+ * blocs amb writeAll, en fitxers nous sense forats i amb identificadors
+ * consecutius. Els productes llogats pels clients es renumeren amb la
+ * mateixa correspondència, i quan
+ * els fitxers nous estan complets substitueixen els originals. Les pàgines
+ * de desbordament dels clients es tornen a escriure juntes al principi del
+ * fitxer nou de pàgines. Els índexs que depenen dels identificadors s'han
+ * de tornar a construir després.
+ */
+public class DatabaseCompactor {
+    private static final String TEMP_SUFFIX = ".compact";
+    private static final int BLOCK = 4096;
+
+    private final String clientsName;
+    private final String overflowName;
+    private final String productsName;
+    private final StorageMode mode;
+    private long removedClients;
+    private long removedProducts;
+
+    /**
+     * constructor per a compactar els fitxers indicats
+     * @param clientsName fitxer de clients
+     * @param productsName fitxer de productes
+     * @param mode tipus d'emmagatzematge dels fitxers
+     */
+    public DatabaseCompactor(String clientsName, String productsName, StorageMode mode) {
+        this(clientsName, null, productsName, mode);
+    }
+
+    /**
+     * constructor per a compactar els fitxers indicats, amb les pàgines de desbordament dels clients
+     * @param clientsName fitxer de clients
+     * @param overflowName fitxer de pàgines de desbordament dels clients, o null si no n'hi ha
+     * @param productsName fitxer de productes
+     * @param mode tipus d'emmagatzematge dels fitxers
+     */
+    public DatabaseCompactor(String clientsName, String overflowName, String productsName, StorageMode mode) {
+        this.clientsName = clientsName;
+        this.overflowName = overflowName;
+        this.productsName = productsName;
+        this.mode = mode;
+    }
+
+    /**
+     * mètode per a compactar els dos fitxers
+     * primer els productes, per a saber el nou id de cadascun, i després els clients
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+        long[] productIds;
+        try (Compaction<Product> products = new Compaction<>(productsName, new ProductCodec())) {
+            long total = products.source.lastId();
+            productIds = new long[(int) total + 1];
+            long next = 1;
+            for (long from = 1; from <= total; from += BLOCK) {
+                List<Product> block = products.source.readRange(from, BLOCK);
+                List<Product> renumbered = new ArrayList<>(block.size());
+                for (Product product : block) {
+                    productIds[(int) product.getId()] = next;
+                    renumbered.add(new Product(next++, product.getDescription(),
+                            product.getPrice(), product.getStock()));
+                }
+                products.target.writeAll(renumbered);
+            }
+            removedProducts = total - (next - 1);
+        }
+        try (Compaction<Client> clients = openClients()) {
+            long total = clients.source.lastId();
+            long next = 1;
+            for (long from = 1; from <= total; from += BLOCK) {
+                List<Client> block = clients.source.readRange(from, BLOCK);
+                List<Client> renumbered = new ArrayList<>(block.size());
+                for (Client client : block) {
+                    renumbered.add(client.renumber(next++,
+                            id -> id > 0 && id < productIds.length ? productIds[(int) id] : 0));
+                }
+                clients.target.writeAll(renumbered);
+            }
+            removedClients = total - (next - 1);
+        }
+        replace(productsName);
+        replace(clientsName);
+        if (overflowName != null) {
+            replace(overflowName);
+        }
+    }
+
+    /**
+     * mètode per a obrir el fitxer de clients i el compactat, amb les seves pàgines de desbordament
+     * @return compactació dels clients
+     * @throws IOException
+     */
+    private Compaction<Client> openClients() throws IOException {
+        ClientFile source = new ClientFile(clientsName, mode);
+        Files.deleteIfExists(Paths.get(clientsName + TEMP_SUFFIX));
+        ClientFile target = new ClientFile(clientsName + TEMP_SUFFIX, mode,
+                source.getCodec().version(), source.hasChecksums());
+        if (overflowName != null) {
+            source.enableOverflow(overflowName, mode);
+            Files.deleteIfExists(Paths.get(overflowName + TEMP_SUFFIX));
+            target.enableOverflow(overflowName + TEMP_SUFFIX, mode);
+        }
+        return new Compaction<>(source, target);
+    }
+
+    private static void replace(String fileName) throws IOException {
+        Files.move(Paths.get(fileName + TEMP_SUFFIX), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public long getRemovedClients() {
+        return removedClients;
+    }
+
+    public long getRemovedProducts() {
+        return removedProducts;
+    }
+
+    /**
+     * Parella de fitxer original i fitxer compactat, que es tanquen junts.
+     * El fitxer compactat es força al disc abans de substituir l'original.
+     *
+     * @param <T> tipus de registre
+     */
+    private class Compaction<T> implements AutoCloseable {
+        private final FixedRecordFile<T> source;
+        private final FixedRecordFile<T> target;
+
+        private Compaction(String fileName, RecordCodec<T> codec) throws IOException {
+            this.source = new FixedRecordFile<>(fileName, mode, codec);
+            Files.deleteIfExists(Paths.get(fileName + TEMP_SUFFIX));
+            // el fitxer compactat conserva la versió del format i les opcions de l'original
+            this.target = new FixedRecordFile<>(fileName + TEMP_SUFFIX, mode, source.getCodec(),
+                    source.hasChecksums());
+        }
+
+        private Compaction(FixedRecordFile<T> source, FixedRecordFile<T> target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                source.close();
+            } finally {
+                target.force();
+                target.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package files;
+
+import domain.Product;
+import utils.PackUtils;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Índex de hash persistent que associa descripcions de producte a identificadors.
+ *
+ * El fitxer és una taula d'adreçament obert amb sondeig lineal. Cada
+ * posició guarda el hash de 64 bits de la descripció normalitzada i
+ * l'identificador del producte; la descripció no es guarda, sinó que es
+ * comprova llegint el producte, de manera que una cerca costa una lectura
+ * de l'índex i una del fitxer de productes en el cas esperat. Les entrades
+ * dels productes esborrats conserven el hash amb identificador 0, perquè
+ * les cerques continuïn pel sondeig, i desapareixen quan la taula creix.
+ */
+public class DescriptionIndex {
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final long INITIAL_CAPACITY = 1024;
+    private static final int REBUILD_BLOCK = 4096;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int REMOVED_OFFSET = 24;
+
+    private final Storage storage;
+    private final byte[] slot = new byte[SLOT_SIZE];
+    private long capacity;
+    private long size;
+    private long removed;
+    private boolean dirty;
+
+    /**
+     * constructor per a obrir l'índex amb el nom i el tipus d'emmagatzematge indicats
+     * @param fileName
+     * @param mode
+     * @throws IOException si el fitxer no és un índex vàlid
+     */
+    public DescriptionIndex(String fileName, StorageMode mode) throws IOException {
+        this.storage = mode.open(fileName);
+        if (storage.length() == 0) {
+            reset();
+        } else {
+            byte[] header = new byte[HEADER_SIZE];
+            storage.read(0, header);
+            if (PackUtils.unpackInt(header, 0) != MAGIC) {
+                throw new IOException("Invalid index format: bad magic number");
+            }
+            capacity = PackUtils.unpackLong(header, CAPACITY_OFFSET);
+            size = PackUtils.unpackLong(header, SIZE_OFFSET);
+            removed = PackUtils.unpackLong(header, REMOVED_OFFSET);
+        }
+    }
+
+    /**
+     * mètode per a normalitzar una descripció tal com es compara a l'índex
+     * es retalla a la longitud que es guarda al fitxer, sense espais als extrems i en minúscules
+     * @param description
+     * @return descripció normalitzada
+     */
+    public static String normalize(String description) {
+        if (description.length() > Product.DESCRIPTION_LIMIT) {
+            description = description.substring(0, Product.DESCRIPTION_LIMIT);
+        }
+        return description.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * mètode per a calcular el hash FNV-1a de 64 bits d'una descripció normalitzada
+     * el valor 0 es reserva per a les posicions buides
+     * @param normalized
+     * @return hash
+     */
+    private static long hash(String normalized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * mètode per a afegir un producte a l'índex
+     * @param product
+     * @throws IOException
+     */
+    public void insert(Product product) throws IOException {
+        if ((size + removed + 1) * 2 > capacity) {
+            grow();
+        }
+        put(hash(normalize(product.getDescription())), product.getId());
+    }
+
+    /**
+     * mètode per a treure un producte esborrat de l'índex
+     * la seva posició queda marcada com a esborrada i no torna a quedar buida fins que la taula creix
+     * @param product
+     * @throws IOException
+     */
+    public void remove(Product product) throws IOException {
+        long hash = hash(normalize(product.getDescription()));
+        long index = Math.floorMod(hash, capacity);
+        while (true) {
+            readSlot(index);
+            long slotHash = PackUtils.unpackLong(slot, 0);
+            if (slotHash == 0) {
+                return;
+            }
+            if (slotHash == hash && PackUtils.unpackLong(slot, 8) == product.getId()) {
+                PackUtils.packLong(0, slot, 8);
+                storage.write(slotPosition(index), slot);
+                size--;
+                removed++;
+                dirty = true;
+                return;
+            }
+            index = (index + 1) % capacity;
+        }
+    }
+
+    /**
+     * mètode per a guardar una parella (hash, id) a la primera posició lliure de la seva seqüència
+     * @param hash
+     * @param id
+     * @throws IOException
+     */
+    private void put(long hash, long id) throws IOException {
+        long index = Math.floorMod(hash, capacity);
+        while (true) {
+            readSlot(index);
+            long slotHash = PackUtils.unpackLong(slot, 0);
+            if (slotHash == 0) {
+                break;
+            }
+            if (slotHash == hash && PackUtils.unpackLong(slot, 8) == id) {
+                return;
+            }
+            index = (index + 1) % capacity;
+        }
+        PackUtils.packLong(hash, slot, 0);
+        PackUtils.packLong(id, slot, 8);
+        storage.write(slotPosition(index), slot);
+        size++;
+        dirty = true;
+    }
+
+    /**
+     * mètode per a buscar el producte amb la descripció indicada
+     * les entrades que ja no corresponen al producte guardat es descarten
+     * @param description
+     * @param products fitxer on es comprova la descripció de cada candidat
+     * @return el primer producte indexat amb aquesta descripció o null si no n'hi ha cap
+     * @throws IOException
+     */
+    public Product find(String description, FixedRecordFile<Product> products) throws IOException {
+        String normalized = normalize(description);
+        long hash = hash(normalized);
+        long index = Math.floorMod(hash, capacity);
+        while (true) {
+            readSlot(index);
+            long slotHash = PackUtils.unpackLong(slot, 0);
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == hash) {
+                long id = PackUtils.unpackLong(slot, 8);
+                if (products.isValid(id)) {
+                    Product candidate = products.read(id);
+                    if (normalize(candidate.getDescription()).equals(normalized)) {
+                        return candidate;
+                    }
+                }
+            }
+            index = (index + 1) % capacity;
+        }
+    }
+
+    /**
+     * mètode per a doblar la capacitat de la taula tornant a col·locar totes les entrades
+     * les entrades esborrades es descarten; com que les entrades guarden el hash, no cal llegir cap producte
+     * @throws IOException
+     */
+    private void grow() throws IOException {
+        long oldCapacity = capacity;
+        byte[] old = new byte[(int) Math.min(Integer.MAX_VALUE, oldCapacity * SLOT_SIZE)];
+        storage.read(HEADER_SIZE, old, 0, (int) (oldCapacity * SLOT_SIZE));
+        capacity = oldCapacity * 2;
+        size = 0;
+        removed = 0;
+        clearSlots();
+        for (int i = 0; i < oldCapacity; i++) {
+            long slotHash = PackUtils.unpackLong(old, i * SLOT_SIZE);
+            if (slotHash != 0 && PackUtils.unpackLong(old, i * SLOT_SIZE + 8) != 0) {
+                put(slotHash, PackUtils.unpackLong(old, i * SLOT_SIZE + 8));
+            }
+        }
+        save();
+    }
+
+    private void clearSlots() throws IOException {
+        storage.setLength(HEADER_SIZE);
+        storage.setLength(slotPosition(capacity));
+        dirty = true;
+    }
+
+    private long slotPosition(long index) {
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+
+    private void readSlot(long index) throws IOException {
+        storage.read(slotPosition(index), slot);
+    }
+
+    /**
+     * mètode per a tornar a construir l'índex a partir de tots els productes del fitxer
+     * @param products
+     * @throws IOException
+     */
+    public void rebuild(FixedRecordFile<Product> products) throws IOException {
+        capacity = INITIAL_CAPACITY;
+        while ((products.count() + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        size = 0;
+        removed = 0;
+        clearSlots();
+        for (long id = 1; id <= products.lastId(); id += REBUILD_BLOCK) {
+            for (Product product : products.readRange(id, REBUILD_BLOCK)) {
+                put(hash(normalize(product.getDescription())), product.getId());
+            }
+        }
+        save();
+    }
+
+    /**
+     * mètode per a buidar l'índex
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+        removed = 0;
+        clearSlots();
+        save();
+    }
+
+    /**
+     * mètode per a desar la capçalera de l'índex si ha canviat
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        PackUtils.packInt(MAGIC, header, 0);
+        PackUtils.packLong(capacity, header, CAPACITY_OFFSET);
+        PackUtils.packLong(size, header, SIZE_OFFSET);
+        PackUtils.packLong(removed, header, REMOVED_OFFSET);
+        storage.write(0, header);
+        dirty = false;
+    }
+
+    /**
+     * mètode per a tancar l'índex
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        save();
+        storage.close();
+    }
+}
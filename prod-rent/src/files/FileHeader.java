@@ -0,0 +1,480 @@
+package files;
+
+import utils.PackUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Capçalera dels fitxers de registres de mida fixa.
+ *
+ * Ocupa els primers HEADER_SIZE bytes del fitxer i guarda un número màgic,
+ * la versió del format dels registres, les opcions del fitxer, la mida dels
+ * registres, el nombre de registres i el primer registre lliure.
+ * Es llegeix un cop en obrir el fitxer i es manté en memòria, de manera que
+ * comprovar identificadors i calcular el següent no fa cap accés al fitxer.
+ * El fitxer creix en extensions de EXTENT_RECORDS registres i la capçalera
+ * només es reescriu quan es desa explícitament; si el programa s'atura abans,
+ * en obrir el fitxer es recuperen els registres escrits dins de l'espai reservat.
+ *
+ * Els registres esborrats es marquen com a làpides: el camp d'identificador
+ * del registre passa a ser negatiu i hi guarda el següent registre lliure,
+ * formant una llista de posicions reutilitzables que comença a la capçalera.
+ * Quan es reaprofita un registre lliure, la llista del fitxer no canvia fins
+ * que es desa la capçalera, que es fa després d'escriure el registre; si el
+ * programa s'atura entremig, en obrir el fitxer la llista passa per un registre
+ * que ja no és una làpida i es torna a fer a partir de les làpides.
+ *
+ * Si el fitxer té l'opció CHECKSUMS, cada registre va seguit d'un CRC32C de
+ * CHECKSUM_SIZE bytes i les posicions es calculen amb la mida ampliada.
+ */
+public class FileHeader {
+    public static final int MAGIC = 0x50524442; // "PRDB"
+    public static final short VERSION = 1;
+    public static final short COMPACT_VERSION = 2;
+    public static final int HEADER_SIZE = 32;
+    public static final int EXTENT_RECORDS = 1024;
+    public static final short CHECKSUMS = 1;
+    public static final int CHECKSUM_SIZE = 4;
+
+    private static final int VERSION_OFFSET = 4;
+    private static final int FLAGS_OFFSET = 6;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int RECORD_COUNT_OFFSET = 16;
+    private static final int FREE_HEAD_OFFSET = 24;
+
+    private final Storage storage;
+    private short version;
+    private int recordSize;
+    private short flags;
+    private long recordCount;
+    private long capacity;
+    private long freeHead;
+    private final BitSet deleted = new BitSet();
+    // làpides que han canviat de següent registre lliure i encara no s'han desat
+    private final Map<Long, Long> links = new HashMap<>();
+    private boolean dirty;
+
+    private FileHeader(Storage storage, short version, int recordSize, short flags) {
+        this.storage = storage;
+        this.version = version;
+        this.recordSize = recordSize;
+        this.flags = flags;
+    }
+
+    /**
+     * mètode per a carregar la capçalera d'un fitxer, o crear-la si el fitxer és buit
+     * @param storage
+     * @param recordSize mida esperada dels registres
+     * @return capçalera
+     * @throws IOException si el fitxer no té el format esperat
+     */
+    public static FileHeader open(Storage storage, int recordSize) throws IOException {
+        return open(storage, VERSION, recordSize);
+    }
+
+    /**
+     * mètode per a carregar la capçalera d'un fitxer, o crear-la amb la versió indicada si el fitxer és buit
+     * un fitxer existent conserva la seva versió; si coincideix amb la indicada, també se'n comprova la mida
+     * @param storage
+     * @param version versió del format dels registres dels fitxers nous
+     * @param recordSize mida dels registres amb aquesta versió
+     * @return capçalera
+     * @throws IOException si el fitxer no té el format esperat
+     */
+    public static FileHeader open(Storage storage, short version, int recordSize) throws IOException {
+        return open(storage, version, recordSize, (short) 0);
+    }
+
+    /**
+     * mètode per a carregar la capçalera d'un fitxer, o crear-la amb la versió i les opcions indicades si el fitxer és buit
+     * un fitxer existent conserva la seva versió i les seves opcions
+     * @param storage
+     * @param version versió del format dels registres dels fitxers nous
+     * @param recordSize mida dels registres amb aquesta versió
+     * @param flags opcions dels fitxers nous, 0 o CHECKSUMS
+     * @return capçalera
+     * @throws IOException si el fitxer no té el format esperat
+     */
+    public static FileHeader open(Storage storage, short version, int recordSize, short flags) throws IOException {
+        FileHeader header = new FileHeader(storage, version, recordSize, flags);
+        if (storage.length() == 0) {
+            header.reset();
+        } else {
+            header.load();
+        }
+        return header;
+    }
+
+    private void load() throws IOException {
+        if (storage.length() < HEADER_SIZE) {
+            throw new IOException("File too short for a header");
+        }
+        byte[] bytes = new byte[HEADER_SIZE];
+        storage.read(0, bytes);
+        if (PackUtils.unpackInt(bytes, 0) != MAGIC) {
+            throw new IOException("Invalid file format: bad magic number");
+        }
+        short stored = PackUtils.unpackShort(bytes, VERSION_OFFSET);
+        if (stored < VERSION || stored > COMPACT_VERSION) {
+            throw new IOException("Unsupported file format version: " + stored);
+        }
+        short storedFlags = PackUtils.unpackShort(bytes, FLAGS_OFFSET);
+        if ((storedFlags & ~CHECKSUMS) != 0) {
+            throw new IOException("Unsupported file options: " + storedFlags);
+        }
+        int size = PackUtils.unpackInt(bytes, RECORD_SIZE_OFFSET);
+        if (size <= 0 || (stored == version && size != recordSize)) {
+            throw new IOException("Record size " + size + " does not match expected " + recordSize);
+        }
+        version = stored;
+        recordSize = size;
+        flags = storedFlags;
+        recordCount = PackUtils.unpackLong(bytes, RECORD_COUNT_OFFSET);
+        freeHead = PackUtils.unpackLong(bytes, FREE_HEAD_OFFSET);
+        capacity = (storage.length() - HEADER_SIZE) / getSlotSize();
+        recoverCount();
+        trimCapacity();
+        loadFreeList();
+    }
+
+    /**
+     * mètode per a recórrer la llista de registres lliures i marcar-los com a esborrats
+     * @throws IOException si la llista no és coherent
+     */
+    private void loadFreeList() throws IOException {
+        long id = freeHead;
+        while (id != 0) {
+            if (id < 1 || id > recordCount || deleted.get((int) id)) {
+                throw new IOException("Corrupted free list at record " + id);
+            }
+            long next = nextFree(id);
+            if (next < 0) {
+                // el registre ja s'havia reaprofitat i la capçalera no es va arribar a desar
+                rebuildFreeList();
+                return;
+            }
+            deleted.set((int) id);
+            id = next;
+        }
+    }
+
+    /**
+     * mètode per a tornar a fer la llista de registres lliures amb totes les làpides del fitxer
+     * les làpides que encara s'encadenen conserven l'ordre; primer va la cadena de la capçalera,
+     * si encara hi és, i després les que han quedat separades per un registre reaprofitat
+     * @throws IOException
+     */
+    private void rebuildFreeList() throws IOException {
+        int slotSize = getSlotSize();
+        byte[] extent = new byte[EXTENT_RECORDS * slotSize];
+        Map<Long, Long> tombstones = new TreeMap<>();
+        for (long first = 1; first <= recordCount; first += EXTENT_RECORDS) {
+            int slots = (int) Math.min(EXTENT_RECORDS, recordCount - first + 1);
+            storage.read(position(first), extent, 0, slots * slotSize);
+            for (int i = 0; i < slots; i++) {
+                long field = PackUtils.unpackLong(extent, i * slotSize);
+                if (field < 0) {
+                    tombstones.put(first + i, -1 - field);
+                }
+            }
+        }
+        Set<Long> linked = new HashSet<>(tombstones.values());
+        List<Long> heads = new ArrayList<>();
+        if (tombstones.containsKey(freeHead)) {
+            heads.add(freeHead);
+        }
+        heads.addAll(tombstones.keySet());
+        deleted.clear();
+        freeHead = 0;
+        long tail = 0;
+        // primer les cadenes que no continuen cap altra, i després les que només formen un cicle
+        for (boolean unlinked : new boolean[]{true, false}) {
+            for (long head : heads) {
+                if (deleted.get((int) head) || (unlinked && linked.contains(head))) {
+                    continue;
+                }
+                if (tail == 0) {
+                    freeHead = head;
+                } else {
+                    links.put(tail, head);
+                }
+                long id = head;
+                while (true) {
+                    deleted.set((int) id);
+                    Long next = tombstones.get(id);
+                    if (next == 0 || !tombstones.containsKey(next) || deleted.get(next.intValue())) {
+                        break;
+                    }
+                    id = next;
+                }
+                tail = id;
+                if (tombstones.get(tail) != 0) {
+                    links.put(tail, 0L);
+                }
+            }
+        }
+        dirty = true;
+        save();
+    }
+
+    /**
+     * mètode per a llegir el següent registre lliure guardat a la làpida indicada
+     * @param id
+     * @return següent registre lliure, 0 si és l'últim, o negatiu si la posició no és una làpida
+     * @throws IOException
+     */
+    private long nextFree(long id) throws IOException {
+        Long link = links.get(id);
+        if (link != null) {
+            return link;
+        }
+        byte[] tombstone = new byte[8];
+        storage.read(position(id), tombstone);
+        return -1 - PackUtils.unpackLong(tombstone, 0);
+    }
+
+    /**
+     * mètode per a escriure la làpida d'un registre lliure
+     * @param id
+     * @param next següent registre lliure, o 0 si és l'últim
+     * @throws IOException
+     */
+    private void writeTombstone(long id, long next) throws IOException {
+        byte[] tombstone = new byte[getSlotSize()];
+        PackUtils.packLong(-1 - next, tombstone, 0);
+        storage.write(position(id), tombstone);
+    }
+
+    /**
+     * mètode per a recuperar registres escrits després de l'últim cop que es va desar la capçalera
+     * un registre ocupat comença pel seu propi identificador
+     * es llegeix una extensió sencera de cop, i es para a la primera extensió sense cap registre nou:
+     * els registres nous tenen els identificadors següents i s'escriuen en ordre, per tant més enllà
+     * només hi ha espai reservat que no s'ha arribat a escriure
+     * @throws IOException
+     */
+    private void recoverCount() throws IOException {
+        int slotSize = getSlotSize();
+        byte[] extent = new byte[EXTENT_RECORDS * slotSize];
+        boolean found = true;
+        for (long first = recordCount + 1; found && first <= capacity; first += EXTENT_RECORDS) {
+            int slots = (int) Math.min(EXTENT_RECORDS, capacity - first + 1);
+            storage.read(position(first), extent, 0, slots * slotSize);
+            found = false;
+            for (int i = 0; i < slots; i++) {
+                if (PackUtils.unpackLong(extent, i * slotSize) == first + i) {
+                    recordCount = first + i;
+                    dirty = true;
+                    found = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * mètode per a deixar només les extensions que calen per als registres escrits
+     * si el programa es va aturar sense tancar el fitxer, pot tenir al final espai que no es va arribar a fer servir
+     * @throws IOException
+     */
+    private void trimCapacity() throws IOException {
+        long needed = (recordCount + EXTENT_RECORDS - 1) / EXTENT_RECORDS * EXTENT_RECORDS;
+        if (capacity > needed) {
+            capacity = needed;
+            storage.setLength(position(capacity + 1));
+        }
+    }
+
+    /**
+     * mètode per a deixar el fitxer sense registres
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        storage.setLength(0);
+        recordCount = 0;
+        capacity = 0;
+        freeHead = 0;
+        deleted.clear();
+        links.clear();
+        dirty = true;
+        save();
+    }
+
+    /**
+     * mètode per a obtenir la posició d'un registre dins del fitxer
+     * @param id
+     * @return posició en bytes
+     */
+    public long position(long id) {
+        return HEADER_SIZE + (id - 1) * getSlotSize();
+    }
+
+    /**
+     * mètode per a comprovar si un identificador correspon a un registre existent i no esborrat
+     * @param id
+     * @return cert si és vàlid
+     */
+    public boolean isValid(long id) {
+        return id >= 1 && id <= recordCount && !deleted.get((int) id);
+    }
+
+    /**
+     * mètode per a saber si un identificador correspon a un registre esborrat
+     * @param id
+     * @return cert si és a la llista de registres lliures
+     */
+    public boolean isDeleted(long id) {
+        return id >= 1 && id <= recordCount && deleted.get((int) id);
+    }
+
+    /**
+     * mètode per a obtenir el següent identificador disponible
+     * es reaprofita primer l'últim registre esborrat
+     * @return next id
+     */
+    public long nextId() {
+        return freeHead != 0 ? freeHead : recordCount + 1;
+    }
+
+    /**
+     * mètode per a obtenir el nombre de registres no esborrats
+     * @return registres vius
+     */
+    public long getLiveCount() {
+        return recordCount - deleted.cardinality();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public short getVersion() {
+        return version;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * mètode per a saber si els registres del fitxer porten suma de verificació
+     * @return cert si el fitxer té l'opció CHECKSUMS
+     */
+    public boolean hasChecksums() {
+        return (flags & CHECKSUMS) != 0;
+    }
+
+    /**
+     * mètode per a obtenir l'espai que ocupa cada registre dins del fitxer
+     * @return mida del registre més la suma de verificació, si n'hi ha
+     */
+    public int getSlotSize() {
+        return hasChecksums() ? recordSize + CHECKSUM_SIZE : recordSize;
+    }
+
+    /**
+     * mètode per a reservar espai fins al registre indicat, sense ocupar-lo
+     * si queda fora de l'espai reservat, el fitxer creix en extensions senceres d'un sol cop
+     * @param id
+     * @throws IOException
+     */
+    public void reserve(long id) throws IOException {
+        if (id > capacity) {
+            long extents = (id - capacity + EXTENT_RECORDS - 1) / EXTENT_RECORDS;
+            capacity += extents * EXTENT_RECORDS;
+            storage.setLength(position(capacity + 1));
+        }
+    }
+
+    /**
+     * mètode per a preparar l'escriptura del registre indicat
+     * si queda fora de l'espai reservat, el fitxer creix en extensions senceres
+     * @param id
+     * @throws IOException
+     */
+    public void prepareWrite(long id) throws IOException {
+        reserve(id);
+        if (id > recordCount) {
+            recordCount = id;
+            dirty = true;
+        }
+        if (isDeleted(id)) {
+            unlink(id);
+        }
+    }
+
+    /**
+     * mètode per a treure un registre de la llista de registres lliures
+     * el canvi només es fa en memòria i es desa amb la capçalera, que s'ha de desar després d'escriure
+     * el registre: si es desés abans i el programa s'aturés entremig, el registre seria vàlid però
+     * encara contindria la làpida
+     * @param id
+     * @throws IOException
+     */
+    private void unlink(long id) throws IOException {
+        long next = nextFree(id);
+        if (freeHead == id) {
+            freeHead = next;
+        } else {
+            long previous = freeHead;
+            long current = nextFree(previous);
+            while (current != id) {
+                previous = current;
+                current = nextFree(previous);
+            }
+            links.put(previous, next);
+        }
+        links.remove(id);
+        deleted.clear((int) id);
+        dirty = true;
+    }
+
+    /**
+     * mètode per a esborrar un registre i afegir-lo al principi de la llista de registres lliures
+     * la làpida i la capçalera es desen immediatament, amb els registres reaprofitats fins ara,
+     * per tant abans s'han d'haver escrit tots
+     * @param id
+     * @throws IOException si el registre no existeix
+     */
+    public void free(long id) throws IOException {
+        if (!isValid(id)) {
+            throw new IOException("Cannot delete invalid record " + id);
+        }
+        writeTombstone(id, freeHead);
+        deleted.set((int) id);
+        freeHead = id;
+        dirty = true;
+        save();
+    }
+
+    /**
+     * mètode per a desar la capçalera al fitxer si ha canviat
+     * abans s'escriuen les làpides que han canviat en reaprofitar registres lliures
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        for (Map.Entry<Long, Long> link : links.entrySet()) {
+            writeTombstone(link.getKey(), link.getValue());
+        }
+        links.clear();
+        byte[] bytes = new byte[HEADER_SIZE];
+        PackUtils.packInt(MAGIC, bytes, 0);
+        PackUtils.packShort(version, bytes, VERSION_OFFSET);
+        PackUtils.packShort(flags, bytes, FLAGS_OFFSET);
+        PackUtils.packInt(recordSize, bytes, RECORD_SIZE_OFFSET);
+        PackUtils.packLong(recordCount, bytes, RECORD_COUNT_OFFSET);
+        PackUtils.packLong(freeHead, bytes, FREE_HEAD_OFFSET);
+        storage.write(0, bytes);
+        dirty = false;
+    }
+}
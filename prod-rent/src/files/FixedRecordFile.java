@@ -0,0 +1,736 @@
+package files;
+
+import utils.PackUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Fitxer de registres de mida fixa adreçats pel seu identificador.
+ *
+ * El registre d'identificador id ocupa la posició id-1 després de la
+ * capçalera. La codificació dels registres la decideix el RecordCodec, que
+ * treballa sobre buffers reutilitzats, i per sobre del fitxer es poden
+ * activar una memòria cau LRU i un mode d'escriptura per lots. Els registres
+ * esborrats deixen la seva posició lliure per al següent registre nou.
+ *
+ * Opcionalment cada registre porta darrere un CRC32C dels seus bytes, que
+ * s'escriu amb el registre i es comprova cada cop que es llegeix del fitxer,
+ * de manera que un registre malmès o escrit a mitges dona un error en lloc
+ * d'un objecte amb dades incorrectes.
+ *
+ * @param <T> tipus de registre
+ */
+public class FixedRecordFile<T> {
+    private static final int SCAN_BLOCK_BYTES = 64 * 1024;
+    private static final int VERIFY_BLOCK_BYTES = 1024 * 1024;
+    private static final int BULK_BLOCK_BYTES = 4 * 1024 * 1024;
+
+    private final String fileName;
+    private final Storage storage;
+    private final FileHeader header;
+    private final RecordCodec<T> codec;
+    private final int slotSize;
+    private final ByteBuffer recordBuffer;
+    private final CRC32C crc = new CRC32C();
+    private RecordCache<T> cache;
+    private WriteBatch<T> batch;
+
+    /**
+     * constructor per a crear un fitxer de registres amb el tipus d'emmagatzematge i el format indicats
+     * si el fitxer ja existeix es llegeix amb el format de la versió guardada a la capçalera
+     * @param fileName
+     * @param mode
+     * @param codec
+     * @throws IOException
+     */
+    public FixedRecordFile(String fileName, StorageMode mode, RecordCodec<T> codec) throws IOException {
+        this(fileName, mode, codec, false);
+    }
+
+    /**
+     * constructor per a crear un fitxer de registres indicant si els registres porten suma de verificació
+     * si el fitxer ja existeix es llegeix amb el format i les opcions guardats a la capçalera
+     * @param fileName
+     * @param mode
+     * @param codec
+     * @param checksums cert si els registres dels fitxers nous porten un CRC32C
+     * @throws IOException
+     */
+    public FixedRecordFile(String fileName, StorageMode mode, RecordCodec<T> codec, boolean checksums) throws IOException {
+        this.fileName = fileName;
+        this.storage = mode.open(fileName);
+        try {
+            this.header = FileHeader.open(storage, codec.version(), codec.size(),
+                    checksums ? FileHeader.CHECKSUMS : 0);
+            this.codec = codec.forVersion(header.getVersion());
+            if (header.getRecordSize() != this.codec.size()) {
+                throw new IOException("Record size " + header.getRecordSize() + " does not match "
+                        + codec.name() + " format version " + header.getVersion());
+            }
+        } catch (IOException ex) {
+            storage.close();
+            throw ex;
+        }
+        this.slotSize = header.getSlotSize();
+        this.recordBuffer = ByteBuffer.allocate(slotSize);
+    }
+
+    /**
+     * mètode per a escriure un registre al fitxer
+     * col·loca el punter a la posició corresponent i escriu les dades del registre
+     * si la memòria cau està activa i el registre ja existeix, només es marca com a pendent d'escriure
+     * si el mode per lots està actiu, el registre es guarda al lot fins que es confirmi
+     * @param record
+     * @throws IOException
+     */
+    public void write(T record) throws IOException {
+        put(record);
+    }
+
+    /**
+     * mètode per a escriure un registre al lot o al fitxer, sense passar per les subclasses
+     * @param record
+     * @throws IOException
+     */
+    private void put(T record) throws IOException {
+        requireFits(record);
+        long id = codec.id(record);
+        if (batch != null) {
+            if (!isValid(id)) {
+                // es guarda tal com es llegiria del fitxer, amb els textos ja retallats
+                record = normalize(record);
+            }
+            header.prepareWrite(id);
+            batch.put(id, record);
+            return;
+        }
+        writeThrough(record);
+    }
+
+    /**
+     * mètode per a saber si el registre es pot escriure en el format del fitxer sense perdre dades
+     * @param record
+     * @return cert si en tornar-lo a llegir serà igual, llevat dels textos més llargs que el límit
+     */
+    public boolean fits(T record) {
+        return codec.fits(record);
+    }
+
+    /**
+     * mètode per a comprovar que el registre es pot escriure en el format del fitxer
+     * @param record
+     * @throws IOException si se'n perdrien dades
+     */
+    private void requireFits(T record) throws IOException {
+        if (!codec.fits(record)) {
+            throw new IOException("Cannot store " + codec.name() + " " + codec.id(record)
+                    + " in format version " + codec.version() + " without losing data");
+        }
+    }
+
+    /**
+     * mètode per a escriure un registre passant per la memòria cau si està activa
+     * @param record
+     * @throws IOException
+     */
+    private void writeThrough(T record) throws IOException {
+        if (cache != null && isValid(codec.id(record))) {
+            cache.put(codec.id(record), record, true);
+            return;
+        }
+        store(record);
+    }
+
+    /**
+     * mètode per a escriure molts registres de cop
+     * els registres es codifiquen en blocs grans i cada tram d'identificadors consecutius
+     * s'escriu amb una sola escriptura; el fitxer creix un sol cop per tram
+     * si el mode per lots està actiu, els registres van al lot com amb write
+     * @param records registres, millor en ordre d'identificador
+     * @throws IOException
+     */
+    public void writeAll(Collection<? extends T> records) throws IOException {
+        if (batch != null) {
+            for (T record : records) {
+                put(record);
+            }
+            return;
+        }
+        int perBlock = Math.max(1, BULK_BLOCK_BYTES / slotSize);
+        ByteBuffer block = ByteBuffer.allocate(Math.min(perBlock, Math.max(1, records.size())) * slotSize);
+        Iterator<? extends T> iterator = records.iterator();
+        T next = iterator.hasNext() ? iterator.next() : null;
+        while (next != null) {
+            long first = codec.id(next);
+            int run = 0;
+            block.clear();
+            while (next != null && run < perBlock && codec.id(next) == first + run) {
+                requireFits(next);
+                if (cache != null) {
+                    cache.remove(first + run);
+                }
+                block.position(run * slotSize);
+                codec.encode(next, block);
+                seal(block.array(), run * slotSize);
+                run++;
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            header.prepareWrite(first + run - 1);
+            for (long id = first; id < first + run - 1; id++) {
+                header.prepareWrite(id);
+            }
+            storage.write(header.position(first), block.array(), 0, run * slotSize);
+        }
+    }
+
+    /**
+     * mètode per a reservar espai al final del fitxer per al nombre de registres nous indicat
+     * el fitxer creix un sol cop, i les escriptures fins a aquesta mida ja no el fan créixer
+     * @param records
+     * @throws IOException
+     */
+    public void preallocate(long records) throws IOException {
+        header.reserve(lastId() + records);
+    }
+
+    /**
+     * mètode per a escriure directament les dades del registre a la seva posició del fitxer
+     * @param record
+     * @throws IOException
+     */
+    private void store(T record) throws IOException {
+        long id = codec.id(record);
+        header.prepareWrite(id);
+        recordBuffer.clear();
+        codec.encode(record, recordBuffer);
+        seal(recordBuffer.array(), 0);
+        storage.write(header.position(id), recordBuffer.array(), 0, slotSize);
+    }
+
+    /**
+     * mètode per a escriure la suma de verificació darrere del registre codificat a l'array, si el fitxer en té
+     * @param slot
+     * @param offset posició del registre dins de l'array
+     */
+    private void seal(byte[] slot, int offset) {
+        if (header.hasChecksums()) {
+            crc.reset();
+            crc.update(slot, offset, codec.size());
+            PackUtils.packInt((int) crc.getValue(), slot, offset + codec.size());
+        }
+    }
+
+    /**
+     * mètode per a comprovar la suma de verificació d'un registre llegit del fitxer, si el fitxer en té
+     * @param id
+     * @param slot
+     * @param offset posició del registre dins de l'array
+     * @throws IOException si el registre està malmès
+     */
+    private void check(long id, byte[] slot, int offset) throws IOException {
+        if (header.hasChecksums() && !matches(crc, slot, offset, codec.size())) {
+            throw new IOException("Checksum mismatch in " + codec.name() + " " + id);
+        }
+    }
+
+    /**
+     * mètode per a saber si el CRC32C dels bytes d'un registre coincideix amb el que té darrere
+     * @param crc
+     * @param slot
+     * @param offset
+     * @param size mida del registre sense la suma de verificació
+     * @return cert si coincideix
+     */
+    private static boolean matches(CRC32C crc, byte[] slot, int offset, int size) {
+        crc.reset();
+        crc.update(slot, offset, size);
+        return (int) crc.getValue() == PackUtils.unpackInt(slot, offset + size);
+    }
+
+    /**
+     * mètode per a obtenir el registre tal com quedaria després d'escriure'l i tornar-lo a llegir
+     * @param record
+     * @return registre normalitzat
+     * @throws IOException
+     */
+    private T normalize(T record) throws IOException {
+        recordBuffer.clear();
+        codec.encode(record, recordBuffer);
+        recordBuffer.flip();
+        return complete(codec.decode(recordBuffer));
+    }
+
+    /**
+     * mètode per a completar un registre acabat de descodificar amb les dades que guarda fora del fitxer
+     * les subclasses el sobreescriuen si els seus registres en tenen; per defecte no fa res
+     * @param record
+     * @return registre complet
+     * @throws IOException si no es poden llegir les dades que falten
+     */
+    protected T complete(T record) throws IOException {
+        return record;
+    }
+
+    /**
+     * mètode per a llegir un registre del fitxer donat el seu identificador
+     * comprova que l'identificador sigui vàlid i retorna el registre corresponent
+     * @param id
+     * @return registre
+     * @throws IOException id no vàlid
+     */
+    public T read(long id) throws IOException {
+        if(!isValid(id)){
+            throw new IOException("Invalid " + codec.name() + " ID: " + id);
+        }
+        if (batch != null) {
+            T pending = batch.get(id);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        if (cache != null) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        storage.read(header.position(id), recordBuffer.array(), 0, slotSize);
+        check(id, recordBuffer.array(), 0);
+        recordBuffer.clear();
+        T record = complete(codec.decode(recordBuffer));
+        if (cache != null) {
+            cache.put(id, record, false);
+        }
+        return record;
+    }
+
+    /**
+     * mètode per a obtenir la imatge codificada d'un registre sense crear cap objecte
+     * els registres pendents del lot o de la memòria cau es codifiquen amb el seu estat actual
+     * l'array retornat és intern i només és vàlid fins a la següent operació sobre el fitxer
+     * @param id
+     * @return array amb la imatge del registre a les primeres size() posicions
+     * @throws IOException id no vàlid o registre malmès
+     */
+    byte[] readImage(long id) throws IOException {
+        if(!isValid(id)){
+            throw new IOException("Invalid " + codec.name() + " ID: " + id);
+        }
+        T pending = batch != null ? batch.get(id) : null;
+        if (pending == null && cache != null) {
+            pending = cache.get(id);
+        }
+        if (pending != null) {
+            recordBuffer.clear();
+            codec.encode(pending, recordBuffer);
+        } else {
+            storage.read(header.position(id), recordBuffer.array(), 0, slotSize);
+            check(id, recordBuffer.array(), 0);
+        }
+        return recordBuffer.array();
+    }
+
+    /**
+     * mètode per a llegir un rang de registres consecutius amb lectures de blocs grans
+     * els registres pendents del lot es retornen amb el seu estat actual
+     * @param fromId identificador del primer registre
+     * @param count nombre màxim de posicions; s'atura en arribar al final del fitxer
+     * @return registres llegits, en ordre d'identificador, sense els esborrats
+     * @throws IOException si fromId queda fora del fitxer
+     */
+    public List<T> readRange(long fromId, int count) throws IOException {
+        if(fromId < 1 || fromId > lastId()){
+            throw new IOException("Invalid " + codec.name() + " ID: " + fromId);
+        }
+        long toId = Math.min(fromId + count - 1, lastId());
+        List<T> records = new ArrayList<>((int) (toId - fromId + 1));
+        scan(fromId, toId, records::add);
+        return records;
+    }
+
+    /**
+     * mètode per a recórrer tots els registres del fitxer en ordre d'identificador
+     * el fitxer es llegeix en blocs grans i contigus
+     * @param action
+     * @throws IOException
+     */
+    public void forEach(Consumer<? super T> action) throws IOException {
+        scan(1, lastId(), action);
+    }
+
+    /**
+     * mètode per a llegir tots els registres del fitxer de cop
+     * el fitxer es llegeix seqüencialment en blocs de diversos megabytes i la llista es reserva
+     * amb la mida justa, a partir del nombre de registres de la capçalera
+     * @return registres, en ordre d'identificador, sense els esborrats
+     * @throws IOException
+     */
+    public List<T> readAll() throws IOException {
+        List<T> records = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, count()));
+        scan(1, lastId(), records::add, BULK_BLOCK_BYTES);
+        return records;
+    }
+
+    /**
+     * mètode per a llegir els registres entre dos identificadors (inclosos) per blocs
+     * @param fromId
+     * @param toId
+     * @param action
+     * @throws IOException
+     */
+    private void scan(long fromId, long toId, Consumer<? super T> action) throws IOException {
+        scan(fromId, toId, action, SCAN_BLOCK_BYTES);
+    }
+
+    /**
+     * mètode per a llegir els registres entre dos identificadors (inclosos) per blocs de la mida indicada
+     * abans s'escriuen els registres bruts de la memòria cau perquè el fitxer estigui al dia
+     * @param fromId
+     * @param toId
+     * @param action
+     * @param blockBytes mida màxima de cada lectura
+     * @throws IOException
+     */
+    private void scan(long fromId, long toId, Consumer<? super T> action, int blockBytes) throws IOException {
+        if (cache != null) {
+            cache.flush();
+        }
+        int perBlock = (int) Math.max(1, Math.min(blockBytes / slotSize, toId - fromId + 1));
+        ByteBuffer block = ByteBuffer.allocate(perBlock * slotSize);
+        for (long first = fromId; first <= toId; first += perBlock) {
+            int records = (int) Math.min(perBlock, toId - first + 1);
+            storage.read(header.position(first), block.array(), 0, records * slotSize);
+            for (int i = 0; i < records; i++) {
+                T pending = batch != null ? batch.get(first + i) : null;
+                if (header.isDeleted(first + i)) {
+                    continue;
+                }
+                if (pending != null) {
+                    action.accept(pending);
+                } else {
+                    check(first + i, block.array(), i * slotSize);
+                    block.position(i * slotSize);
+                    action.accept(complete(codec.decode(block)));
+                }
+            }
+        }
+    }
+
+    /**
+     * mètode per a esborrar un registre
+     * es descarten les versions pendents del lot i de la memòria cau i la posició
+     * queda lliure per al següent registre nou
+     * la resta del lot s'escriu abans, perquè la capçalera que es desa amb l'esborrat
+     * ja no té a la llista de registres lliures els registres reaprofitats del lot
+     * @param id
+     * @throws IOException id no vàlid
+     */
+    public void delete(long id) throws IOException {
+        if(!isValid(id)){
+            throw new IOException("Invalid " + codec.name() + " ID: " + id);
+        }
+        if (batch != null) {
+            batch.remove(id);
+            commitBatch();
+        }
+        if (cache != null) {
+            cache.remove(id);
+        }
+        header.free(id);
+    }
+
+    /**
+     * mètode per a marcar com a esborrat un identificador que encara no s'ha escrit
+     * el fitxer creix fins a aquest identificador si cal
+     * @param id
+     * @throws IOException
+     */
+    void markDeleted(long id) throws IOException {
+        header.prepareWrite(id);
+        header.free(id);
+    }
+
+    /**
+     * mètode per a obtenir el format dels registres del fitxer
+     * @return codec amb la versió del fitxer
+     */
+    public RecordCodec<T> getCodec() {
+        return codec;
+    }
+
+    /**
+     * mètode per a saber si els registres del fitxer porten suma de verificació
+     * @return cert si porten un CRC32C
+     */
+    public boolean hasChecksums() {
+        return header.hasChecksums();
+    }
+
+    /**
+     * mètode per a comprovar tots els registres del fitxer en paral·lel
+     * abans es desen els canvis pendents; després el fitxer es divideix en blocs grans que es
+     * llegeixen amb lectures posicionals independents, un fil per processador
+     * sense sumes de verificació només es comprova que cada registre comenci pel seu identificador
+     * @return identificadors dels registres malmesos, en ordre
+     * @throws IOException
+     */
+    public List<Long> verify() throws IOException {
+        flush();
+        long last = lastId();
+        int perBlock = Math.max(1, VERIFY_BLOCK_BYTES / slotSize);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            List<Future<List<Long>>> blocks = new ArrayList<>();
+            for (long first = 1; first <= last; first += perBlock) {
+                long from = first;
+                long to = Math.min(last, first + perBlock - 1);
+                blocks.add(executor.submit(() -> verifyRange(channel, from, to)));
+            }
+            List<Long> corrupted = new ArrayList<>();
+            for (Future<List<Long>> block : blocks) {
+                corrupted.addAll(block.get());
+            }
+            return corrupted;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Verification of " + fileName + " interrupted");
+        } catch (ExecutionException ex) {
+            throw new IOException("Cannot verify " + fileName, ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * mètode per a comprovar els registres entre dos identificadors (inclosos) amb una sola lectura
+     * es pot cridar des de diversos fils alhora, perquè no fa servir cap buffer compartit
+     * @param channel
+     * @param fromId
+     * @param toId
+     * @return identificadors dels registres malmesos
+     * @throws IOException
+     */
+    private List<Long> verifyRange(FileChannel channel, long fromId, long toId) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate((int) (toId - fromId + 1) * slotSize);
+        long position = header.position(fromId);
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                throw new IOException("Unexpected end of " + fileName + " at " + codec.name() + " " + fromId);
+            }
+        }
+        CRC32C blockCrc = new CRC32C();
+        List<Long> corrupted = new ArrayList<>();
+        for (long id = fromId; id <= toId; id++) {
+            int offset = (int) (id - fromId) * slotSize;
+            if (header.isDeleted(id)) {
+                continue;
+            }
+            boolean valid = header.hasChecksums()
+                    ? matches(blockCrc, block.array(), offset, codec.size())
+                    : PackUtils.unpackLong(block.array(), offset) == id;
+            if (!valid) {
+                corrupted.add(id);
+            }
+        }
+        return corrupted;
+    }
+
+    /**
+     * mètode per a obtenir el nombre de registres no esborrats
+     * @return count
+     */
+    public long count() {
+        return header.getLiveCount();
+    }
+
+    /**
+     * mètode per a obtenir l'identificador més alt que ha tingut un registre del fitxer
+     * els identificadors fins a aquest poden estar esborrats
+     * @return lastId
+     */
+    public long lastId() {
+        return header.getRecordCount();
+    }
+
+    /**
+     * mètode per a obtenir el següent identificador disponible
+     * es calcula a partir de la capçalera, sense accedir al fitxer; primer es reaprofiten les posicions esborrades
+     * @return next id
+     * @throws IOException
+     */
+    public long nextId() throws IOException {
+        return header.nextId();
+    }
+
+    /**
+     * mètode per a comprovar si un identificador és vàlid
+     * verifica que estigui dins del rang de registres existents segons la capçalera
+     * @param id
+     * @return cert si és vàlid, fals altrament
+     * @throws IOException
+     */
+    public boolean isValid(long id) throws IOException {
+        return header.isValid(id);
+    }
+
+    /**
+     * mètode per a activar una memòria cau LRU d'escriptura diferida davant del fitxer
+     * els objectes retornats per read són els de la memòria cau, per tant
+     * qualsevol canvi s'ha de desar amb write
+     * @param capacity nombre màxim de registres a la memòria cau
+     */
+    public void enableCache(int capacity) {
+        this.cache = new RecordCache<>(capacity, this::store);
+    }
+
+    /**
+     * mètode per a obtenir la memòria cau del fitxer
+     * @return cache o null si no està activada
+     */
+    public RecordCache<T> getCache() {
+        return cache;
+    }
+
+    /**
+     * mètode per a activar el mode per lots
+     * les escriptures es guarden en un lot i cada registre s'escriu un sol cop quan es confirma el lot
+     */
+    public void enableBatching() {
+        this.batch = new WriteBatch<>(this::writeThrough);
+    }
+
+    /**
+     * mètode per a confirmar el lot actual escrivint els registres en ordre de posició dins del fitxer
+     * la capçalera es desa després dels registres, perquè no tregui de la llista de registres lliures
+     * cap registre reaprofitat que encara no s'hagi escrit
+     * @throws IOException
+     */
+    public void commitBatch() throws IOException {
+        if (batch != null && batch.size() > 0) {
+            batch.commit();
+            header.save();
+        }
+    }
+
+    /**
+     * mètode per a afegir al diari les imatges dels registres del lot actual
+     * @param journal
+     * @param tag identificador d'aquest fitxer dins del diari
+     */
+    void journalBatch(Journal journal, byte tag) {
+        if (batch == null) {
+            return;
+        }
+        for (T record : batch.records()) {
+            recordBuffer.clear();
+            codec.encode(record, recordBuffer);
+            journal.append(tag, codec.id(record), recordBuffer.array(), codec.size());
+        }
+    }
+
+    /**
+     * mètode per a afegir al diari l'esborrat d'un registre, com una entrada sense imatge
+     * @param journal
+     * @param tag identificador d'aquest fitxer dins del diari
+     * @param id
+     * @throws IOException id no vàlid
+     */
+    void journalDelete(Journal journal, byte tag, long id) throws IOException {
+        if (!isValid(id)) {
+            throw new IOException("Invalid " + codec.name() + " ID: " + id);
+        }
+        journal.append(tag, id, recordBuffer.array(), 0);
+    }
+
+    /**
+     * mètode per a tornar a fer l'esborrat d'un registre recuperat del diari
+     * si el registre ja no és vàlid, l'esborrat ja s'havia fet
+     * @param id
+     * @throws IOException
+     */
+    void applyDelete(long id) throws IOException {
+        if (isValid(id)) {
+            delete(id);
+        }
+    }
+
+    /**
+     * mètode per a escriure directament la imatge d'un registre recuperada del diari
+     * @param id
+     * @param image
+     * @throws IOException
+     */
+    void applyImage(long id, byte[] image) throws IOException {
+        if (image.length != codec.size()) {
+            throw new IOException("Journal image of " + image.length + " bytes for " + codec.name() + " " + id);
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+        header.prepareWrite(id);
+        System.arraycopy(image, 0, recordBuffer.array(), 0, image.length);
+        seal(recordBuffer.array(), 0);
+        storage.write(header.position(id), recordBuffer.array(), 0, slotSize);
+    }
+
+    /**
+     * mètode per a forçar que el contingut del fitxer arribi al disc
+     * abans s'escriuen els registres pendents del lot, de la memòria cau i la capçalera
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        flush();
+        storage.force();
+    }
+
+    /**
+     * mètode per a escriure al fitxer els registres pendents del lot, de la memòria cau i la capçalera
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        commitBatch();
+        if (cache != null) {
+            cache.flush();
+        }
+        header.save();
+    }
+
+    /**
+     * mètode per a buidar el contingut del fitxer
+     * deixa el fitxer només amb la capçalera, sense cap registre
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        if (batch != null) {
+            batch.clear();
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+        header.reset();
+    }
+
+    /**
+     * mètode per a tancar el fitxer
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        flush();
+        storage.close();
+    }
+}
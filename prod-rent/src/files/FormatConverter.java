@@ -0,0 +1,109 @@
+package files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Conversió d'un fitxer de registres a una altra versió del format.
+ *
+ * Els registres conserven el seu identificador i els esborrats continuen
+ * esborrats, de manera que els índexs segueixen sent vàlids. El fitxer
+ * convertit manté les sumes de verificació si l'original en tenia. El fitxer
+ * convertit s'escriu a part i substitueix l'original quan és complet. Si
+ * algun registre no es pot guardar en el format nou sense perdre dades, no
+ * es converteix res.
+ *
+ * @param <T> tipus de registre
+ */
+public class FormatConverter<T> {
+    private static final String TEMP_SUFFIX = ".convert";
+    private static final int BLOCK = 4096;
+
+    private final String fileName;
+    private final StorageMode mode;
+    private final RecordCodec<T> target;
+
+    /**
+     * constructor per a convertir el fitxer indicat al format indicat
+     * @param fileName
+     * @param mode tipus d'emmagatzematge del fitxer
+     * @param target format de destinació
+     */
+    public FormatConverter(String fileName, StorageMode mode, RecordCodec<T> target) {
+        this.fileName = fileName;
+        this.mode = mode;
+        this.target = target;
+    }
+
+    /**
+     * mètode per a convertir el fitxer
+     * @return nombre de registres convertits, o -1 si el fitxer ja tenia aquest format
+     * @throws IOException si algun registre perdria dades amb el format nou
+     */
+    public long convert() throws IOException {
+        long converted = 0;
+        FixedRecordFile<T> source = new FixedRecordFile<>(fileName, mode, target);
+        try {
+            RecordCodec<T> codec = source.getCodec();
+            if (codec.version() == target.version()) {
+                return -1;
+            }
+            check(source, codec);
+            Files.deleteIfExists(Paths.get(fileName + TEMP_SUFFIX));
+            FixedRecordFile<T> output = new FixedRecordFile<>(fileName + TEMP_SUFFIX, mode, target,
+                    source.hasChecksums());
+            try {
+                for (long from = 1; from <= source.lastId(); from += BLOCK) {
+                    for (T record : source.readRange(from, BLOCK)) {
+                        output.write(record);
+                        converted++;
+                    }
+                }
+                for (long id = 1; id <= source.lastId(); id++) {
+                    if (!source.isValid(id)) {
+                        output.markDeleted(id);
+                    }
+                }
+                output.force();
+            } finally {
+                output.close();
+            }
+        } finally {
+            source.close();
+        }
+        Files.move(Paths.get(fileName + TEMP_SUFFIX), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+        return converted;
+    }
+
+    /**
+     * mètode per a comprovar que tots els registres es poden guardar en el format nou sense perdre dades
+     * es compara cada registre amb el que s'obté després de passar-lo pel format nou
+     * @param source
+     * @param codec format actual del fitxer
+     * @throws IOException amb el primer registre que no es pot convertir
+     */
+    private void check(FixedRecordFile<T> source, RecordCodec<T> codec) throws IOException {
+        ByteBuffer original = ByteBuffer.allocate(codec.size());
+        ByteBuffer roundTrip = ByteBuffer.allocate(codec.size());
+        ByteBuffer converted = ByteBuffer.allocate(target.size());
+        for (long from = 1; from <= source.lastId(); from += BLOCK) {
+            for (T record : source.readRange(from, BLOCK)) {
+                original.clear();
+                codec.encode(record, original);
+                converted.clear();
+                target.encode(record, converted);
+                converted.flip();
+                roundTrip.clear();
+                codec.encode(target.decode(converted), roundTrip);
+                if (!Arrays.equals(original.array(), roundTrip.array())) {
+                    throw new IOException("Cannot convert " + codec.name() + " " + codec.id(record)
+                            + " to format version " + target.version() + " without losing data");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package files;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diari d'escriptura anticipada per als fitxers de la base de dades.
+ *
+ * Abans d'aplicar un lot als fitxers, les imatges de tots els registres del
+ * lot s'afegeixen al diari com un sol grup protegit amb un CRC i es força
+ * el diari al disc un sol cop per grup. Si el programa s'atura a mig aplicar
+ * un lot, en tornar-lo a obrir es reaprofiten els grups complets del diari.
+ *
+ * Format de cada grup: magic (int), longitud del cos (int), cos, crc (int).
+ * Cada entrada del cos és: fitxer (byte), id (long), longitud (int), bytes.
+ * Una entrada sense bytes és l'esborrat del registre.
+ */
+public class Journal {
+    private static final int GROUP_MAGIC = 0x4A524E4C; // "JRNL"
+    private static final long CHECKPOINT_BYTES = 64L * 1024 * 1024;
+    // magic i longitud, que es reserven al principi del grup i s'omplen en escriure'l
+    private static final int GROUP_HEADER = 8;
+
+    private final RandomAccessFile journal;
+    private final List<FixedRecordFile<?>> files = new ArrayList<>();
+    private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+    private final DataOutputStream groupOut = new DataOutputStream(group);
+    private long commits;
+    private long syncs;
+
+    /**
+     * constructor per a obrir el diari amb el nom indicat
+     * @param fileName
+     * @throws IOException
+     */
+    public Journal(String fileName) throws IOException {
+        this.journal = new RandomAccessFile(fileName, "rw");
+        startGroup();
+    }
+
+    /**
+     * mètode per a començar un grup nou, amb l'espai de la capçalera
+     */
+    private void startGroup() {
+        group.reset();
+        group.write(new byte[GROUP_HEADER], 0, GROUP_HEADER);
+    }
+
+    /**
+     * mètode per a afegir un fitxer de la base de dades al diari
+     * l'ordre de registre identifica el fitxer dins del diari i ha de ser sempre el mateix
+     * @param file
+     */
+    public void register(FixedRecordFile<?> file) {
+        files.add(file);
+    }
+
+    /**
+     * mètode per a afegir la imatge d'un registre al grup actual
+     * @param tag
+     * @param id
+     * @param image
+     * @param length
+     */
+    void append(byte tag, long id, byte[] image, int length) {
+        try {
+            groupOut.writeByte(tag);
+            groupOut.writeLong(id);
+            groupOut.writeInt(length);
+            groupOut.write(image, 0, length);
+        } catch (IOException e) {
+            // un ByteArrayOutputStream no llança mai IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * mètode per a confirmar els lots de tots els fitxers registrats
+     * primer s'escriu i es força al disc el grup amb totes les imatges
+     * i després s'apliquen els lots als fitxers
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        commit(null, 0);
+        if (journal.length() >= CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * mètode per a esborrar un registre d'un fitxer registrat confirmant alhora els lots de tots els fitxers
+     * l'esborrat va al mateix grup que les imatges dels lots, darrere seu, i després es buida el diari:
+     * en recuperar-lo, el grup s'aplica sobre els fitxers tal com eren abans de l'esborrat,
+     * i l'esborrat només es torna a fer si el registre encara és vàlid
+     * @param file
+     * @param id
+     * @throws IOException id no vàlid
+     * @throws IllegalStateException si el diari té grups que encara no s'han desat amb checkpoint
+     */
+    public void delete(FixedRecordFile<?> file, long id) throws IOException {
+        if (!files.contains(file)) {
+            throw new IllegalArgumentException("File not registered in the journal");
+        }
+        if (journal.length() > 0) {
+            throw new IllegalStateException("The journal must be checkpointed before deleting a record");
+        }
+        commit(file, id);
+        checkpoint();
+    }
+
+    /**
+     * mètode per a desar al diari i aplicar els lots de tots els fitxers i, si se n'indica, un esborrat
+     * @param deleted fitxer del registre a esborrar, o null si no se n'esborra cap
+     * @param id
+     * @throws IOException
+     */
+    private void commit(FixedRecordFile<?> deleted, long id) throws IOException {
+        for (int tag = 0; tag < files.size(); tag++) {
+            files.get(tag).journalBatch(this, (byte) tag);
+        }
+        if (deleted != null) {
+            deleted.journalDelete(this, (byte) files.indexOf(deleted), id);
+        }
+        if (group.size() > GROUP_HEADER) {
+            writeGroup();
+            journal.getChannel().force(false);
+            syncs++;
+        }
+        for (FixedRecordFile<?> file : files) {
+            file.commitBatch();
+        }
+        if (deleted != null) {
+            deleted.delete(id);
+        }
+        commits++;
+    }
+
+    /**
+     * mètode per a escriure el grup actual al final del diari amb una sola escriptura
+     * la capçalera i el CRC s'omplen sobre el mateix array que el cos
+     * @throws IOException
+     */
+    private void writeGroup() throws IOException {
+        groupOut.writeInt(0);
+        byte[] bytes = group.toByteArray();
+        startGroup();
+        int length = bytes.length - GROUP_HEADER - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, GROUP_HEADER, length);
+        ByteBuffer.wrap(bytes)
+                .putInt(0, GROUP_MAGIC)
+                .putInt(4, length)
+                .putInt(GROUP_HEADER + length, (int) crc.getValue());
+        journal.seek(journal.length());
+        journal.write(bytes);
+    }
+
+    /**
+     * mètode per a desar els fitxers de manera permanent i buidar el diari
+     * @throws IOException
+     */
+    public void checkpoint() throws IOException {
+        for (FixedRecordFile<?> file : files) {
+            file.force();
+        }
+        journal.setLength(0);
+        journal.getChannel().force(false);
+    }
+
+    /**
+     * mètode per a tornar a aplicar els grups complets del diari als fitxers registrats
+     * un grup incomplet o amb el CRC incorrecte i tot el que el segueix es descarta
+     * @return nombre de grups aplicats
+     * @throws IOException
+     */
+    public int recover() throws IOException {
+        int applied = 0;
+        journal.seek(0);
+        while (true) {
+            byte[] body = readGroup();
+            if (body == null) {
+                break;
+            }
+            apply(body);
+            applied++;
+        }
+        checkpoint();
+        return applied;
+    }
+
+    /**
+     * mètode per a llegir el següent grup del diari
+     * @return cos del grup o null si no hi ha cap més grup vàlid
+     * @throws IOException
+     */
+    private byte[] readGroup() throws IOException {
+        try {
+            if (journal.readInt() != GROUP_MAGIC) {
+                return null;
+            }
+            int length = journal.readInt();
+            if (length < 0 || length > journal.length() - journal.getFilePointer()) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            journal.readFully(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (journal.readInt() != (int) crc.getValue()) {
+                return null;
+            }
+            return body;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        while (in.available() > 0) {
+            int tag = in.readByte();
+            long id = in.readLong();
+            byte[] image = new byte[in.readInt()];
+            in.readFully(image);
+            if (tag < 0 || tag >= files.size()) {
+                throw new IOException("Journal entry for unknown file " + tag);
+            }
+            if (image.length == 0) {
+                files.get(tag).applyDelete(id);
+            } else {
+                files.get(tag).applyImage(id, image);
+            }
+        }
+    }
+
+    /**
+     * mètode per a buidar el diari sense aplicar-lo
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        startGroup();
+        journal.setLength(0);
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * mètode per a confirmar el que quedi pendent, desar els fitxers i tancar el diari
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        commit();
+        checkpoint();
+        journal.close();
+    }
+
+    @Override
+    public String toString() {
+        return "Journal{" +
+                "commits=" + commits +
+                ", syncs=" + syncs +
+                '}';
+    }
+}
@@ -1,11 +1,15 @@
 package files;
 
 import domain.Client;
+import domain.ClientView;
 import domain.Product;
+import domain.ProductView;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
 
 public class LogFile {
     private final BufferedWriter log;
@@ -14,10 +18,22 @@ public class LogFile {
         log = new BufferedWriter(new FileWriter(fileName));
     }
 
+    public LogFile(Writer writer) {
+        log = new BufferedWriter(writer);
+    }
+
     public void close() throws IOException {
         log.close();
     }
 
+    public void flush() throws IOException {
+        log.flush();
+    }
+
+    public void append(String lines) throws IOException {
+        log.write(lines);
+    }
+
     private void writeln(String line) throws IOException {
         log.write(line);
         log.newLine();
@@ -39,6 +55,14 @@ public class LogFile {
         error(String.format("Unknown operation %s", op));
     }
 
+    public void errorMalformedNumber(String op) throws IOException {
+        error(String.format("Malformed number in operation %s", op));
+    }
+
+    public void errorTextDoesNotFit(String text) throws IOException {
+        error(String.format("Text %s cannot be stored in the record format without losing characters", text));
+    }
+
     public void errorPriceCannotBeNegativeOrZero(String description, int price) throws IOException {
         error(String.format("Price %d is negative or zero in new product %s", price, description));
     }
@@ -55,6 +79,18 @@ public class LogFile {
         error(String.format("Balance %d is negative or zero in new client %s", balance, name));
     }
 
+    public void okImport(long imported, String type, long firstId, long lastId, long millis) throws IOException {
+        ok(String.format("Imported %d %s with ids %d to %d in %d ms", imported, type, firstId, lastId, millis));
+    }
+
+    public void errorImportRejected(long rejected, String reason, List<Long> lines) throws IOException {
+        error(String.format("Rejected %d lines because %s, first lines %s", rejected, reason, lines));
+    }
+
+    public void errorInvalidCapacity(String name, int capacity) throws IOException {
+        error(String.format("Capacity %d is not valid in new client %s", capacity, name));
+    }
+
     public void okNewClient(Client client) throws IOException {
         ok(String.format("Successfully created new client %s", client));
     }
@@ -63,10 +99,19 @@ public class LogFile {
         error(String.format("There is no product with id %d", idProduct));
     }
 
+    public void errorInvalidProductDescription(String description) throws IOException {
+        error(String.format("There is no product with description %s", description));
+    }
+
     public void infoProduct(Product product) throws IOException {
         info(String.format("The info of the product is %s", product));
     }
 
+    public void infoCatalog(ProductTable catalog) throws IOException {
+        info(String.format("The catalog has %d products, %d units in stock worth %d, %d out of stock",
+                catalog.count(), catalog.totalStock(), catalog.catalogValue(), catalog.countBelowStock(1)));
+    }
+
     public void errorInvalidClientId(long idClient) throws IOException {
         error(String.format("There is no client with id %d", idClient));
     }
@@ -78,15 +123,62 @@ public class LogFile {
         }
     }
 
+    public void infoClientsWithNamePrefix(String prefix, long total, Client[] clients) throws IOException {
+        info(String.format("There are %d clients whose name starts with %s", total, prefix));
+        for (int i = 0; i < clients.length; i++) {
+            info(String.format("\t %d: %s", i + 1, clients[i]));
+        }
+    }
+
+    public void errorClientCannotBeRemoved(Client client) throws IOException {
+        error(String.format("Client %s cannot be removed while renting products", client));
+    }
+
+    public void okRemoveClient(Client client) throws IOException {
+        ok(String.format("Successfully removed client %s", client));
+    }
+
+    public void errorProductCannotBeRemoved(Product product) throws IOException {
+        error(String.format("Product %s cannot be removed while rented by a client", product));
+    }
+
+    public void okRemoveProduct(Product product) throws IOException {
+        ok(String.format("Successfully removed product %s", product));
+    }
+
+    public void errorCannotRentProductWithNoStock(ProductView product) throws IOException {
+        cannotRentProductWithNoStock(product);
+    }
+
     public void errorCannotRentProductWithNoStock(Product product) throws IOException {
+        cannotRentProductWithNoStock(product);
+    }
+
+    private void cannotRentProductWithNoStock(Object product) throws IOException {
         error(String.format("Cannot rent a product with zero stock %s", product));
     }
 
+    public void errorClientHasNotEnoughFundsToRentProduct(ClientView client, ProductView product) throws IOException {
+        clientHasNotEnoughFundsToRentProduct(client, product);
+    }
+
     public void errorClientHasNotEnoughFundsToRentProduct(Client client, Product product) throws IOException {
+        clientHasNotEnoughFundsToRentProduct(client, product);
+    }
+
+    private void clientHasNotEnoughFundsToRentProduct(Object client, Object product) throws IOException {
         error(String.format("Client %s has not enough funds for renting product %s", client, product));
     }
 
+    public void errorClientCannotAddProduct(ClientView client, ProductView product) throws IOException {
+        clientCannotAddProduct(client, product);
+    }
+
     public void errorClientCannotAddProduct(Client client, Product product) throws IOException {
+        clientCannotAddProduct(client, product);
+    }
+
+    private void clientCannotAddProduct(Object client, Object product) throws IOException {
         error(String.format("Client %s cannot rent product %s", client, product));
     }
 
@@ -94,7 +186,15 @@ public class LogFile {
         ok(String.format("Client %s has successfully rented product %s", client, product));
     }
 
+    public void errorClientHasNotProduct(ClientView client, long idProduct) throws IOException {
+        clientHasNotProduct(client, idProduct);
+    }
+
     public void errorClientHasNotProduct(Client client, long idProduct) throws IOException {
+        clientHasNotProduct(client, idProduct);
+    }
+
+    private void clientHasNotProduct(Object client, long idProduct) throws IOException {
         error(String.format("Client %s has not product %d", client, idProduct));
     }
 
@@ -0,0 +1,151 @@
+package files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Emmagatzematge sobre un FileChannel projectat a memòria.
+ *
+ * El fitxer es projecta en segments de mida fixa que es van afegint a
+ * mesura que el fitxer creix, de manera que llegir i escriure no fa cap
+ * crida al sistema. Per a llegir només es projecta la part que el fitxer ja
+ * té, i el que queda més enllà es llegeix com a zeros. Només les escriptures
+ * fan créixer el fitxer, i ho fan en trams que dupliquen el tram anterior
+ * del segment, de manera que si el programa s'atura sense tancar-lo el
+ * fitxer no queda gaire més llarg que les dades escrites. La longitud lògica
+ * es guarda en memòria i el fitxer es deixa amb aquesta longitud en tancar-lo.
+ */
+public class MappedStorage implements Storage {
+    private static final int SEGMENT_BITS = 26;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int MIN_MAPPING = 1 << 20;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long length;
+    // longitud real del fitxer, que pot ser més curta o més llarga que la lògica
+    private long size;
+
+    public MappedStorage(String fileName) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), CREATE, READ, WRITE);
+        this.length = channel.size();
+        this.size = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void read(long pos, byte[] buffer, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            long current = pos + done;
+            int inSegment = (int) (current & SEGMENT_MASK);
+            int count = Math.min(length - done, SEGMENT_SIZE - inSegment);
+            MappedByteBuffer segment = segment(current >>> SEGMENT_BITS, inSegment + count, false);
+            int mapped = segment != null ? Math.max(0, Math.min(count, segment.capacity() - inSegment)) : 0;
+            if (mapped > 0) {
+                segment.get(inSegment, buffer, offset + done, mapped);
+            }
+            Arrays.fill(buffer, offset + done + mapped, offset + done + count, (byte) 0);
+            done += count;
+        }
+    }
+
+    @Override
+    public void write(long pos, byte[] buffer, int offset, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            long current = pos + done;
+            int inSegment = (int) (current & SEGMENT_MASK);
+            int count = Math.min(length - done, SEGMENT_SIZE - inSegment);
+            segment(current >>> SEGMENT_BITS, inSegment + count, true).put(inSegment, buffer, offset + done, count);
+            done += count;
+        }
+        this.length = Math.max(this.length, pos + length);
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        if (length < this.length) {
+            // les projeccions antigues deixen de ser vàlides un cop retallat el fitxer
+            segments.clear();
+            channel.truncate(length);
+            size = Math.min(size, length);
+        }
+        this.length = length;
+    }
+
+    @Override
+    public void force() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        channel.truncate(length);
+        if (size < length) {
+            // la part reservada però mai escrita també forma part del fitxer
+            channel.write(ByteBuffer.allocate(1), length - 1);
+        }
+        channel.close();
+    }
+
+    /**
+     * mètode per a obtenir el segment projectat d'índex donat fins a la posició indicada
+     * per a escriure, si la projecció no hi arriba es torna a projectar més gran, fent créixer el fitxer;
+     * per a llegir, només es projecta fins al final real del fitxer
+     * @param index
+     * @param end posició dins del segment fins on s'ha d'accedir
+     * @param write cert si s'hi ha d'escriure
+     * @return segment, que per a llegir pot no arribar a end, o null si el fitxer no arriba al segment
+     * @throws IOException
+     */
+    private MappedByteBuffer segment(long index, int end, boolean write) throws IOException {
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get((int) index);
+        int mapped = segment != null ? segment.capacity() : 0;
+        if (mapped >= end) {
+            return segment;
+        }
+        long base = index << SEGMENT_BITS;
+        int mapping;
+        if (write) {
+            mapping = Math.max(MIN_MAPPING, 2 * mapped);
+            while (mapping < end) {
+                mapping <<= 1;
+            }
+            mapping = Math.min(mapping, SEGMENT_SIZE);
+        } else {
+            mapping = (int) Math.min(SEGMENT_SIZE, Math.max(0, size - base));
+            if (mapping <= mapped) {
+                return segment;
+            }
+        }
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, base, mapping);
+        segments.set((int) index, segment);
+        size = Math.max(size, base + mapping);
+        return segment;
+    }
+}
@@ -0,0 +1,136 @@
+package files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compilador del fitxer de moviments de text a un format binari compacte,
+ * que CompiledMovementReader torna a llegir sense haver de tallar ni
+ * convertir res.
+ *
+ * El text es llegeix amb MovementReader per blocs de ParsedMovements, i cada
+ * camp es guarda ja convertit al tipus amb què el llegeix ProdRent
+ * (Operation.getFields). Els textos
+ * van a una taula al final del fitxer i els camps en guarden la posició,
+ * de manera que cada nom o descripció es guarda un sol cop.
+ *
+ * Format: capçalera de HEADER_SIZE bytes amb magic (int), versió (short),
+ * 0 (short), línies (long), posició de la taula de textos (long) i textos
+ * (int). Després, una entrada per línia:
+ * - BLANK: línia sense camps
+ * - UNKNOWN, el text del nom (int), el nombre de camps (int) i el text de
+ *   cada camp (int): operació que Operation no coneix, com les dels
+ *   MovementHandler.Provider, que en llegeixen els camps com vulguin
+ * - codi de l'operació (byte, Operation.getCode), camps llegits (byte, amb
+ *   el bit MALFORMED si el camp següent no és un número vàlid) i els camps:
+ *   int per als textos i els 'i' i 't', long per als 'l'
+ * La taula de textos té, per a cada text, la longitud en bytes (int) i el
+ * text en UTF-8. A la versió 1 les operacions desconegudes no guardaven els
+ * camps.
+ */
+public class MovementCompiler {
+    static final int MAGIC = 0x50524D56; // "PRMV"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int BLANK = 0;
+    static final int UNKNOWN = 0xFF;
+    static final int MALFORMED = 0x80;
+    private static final int BLOCK_LINES = 1024;
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ParsedMovements block = new ParsedMovements(BLOCK_LINES);
+    private long lines;
+
+    /**
+     * mètode per a compilar el fitxer de moviments de text indicat
+     * els textos queden convertits amb la codificació per defecte, com els llegiria ProdRent
+     * @param textFile
+     * @param compiledFile
+     * @return línies compilades
+     * @throws IOException
+     */
+    public long compile(String textFile, String compiledFile) throws IOException {
+        strings.clear();
+        lines = 0;
+        try (MovementReader reader = new MovementReader(textFile);
+             FileOutputStream file = new FileOutputStream(compiledFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+            out.write(new byte[HEADER_SIZE]);
+            while (block.fill(reader)) {
+                for (int i = 0; i < block.size(); i++) {
+                    compileLine(i, out);
+                }
+                lines += block.size();
+            }
+            out.flush();
+            long stringsOffset = file.getChannel().position();
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                    .putLong(lines).putLong(stringsOffset).putInt(strings.size());
+            header.clear();
+            file.getChannel().write(header, 0);
+        }
+        return lines;
+    }
+
+    /**
+     * mètode per a obtenir quants textos diferents té el darrer fitxer compilat
+     * @return textos
+     */
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    /**
+     * mètode per a compilar una línia del bloc
+     * @param i posició de la línia al bloc
+     * @param out
+     * @throws IOException
+     */
+    private void compileLine(int i, DataOutputStream out) throws IOException {
+        if (block.isBlank(i)) {
+            out.writeByte(BLANK);
+            return;
+        }
+        Operation operation = block.operationAt(i);
+        if (operation == null) {
+            out.writeByte(UNKNOWN);
+            out.writeInt(intern(block.nameAt(i)));
+            out.writeInt(block.countAt(i));
+            for (int field = 0; field < block.countAt(i); field++) {
+                out.writeInt(intern(block.rawFieldAt(i, field)));
+            }
+            return;
+        }
+        String fields = operation.getFields();
+        int count = block.countAt(i);
+        out.writeByte(operation.getCode());
+        out.writeByte(block.isMalformed(i) ? count | MALFORMED : count);
+        for (int field = 0; field < count; field++) {
+            char type = fields.charAt(field);
+            if (type == 'l') {
+                out.writeLong(block.numberAt(i, field));
+            } else if (type == 's') {
+                out.writeInt(intern(block.textAt(i, field)));
+            } else {
+                out.writeInt((int) block.numberAt(i, field));
+            }
+        }
+    }
+
+    private int intern(String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+}
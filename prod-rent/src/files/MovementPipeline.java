@@ -0,0 +1,438 @@
+package files;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Execució de ProdRent en tres etapes: lectura, execució i bitàcora.
+ *
+ * Un fil llegeix el fitxer de moviments per blocs de ParsedMovements, ja
+ * convertits, i el fil de ProdRent els executa llegint-los de getMovements.
+ * El que ProdRent escriu a getLog s'acumula en trossos de text que un altre
+ * fil escriu a la bitàcora real. Els blocs i els trossos es reutilitzen i
+ * n'hi ha com a molt depth de cada en circulació: si una etapa va més
+ * lenta, les altres s'esperen en lloc d'acumular-ne més a memòria.
+ *
+ * Cada etapa compta el temps que treballa i el que espera les altres, i
+ * toString mostra el percentatge de cada un sobre el temps total: l'etapa
+ * que treballa més temps és la que limita el ritme. El temps de treball és
+ * el temps de CPU del fil, si la JVM el mesura: amb menys processadors que
+ * etapes, una espera també inclou el temps que el fil no té processador.
+ */
+public class MovementPipeline {
+    public static final int BLOCK_LINES = 1024;
+    public static final int CHUNK_CHARS = 16 * 1024;
+    // marques de final de les cues, que no es reutilitzen
+    private static final ParsedMovements END = new ParsedMovements(0);
+    private static final StringBuilder END_CHUNK = new StringBuilder(0);
+    private static final ThreadMXBean THREAD_TIMES = ManagementFactory.getThreadMXBean();
+
+    private final MovementSource source;
+    private final LogFile target;
+    private final BlockingQueue<ParsedMovements> freeBlocks;
+    private final BlockingQueue<ParsedMovements> fullBlocks;
+    private final BlockingQueue<StringBuilder> freeChunks;
+    private final BlockingQueue<StringBuilder> fullChunks;
+    private final Thread reader;
+    private final Thread writer;
+    private final Movements movements = new Movements();
+    private final LogFile log = new LogFile(new ChunkWriter());
+    private volatile Exception readerFailure;
+    private volatile Exception writerFailure;
+    // temps de cada etapa, en nanosegons
+    private final long start = System.nanoTime();
+    private long elapsed = -1;
+    private volatile long readerBusy;
+    private volatile long readerCpu = -1;
+    private volatile long readerBlocked;
+    private final long executorCpuStart = cpuTime();
+    private long executorCpu = -1;
+    private long executorStarved;
+    private long executorBlocked;
+    private volatile long writerBusy;
+    private volatile long writerCpu = -1;
+    private volatile long writerIdle;
+    private long lines;
+
+    /**
+     * constructor que comença a llegir els moviments de source i a escriure a target
+     * @param source moviments, que es tanquen en tancar getMovements
+     * @param target bitàcora, que es tanca en tancar getLog
+     * @param depth blocs de moviments i trossos de bitàcora en circulació
+     * @throws IllegalArgumentException si depth és menor que 1
+     */
+    public MovementPipeline(MovementSource source, LogFile target, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Invalid pipeline depth: " + depth);
+        }
+        this.source = source;
+        this.target = target;
+        // hi cap també la marca de final
+        this.freeBlocks = new ArrayBlockingQueue<>(depth);
+        this.fullBlocks = new ArrayBlockingQueue<>(depth + 1);
+        this.freeChunks = new ArrayBlockingQueue<>(depth);
+        this.fullChunks = new ArrayBlockingQueue<>(depth + 1);
+        movements.position = source.getPosition();
+        for (int i = 0; i < depth; i++) {
+            freeBlocks.add(new ParsedMovements(BLOCK_LINES));
+            freeChunks.add(new StringBuilder(CHUNK_CHARS + 1024));
+        }
+        this.reader = new Thread(this::read, "prodrent-reader");
+        this.writer = new Thread(this::write, "prodrent-log-writer");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+
+    /**
+     * mètode per a obtenir els moviments llegits, en l'ordre del fitxer
+     * @return moviments, que s'han de llegir des d'un sol fil
+     */
+    public MovementSource getMovements() {
+        return movements;
+    }
+
+    /**
+     * mètode per a obtenir la bitàcora que s'escriu des del fil d'escriptura
+     * @return bitàcora, que s'ha d'escriure des d'un sol fil
+     */
+    public LogFile getLog() {
+        return log;
+    }
+
+    /**
+     * mètode per a obtenir quantes línies de moviments s'han lliurat
+     * @return línies
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * mètode del fil de lectura: omple blocs lliures fins que s'acaba el fitxer
+     */
+    private void read() {
+        try {
+            while (true) {
+                long waiting = System.nanoTime();
+                ParsedMovements block = freeBlocks.take();
+                long filling = System.nanoTime();
+                boolean more = block.fill(source);
+                long filled = System.nanoTime();
+                if (!more) {
+                    readerBlocked += filling - waiting;
+                    readerBusy += filled - filling;
+                    break;
+                }
+                fullBlocks.put(block);
+                readerBlocked += filling - waiting + System.nanoTime() - filled;
+                readerBusy += filled - filling;
+            }
+        } catch (InterruptedException ex) {
+            // s'han tancat els moviments abans d'acabar-los
+        } catch (IOException | RuntimeException ex) {
+            readerFailure = ex;
+        } finally {
+            readerCpu = cpuTime();
+            fullBlocks.offer(END);
+        }
+    }
+
+    /**
+     * mètode del fil d'escriptura: escriu els trossos plens a la bitàcora fins a la marca de final
+     * si l'escriptura falla, continua retornant els trossos perquè el fil de ProdRent no es quedi esperant
+     */
+    private void write() {
+        try {
+            while (true) {
+                long waiting = System.nanoTime();
+                StringBuilder chunk = fullChunks.take();
+                long writing = System.nanoTime();
+                if (chunk == END_CHUNK) {
+                    writerIdle += writing - waiting;
+                    break;
+                }
+                if (writerFailure == null) {
+                    try {
+                        target.append(chunk.toString());
+                    } catch (IOException | RuntimeException ex) {
+                        writerFailure = ex;
+                    }
+                }
+                chunk.setLength(0);
+                freeChunks.add(chunk);
+                writerIdle += writing - waiting;
+                writerBusy += System.nanoTime() - writing;
+            }
+            long closing = System.nanoTime();
+            target.close();
+            writerBusy += System.nanoTime() - closing;
+        } catch (InterruptedException ex) {
+            // no s'interromp mai: la bitàcora es tanca amb la marca de final
+        } catch (IOException | RuntimeException ex) {
+            if (writerFailure == null) writerFailure = ex;
+        } finally {
+            writerCpu = cpuTime();
+        }
+    }
+
+    /**
+     * mètode per a obtenir el temps de CPU del fil actual
+     * @return nanosegons, o -1 si la JVM no el mesura
+     */
+    private static long cpuTime() {
+        try {
+            return THREAD_TIMES.getCurrentThreadCpuTime();
+        } catch (UnsupportedOperationException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * mètode per a esperar que acabi un fil de l'etapa
+     * @param thread
+     * @throws InterruptedIOException si s'interromp el fil de ProdRent
+     */
+    private static void join(Thread thread) throws InterruptedIOException {
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + thread.getName());
+        }
+    }
+
+    /**
+     * mètode per a llançar l'error d'un fil de l'etapa des del fil de ProdRent
+     * @param failure
+     * @param message
+     * @throws IOException
+     */
+    private static void rethrow(Exception failure, String message) throws IOException {
+        if (failure instanceof IOException) {
+            throw new IOException(message, failure);
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * mètode per a triar el temps de treball d'una etapa
+     * @param cpu temps de CPU, o -1 si no es coneix
+     * @param wall temps entre esperes
+     * @return temps de CPU si es coneix
+     */
+    private static long busy(long cpu, long wall) {
+        return cpu >= 0 ? cpu : wall;
+    }
+
+    private static String percent(long nanos, long total) {
+        return String.format("%.1f%%", total == 0 ? 0.0 : 100.0 * nanos / total);
+    }
+
+    @Override
+    public String toString() {
+        long total = elapsed >= 0 ? elapsed : System.nanoTime() - start;
+        long executorBusy = busy(executorCpu, total - executorStarved - executorBlocked);
+        return "MovementPipeline{" +
+                "lines=" + lines +
+                ", elapsed=" + total / 1_000_000 + " ms" +
+                ", reader busy " + percent(busy(readerCpu, readerBusy), total) +
+                " blocked " + percent(readerBlocked, total) +
+                ", executor busy " + percent(executorBusy, total) +
+                " starved " + percent(executorStarved, total) +
+                " blocked " + percent(executorBlocked, total) +
+                ", writer busy " + percent(busy(writerCpu, writerBusy), total) +
+                " idle " + percent(writerIdle, total) +
+                '}';
+    }
+
+    /**
+     * Moviments del fil de ProdRent, llegits dels blocs plens.
+     */
+    private class Movements implements MovementSource {
+        private ParsedMovements current;
+        private boolean finished;
+        // posició després de l'últim bloc acabat
+        private long position;
+
+        @Override
+        public boolean nextLine() throws IOException {
+            while (current == null || !current.nextLine()) {
+                if (finished) {
+                    return false;
+                }
+                if (current != null) {
+                    position = current.getPosition();
+                    freeBlocks.add(current);
+                    current = null;
+                }
+                ParsedMovements block = take();
+                if (block == END) {
+                    finished = true;
+                    rethrow(readerFailure, "Error reading the movements");
+                    return false;
+                }
+                current = block;
+                lines += block.size();
+            }
+            return true;
+        }
+
+        private ParsedMovements take() throws InterruptedIOException {
+            long waiting = System.nanoTime();
+            try {
+                return fullBlocks.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the movements");
+            } finally {
+                executorStarved += System.nanoTime() - waiting;
+            }
+        }
+
+        @Override
+        public boolean hasMoreFields() {
+            return current.hasMoreFields();
+        }
+
+        @Override
+        public Operation nextOperation() {
+            return current.nextOperation();
+        }
+
+        @Override
+        public String getOperationName() {
+            return current.getOperationName();
+        }
+
+        @Override
+        public String nextString() {
+            return current.nextString();
+        }
+
+        @Override
+        public long nextLong() {
+            return current.nextLong();
+        }
+
+        @Override
+        public int nextInt() {
+            return current.nextInt();
+        }
+
+        @Override
+        public int nextTrimmedInt() {
+            return current.nextTrimmedInt();
+        }
+
+        @Override
+        public long getPosition() {
+            return current != null ? current.getPosition() : position;
+        }
+
+        /**
+         * atura el fil de lectura si no havia acabat i tanca l'origen
+         */
+        @Override
+        public void close() throws IOException {
+            reader.interrupt();
+            join(reader);
+            finished = true;
+            position = getPosition();
+            current = null;
+            source.close();
+        }
+    }
+
+    /**
+     * Destinació de la bitàcora del fil de ProdRent: acumula el text en
+     * trossos lliures i passa els plens al fil d'escriptura.
+     */
+    private class ChunkWriter extends Writer {
+        private StringBuilder chunk;
+        private boolean closed;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            chunk().append(buffer, offset, length);
+            if (chunk.length() >= CHUNK_CHARS) send();
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            chunk().append(text, offset, offset + length);
+            if (chunk.length() >= CHUNK_CHARS) send();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (chunk != null && chunk.length() > 0) send();
+        }
+
+        /**
+         * envia el que quedi, espera que el fil d'escriptura acabi i tanqui la bitàcora
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flush();
+            } finally {
+                long cpu = cpuTime();
+                executorCpu = cpu >= 0 && executorCpuStart >= 0 ? cpu - executorCpuStart : -1;
+                put(END_CHUNK);
+                join(writer);
+                elapsed = System.nanoTime() - start;
+            }
+            rethrow(writerFailure, "Error writing the log");
+        }
+
+        private StringBuilder chunk() throws IOException {
+            if (closed) {
+                throw new IOException("The log is closed");
+            }
+            if (chunk == null) {
+                rethrow(writerFailure, "Error writing the log");
+                long waiting = System.nanoTime();
+                try {
+                    chunk = freeChunks.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log");
+                } finally {
+                    executorBlocked += System.nanoTime() - waiting;
+                }
+            }
+            return chunk;
+        }
+
+        private void send() throws InterruptedIOException {
+            StringBuilder full = chunk;
+            chunk = null;
+            put(full);
+        }
+
+        private void put(StringBuilder full) throws InterruptedIOException {
+            long waiting = System.nanoTime();
+            try {
+                fullChunks.put(full);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the log");
+            } finally {
+                executorBlocked += System.nanoTime() - waiting;
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector del fitxer de moviments que treballa directament sobre els bytes.
+ *
+ * El fitxer es projecta a memòria per finestres, o els moviments ja són a
+ * memòria, com les peticions del mode servidor. Les línies es tallen com
+ * ho fa BufferedReader.readLine, per '\n', '\r' o "\r\n". Els camps de cada
+ * línia són els mateixos que donaria un StringTokenizer amb el separador
+ * ',': els trams sense comes, saltant els buits. Les paraules clau de les
+ * operacions es reconeixen i els números es llegeixen sobre els mateixos
+ * bytes, sense crear cap objecte; només els textos es converteixen a String.
+ *
+ * Les decisions són sempre les mateixes que amb trim, toUpperCase,
+ * Integer.parseInt i Long.parseLong sobre els textos: els casos que el camí
+ * ràpid no sap resoldre exactament (bytes no ASCII, números massa llargs,
+ * configuracions regionals on toUpperCase no és l'ASCII) es resolen amb
+ * aquests mateixos mètodes.
+ */
+public class MovementReader implements MovementSource {
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+    // amb la configuració regional turca, per exemple, "i".toUpperCase() no és "I"
+    private static final boolean ASCII_UPPER_CASE =
+            "abcdefghijklmnopqrstuvwxyz".toUpperCase().equals("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    private static final int MAX_FAST_LONG_DIGITS = 18;
+    private static final int MAX_FAST_INT_DIGITS = 9;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Charset charset;
+    private final int windowBytes;
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart;
+    // posicions dins de la finestra
+    private int next;
+    private int lineEnd;
+    private int cursor;
+    private int operationStart;
+    private int operationEnd;
+
+    /**
+     * constructor per a obrir el fitxer de moviments indicat
+     * els textos es llegeixen amb la codificació per defecte, com ho fa FileReader
+     * @param fileName
+     * @throws IOException si no es pot obrir o la codificació per defecte no és compatible amb ASCII
+     */
+    public MovementReader(String fileName) throws IOException {
+        this(fileName, WINDOW_BYTES);
+    }
+
+    /**
+     * constructor per a obrir el fitxer amb una mida de finestra concreta
+     * @param fileName
+     * @param windowBytes bytes de cada projecció; les línies més llargues fan créixer la finestra
+     * @throws IOException
+     */
+    MovementReader(String fileName, int windowBytes) throws IOException {
+        this.charset = defaultCharset();
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * constructor per a llegir els moviments que hi ha entre la posició i el límit de bytes
+     * els bytes no es copien i no s'han de modificar mentre es llegeixen
+     * @param bytes
+     * @throws IOException si la codificació per defecte no és compatible amb ASCII
+     */
+    public MovementReader(ByteBuffer bytes) throws IOException {
+        this.charset = defaultCharset();
+        this.channel = null;
+        this.window = bytes.slice();
+        this.size = window.limit();
+        this.windowBytes = window.limit();
+    }
+
+    /**
+     * mètode per a obtenir la codificació dels textos, que és la per defecte, com a FileReader
+     * @return codificació
+     * @throws IOException si no és compatible amb ASCII
+     */
+    private static Charset defaultCharset() throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!isAsciiCompatible(charset)) {
+            throw new IOException("The default charset " + charset + " is not compatible with ASCII");
+        }
+        return charset;
+    }
+
+    /**
+     * mètode per a saber si els caràcters ASCII es codifiquen amb un sol byte, el seu codi
+     * és el que permet tallar les línies i els camps sobre els bytes
+     * @param charset
+     * @return cert si és compatible
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        String text = new String(ascii, StandardCharsets.US_ASCII);
+        return Arrays.equals(ascii, text.getBytes(charset)) && text.equals(new String(ascii, charset));
+    }
+
+    /**
+     * mètode per a passar a la línia següent
+     * @return fals si ja no hi ha més línies
+     * @throws IOException
+     */
+    @Override
+    public boolean nextLine() throws IOException {
+        if (windowStart + next >= size) {
+            return false;
+        }
+        int end = findLineEnd(next);
+        if (end < 0) {
+            map(windowStart + next, window.limit() - next);
+            end = findLineEnd(0);
+        }
+        int following = end;
+        if (end < window.limit()) {
+            following = end + 1;
+            if (window.get(end) == '\r' && following < window.limit() && window.get(following) == '\n') {
+                following++;
+            }
+        }
+        cursor = next;
+        lineEnd = end;
+        next = following;
+        operationStart = operationEnd = -1;
+        return true;
+    }
+
+    @Override
+    public long getPosition() {
+        return windowStart + next;
+    }
+
+    /**
+     * mètode per a continuar la lectura a la posició indicada, que ha de ser el principi d'una línia
+     * la posició sol venir de getPosition en una lectura anterior del mateix fitxer
+     * @param position
+     * @throws IOException si la posició és fora del fitxer
+     */
+    public void skipTo(long position) throws IOException {
+        if (position < 0 || position > size) {
+            throw new IOException("Position " + position + " is outside the " + size + " bytes of movements");
+        }
+        if (position >= windowStart && position <= windowStart + window.limit()) {
+            next = (int) (position - windowStart);
+        } else {
+            // la finestra següent es projecta a la primera lectura
+            window = ByteBuffer.allocate(0);
+            windowStart = position;
+            next = 0;
+        }
+    }
+
+    /**
+     * mètode per a buscar el final de la línia que comença a la posició indicada de la finestra
+     * si la finestra s'acaba abans de saber-ho, cal projectar-ne una altra
+     * @param start
+     * @return posició del '\n' o '\r' o del final del fitxer, o -1 si la finestra no arriba
+     */
+    private int findLineEnd(int start) {
+        int limit = window.limit();
+        for (int i = start; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == '\n' || b == '\r') {
+                // per a un '\r' cal veure el byte següent
+                if (b == '\r' && i + 1 == limit && windowStart + limit < size) {
+                    return -1;
+                }
+                return i;
+            }
+        }
+        return windowStart + limit == size ? limit : -1;
+    }
+
+    /**
+     * mètode per a projectar una nova finestra que comença a la posició indicada del fitxer
+     * si la línia no cap a la finestra habitual, la finestra es fa prou gran per a contenir-la
+     * @param position
+     * @param pending bytes de la línia actual que ja hi havia a la finestra anterior
+     * @throws IOException si la línia no cap en cap finestra
+     */
+    private void map(long position, int pending) throws IOException {
+        long length = Math.min(size - position, Math.max(windowBytes, 2L * pending + 2));
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Movement line at byte " + position + " is too long");
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        windowStart = position;
+        next = 0;
+        int end = findLineEnd(0);
+        if (end < 0) {
+            map(position, (int) length);
+        }
+    }
+
+    /**
+     * mètode per a saber si a la línia queda algun camp
+     * @return cert si en queda algun
+     */
+    @Override
+    public boolean hasMoreFields() {
+        skipCommas();
+        return cursor < lineEnd;
+    }
+
+    private void skipCommas() {
+        while (cursor < lineEnd && window.get(cursor) == ',') {
+            cursor++;
+        }
+    }
+
+    /**
+     * mètode per a passar al camp següent
+     * @return posició del final del camp; el camp comença a cursor
+     * @throws NoSuchElementException si no queden camps, com StringTokenizer
+     */
+    private int fieldEnd() {
+        skipCommas();
+        if (cursor >= lineEnd) {
+            throw new NoSuchElementException();
+        }
+        int end = cursor;
+        while (end < lineEnd && window.get(end) != ',') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * mètode per a llegir l'operació, que és el primer camp de la línia, sense espais als extrems
+     * i sense distingir majúscules
+     * @return operació, o null si no és cap de les conegudes
+     */
+    @Override
+    public Operation nextOperation() {
+        int end = fieldEnd();
+        operationStart = cursor;
+        operationEnd = end;
+        cursor = end;
+        int start = operationStart;
+        int last = end;
+        while (start < last && (window.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (last > start && (window.get(last - 1) & 0xFF) <= ' ') {
+            last--;
+        }
+        if (ASCII_UPPER_CASE && isAscii(start, last)) {
+            return Operation.fromAscii(window, start, last);
+        }
+        return Operation.fromName(getOperationName());
+    }
+
+    /**
+     * mètode per a obtenir el nom de l'operació de la línia tal com el veuria ProdRent
+     * crea el String, per tant només s'ha de fer servir per als missatges
+     * @return operació sense espais als extrems i en majúscules
+     */
+    @Override
+    public String getOperationName() {
+        return decode(operationStart, operationEnd).trim().toUpperCase();
+    }
+
+    /**
+     * mètode per a llegir el camp següent com a text
+     * @return camp
+     */
+    @Override
+    public String nextString() {
+        int end = fieldEnd();
+        String field = decode(cursor, end);
+        cursor = end;
+        return field;
+    }
+
+    /**
+     * mètode per a llegir el camp següent com a Long.parseLong
+     * @return valor
+     * @throws NumberFormatException si el camp no és un long
+     */
+    @Override
+    public long nextLong() {
+        int end = fieldEnd();
+        int start = cursor;
+        cursor = end;
+        return parseLong(start, end);
+    }
+
+    /**
+     * mètode per a llegir el camp següent com a Integer.parseInt
+     * @return valor
+     * @throws NumberFormatException si el camp no és un int
+     */
+    @Override
+    public int nextInt() {
+        int end = fieldEnd();
+        int start = cursor;
+        cursor = end;
+        return parseInt(start, end);
+    }
+
+    /**
+     * mètode per a llegir el camp següent sense espais als extrems com a Integer.parseInt
+     * @return valor
+     * @throws NumberFormatException si el camp no és un int
+     */
+    @Override
+    public int nextTrimmedInt() {
+        int fieldEnd = fieldEnd();
+        int fieldStart = cursor;
+        cursor = fieldEnd;
+        if (!isAscii(fieldStart, fieldEnd)) {
+            return Integer.parseInt(decode(fieldStart, fieldEnd).trim());
+        }
+        int start = fieldStart;
+        int end = fieldEnd;
+        while (start < end && window.get(start) <= ' ') {
+            start++;
+        }
+        while (end > start && window.get(end - 1) <= ' ') {
+            end--;
+        }
+        return parseInt(start, end);
+    }
+
+    private long parseLong(int start, int end) {
+        long value = parseDigits(start, end, MAX_FAST_LONG_DIGITS);
+        if (value == Long.MIN_VALUE) {
+            return Long.parseLong(decode(start, end));
+        }
+        return value;
+    }
+
+    private int parseInt(int start, int end) {
+        long value = parseDigits(start, end, MAX_FAST_INT_DIGITS);
+        if (value == Long.MIN_VALUE) {
+            return Integer.parseInt(decode(start, end));
+        }
+        return (int) value;
+    }
+
+    /**
+     * mètode per a llegir un número amb signe opcional i com a molt maxDigits xifres ASCII
+     * amb aquestes xifres el resultat no pot desbordar
+     * @param start
+     * @param end
+     * @param maxDigits
+     * @return valor, o Long.MIN_VALUE si el camp no té aquesta forma i l'ha de llegir parseInt o parseLong
+     */
+    private long parseDigits(int start, int end, int maxDigits) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+            negative = window.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > maxDigits) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean isAscii(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (window.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        window.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
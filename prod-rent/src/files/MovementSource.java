@@ -0,0 +1,76 @@
+package files;
+
+import java.io.IOException;
+
+/**
+ * Origen dels moviments que processa ProdRent, línia a línia i camp a camp.
+ *
+ * El fitxer de text es llegeix amb MovementReader i el fitxer compilat amb
+ * CompiledMovementReader. Tots dos donen els mateixos camps, els mateixos
+ * valors i les mateixes excepcions per a cada línia, de manera que la
+ * bitàcora és la mateixa sigui quin sigui l'origen.
+ */
+public interface MovementSource extends AutoCloseable {
+
+    /**
+     * mètode per a passar a la línia següent
+     * @return fals si ja no hi ha més línies
+     * @throws IOException
+     */
+    boolean nextLine() throws IOException;
+
+    /**
+     * mètode per a saber si a la línia queda algun camp
+     * @return cert si en queda algun
+     */
+    boolean hasMoreFields();
+
+    /**
+     * mètode per a llegir l'operació, que és el primer camp de la línia
+     * @return operació, o null si no és cap de les conegudes
+     */
+    Operation nextOperation();
+
+    /**
+     * mètode per a obtenir el nom de l'operació de la línia, sense espais als extrems i en majúscules
+     * @return nom
+     */
+    String getOperationName();
+
+    /**
+     * mètode per a llegir el camp següent com a text
+     * @return camp
+     */
+    String nextString();
+
+    /**
+     * mètode per a llegir el camp següent com a Long.parseLong
+     * @return valor
+     * @throws NumberFormatException si el camp no és un long
+     */
+    long nextLong();
+
+    /**
+     * mètode per a llegir el camp següent com a Integer.parseInt
+     * @return valor
+     * @throws NumberFormatException si el camp no és un int
+     */
+    int nextInt();
+
+    /**
+     * mètode per a llegir el camp següent sense espais als extrems com a Integer.parseInt
+     * @return valor
+     * @throws NumberFormatException si el camp no és un int
+     */
+    int nextTrimmedInt();
+
+    /**
+     * mètode per a obtenir la posició de l'origen on comença la línia següent
+     * és la que es guarda als punts de control per a reprendre la lectura
+     * @return posició en bytes
+     */
+    long getPosition();
+
+    @Override
+    void close() throws IOException;
+}
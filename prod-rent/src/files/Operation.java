@@ -0,0 +1,135 @@
+package files;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Operacions del fitxer de moviments.
+ *
+ * Cada operació guarda els bytes del seu nom, que és la paraula clau del
+ * fitxer de moviments, per a reconèixer-la directament sobre els bytes, i
+ * els tipus dels camps que ProdRent en llegeix, en ordre: 's' text, 'i' int,
+ * 't' int sense espais als extrems i 'l' long. Els camps que no hi surten
+ * no es llegeixen mai. El compilador de moviments els fa servir per a
+ * guardar cada camp ja convertit.
+ *
+ * El codi identifica l'operació als fitxers compilats i, a diferència del
+ * número d'ordre, no depèn de l'ordre de les constants: no es pot canviar ni
+ * reutilitzar mai, i una operació nova n'ha de prendre un de lliure entre 1 i
+ * MAX_CODE.
+ */
+public enum Operation {
+    ALTA_PRODUCTO(1, "sii"),
+    ALTA_CLIENTE(2, "sit"),
+    INFO_PRODUCTO(3, "l"),
+    INFO_PRODUCTO_DESC(4, "s"),
+    INFO_CLIENTE(5, "l"),
+    BUSCAR_CLIENTE(6, "s"),
+    INFO_CATALOGO(7, ""),
+    BAJA_CLIENTE(8, "l"),
+    BAJA_PRODUCTO(9, "l"),
+    ALQUILAR(10, "ll"),
+    DEVOLVER(11, "ll");
+
+    /**
+     * nombre màxim de camps que es llegeixen d'una operació
+     */
+    public static final int MAX_FIELDS = 3;
+
+    /**
+     * codi més gran que pot tenir una operació; els altres valors d'un byte els reserva el compilador
+     */
+    public static final int MAX_CODE = 0xFE;
+
+    private static final Operation[] VALUES = values();
+    private static final Operation[] BY_CODE = new Operation[MAX_CODE + 1];
+
+    static {
+        for (Operation operation : VALUES) {
+            if (operation.code < 1 || operation.code > MAX_CODE || BY_CODE[operation.code] != null) {
+                throw new IllegalStateException("Invalid code " + operation.code + " for operation " + operation);
+            }
+            BY_CODE[operation.code] = operation;
+        }
+    }
+
+    private final byte[] keyword = name().getBytes(StandardCharsets.US_ASCII);
+    private final int code;
+    private final String fields;
+
+    Operation(int code, String fields) {
+        this.code = code;
+        this.fields = fields;
+    }
+
+    /**
+     * mètode per a obtenir el codi de l'operació als fitxers compilats
+     * @return codi, entre 1 i MAX_CODE
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * mètode per a obtenir els tipus dels camps que es llegeixen de l'operació
+     * @return un caràcter per camp: 's', 'i', 't' o 'l'
+     */
+    public String getFields() {
+        return fields;
+    }
+
+    /**
+     * mètode per a buscar l'operació amb el codi indicat
+     * @param code
+     * @return operació, o null si no n'hi ha cap amb aquest codi
+     */
+    public static Operation fromCode(int code) {
+        return code >= 0 && code <= MAX_CODE ? BY_CODE[code] : null;
+    }
+
+    /**
+     * mètode per a buscar l'operació amb el nom indicat, ja en majúscules
+     * @param name
+     * @return operació, o null si no n'hi ha cap amb aquest nom
+     */
+    public static Operation fromName(String name) {
+        for (Operation operation : VALUES) {
+            if (operation.name().equals(name)) {
+                return operation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * mètode per a buscar l'operació escrita als bytes indicats, sense distingir majúscules
+     * els bytes han de ser ASCII i sense espais als extrems
+     * @param bytes
+     * @param start
+     * @param end posició següent a l'últim byte
+     * @return operació, o null si no n'hi ha cap amb aquest nom
+     */
+    static Operation fromAscii(ByteBuffer bytes, int start, int end) {
+        for (Operation operation : VALUES) {
+            if (operation.matches(bytes, start, end)) {
+                return operation;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(ByteBuffer bytes, int start, int end) {
+        if (end - start != keyword.length) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            byte b = bytes.get(start + i);
+            byte k = keyword[i];
+            // toUpperCase només canvia les lletres minúscules ASCII
+            if (b != k && !(k >= 'A' && k <= 'Z' && b == k + ('a' - 'A'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
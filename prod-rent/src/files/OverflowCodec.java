@@ -0,0 +1,34 @@
+package files;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format dels registres del fitxer de pàgines de desbordament dels clients.
+ */
+public class OverflowCodec implements RecordCodec<OverflowPage> {
+
+    @Override
+    public String name() {
+        return "overflow page";
+    }
+
+    @Override
+    public int size() {
+        return OverflowPage.SIZE;
+    }
+
+    @Override
+    public long id(OverflowPage page) {
+        return page.getId();
+    }
+
+    @Override
+    public void encode(OverflowPage page, ByteBuffer buffer) {
+        page.encode(buffer);
+    }
+
+    @Override
+    public OverflowPage decode(ByteBuffer buffer) {
+        return OverflowPage.decode(buffer);
+    }
+}
@@ -0,0 +1,183 @@
+package files;
+
+import utils.PackUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Pàgina de desbordament dels productes llogats d'un client.
+ *
+ * Els clients amb una capacitat més gran que la que cap al seu registre
+ * guarden la resta de productes en una cadena de pàgines d'un fitxer a
+ * part. Cada pàgina té el client propietari, la pàgina següent de la
+ * cadena (0 si és l'última) i fins a ENTRIES productes amb les seves unitats.
+ */
+public class OverflowPage {
+
+    public static final int ENTRIES = 16;
+    // posició de cada camp a la imatge; les fan servir encode/decode i els mètodes ...Of
+    private static final int OWNER_OFFSET = 8;
+    private static final int NEXT_OFFSET = OWNER_OFFSET + 8;
+    private static final int COUNT_OFFSET = NEXT_OFFSET + 8;
+    private static final int IDS_OFFSET = COUNT_OFFSET + 4;
+    private static final int UNITS_OFFSET = IDS_OFFSET + ENTRIES*8;
+    public static final int SIZE = UNITS_OFFSET + ENTRIES*4;
+
+    private final long id;
+    private final long owner;
+    private final long next;
+    private final int count;
+    private final long[] ids;
+    private final int[] units;
+
+    /**
+     * constructor per a crear una pàgina amb els paràmetres indicats
+     * @param id
+     * @param owner id del client
+     * @param next id de la pàgina següent, o 0 si és l'última
+     * @param ids productes, com a molt ENTRIES
+     * @param units unitats de cada producte
+     * @param count nombre de productes ocupats
+     * @throws IllegalArgumentException si els productes no caben a la pàgina
+     */
+    public OverflowPage(long id, long owner, long next, long[] ids, int[] units, int count) {
+        if (count < 0 || count > ENTRIES) {
+            throw new IllegalArgumentException("Invalid overflow page count: " + count);
+        }
+        this.id = id;
+        this.owner = owner;
+        this.next = next;
+        this.count = count;
+        this.ids = Arrays.copyOf(ids, ENTRIES);
+        this.units = Arrays.copyOf(units, ENTRIES);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getOwner() {
+        return owner;
+    }
+
+    public long getNext() {
+        return next;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getProductId(int entry) {
+        return ids[entry];
+    }
+
+    public int getUnits(int entry) {
+        return units[entry];
+    }
+
+    /**
+     * mètode per a escriure la pàgina a la posició actual del buffer, avançant SIZE bytes
+     * @param buffer
+     */
+    public void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        PackUtils.packLong(id, buffer);
+        PackUtils.packLong(owner, buffer.position(start + OWNER_OFFSET));
+        PackUtils.packLong(next, buffer.position(start + NEXT_OFFSET));
+        PackUtils.packInt(count, buffer.position(start + COUNT_OFFSET));
+        buffer.position(start + IDS_OFFSET);
+        for (int i = 0; i < ENTRIES; i++) {
+            PackUtils.packLong(ids[i], buffer);
+        }
+        buffer.position(start + UNITS_OFFSET);
+        for (int i = 0; i < ENTRIES; i++) {
+            PackUtils.packInt(units[i], buffer);
+        }
+        buffer.position(start + SIZE);
+    }
+
+    /**
+     * mètode per a llegir una pàgina a partir de la posició actual del buffer, avançant SIZE bytes
+     * @param buffer
+     * @return pàgina
+     */
+    public static OverflowPage decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        long id = PackUtils.unpackLong(buffer);
+        long owner = PackUtils.unpackLong(buffer.position(start + OWNER_OFFSET));
+        long next = PackUtils.unpackLong(buffer.position(start + NEXT_OFFSET));
+        int count = PackUtils.unpackInt(buffer.position(start + COUNT_OFFSET));
+        long[] ids = new long[ENTRIES];
+        buffer.position(start + IDS_OFFSET);
+        for (int i = 0; i < ENTRIES; i++) {
+            ids[i] = PackUtils.unpackLong(buffer);
+        }
+        int[] units = new int[ENTRIES];
+        buffer.position(start + UNITS_OFFSET);
+        for (int i = 0; i < ENTRIES; i++) {
+            units[i] = PackUtils.unpackInt(buffer);
+        }
+        buffer.position(start + SIZE);
+        return new OverflowPage(id, owner, next, ids, units, count);
+    }
+
+    /**
+     * mètode per a llegir el nombre de productes d'una imatge codificada
+     * @param image
+     * @return count
+     */
+    static int countOf(byte[] image) {
+        return PackUtils.unpackInt(image, COUNT_OFFSET);
+    }
+
+    /**
+     * mètode per a llegir la pàgina següent d'una imatge codificada
+     * @param image
+     * @return id de la pàgina següent, o 0
+     */
+    static long nextOf(byte[] image) {
+        return PackUtils.unpackLong(image, NEXT_OFFSET);
+    }
+
+    /**
+     * mètode per a llegir un producte d'una imatge codificada
+     * @param image
+     * @param entry
+     * @return id del producte
+     */
+    static long productIdOf(byte[] image, int entry) {
+        return PackUtils.unpackLong(image, IDS_OFFSET + 8*entry);
+    }
+
+    /**
+     * mètode per a llegir les unitats d'un producte d'una imatge codificada
+     * @param image
+     * @param entry
+     * @return unitats
+     */
+    static int unitsOf(byte[] image, int entry) {
+        return PackUtils.unpackInt(image, UNITS_OFFSET + 4*entry);
+    }
+
+    public boolean isEqualTo(OverflowPage other) {
+        return id == other.id
+                && owner == other.owner
+                && next == other.next
+                && count == other.count
+                && Arrays.equals(ids, other.ids)
+                && Arrays.equals(units, other.units);
+    }
+
+    @Override
+    public String toString() {
+        return "OverflowPage{" +
+                "id=" + id +
+                ", owner=" + owner +
+                ", next=" + next +
+                ", ids=" + Arrays.toString(Arrays.copyOf(ids, count)) +
+                ", units=" + Arrays.toString(Arrays.copyOf(units, count)) +
+                '}';
+    }
+}
@@ -0,0 +1,429 @@
+package files;
+
+import domain.Client;
+import domain.Product;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Execució en paral·lel dels lloguers i les devolucions del fitxer de moviments.
+ *
+ * Els moviments s'acumulen en trams de com a molt SEGMENT moviments. Els
+ * clients i productes de cada tram es llegeixen un sol cop de les bases de
+ * dades, i els moviments es reparteixen entre els fils segons el id del
+ * client: cada client el modifica un sol fil, en l'ordre del fitxer.
+ *
+ * L'estoc dels productes és compartit entre els fils. Cada moviment rep un
+ * torn del seu producte en l'ordre del fitxer, i només decideix quan li
+ * arriba el torn i amb el producte bloquejat. Així cada moviment veu el
+ * client i el producte que hauria vist executant-los un darrere l'altre.
+ * Un moviment només espera moviments anteriors del fitxer, per tant el fil
+ * del moviment pendent més antic sempre pot avançar.
+ *
+ * Cada fil prepara la línia de la bitàcora i les còpies del client i el
+ * producte que cal desar. En acabar el tram, finish les escriu a la
+ * bitàcora i a les bases de dades en l'ordre del fitxer, de manera que els
+ * fitxers queden igual que amb l'execució seqüencial. Només s'hi poden
+ * afegir moviments amb un client i un producte vàlids; qualsevol altre
+ * moviment s'ha de processar després de cridar finish.
+ */
+public class ParallelRentals implements AutoCloseable {
+    public static final int SEGMENT = 16 * 1024;
+    // amb un sol processador no té sentit esperar el torn sense bloquejar-se
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 2000 : 0;
+
+    private final ClientFile clients;
+    private final ProductFile products;
+    private final LogFile logFile;
+    private final ExecutorService executor;
+    private final Map<Long, ClientState> clientStates = new HashMap<>();
+    private final Map<Long, ProductState> productStates = new HashMap<>();
+    private volatile boolean aborted;
+    // moviments del tram
+    private int size;
+    private final boolean[] rents = new boolean[SEGMENT];
+    private final ClientState[] clientOf = new ClientState[SEGMENT];
+    private final ProductState[] productOf = new ProductState[SEGMENT];
+    private final int[] turns = new int[SEGMENT];
+    private final int[][] shards;
+    private final int[] shardSizes;
+    // resultats de cada moviment
+    private final String[] lines = new String[SEGMENT];
+    private final Client[] writtenClients = new Client[SEGMENT];
+    private final Product[] writtenProducts = new Product[SEGMENT];
+    // bitàcora a memòria de cada fil
+    private final StringWriter[] buffers;
+    private final LogFile[] logs;
+
+    /**
+     * constructor per a executar els lloguers i les devolucions amb el nombre de fils indicat
+     * @param threads
+     * @param clients
+     * @param products
+     * @param logFile
+     * @throws IllegalArgumentException si threads és menor que 1
+     */
+    public ParallelRentals(int threads, ClientFile clients, ProductFile products, LogFile logFile) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.clients = clients;
+        this.products = products;
+        this.logFile = logFile;
+        this.shards = new int[threads][SEGMENT];
+        this.shardSizes = new int[threads];
+        this.buffers = new StringWriter[threads];
+        this.logs = new LogFile[threads];
+        for (int i = 0; i < threads; i++) {
+            buffers[i] = new StringWriter();
+            logs[i] = new LogFile(buffers[i]);
+        }
+        int[] created = new int[1];
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "prodrent-rentals-" + created[0]++);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * mètode per a saber si el tram és ple i cal cridar finish abans d'afegir-hi més moviments
+     * @return cert si és ple
+     */
+    public boolean isFull() {
+        return size == SEGMENT;
+    }
+
+    /**
+     * mètode per a saber si hi ha moviments al tram pendents de finish
+     * @return cert si no n'hi ha cap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * mètode per a afegir un lloguer o una devolució al tram
+     * el client i el producte es llegeixen la primera vegada que surten al tram
+     * @param operation ALQUILAR o DEVOLVER
+     * @param idClient id vàlid
+     * @param idProduct id vàlid
+     * @throws IOException
+     * @throws IllegalStateException si el tram és ple
+     */
+    public void add(Operation operation, long idClient, long idProduct) throws IOException {
+        if (isFull()) {
+            throw new IllegalStateException("The segment is full");
+        }
+        if (operation != Operation.ALQUILAR && operation != Operation.DEVOLVER) {
+            throw new IllegalArgumentException("Not a rental or a return: " + operation);
+        }
+        ClientState client = clientStates.get(idClient);
+        if (client == null) {
+            client = new ClientState(idClient, shardOf(idClient));
+            clientStates.put(idClient, client);
+        }
+        ProductState product = productStates.get(idProduct);
+        if (product == null) {
+            product = new ProductState(idProduct);
+            productStates.put(idProduct, product);
+        }
+        int movement = size++;
+        rents[movement] = operation == Operation.ALQUILAR;
+        clientOf[movement] = client;
+        productOf[movement] = product;
+        turns[movement] = product.turns++;
+        shards[client.shard][shardSizes[client.shard]++] = movement;
+    }
+
+    private int shardOf(long idClient) {
+        return (int) Math.floorMod(idClient, (long) shards.length);
+    }
+
+    /**
+     * mètode per a executar els moviments del tram i escriure'n els resultats en l'ordre del fitxer
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        try {
+            execute();
+            for (int i = 0; i < size; i++) {
+                apply(i);
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    private void execute() throws IOException {
+        aborted = false;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shardSizes[shard] > 0) {
+                int current = shard;
+                futures.add(executor.submit(() -> {
+                    runShard(current);
+                    return null;
+                }));
+            }
+        }
+        // s'esperen tots els fils, encara que un falli, abans de buidar el tram
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                abort();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rentals");
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Parallel rental failed", failure);
+        }
+    }
+
+    /**
+     * mètode per a executar, en l'ordre del fitxer, els moviments d'un dels fils
+     * @param shard
+     * @throws IOException
+     */
+    private void runShard(int shard) throws IOException {
+        LogFile log = logs[shard];
+        StringWriter buffer = buffers[shard];
+        try {
+            for (int k = 0; k < shardSizes[shard]; k++) {
+                int movement = shards[shard][k];
+                if (rents[movement]) {
+                    rent(movement, log);
+                } else {
+                    giveBack(movement, log);
+                }
+                log.flush();
+                lines[movement] = buffer.toString();
+                buffer.getBuffer().setLength(0);
+            }
+        } catch (IOException | RuntimeException ex) {
+            abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * mètode per a decidir un lloguer amb les mateixes comprovacions i en el mateix ordre que ProdRent
+     * @param movement
+     * @param log
+     * @throws IOException
+     */
+    private void rent(int movement, LogFile log) throws IOException {
+        Client client = clientOf[movement].client;
+        ProductState state = productOf[movement];
+        long idProduct = state.id;
+        boolean rented = false;
+        Product seen;
+        spinForTurn(state, turns[movement]);
+        synchronized (state) {
+            awaitTurn(state, turns[movement]);
+            try {
+                Product product = state.product;
+                if (product.getStock() != 0 && client.getBalance() >= product.getPrice()
+                        && client.canAddProduct(idProduct)) {
+                    client.rentProduct(idProduct);
+                    client.subBalance(product.getPrice());
+                    product.decrementStock();
+                    rented = true;
+                }
+                seen = copy(product);
+            } finally {
+                state.next++;
+                state.notifyAll();
+            }
+        }
+        if (rented) {
+            Client written = client.copy();
+            writtenClients[movement] = written;
+            writtenProducts[movement] = seen;
+            log.okRent(written, seen);
+        } else if (seen.getStock() == 0) {
+            log.errorCannotRentProductWithNoStock(seen);
+        } else if (client.getBalance() < seen.getPrice()) {
+            log.errorClientHasNotEnoughFundsToRentProduct(client, seen);
+        } else {
+            log.errorClientCannotAddProduct(client, seen);
+        }
+    }
+
+    /**
+     * mètode per a decidir una devolució amb les mateixes comprovacions que ProdRent
+     * @param movement
+     * @param log
+     * @throws IOException
+     */
+    private void giveBack(int movement, LogFile log) throws IOException {
+        Client client = clientOf[movement].client;
+        ProductState state = productOf[movement];
+        long idProduct = state.id;
+        Product seen = null;
+        spinForTurn(state, turns[movement]);
+        synchronized (state) {
+            awaitTurn(state, turns[movement]);
+            try {
+                if (client.hasProduct(idProduct)) {
+                    client.returnProduct(idProduct);
+                    state.product.incrementStock();
+                    seen = copy(state.product);
+                }
+            } finally {
+                state.next++;
+                state.notifyAll();
+            }
+        }
+        if (seen != null) {
+            Client written = client.copy();
+            writtenClients[movement] = written;
+            writtenProducts[movement] = seen;
+            log.okRent(written, seen);
+        } else {
+            log.errorClientHasNotProduct(client, idProduct);
+        }
+    }
+
+    /**
+     * mètode per a esperar una estona el torn sense bloquejar el producte, que sol arribar aviat
+     * perquè els fils avancen pel fitxer gairebé al mateix pas
+     * @param state
+     * @param turn
+     */
+    private static void spinForTurn(ProductState state, int turn) {
+        for (int i = 0; i < SPINS && state.next != turn; i++) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * mètode per a esperar el torn d'un moviment sobre el producte, amb el producte bloquejat
+     * @param state
+     * @param turn
+     * @throws InterruptedIOException si s'interromp o un altre fil ha fallat
+     */
+    private void awaitTurn(ProductState state, int turn) throws InterruptedIOException {
+        while (state.next != turn) {
+            if (aborted) {
+                throw new InterruptedIOException("Another rental thread failed");
+            }
+            try {
+                state.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for product " + state.id);
+            }
+        }
+    }
+
+    /**
+     * mètode per a despertar tots els fils que esperen un torn quan un fil falla
+     */
+    private void abort() {
+        aborted = true;
+        for (ProductState state : productStates.values()) {
+            synchronized (state) {
+                state.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * mètode per a escriure el resultat d'un moviment a les bases de dades i a la bitàcora
+     * les còpies del client reben la pàgina de desbordament que va deixar l'escriptura anterior del mateix client
+     * @param movement
+     * @throws IOException
+     */
+    private void apply(int movement) throws IOException {
+        Client written = writtenClients[movement];
+        if (written != null) {
+            ClientState state = clientOf[movement];
+            written.setOverflowPage(state.overflowPage);
+            clients.write(written);
+            state.overflowPage = written.getOverflowPage();
+            products.write(writtenProducts[movement]);
+        }
+        logFile.append(lines[movement]);
+    }
+
+    private void clear() {
+        for (int i = 0; i < size; i++) {
+            clientOf[i] = null;
+            productOf[i] = null;
+            lines[i] = null;
+            writtenClients[i] = null;
+            writtenProducts[i] = null;
+        }
+        size = 0;
+        Arrays.fill(shardSizes, 0);
+        clientStates.clear();
+        productStates.clear();
+    }
+
+    private static Product copy(Product product) {
+        return new Product(product.getId(), product.getDescription(), product.getPrice(), product.getStock());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Client del tram. Els objectes que retorna la base de dades poden ser els de la memòria
+     * cau, per tant se'n fa una còpia.
+     */
+    private class ClientState {
+        private final int shard;
+        private Client client;
+        // pàgina de desbordament de l'última escriptura, només la fa servir finish
+        private long overflowPage;
+
+        private ClientState(long id, int shard) throws IOException {
+            this.shard = shard;
+            Client stored = clients.read(id);
+            client = stored.copy();
+            overflowPage = stored.getOverflowPage();
+        }
+    }
+
+    /**
+     * Producte del tram, amb el comptador de torns que reparteix add i el torn que toca.
+     */
+    private class ProductState {
+        private final long id;
+        private Product product;
+        private int turns;
+        private volatile int next;
+
+        private ProductState(long id) throws IOException {
+            this.id = id;
+            product = copy(products.read(id));
+        }
+    }
+}
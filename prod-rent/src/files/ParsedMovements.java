@@ -0,0 +1,304 @@
+package files;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Bloc de línies de moviments ja llegides i convertides, que es pot tornar
+ * a llegir com un MovementSource.
+ *
+ * Cada línia guarda l'operació i els camps que en llegeix ProdRent, segons
+ * Operation.getFields, fins que se n'acaben o un no és un número vàlid. En
+ * tornar-la a llegir es donen els mateixos valors i les mateixes excepcions
+ * que l'origen. Les línies d'una operació que Operation no coneix guarden
+ * tots els camps com a text, i cada camp es converteix quan es llegeix, com
+ * a MovementReader. El bloc es reutilitza: fill el torna a omplir.
+ */
+public class ParsedMovements implements MovementSource {
+    private final int capacity;
+    private final Operation[] operations;
+    // nom de l'operació, o null si la línia no té cap camp
+    private final String[] names;
+    private final int[] counts;
+    private final boolean[] malformed;
+    private final long[] numbers;
+    private final String[] texts;
+    // camps de les línies d'operacions desconegudes
+    private final String[][] rawFields;
+    // posició de l'origen després de cada línia
+    private final long[] positions;
+    private long start;
+    private int size;
+    // línia actual
+    private int line = -1;
+    private boolean operationPending;
+    private boolean malformedPending;
+    private int field;
+
+    /**
+     * constructor per a un bloc de com a molt capacity línies
+     * @param capacity
+     */
+    public ParsedMovements(int capacity) {
+        this.capacity = capacity;
+        this.operations = new Operation[capacity];
+        this.names = new String[capacity];
+        this.counts = new int[capacity];
+        this.malformed = new boolean[capacity];
+        this.numbers = new long[capacity * Operation.MAX_FIELDS];
+        this.texts = new String[capacity * Operation.MAX_FIELDS];
+        this.rawFields = new String[capacity][];
+        this.positions = new long[capacity];
+    }
+
+    /**
+     * mètode per a omplir el bloc amb les línies següents de l'origen
+     * @param source
+     * @return fals si l'origen ja no tenia cap línia
+     * @throws IOException
+     */
+    public boolean fill(MovementSource source) throws IOException {
+        size = 0;
+        line = -1;
+        start = source.getPosition();
+        while (size < capacity && source.nextLine()) {
+            parse(source, size);
+            positions[size++] = source.getPosition();
+        }
+        return size > 0;
+    }
+
+    /**
+     * mètode per a obtenir quantes línies té el bloc
+     * @return línies
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * mètode per a llegir la línia on és l'origen com la llegiria ProdRent
+     * @param source
+     * @param i posició de la línia al bloc
+     */
+    private void parse(MovementSource source, int i) {
+        counts[i] = 0;
+        malformed[i] = false;
+        if (!source.hasMoreFields()) {
+            operations[i] = null;
+            names[i] = null;
+            return;
+        }
+        Operation operation = source.nextOperation();
+        operations[i] = operation;
+        names[i] = operation != null ? operation.name() : source.getOperationName();
+        if (operation == null) {
+            parseRaw(source, i);
+            return;
+        }
+        String fields = operation.getFields();
+        int base = i * Operation.MAX_FIELDS;
+        int count = 0;
+        while (count < fields.length() && source.hasMoreFields()) {
+            try {
+                switch (fields.charAt(count)) {
+                    case 's': texts[base + count] = source.nextString(); break;
+                    case 'i': numbers[base + count] = source.nextInt(); break;
+                    case 't': numbers[base + count] = source.nextTrimmedInt(); break;
+                    default: numbers[base + count] = source.nextLong();
+                }
+            } catch (NumberFormatException ex) {
+                malformed[i] = true;
+                break;
+            }
+            count++;
+        }
+        counts[i] = count;
+    }
+
+    /**
+     * mètode per a guardar com a text tots els camps d'una línia amb una operació desconeguda
+     * @param source
+     * @param i posició de la línia al bloc
+     */
+    private void parseRaw(MovementSource source, int i) {
+        String[] raw = rawFields[i] != null ? rawFields[i] : new String[Operation.MAX_FIELDS];
+        int count = 0;
+        while (source.hasMoreFields()) {
+            if (count == raw.length) {
+                raw = Arrays.copyOf(raw, 2 * count);
+            }
+            raw[count++] = source.nextString();
+        }
+        rawFields[i] = raw;
+        counts[i] = count;
+    }
+
+    /**
+     * mètode per a saber si la línia indicada no té cap camp
+     * @param i
+     * @return cert si és buida
+     */
+    boolean isBlank(int i) {
+        return names[i] == null;
+    }
+
+    /**
+     * mètode per a obtenir l'operació de la línia indicada
+     * @param i
+     * @return operació, o null si la línia és buida o l'operació desconeguda
+     */
+    Operation operationAt(int i) {
+        return operations[i];
+    }
+
+    /**
+     * mètode per a obtenir el nom de l'operació de la línia indicada
+     * @param i
+     * @return nom
+     */
+    String nameAt(int i) {
+        return names[i];
+    }
+
+    /**
+     * mètode per a obtenir quants camps de l'operació s'han pogut llegir a la línia indicada
+     * si l'operació és desconeguda, són tots els de la línia
+     * @param i
+     * @return camps
+     */
+    int countAt(int i) {
+        return counts[i];
+    }
+
+    /**
+     * mètode per a saber si després dels camps llegits n'hi ha un que no és un número vàlid
+     * @param i
+     * @return cert si n'hi ha
+     */
+    boolean isMalformed(int i) {
+        return malformed[i];
+    }
+
+    /**
+     * mètode per a obtenir el valor d'un camp numèric de la línia indicada
+     * @param i
+     * @param field
+     * @return valor
+     */
+    long numberAt(int i, int field) {
+        return numbers[i * Operation.MAX_FIELDS + field];
+    }
+
+    /**
+     * mètode per a obtenir el valor d'un camp de text de la línia indicada
+     * @param i
+     * @param field
+     * @return text
+     */
+    String textAt(int i, int field) {
+        return texts[i * Operation.MAX_FIELDS + field];
+    }
+
+    /**
+     * mètode per a obtenir el text d'un camp de la línia indicada, que té una operació desconeguda
+     * @param i
+     * @param field
+     * @return text
+     */
+    String rawFieldAt(int i, int field) {
+        return rawFields[i][field];
+    }
+
+    @Override
+    public boolean nextLine() {
+        if (line + 1 >= size) {
+            return false;
+        }
+        line++;
+        operationPending = names[line] != null;
+        malformedPending = malformed[line];
+        field = 0;
+        return true;
+    }
+
+    @Override
+    public boolean hasMoreFields() {
+        return operationPending || field < counts[line] || malformedPending;
+    }
+
+    @Override
+    public Operation nextOperation() {
+        if (!operationPending) {
+            throw new NoSuchElementException();
+        }
+        operationPending = false;
+        return operations[line];
+    }
+
+    @Override
+    public String getOperationName() {
+        return names[line];
+    }
+
+    @Override
+    public String nextString() {
+        int i = nextField('s');
+        return operations[line] != null ? texts[i] : raw(i);
+    }
+
+    @Override
+    public long nextLong() {
+        int i = nextField('l');
+        return operations[line] != null ? numbers[i] : Long.parseLong(raw(i));
+    }
+
+    @Override
+    public int nextInt() {
+        int i = nextField('i');
+        return operations[line] != null ? (int) numbers[i] : Integer.parseInt(raw(i));
+    }
+
+    @Override
+    public int nextTrimmedInt() {
+        int i = nextField('t');
+        return operations[line] != null ? (int) numbers[i] : Integer.parseInt(raw(i).trim());
+    }
+
+    private String raw(int i) {
+        return rawFields[line][i - line * Operation.MAX_FIELDS];
+    }
+
+    /**
+     * mètode per a passar al camp següent de la línia actual
+     * @param type tipus amb què es llegeix, que ha de ser el tipus de Operation.getFields si l'operació és coneguda
+     * @return posició del camp als arrays de valors, o line * MAX_FIELDS més el número del camp si és desconeguda
+     * @throws NumberFormatException si el camp de l'origen no era un número vàlid
+     * @throws NoSuchElementException si no queden camps
+     */
+    private int nextField(char type) {
+        if (operationPending || field == counts[line]) {
+            if (!operationPending && malformedPending) {
+                malformedPending = false;
+                throw new NumberFormatException("Malformed number in movement");
+            }
+            throw new NoSuchElementException();
+        }
+        Operation operation = operations[line];
+        if (operation != null && operation.getFields().charAt(field) != type) {
+            throw new IllegalStateException("Field " + field + " of " + operation + " was parsed as '"
+                    + operation.getFields().charAt(field) + "', not '" + type + "'");
+        }
+        return line * Operation.MAX_FIELDS + field++;
+    }
+
+    @Override
+    public long getPosition() {
+        return line < 0 ? start : positions[line];
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,105 @@
+package files;
+
+import domain.Product;
+import utils.StringCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formats dels registres de productes.
+ *
+ * La versió FileHeader.VERSION guarda els textos amb dos bytes per caràcter
+ * i la versió FileHeader.COMPACT_VERSION, a la qual els converteix
+ * FormatConverter, els guarda en Latin-1 o UTF-8 després dels camps
+ * numèrics.
+ */
+public class ProductCodec implements RecordCodec<Product> {
+    private final short version;
+    private StringCache strings;
+
+    /**
+     * constructor per a crear el format compacte
+     */
+    public ProductCodec() {
+        this(FileHeader.COMPACT_VERSION);
+    }
+
+    /**
+     * constructor per a crear el format de la versió indicada
+     * @param version
+     * @throws IllegalArgumentException si la versió no existeix
+     */
+    public ProductCodec(short version) {
+        if (version != FileHeader.VERSION && version != FileHeader.COMPACT_VERSION) {
+            throw new IllegalArgumentException("Unsupported product format version: " + version);
+        }
+        this.version = version;
+    }
+
+    /**
+     * mètode per a compartir els textos llegits a través d'una memòria cau
+     * @param strings memòria cau de textos o null per a desactivar-la
+     */
+    public void setStringCache(StringCache strings) {
+        this.strings = strings;
+    }
+
+    public StringCache getStringCache() {
+        return strings;
+    }
+
+    @Override
+    public String name() {
+        return "product";
+    }
+
+    @Override
+    public int size() {
+        return version == FileHeader.COMPACT_VERSION ? Product.COMPACT_SIZE : Product.SIZE;
+    }
+
+    @Override
+    public short version() {
+        return version;
+    }
+
+    @Override
+    public RecordCodec<Product> forVersion(short version) throws IOException {
+        if (version == this.version) {
+            return this;
+        }
+        if (version != FileHeader.VERSION && version != FileHeader.COMPACT_VERSION) {
+            throw new IOException("Unsupported product format version: " + version);
+        }
+        ProductCodec codec = new ProductCodec(version);
+        codec.setStringCache(strings);
+        return codec;
+    }
+
+    @Override
+    public long id(Product product) {
+        return product.getId();
+    }
+
+    @Override
+    public boolean fits(Product product) {
+        return version != FileHeader.COMPACT_VERSION || product.fitsCompact();
+    }
+
+    @Override
+    public void encode(Product product, ByteBuffer buffer) {
+        if (version == FileHeader.COMPACT_VERSION) {
+            product.encodeCompact(buffer);
+        } else {
+            product.encode(buffer);
+        }
+    }
+
+    @Override
+    public Product decode(ByteBuffer buffer) {
+        return version == FileHeader.COMPACT_VERSION
+                ? Product.decodeCompact(buffer, strings)
+                : Product.decode(buffer, strings);
+    }
+}
@@ -1,12 +1,17 @@
 package files;
 
 import domain.Product;
+import domain.ProductView;
+import utils.StringCache;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
-public class ProductFile {
-    private final RandomAccessFile products;
+public class ProductFile extends FixedRecordFile<Product> {
+    private ProductTable columns;
+    private DescriptionIndex descriptionIndex;
 
     /**
      * constructor per a crear un fitxer de productes amb el nom indicat
@@ -14,78 +19,210 @@ public class ProductFile {
      * @throws IOException
      */
     public ProductFile(String fileName) throws IOException {
-        this.products = new RandomAccessFile(fileName, "rw"); //read/write mode
+        this(fileName, StorageMode.RANDOM_ACCESS);
+    }
+
+    /**
+     * constructor per a crear un fitxer de productes amb el tipus d'emmagatzematge indicat
+     * si el fitxer no existeix es crea amb el format FileHeader.VERSION
+     * @param fileName
+     * @param mode
+     * @throws IOException
+     */
+    public ProductFile(String fileName, StorageMode mode) throws IOException {
+        this(fileName, mode, FileHeader.VERSION);
+    }
+
+    /**
+     * constructor per a crear un fitxer amb el tipus d'emmagatzematge indicat
+     * si el fitxer no existeix es crea amb la versió de format indicada; si existeix, es llegeix amb la seva
+     * @param fileName
+     * @param mode
+     * @param version
+     * @throws IOException
+     */
+    public ProductFile(String fileName, StorageMode mode, short version) throws IOException {
+        this(fileName, mode, version, false);
+    }
+
+    /**
+     * constructor per a crear un fitxer indicant també si els registres porten suma de verificació
+     * si el fitxer ja existeix es llegeix amb la seva versió i les seves opcions
+     * @param fileName
+     * @param mode
+     * @param version
+     * @param checksums cert si cada registre porta un CRC32C que es comprova en llegir-lo
+     * @throws IOException
+     */
+    public ProductFile(String fileName, StorageMode mode, short version, boolean checksums) throws IOException {
+        super(fileName, mode, new ProductCodec(version), checksums);
+    }
+
+    /**
+     * mètode per a compartir les descripcions dels productes llegits a través d'una memòria cau de textos
+     * @param capacity nombre de textos que es poden guardar
+     */
+    public void enableStringCache(int capacity) {
+        ((ProductCodec) getCodec()).setStringCache(new StringCache(capacity));
+    }
+
+    /**
+     * mètode per a obtenir la memòria cau de textos
+     * @return cache o null si no està activada
+     */
+    public StringCache getStringCache() {
+        return ((ProductCodec) getCodec()).getStringCache();
+    }
+
+    /**
+     * mètode per a llegir un producte a la vista indicada sense construir el Product
+     * @param id
+     * @param view vista que es reutilitza per a cada lectura
+     * @throws IOException id no vàlid
+     */
+    public void read(long id, ProductView view) throws IOException {
+        view.load(readImage(id), getCodec().version() == FileHeader.COMPACT_VERSION, getStringCache());
     }
 
     /**
      * mètode per a escriure un producte al fitxer
-     * col·loca el punter a la posició corresponent i escriu les dades del producte
+     * si la representació en columnes està activa també s'actualitza
+     * si l'índex de descripcions està actiu i el producte és nou, s'hi afegeix
      * @param product
      * @throws IOException
      */
+    @Override
     public void write(Product product) throws IOException {
-        long pos = (product.getId() - 1) * Product.SIZE;
-        products.seek(pos);
-        products.write(product.toBytes());
+        boolean isNew = !isValid(product.getId());
+        super.write(product);
+        if (columns != null) {
+            columns.update(product);
+        }
+        if (descriptionIndex != null && isNew) {
+            descriptionIndex.insert(product);
+        }
     }
 
     /**
-     * mètode per a llegir un producte del fitxer donat el seu identificador
-     * comprova que l'identificador sigui vàlid i retorna el producte corresponent
+     * mètode per a escriure molts productes de cop, amb escriptures seqüencials grans
+     * les columnes i l'índex de descripcions s'actualitzen com amb write
+     * @param products
+     * @throws IOException
+     */
+    @Override
+    public void writeAll(Collection<? extends Product> products) throws IOException {
+        List<Product> created = new ArrayList<>();
+        for (Product product : products) {
+            if (!isValid(product.getId())) {
+                created.add(product);
+            }
+        }
+        super.writeAll(products);
+        if (columns != null) {
+            for (Product product : products) {
+                columns.update(product);
+            }
+        }
+        if (descriptionIndex != null) {
+            for (Product product : created) {
+                descriptionIndex.insert(product);
+            }
+        }
+    }
+
+    /**
+     * mètode per a esborrar un producte del fitxer, de les columnes i de l'índex de descripcions
      * @param id
-     * @return product
-     * @throws IOException si id no és vàlid
+     * @throws IOException id no vàlid
      */
-    public Product read(long id) throws IOException {
-        long pos = (id - 1) * Product.SIZE;
-        if(!isValid(id)){
-            throw new IOException("Invalid product ID: " + id);
+    @Override
+    public void delete(long id) throws IOException {
+        Product product = read(id);
+        super.delete(id);
+        if (columns != null) {
+            columns.remove(id);
+        }
+        if (descriptionIndex != null) {
+            descriptionIndex.remove(product);
         }
-        products.seek(pos);
-        byte[] buffer = new byte[Product.SIZE];
-        products.readFully(buffer);
-        return Product.fromBytes(buffer);
     }
 
     /**
-     * mètode per a obtenir el següent identificador disponible
-     * calcula id basant-se en la longitud actual del fitxer
-     * @return next id
+     * mètode per a activar la representació en columnes del catàleg
+     * es carrega a partir del fitxer i a partir d'aquí es manté al dia a cada escriptura
      * @throws IOException
      */
-    public long nextId() throws IOException {
-        return products.length() / Product.SIZE + 1;
+    public void enableColumns() throws IOException {
+        this.columns = ProductTable.load(this);
     }
 
     /**
-     * mètode per a comprovar si un identificador és vàlid
-     * verifica que estigui dins del rang de registres existents
-     * @param id
-     * @return cert si és vàlid, fals altrament
-     * @throws IOException
+     * mètode per a obtenir la representació en columnes del catàleg
+     * @return taula o null si no està activada
      */
-    public boolean isValid(long id) throws IOException {
-        if(id < 1){
-            return false;
-        }
-        long totalRecords = products.length() / Product.SIZE;
-        return id <= totalRecords;
+    public ProductTable getColumns() {
+        return columns;
     }
 
     /**
-     * mètode per a buidar el contingut del fitxer
-     * estableix la longitud del fitxer a zero
+     * mètode per a activar l'índex persistent de descripcions
+     * si l'índex no correspon al fitxer de productes es torna a construir
+     * @param fileName nom del fitxer de l'índex
+     * @param mode
      * @throws IOException
      */
-    public void reset() throws IOException {
-        products.setLength(0);
+    public void enableDescriptionIndex(String fileName, StorageMode mode) throws IOException {
+        descriptionIndex = new DescriptionIndex(fileName, mode);
+        if (descriptionIndex.size() != count()) {
+            descriptionIndex.rebuild(this);
+        }
     }
 
     /**
-     * mètode per a tancar el fitxer
+     * mètode per a buscar un producte per la seva descripció, sense distingir majúscules
+     * si l'índex no està actiu es recorre tot el fitxer
+     * @param description
+     * @return el producte o null si no n'hi ha cap amb aquesta descripció
      * @throws IOException
      */
+    public Product findByDescription(String description) throws IOException {
+        if (descriptionIndex != null) {
+            return descriptionIndex.find(description, this);
+        }
+        String normalized = DescriptionIndex.normalize(description);
+        Product[] found = new Product[1];
+        forEach(product -> {
+            if (found[0] == null && DescriptionIndex.normalize(product.getDescription()).equals(normalized)) {
+                found[0] = product;
+            }
+        });
+        return found[0];
+    }
+
+    @Override
+    public void flush() throws IOException {
+        super.flush();
+        if (descriptionIndex != null) {
+            descriptionIndex.save();
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        if (columns != null) {
+            columns.clear();
+        }
+        if (descriptionIndex != null) {
+            descriptionIndex.reset();
+        }
+    }
+
+    @Override
     public void close() throws IOException {
-        products.close();
+        super.close();
+        if (descriptionIndex != null) {
+            descriptionIndex.close();
+        }
     }
 }
@@ -0,0 +1,178 @@
+package files;
+
+import domain.Product;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Representació en columnes del catàleg de productes.
+ *
+ * Els identificadors, preus i estocs es guarden en arrays primitius
+ * indexats per id-1 i les descripcions en una columna a part, de manera
+ * que les consultes d'agregació i filtre recorren arrays sense crear
+ * cap objecte.
+ */
+public class ProductTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int[] stocks = new int[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+    private int size;
+    private int count;
+
+    /**
+     * mètode per a construir la taula a partir de tots els productes del fitxer
+     * @param products
+     * @return taula
+     * @throws IOException
+     */
+    public static ProductTable load(FixedRecordFile<Product> products) throws IOException {
+        ProductTable table = new ProductTable();
+        products.forEach(table::update);
+        return table;
+    }
+
+    /**
+     * mètode per a afegir o actualitzar la fila d'un producte
+     * @param product
+     */
+    public void update(Product product) {
+        int row = (int) (product.getId() - 1);
+        ensureCapacity(row + 1);
+        if (row >= size || ids[row] == 0) {
+            count++;
+        }
+        ids[row] = product.getId();
+        prices[row] = product.getPrice();
+        stocks[row] = product.getStock();
+        String description = product.getDescription();
+        if (description.length() > Product.DESCRIPTION_LIMIT) {
+            description = description.substring(0, Product.DESCRIPTION_LIMIT);
+        }
+        descriptions[row] = description;
+        size = Math.max(size, row + 1);
+    }
+
+    /**
+     * mètode per a buidar la fila d'un producte esborrat
+     * la fila queda amb identificador 0 i no compta en cap consulta
+     * @param id
+     */
+    public void remove(long id) {
+        int row = (int) (id - 1);
+        if (row < 0 || row >= size || ids[row] == 0) {
+            return;
+        }
+        ids[row] = 0;
+        prices[row] = 0;
+        stocks[row] = 0;
+        descriptions[row] = null;
+        count--;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        stocks = Arrays.copyOf(stocks, newCapacity);
+        descriptions = Arrays.copyOf(descriptions, newCapacity);
+    }
+
+    /**
+     * mètode per a buidar la taula
+     */
+    public void clear() {
+        Arrays.fill(ids, 0, size, 0);
+        Arrays.fill(descriptions, 0, size, null);
+        size = 0;
+        count = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * mètode per a obtenir el nombre de productes, sense comptar les files esborrades
+     * @return count
+     */
+    public int count() {
+        return count;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public int getPrice(int row) {
+        return prices[row];
+    }
+
+    public int getStock(int row) {
+        return stocks[row];
+    }
+
+    public String getDescription(int row) {
+        return descriptions[row];
+    }
+
+    /**
+     * mètode per a obtenir el total d'unitats en estoc
+     * @return unitats
+     */
+    public long totalStock() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += stocks[row];
+        }
+        return total;
+    }
+
+    /**
+     * mètode per a obtenir el valor del catàleg (suma de preu per estoc)
+     * @return valor
+     */
+    public long catalogValue() {
+        long value = 0;
+        for (int row = 0; row < size; row++) {
+            value += (long) prices[row] * stocks[row];
+        }
+        return value;
+    }
+
+    /**
+     * mètode per a comptar els productes amb menys unitats en estoc que el límit indicat
+     * @param threshold
+     * @return nombre de productes
+     */
+    public int countBelowStock(int threshold) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (ids[row] != 0 && stocks[row] < threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * mètode per a obtenir els identificadors dels productes sense estoc
+     * @return ids en ordre creixent
+     */
+    public long[] outOfStockIds() {
+        long[] result = new long[countBelowStock(1)];
+        int j = 0;
+        for (int row = 0; row < size; row++) {
+            if (ids[row] != 0 && stocks[row] < 1) {
+                result[j++] = ids[row];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package files;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Emmagatzematge sobre un RandomAccessFile: cada accés és un seek
+ * seguit d'un read o write.
+ */
+public class RandomAccessStorage implements Storage {
+    private final RandomAccessFile file;
+
+    public RandomAccessStorage(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "rw");
+    }
+
+    @Override
+    public long length() throws IOException {
+        return file.length();
+    }
+
+    @Override
+    public void read(long pos, byte[] buffer, int offset, int length) throws IOException {
+        file.seek(pos);
+        file.readFully(buffer, offset, length);
+    }
+
+    @Override
+    public void write(long pos, byte[] buffer, int offset, int length) throws IOException {
+        file.seek(pos);
+        file.write(buffer, offset, length);
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        file.setLength(length);
+    }
+
+    @Override
+    public void force() throws IOException {
+        file.getChannel().force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,151 @@
+package files;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memòria cau de registres amb capacitat limitada i política LRU.
+ *
+ * Les escriptures es marquen com a brutes i només arriben al fitxer quan
+ * el registre és expulsat de la memòria cau o quan es fa flush().
+ *
+ * @param <T> tipus de registre
+ */
+public class RecordCache<T> {
+
+    private static class Entry<T> {
+        private T record;
+        private boolean dirty;
+
+        private Entry(T record, boolean dirty) {
+            this.record = record;
+            this.dirty = dirty;
+        }
+    }
+
+    private final int capacity;
+    private final RecordWriter<T> writeBack;
+    private final LinkedHashMap<Long, Entry<T>> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * constructor per a crear una memòria cau amb la capacitat indicada
+     * @param capacity nombre màxim de registres
+     * @param writeBack operació per a escriure els registres bruts
+     */
+    public RecordCache(int capacity, RecordWriter<T> writeBack) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.writeBack = writeBack;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * mètode per a obtenir un registre de la memòria cau
+     * @param id
+     * @return el registre o null si no hi és
+     */
+    public T get(long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.record;
+    }
+
+    /**
+     * mètode per a afegir o substituir un registre a la memòria cau
+     * si se supera la capacitat s'expulsa el registre menys usat recentment,
+     * escrivint-lo abans al fitxer si està brut
+     * @param id
+     * @param record
+     * @param dirty cert si el registre s'ha d'escriure al fitxer
+     * @throws IOException
+     */
+    public void put(long id, T record, boolean dirty) throws IOException {
+        Entry<T> entry = entries.get(id);
+        if (entry != null) {
+            entry.record = record;
+            entry.dirty = entry.dirty || dirty;
+            return;
+        }
+        entries.put(id, new Entry<>(record, dirty));
+        if (entries.size() > capacity) {
+            Iterator<Entry<T>> eldest = entries.values().iterator();
+            Entry<T> evicted = eldest.next();
+            eldest.remove();
+            evictions++;
+            if (evicted.dirty) {
+                writeBack.write(evicted.record);
+            }
+        }
+    }
+
+    /**
+     * mètode per a escriure al fitxer tots els registres bruts, en ordre d'identificador
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        List<Long> dirtyIds = new ArrayList<>();
+        for (Map.Entry<Long, Entry<T>> entry : entries.entrySet()) {
+            if (entry.getValue().dirty) {
+                dirtyIds.add(entry.getKey());
+            }
+        }
+        Collections.sort(dirtyIds);
+        for (long id : dirtyIds) {
+            Entry<T> entry = entries.get(id);
+            writeBack.write(entry.record);
+            entry.dirty = false;
+        }
+    }
+
+    /**
+     * mètode per a treure un registre de la memòria cau sense escriure'l
+     * @param id
+     */
+    public void remove(long id) {
+        entries.remove(id);
+    }
+
+    /**
+     * mètode per a buidar la memòria cau sense escriure res
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordCache{" +
+                "capacity=" + capacity +
+                ", size=" + entries.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
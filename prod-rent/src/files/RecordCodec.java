@@ -0,0 +1,124 @@
+package files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Format de codificació dels registres de mida fixa d'un FixedRecordFile.
+ *
+ * Els mètodes treballen sobre la posició actual d'un buffer proporcionat
+ * per qui els crida, de manera que no cal reservar cap array per registre.
+ * Cada format té una versió, que es guarda a la capçalera dels fitxers, i
+ * en obrir un fitxer existent es fa servir el format de la seva versió.
+ *
+ * @param <T> tipus de registre
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * @return nom del tipus de registre, per als missatges d'error
+     */
+    String name();
+
+    /**
+     * @return mida en bytes de cada registre
+     */
+    int size();
+
+    /**
+     * @return versió del format, que es guarda a la capçalera dels fitxers nous
+     */
+    default short version() {
+        return FileHeader.VERSION;
+    }
+
+    /**
+     * mètode per a obtenir el format d'aquest tipus de registre amb la versió indicada
+     * s'utilitza per a llegir els fitxers creats amb una altra versió
+     * @param version
+     * @return format
+     * @throws IOException si la versió no està suportada
+     */
+    default RecordCodec<T> forVersion(short version) throws IOException {
+        if (version != version()) {
+            throw new IOException("Unsupported " + name() + " format version: " + version);
+        }
+        return this;
+    }
+
+    /**
+     * @param record
+     * @return identificador del registre, que en determina la posició dins del fitxer
+     */
+    long id(T record);
+
+    /**
+     * mètode per a saber si el registre es pot escriure en aquest format sense perdre dades
+     * els textos més llargs que el límit del tipus de registre es retallen en tots els formats
+     * @param record
+     * @return cert si decode tornaria el mateix registre
+     */
+    default boolean fits(T record) {
+        return true;
+    }
+
+    /**
+     * mètode per a escriure el registre a la posició actual del buffer, avançant size() bytes
+     * @param record
+     * @param buffer
+     */
+    void encode(T record, ByteBuffer buffer);
+
+    /**
+     * mètode per a llegir un registre de la posició actual del buffer, avançant size() bytes
+     * @param buffer
+     * @return registre
+     */
+    T decode(ByteBuffer buffer);
+
+    /**
+     * mètode per a codificar molts registres seguits en un sol buffer
+     * @param records
+     * @param direct cert per a reservar un buffer directe, fora del heap
+     * @return buffer amb els registres, preparat per a llegir-lo des del principi
+     */
+    default ByteBuffer encodeAll(Collection<? extends T> records, boolean direct) {
+        int bytes = Math.multiplyExact(records.size(), size());
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        encodeAll(records, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * mètode per a codificar molts registres seguits a partir de la posició actual del buffer
+     * @param records
+     * @param buffer ha de tenir lloc per a size() bytes per registre
+     */
+    default void encodeAll(Iterable<? extends T> records, ByteBuffer buffer) {
+        for (T record : records) {
+            encode(record, buffer);
+        }
+    }
+
+    /**
+     * mètode per a llegir tots els registres seguits que queden al buffer
+     * @param buffer els bytes que queden han de ser un múltiple de size()
+     * @return registres, en l'ordre del buffer
+     * @throws IllegalArgumentException si els bytes no corresponen a un nombre sencer de registres
+     */
+    default List<T> decodeAll(ByteBuffer buffer) {
+        if (buffer.remaining() % size() != 0) {
+            throw new IllegalArgumentException(buffer.remaining() + " bytes are not a whole number of "
+                    + name() + " records of " + size() + " bytes");
+        }
+        List<T> records = new ArrayList<>(buffer.remaining() / size());
+        while (buffer.hasRemaining()) {
+            records.add(decode(buffer));
+        }
+        return records;
+    }
+}
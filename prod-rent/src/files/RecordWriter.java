@@ -0,0 +1,12 @@
+package files;
+
+import java.io.IOException;
+
+/**
+ * Operació que escriu un registre al fitxer on pertany.
+ *
+ * @param <T> tipus de registre
+ */
+public interface RecordWriter<T> {
+    void write(T record) throws IOException;
+}
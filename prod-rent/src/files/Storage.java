@@ -0,0 +1,79 @@
+package files;
+
+import java.io.IOException;
+
+/**
+ * Emmagatzematge de bytes adreçat per posició sobre el qual treballen
+ * els fitxers de registres de mida fixa (ClientFile i ProductFile).
+ */
+public interface Storage {
+
+    /**
+     * mètode per a obtenir la longitud lògica de l'emmagatzematge
+     * @return longitud en bytes
+     * @throws IOException
+     */
+    long length() throws IOException;
+
+    /**
+     * mètode per a llegir buffer.length bytes a partir de la posició indicada
+     * @param pos
+     * @param buffer
+     * @throws IOException
+     */
+    default void read(long pos, byte[] buffer) throws IOException {
+        read(pos, buffer, 0, buffer.length);
+    }
+
+    /**
+     * mètode per a llegir length bytes a partir de la posició indicada
+     * i deixar-los al buffer a partir de offset
+     * @param pos
+     * @param buffer
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    void read(long pos, byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * mètode per a escriure el contingut del buffer a partir de la posició indicada
+     * si s'escriu més enllà del final la longitud creix
+     * @param pos
+     * @param buffer
+     * @throws IOException
+     */
+    default void write(long pos, byte[] buffer) throws IOException {
+        write(pos, buffer, 0, buffer.length);
+    }
+
+    /**
+     * mètode per a escriure length bytes del buffer, començant per offset,
+     * a partir de la posició indicada
+     * @param pos
+     * @param buffer
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    void write(long pos, byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * mètode per a canviar la longitud lògica de l'emmagatzematge
+     * @param length
+     * @throws IOException
+     */
+    void setLength(long length) throws IOException;
+
+    /**
+     * mètode per a forçar que totes les escriptures arribin al disc
+     * @throws IOException
+     */
+    void force() throws IOException;
+
+    /**
+     * mètode per a tancar l'emmagatzematge
+     * @throws IOException
+     */
+    void close() throws IOException;
+}
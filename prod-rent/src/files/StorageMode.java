@@ -0,0 +1,39 @@
+package files;
+
+import java.io.IOException;
+
+/**
+ * Tipus d'emmagatzematge que poden fer servir els fitxers de la base de dades.
+ */
+public enum StorageMode {
+    RANDOM_ACCESS,
+    MAPPED;
+
+    /**
+     * mètode per a obrir el fitxer indicat amb aquest tipus d'emmagatzematge
+     * @param fileName
+     * @return storage
+     * @throws IOException
+     */
+    public Storage open(String fileName) throws IOException {
+        if (this == MAPPED) {
+            return new MappedStorage(fileName);
+        }
+        return new RandomAccessStorage(fileName);
+    }
+
+    /**
+     * mètode per a obtenir el mode a partir del seu nom ("raf" o "mmap")
+     * @param name
+     * @return mode
+     */
+    public static StorageMode fromName(String name) {
+        if (name.equalsIgnoreCase("mmap") || name.equalsIgnoreCase("mapped")) {
+            return MAPPED;
+        }
+        if (name.equalsIgnoreCase("raf") || name.equalsIgnoreCase("random_access")) {
+            return RANDOM_ACCESS;
+        }
+        throw new IllegalArgumentException("Unknown storage mode: " + name);
+    }
+}
@@ -0,0 +1,89 @@
+package files;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lot de registres modificats pendents d'escriure.
+ *
+ * Cada registre apareix un sol cop al lot encara que s'hagi modificat
+ * diverses vegades, i en confirmar el lot s'escriuen en ordre creixent
+ * d'identificador, que és l'ordre de la seva posició dins del fitxer.
+ *
+ * @param <T> tipus de registre
+ */
+public class WriteBatch<T> {
+    private final TreeMap<Long, T> pending = new TreeMap<>();
+    private final RecordWriter<T> writer;
+
+    /**
+     * constructor per a crear un lot que escriu els registres amb l'operació indicada
+     * @param writer
+     */
+    public WriteBatch(RecordWriter<T> writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * mètode per a afegir un registre al lot, substituint la versió anterior si n'hi havia
+     * @param id
+     * @param record
+     */
+    public void put(long id, T record) {
+        pending.put(id, record);
+    }
+
+    /**
+     * mètode per a obtenir un registre pendent del lot
+     * @param id
+     * @return el registre o null si no és al lot
+     */
+    public T get(long id) {
+        return pending.get(id);
+    }
+
+    /**
+     * mètode per a treure un registre del lot sense escriure'l
+     * @param id
+     */
+    public void remove(long id) {
+        pending.remove(id);
+    }
+
+    /**
+     * mètode per a obtenir el nombre de registres pendents
+     * @return size
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * mètode per a obtenir els registres pendents en ordre d'identificador
+     * @return registres pendents
+     */
+    public Collection<T> records() {
+        return Collections.unmodifiableCollection(pending.values());
+    }
+
+    /**
+     * mètode per a escriure tots els registres pendents en ordre d'identificador i buidar el lot
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        for (Map.Entry<Long, T> entry : pending.entrySet()) {
+            writer.write(entry.getValue());
+        }
+        pending.clear();
+    }
+
+    /**
+     * mètode per a descartar els registres pendents
+     */
+    public void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,40 @@
+package main;
+
+import acm.program.CommandLineProgram;
+import files.DatabaseCompactor;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Programa per a compactar les bases de dades de ProdRent fora de línia.
+ *
+ * Elimina els forats que deixen les baixes de clients i productes i esborra
+ * els índexs, que ProdRent torna a construir en obrir les bases de dades.
+ */
+public class Compact extends CommandLineProgram {
+
+    public static void main(String[] args) {
+        new Compact().start(args);
+    }
+
+    public void run() {
+        if (new File(ProdRent.JOURNAL).length() > 0) {
+            println("ERROR: the journal " + ProdRent.JOURNAL + " has pending changes, run ProdRent first");
+            return;
+        }
+        try {
+            var compactor = new DatabaseCompactor(ProdRent.CLIENTS, ProdRent.CLIENTS_OVERFLOW,
+                    ProdRent.PRODUCTS, StorageMode.fromName(ProdRent.STORAGE));
+            compactor.compact();
+            new File(ProdRent.PRODUCTS_BY_DESCRIPTION).delete();
+            new File(ProdRent.CLIENTS_BY_NAME).delete();
+            println("Removed " + compactor.getRemovedClients() + " clients and "
+                    + compactor.getRemovedProducts() + " products");
+        } catch (IOException ex) {
+            println("ERROR");
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package main;
+
+import acm.program.CommandLineProgram;
+import files.MovementCompiler;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Programa per a compilar un fitxer de moviments de text al format binari
+ * de MovementCompiler.
+ *
+ * ProdRent reconeix els fitxers compilats i els processa sense haver de
+ * tallar ni convertir les línies, amb la mateixa bitàcora que el text.
+ */
+public class Compile extends CommandLineProgram {
+
+    public static void main(String[] args) {
+        new Compile().start(args);
+    }
+
+    public void run() {
+        String movements = readLine("Nom del fitxer de moviments (.txt): ");
+        String compiled = readLine("Nom del fitxer compilat (.bin): ");
+        try {
+            long start = System.nanoTime();
+            MovementCompiler compiler = new MovementCompiler();
+            long lines = compiler.compile(movements, compiled);
+            println("Compiled " + lines + " movements with " + compiler.getStringCount() + " strings in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms (" + new File(movements).length()
+                    + " -> " + new File(compiled).length() + " bytes)");
+        } catch (IOException ex) {
+            println("ERROR");
+            ex.printStackTrace();
+        }
+    }
+}
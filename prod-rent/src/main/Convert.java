@@ -0,0 +1,48 @@
+package main;
+
+import acm.program.CommandLineProgram;
+import files.ClientCodec;
+import files.FormatConverter;
+import files.ProductCodec;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Programa per a convertir les bases de dades de ProdRent a la versió de
+ * format indicada amb la propietat prodrent.format.
+ *
+ * Els identificadors no canvien, de manera que els índexs es conserven.
+ */
+public class Convert extends CommandLineProgram {
+
+    public static void main(String[] args) {
+        new Convert().start(args);
+    }
+
+    public void run() {
+        if (new File(ProdRent.JOURNAL).length() > 0) {
+            println("ERROR: the journal " + ProdRent.JOURNAL + " has pending changes, run ProdRent first");
+            return;
+        }
+        try {
+            StorageMode mode = StorageMode.fromName(ProdRent.STORAGE);
+            report("products", new FormatConverter<>(ProdRent.PRODUCTS, mode,
+                    new ProductCodec(ProdRent.FORMAT)).convert());
+            report("clients", new FormatConverter<>(ProdRent.CLIENTS, mode,
+                    new ClientCodec(ProdRent.FORMAT)).convert());
+        } catch (IOException ex) {
+            println("ERROR");
+            ex.printStackTrace();
+        }
+    }
+
+    private void report(String name, long converted) {
+        if (converted < 0) {
+            println("The " + name + " file already has format version " + ProdRent.FORMAT);
+        } else {
+            println("Converted " + converted + " " + name + " to format version " + ProdRent.FORMAT);
+        }
+    }
+}
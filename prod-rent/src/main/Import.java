@@ -0,0 +1,255 @@
+package main;
+
+import acm.program.CommandLineProgram;
+import domain.Client;
+import domain.Product;
+import files.ClientFile;
+import files.FixedRecordFile;
+import files.LogFile;
+import files.ProductFile;
+import files.StorageMode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Programa per a carregar molts clients o productes de cop a les bases de
+ * dades de ProdRent a partir d'un fitxer CSV.
+ *
+ * Cada línia té els mateixos camps que les altes del fitxer de moviments,
+ * sense l'operació: descripció, preu i estoc per als productes, i nom,
+ * balanç i opcionalment capacitat per als clients. Es comproven les mateixes
+ * regles que a ProdRent. Els registres vàlids reben identificadors
+ * consecutius a partir de l'últim del fitxer, que es fa créixer un sol cop,
+ * i s'escriuen per lots grans amb writeAll. La bitàcora només té un resum
+ * amb el nombre de registres carregats i de línies rebutjades per motiu.
+ * Els índexs s'esborren, i ProdRent els torna a construir en obrir les
+ * bases de dades.
+ */
+public class Import extends CommandLineProgram {
+    private static final int BATCH = 16 * 1024;
+    private static final int MAX_LINES_LISTED = 20;
+
+    private final Map<String, Rejections> rejections = new LinkedHashMap<>();
+
+    public static void main(String[] args) {
+        new Import().start(args);
+    }
+
+    public void run() {
+        if (new File(ProdRent.JOURNAL).length() > 0) {
+            println("ERROR: the journal " + ProdRent.JOURNAL + " has pending changes, run ProdRent first");
+            return;
+        }
+        String csv = readLine("Nom del fitxer a importar (.csv): ");
+        String type = readLine("Tipus de registres (clients o productes): ").trim().toLowerCase();
+        String logger = readLine("Nom del fitxer bitàcora (.out): ");
+        if (!type.equals("clients") && !type.equals("productes")) {
+            println("ERROR: unknown record type " + type);
+            return;
+        }
+        try {
+            StorageMode mode = StorageMode.fromName(ProdRent.STORAGE);
+            LogFile logFile = new LogFile(logger);
+            try {
+                if (type.equals("productes")) {
+                    ProductFile products = new ProductFile(ProdRent.PRODUCTS, mode, ProdRent.FORMAT, ProdRent.CHECKSUMS);
+                    try {
+                        importProducts(csv, products, logFile);
+                    } finally {
+                        products.close();
+                    }
+                    new File(ProdRent.PRODUCTS_BY_DESCRIPTION).delete();
+                } else {
+                    ClientFile clients = new ClientFile(ProdRent.CLIENTS, mode, ProdRent.FORMAT, ProdRent.CHECKSUMS);
+                    try {
+                        clients.enableOverflow(ProdRent.CLIENTS_OVERFLOW, mode);
+                        importClients(csv, clients, logFile);
+                    } finally {
+                        clients.close();
+                    }
+                    new File(ProdRent.CLIENTS_BY_NAME).delete();
+                }
+                for (Map.Entry<String, Rejections> entry : rejections.entrySet()) {
+                    logFile.errorImportRejected(entry.getValue().count, entry.getKey(), entry.getValue().lines);
+                }
+            } finally {
+                logFile.close();
+            }
+        } catch (IOException ex) {
+            println("ERROR");
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * mètode per a carregar els productes del fitxer CSV
+     * @param csv
+     * @param products
+     * @param logFile
+     * @throws IOException
+     */
+    private void importProducts(String csv, ProductFile products, LogFile logFile) throws IOException {
+        long start = System.nanoTime();
+        long firstId = products.lastId() + 1;
+        long next = firstId;
+        products.preallocate(countLines(csv));
+        List<Product> batch = new ArrayList<>(BATCH);
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                var tokenizer = new StringTokenizer(line, ",");
+                if (tokenizer.countTokens() < 3) {
+                    reject("the line does not have a description, a price and a stock", number);
+                    continue;
+                }
+                String description = tokenizer.nextToken();
+                int price;
+                int stock;
+                try {
+                    price = Integer.parseInt(tokenizer.nextToken());
+                    stock = Integer.parseInt(tokenizer.nextToken());
+                } catch (NumberFormatException ex) {
+                    reject("the price or the stock is not a number", number);
+                    continue;
+                }
+                if (price <= 0) {
+                    reject("the price is negative or zero", number);
+                } else if (stock <= 0) {
+                    reject("the stock is negative or zero", number);
+                } else if (!products.fits(new Product(next, description, price, stock))) {
+                    reject("the description does not fit in the record format", number);
+                } else {
+                    batch.add(new Product(next++, description, price, stock));
+                    flushIfFull(products, batch);
+                }
+            }
+        }
+        products.writeAll(batch);
+        logFile.okImport(next - firstId, "products", firstId, next - 1, (System.nanoTime() - start) / 1_000_000);
+        println("Imported " + (next - firstId) + " products");
+    }
+
+    /**
+     * mètode per a carregar els clients del fitxer CSV
+     * @param csv
+     * @param clients
+     * @param logFile
+     * @throws IOException
+     */
+    private void importClients(String csv, ClientFile clients, LogFile logFile) throws IOException {
+        long start = System.nanoTime();
+        long firstId = clients.lastId() + 1;
+        long next = firstId;
+        clients.preallocate(countLines(csv));
+        List<Client> batch = new ArrayList<>(BATCH);
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                var tokenizer = new StringTokenizer(line, ",");
+                if (tokenizer.countTokens() < 2) {
+                    reject("the line does not have a name and a balance", number);
+                    continue;
+                }
+                String name = tokenizer.nextToken();
+                int balance;
+                int capacity = Client.DEFAULT_CAPACITY;
+                try {
+                    balance = Integer.parseInt(tokenizer.nextToken());
+                    if (tokenizer.hasMoreTokens()) {
+                        capacity = Integer.parseInt(tokenizer.nextToken().trim());
+                    }
+                } catch (NumberFormatException ex) {
+                    reject("the balance or the capacity is not a number", number);
+                    continue;
+                }
+                if (balance <= 0) {
+                    reject("the balance is negative or zero", number);
+                } else if (capacity < 1 || capacity > Client.MAX_CAPACITY) {
+                    reject("the capacity is not valid", number);
+                } else if (!clients.fits(new Client(next, name, balance, capacity))) {
+                    reject("the name does not fit in the record format", number);
+                } else {
+                    batch.add(new Client(next++, name, balance, capacity));
+                    flushIfFull(clients, batch);
+                }
+            }
+        }
+        clients.writeAll(batch);
+        logFile.okImport(next - firstId, "clients", firstId, next - 1, (System.nanoTime() - start) / 1_000_000);
+        println("Imported " + (next - firstId) + " clients");
+    }
+
+    /**
+     * mètode per a escriure el lot quan està ple i començar-ne un de nou
+     * @param file
+     * @param batch
+     * @param <T> tipus de registre
+     * @throws IOException
+     */
+    private static <T> void flushIfFull(FixedRecordFile<T> file, List<T> batch) throws IOException {
+        if (batch.size() == BATCH) {
+            file.writeAll(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * mètode per a apuntar una línia rebutjada
+     * només es guarden els números de les primeres MAX_LINES_LISTED línies de cada motiu
+     * @param reason
+     * @param number
+     */
+    private void reject(String reason, long number) {
+        Rejections rejected = rejections.computeIfAbsent(reason, key -> new Rejections());
+        rejected.count++;
+        if (rejected.lines.size() < MAX_LINES_LISTED) {
+            rejected.lines.add(number);
+        }
+    }
+
+    /**
+     * mètode per a comptar les línies del fitxer, per a saber quant espai cal reservar
+     * @param fileName
+     * @return línies
+     * @throws IOException
+     */
+    private static long countLines(String fileName) throws IOException {
+        long lines = 0;
+        byte last = '\n';
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(fileName)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                last = buffer[read - 1];
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
+    }
+
+    /**
+     * Línies rebutjades per un mateix motiu.
+     */
+    private static class Rejections {
+        private long count;
+        private final List<Long> lines = new ArrayList<>();
+    }
+}
@@ -0,0 +1,85 @@
+package main;
+
+import files.ClientFile;
+import files.FixedRecordFile;
+import files.LogFile;
+import files.MovementSource;
+import files.ProductFile;
+
+import java.io.IOException;
+
+/**
+ * Execució d'una operació del fitxer de moviments.
+ *
+ * ProdRent en registra una per a cada operació d'Operation a
+ * MovementHandlers. Per a afegir-ne una de nova n'hi ha prou amb un Provider
+ * declarat a META-INF/services/main.MovementHandler$Provider que en doni la
+ * paraula clau, sense tocar ProdRent ni Operation. Els camps d'una operació
+ * nova arriben com a text i el gestor els llegeix amb el tipus que vulgui.
+ *
+ * El gestor rep el moviment just després de l'operació, en llegeix els camps
+ * i escriu a la bitàcora tant el resultat com els seus propis errors. Si un
+ * camp no és un número vàlid, ProdRent ho anota a la bitàcora; qualsevol
+ * altra excepció atura el programa.
+ */
+@FunctionalInterface
+public interface MovementHandler {
+
+    /**
+     * mètode per a executar un moviment
+     * @param movement origen situat després de l'operació
+     * @throws IOException
+     */
+    void execute(MovementSource movement) throws IOException;
+
+    /**
+     * Creador d'un gestor per a una operació que ProdRent no coneix, que es
+     * carrega amb ServiceLoader.
+     */
+    interface Provider {
+        /**
+         * mètode per a obtenir la paraula clau de l'operació que executa el gestor
+         * no es distingeixen majúscules, com al fitxer de moviments
+         * @return paraula clau, que no pot tenir ja un gestor
+         */
+        String getKeyword();
+
+        /**
+         * mètode per a crear el gestor
+         * @param context fitxers de ProdRent
+         * @return gestor
+         */
+        MovementHandler create(Context context);
+    }
+
+    /**
+     * Fitxers de ProdRent que poden fer servir els gestors.
+     */
+    interface Context {
+        ProductFile getProducts();
+
+        ClientFile getClients();
+
+        /**
+         * mètode per a obtenir la bitàcora del moviment actual
+         * en mode servidor canvia a cada petició, per tant s'ha de demanar a cada moviment
+         * @return bitàcora
+         */
+        LogFile getLog();
+
+        /**
+         * mètode per a desar tots els canvis pendents abans d'esborrar un registre
+         * @throws IOException
+         */
+        void commitBeforeDelete() throws IOException;
+
+        /**
+         * mètode per a esborrar un registre d'un dels fitxers després de desar tots els canvis pendents
+         * en mode persistent, l'esborrat es desa junt amb el punt de control posterior al moviment actual
+         * @param file
+         * @param id
+         * @throws IOException id no vàlid
+         */
+        void delete(FixedRecordFile<?> file, long id) throws IOException;
+    }
+}
@@ -0,0 +1,83 @@
+package main;
+
+import files.Operation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registre dels gestors de moviments de ProdRent.
+ *
+ * Els gestors de les operacions d'Operation es guarden en un array pel
+ * número d'ordre de l'operació: la paraula clau es reconeix un sol cop, en
+ * llegir la línia o en compilar el fitxer, i triar el gestor és un accés a
+ * l'array. Els de les operacions noves dels Provider es guarden per la
+ * paraula clau, i només es busquen quan Operation no coneix l'operació.
+ */
+public class MovementHandlers {
+    private final MovementHandler[] handlers = new MovementHandler[Operation.values().length];
+    private final Map<String, MovementHandler> byKeyword = new HashMap<>();
+
+    /**
+     * mètode per a registrar el gestor d'una operació
+     * @param operation
+     * @param handler
+     * @throws IllegalArgumentException si l'operació ja en té un
+     */
+    public void register(Operation operation, MovementHandler handler) {
+        if (handlers[operation.ordinal()] != null) {
+            throw new IllegalArgumentException("Operation " + operation + " already has a handler");
+        }
+        handlers[operation.ordinal()] = handler;
+    }
+
+    /**
+     * mètode per a registrar el gestor de l'operació amb la paraula clau indicada
+     * la paraula clau es guarda sense espais als extrems i en majúscules, com la dona MovementSource.getOperationName
+     * @param keyword
+     * @param handler
+     * @throws IllegalArgumentException si la paraula clau és buida, té separadors o ja té un gestor
+     */
+    public void register(String keyword, MovementHandler handler) {
+        String name = keyword.trim().toUpperCase();
+        if (name.isEmpty() || name.indexOf(',') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Invalid operation keyword '" + keyword + "'");
+        }
+        Operation operation = Operation.fromName(name);
+        if (operation != null) {
+            register(operation, handler);
+        } else if (byKeyword.putIfAbsent(name, handler) != null) {
+            throw new IllegalArgumentException("Operation " + name + " already has a handler");
+        }
+    }
+
+    /**
+     * mètode per a registrar els gestors dels Provider declarats a META-INF/services
+     * @param context fitxers que es passen als gestors
+     * @throws IllegalArgumentException si un Provider és d'una operació que ja té gestor
+     */
+    public void load(MovementHandler.Context context) {
+        for (MovementHandler.Provider provider : ServiceLoader.load(MovementHandler.Provider.class)) {
+            register(provider.getKeyword(), provider.create(context));
+        }
+    }
+
+    /**
+     * mètode per a obtenir el gestor d'una operació
+     * @param operation operació, o null si és desconeguda
+     * @return gestor, o null si no n'hi ha cap
+     */
+    public MovementHandler get(Operation operation) {
+        return operation != null ? handlers[operation.ordinal()] : null;
+    }
+
+    /**
+     * mètode per a obtenir el gestor d'una operació que Operation no coneix
+     * @param name nom de l'operació, com el dona MovementSource.getOperationName
+     * @return gestor, o null si no n'hi ha cap
+     */
+    public MovementHandler getByName(String name) {
+        return name != null ? byKeyword.get(name) : null;
+    }
+}
@@ -0,0 +1,206 @@
+package main;
+
+import files.MovementReader;
+import files.MovementSource;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servidor local de moviments per al mode servidor de ProdRent.
+ *
+ * Escolta en un port TCP de localhost o en un socket Unix i atén cada
+ * connexió en un fil propi: virtual si la JVM en té (Java 21 o posterior) i
+ * del sistema si no. Cada línia rebuda es llegeix amb MovementReader, igual
+ * que una línia del fitxer de moviments, i el Handler l'executa i en torna
+ * les línies de la bitàcora. La resposta són aquestes línies seguides d'una
+ * línia buida, que no surt mai a la bitàcora. Si el Handler falla, la
+ * resposta és una línia ERROR i es tanca la connexió.
+ */
+public class MovementServer implements AutoCloseable {
+    public static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    /**
+     * Execució d'una petició; s'hi pot entrar des de diversos fils alhora.
+     */
+    public interface Handler {
+        /**
+         * mètode per a executar els moviments d'una petició
+         * @param movements
+         * @return línies de la bitàcora generades
+         * @throws IOException
+         */
+        String execute(MovementSource movements) throws IOException;
+    }
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final Handler handler;
+    private final ExecutorService connections = newConnectionExecutor();
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+    private final Charset charset = Charset.defaultCharset();
+    private volatile boolean closed;
+
+    /**
+     * constructor que comença a escoltar a l'adreça indicada
+     * @param address port TCP, que s'obre a localhost, o camí d'un socket Unix
+     * @param handler
+     * @throws IOException si no es pot obrir
+     */
+    public MovementServer(String address, Handler handler) throws IOException {
+        this.handler = handler;
+        if (address.matches("\\d+")) {
+            server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+        } else {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(address));
+        }
+        this.address = server.getLocalAddress();
+    }
+
+    /**
+     * mètode per a crear els fils de les connexions
+     * Executors.newVirtualThreadPerTaskExecutor només existeix a partir de Java 21
+     * @return un fil virtual per connexió si n'hi ha, o si no un fil del sistema
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            int[] created = new int[1];
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "prodrent-connection-" + created[0]++);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * mètode per a obtenir l'adreça on s'escolta
+     * @return adreça, amb el port real si s'ha demanat el 0
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * mètode per a acceptar connexions fins que es tanqui el servidor
+     * @throws IOException si falla l'acceptació
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (AsynchronousCloseException ex) {
+                return;
+            }
+            open.add(channel);
+            connections.execute(() -> serve(channel));
+        }
+    }
+
+    /**
+     * mètode per a atendre les peticions d'una connexió fins que el client la tanqui
+     * @param channel
+     */
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            OutputStream out = Channels.newOutputStream(channel);
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            while (readRequest(in, request)) {
+                if (request.size() > MAX_REQUEST_BYTES) {
+                    out.write(("ERROR: Request longer than " + MAX_REQUEST_BYTES + " bytes\n\n").getBytes(charset));
+                    return;
+                }
+                String response;
+                try (MovementSource movements = new MovementReader(ByteBuffer.wrap(request.toByteArray()))) {
+                    response = handler.execute(movements);
+                } catch (IOException | RuntimeException ex) {
+                    // el missatge ha de cabre en una sola línia per a no trencar la resposta
+                    String message = ex.toString().replaceAll("\\R", " ");
+                    out.write(("ERROR: Request failed: " + message + "\n\n").getBytes(charset));
+                    return;
+                }
+                out.write((response + "\n").getBytes(charset));
+            }
+        } catch (IOException ex) {
+            // el client ha tancat la connexió, o s'està tancant el servidor
+        } finally {
+            open.remove(channel);
+        }
+    }
+
+    /**
+     * mètode per a llegir una petició, fins al '\n' o el final de la connexió
+     * la lectura s'atura quan passa de MAX_REQUEST_BYTES
+     * @param in
+     * @param request on es deixa, sense el '\n'
+     * @return fals si la connexió s'ha acabat sense cap byte
+     * @throws IOException
+     */
+    private static boolean readRequest(InputStream in, ByteArrayOutputStream request) throws IOException {
+        request.reset();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            request.write(b);
+            if (request.size() > MAX_REQUEST_BYTES) {
+                break;
+            }
+        }
+        return b >= 0 || request.size() > 0;
+    }
+
+    /**
+     * tanca el servidor i les connexions obertes, i espera que acabin les peticions en curs
+     * si un altre fil ja l'està tancant, espera que acabi
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        server.close();
+        // les connexions acaben la petició en curs i després veuen el final de l'entrada
+        for (SocketChannel channel : open) {
+            try {
+                channel.shutdownInput();
+            } catch (IOException ex) {
+                // ja s'havia tancat
+            }
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+}
@@ -2,27 +2,79 @@ package main;
 
 import acm.program.CommandLineProgram;
 import domain.Client;
+import domain.ClientView;
 import domain.Product;
+import domain.ProductView;
+import files.Checkpoint;
+import files.CheckpointCodec;
 import files.ClientFile;
+import files.CompiledMovementReader;
+import files.FixedRecordFile;
+import files.Journal;
 import files.LogFile;
+import files.MovementPipeline;
+import files.MovementReader;
+import files.MovementSource;
+import files.Operation;
+import files.ParallelRentals;
 import files.ProductFile;
+import files.ProductTable;
+import files.StorageMode;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.StringTokenizer;
-
-public class ProdRent extends CommandLineProgram {
-
-    private static final String PRODUCTS = "productsDB.dat";
-    private static final String CLIENTS = "clientsDB.dat";
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ProdRent extends CommandLineProgram implements MovementHandler.Context {
+
+    static final String PRODUCTS = "productsDB.dat";
+    static final String PRODUCTS_BY_DESCRIPTION = "productsDesc.idx";
+    static final String CLIENTS = "clientsDB.dat";
+    static final String CLIENTS_BY_NAME = "clientsName.idx";
+    static final String CLIENTS_OVERFLOW = "clientsOverflow.dat";
+    private static final int MAX_CLIENTS_LISTED = 20;
+    static final String JOURNAL = "journalDB.dat";
+    static final String CHECKPOINT = "checkpointDB.dat";
+    static final String STORAGE = System.getProperty("prodrent.storage", "raf");
+    static final short FORMAT = Short.parseShort(System.getProperty("prodrent.format", "1"));
+    static final boolean CHECKSUMS = Boolean.getBoolean("prodrent.checksums");
+    private static final int CACHE_SIZE = Integer.getInteger("prodrent.cache", 0);
+    private static final int STRING_CACHE_SIZE = Integer.getInteger("prodrent.strings", 0);
+    private static final boolean USE_COLUMNS = Boolean.getBoolean("prodrent.columns");
+    private static final boolean PERSISTENT = Boolean.getBoolean("prodrent.persistent");
+    private static final boolean USE_JOURNAL = Boolean.getBoolean("prodrent.journal") || PERSISTENT;
+    private static final int BATCH_SIZE = Integer.getInteger("prodrent.batch", USE_JOURNAL ? 1000 : 0);
+    private static final long BATCH_MILLIS = Long.getLong("prodrent.batch.millis", 0L);
+    private static final int THREADS = Integer.getInteger("prodrent.threads", 1);
+    private static final int PIPELINE_DEPTH = Integer.getInteger("prodrent.pipeline", 0);
+    private static final String SERVER = System.getProperty("prodrent.server");
     private String movements;
     private String logger;
 
-    private BufferedReader movementsFile;
+    private MovementSource movementsFile;
     private LogFile logFile;
     private ProductFile productsDB;
     private ClientFile clientsDB;
+    private Journal journal;
+    private ParallelRentals parallel;
+    private MovementPipeline pipeline;
+    private MovementServer server;
+    private FixedRecordFile<Checkpoint> checkpointDB;
+    private boolean resumed;
+    // posició després de l'última línia processada, i de l'última amb tots els efectes als fitxers
+    private long readPosition;
+    private long readLines;
+    private long appliedPosition;
+    private long appliedLines;
+    // en mode servidor les peticions s'executen d'una en una; amb fils virtuals, esperar
+    // un ReentrantLock no ocupa el fil del sistema, a diferència de synchronized
+    private final ReentrantLock executing = new ReentrantLock();
+    private final MovementHandlers handlers = new MovementHandlers();
+    // vistes reutilitzades per a validar els lloguers i les devolucions
+    private final ClientView clientView = new ClientView();
+    private final ProductView productView = new ProductView();
 
     public static void main(String[] args) {
         new ProdRent().start(args);
@@ -30,10 +82,15 @@ public class ProdRent extends CommandLineProgram {
 
     public void run() {
         try {
+            registerHandlers();
             askFileNames();
             openFiles();
-            resetFiles();
-            processMovements();
+            if (SERVER != null) {
+                serve();
+            } else {
+                if (!resumed) resetFiles();
+                processMovements();
+            }
         } catch (IOException ex) {
             println("ERROR");
             ex.printStackTrace();
@@ -47,34 +104,229 @@ public class ProdRent extends CommandLineProgram {
         }
     }
 
+    /**
+     * mètode per a registrar els gestors de les operacions de ProdRent i els dels Provider declarats
+     * amb les operacions de lloguer en paral·lel, ALQUILAR i DEVOLVER passen abans per processMovement
+     */
+    private void registerHandlers() {
+        handlers.register(Operation.ALTA_PRODUCTO, this::processAltaProducto);
+        handlers.register(Operation.ALTA_CLIENTE, this::processAltaCliente);
+        handlers.register(Operation.INFO_PRODUCTO, this::processInfoProduct);
+        handlers.register(Operation.INFO_PRODUCTO_DESC, this::processInfoProductDesc);
+        handlers.register(Operation.INFO_CLIENTE, this::processInfoClient);
+        handlers.register(Operation.BUSCAR_CLIENTE, this::processBuscarCliente);
+        handlers.register(Operation.INFO_CATALOGO, movement -> processInfoCatalog());
+        handlers.register(Operation.BAJA_CLIENTE, this::processBajaCliente);
+        handlers.register(Operation.BAJA_PRODUCTO, this::processBajaProducto);
+        handlers.register(Operation.ALQUILAR, this::processAlquilar);
+        handlers.register(Operation.DEVOLVER, this::processDevolver);
+        handlers.load(this);
+    }
+
+    @Override
+    public ProductFile getProducts() {
+        return productsDB;
+    }
+
+    @Override
+    public ClientFile getClients() {
+        return clientsDB;
+    }
+
+    @Override
+    public LogFile getLog() {
+        return logFile;
+    }
+
     /**
      * mètode per a demanar els noms dels fitxers a l'usuari
+     * en mode servidor els moviments arriben pel socket i només cal la bitàcora
      */
     private void askFileNames() {
-        movements = readLine("Nom del fitxer de moviments (.txt): ");
+        if (SERVER == null) movements = readLine("Nom del fitxer de moviments (.txt): ");
         logger = readLine("Nom del fitxer bitàcora (.out): ");
     }
 
     /**
      * mètode per a obrir els fitxers necessaris
+     * el fitxer de moviments pot ser de text o compilat amb el programa Compile, que es reconeix per la capçalera
+     * el tipus d'emmagatzematge de les bases de dades es tria amb la propietat prodrent.storage (raf o mmap)
+     * i la versió del format de les bases de dades noves amb prodrent.format (1, per defecte, o 2); les existents conserven la seva
+     * el format 2 és més compacte però no admet noms o descripcions que no càpiguen en Latin-1 o en UTF-8 retallat
+     * amb prodrent.checksums=true els registres de les bases de dades noves porten un CRC32C que es comprova en llegir-los
+     * i la mida de la memòria cau de registres amb prodrent.cache (0 per a desactivar-la)
+     * amb prodrent.strings es comparteixen els noms i descripcions llegits en una memòria cau d'aquesta mida
+     * el mode per lots s'activa amb prodrent.batch (moviments per lot) o prodrent.batch.millis
+     * amb prodrent.journal=true cada lot passa abans pel diari, i en obrir-lo es recupera el que hi hagi
+     * amb prodrent.columns=true es manté una còpia en columnes del catàleg per a les consultes globals
+     * amb prodrent.threads més gran que 1 els lloguers i les devolucions s'executen en paral·lel
+     * amb prodrent.pipeline més gran que 0 la lectura dels moviments i l'escriptura de la bitàcora es fan
+     * en fils a part, amb aquest nombre de blocs en circulació entre cada etapa
+     * en mode servidor (prodrent.server) no hi ha fitxer de moviments i no s'apliquen prodrent.threads ni prodrent.pipeline
+     * amb prodrent.persistent=true les bases de dades es conserven entre execucions i el fitxer de moviments es
+     * reprèn des del punt de control, que es desa amb el diari, que sempre està actiu en aquest mode
      * @throws IOException si hi ha un error obrint fitxers
      */
     private void openFiles() throws IOException {
-        movementsFile = new BufferedReader(new FileReader(movements));
+        StorageMode mode = StorageMode.fromName(STORAGE);
+        productsDB = new ProductFile(PRODUCTS, mode, FORMAT, CHECKSUMS);
+        clientsDB = new ClientFile(CLIENTS, mode, FORMAT, CHECKSUMS);
+        clientsDB.enableOverflow(CLIENTS_OVERFLOW, mode);
+        if (CACHE_SIZE > 0) {
+            productsDB.enableCache(CACHE_SIZE);
+            clientsDB.enableCache(CACHE_SIZE);
+        }
+        if (STRING_CACHE_SIZE > 0) {
+            productsDB.enableStringCache(STRING_CACHE_SIZE);
+            clientsDB.enableStringCache(STRING_CACHE_SIZE);
+        }
+        if (BATCH_SIZE > 0 || BATCH_MILLIS > 0 || USE_JOURNAL) {
+            productsDB.enableBatching();
+            clientsDB.enableBatching();
+        }
+        if (USE_JOURNAL) {
+            journal = new Journal(JOURNAL);
+            journal.register(clientsDB);
+            journal.register(productsDB);
+            journal.register(clientsDB.getOverflowFile());
+            if (PERSISTENT && SERVER == null) {
+                checkpointDB = new FixedRecordFile<>(CHECKPOINT, mode, new CheckpointCodec());
+                checkpointDB.enableBatching();
+                journal.register(checkpointDB);
+            }
+            int recovered = journal.recover();
+            if (recovered > 0) println("Recovered " + recovered + " journal groups");
+        }
+        productsDB.enableDescriptionIndex(PRODUCTS_BY_DESCRIPTION, mode);
+        clientsDB.enableNameIndex(CLIENTS_BY_NAME, mode);
+        if (USE_COLUMNS) {
+            productsDB.enableColumns();
+        }
+        if (movements != null) {
+            movementsFile = openMovements();
+        }
         logFile = new LogFile(logger);
-        productsDB = new ProductFile(PRODUCTS);
-        clientsDB = new ClientFile(CLIENTS);
+        if (movementsFile != null && PIPELINE_DEPTH > 0) {
+            pipeline = new MovementPipeline(movementsFile, logFile, PIPELINE_DEPTH);
+            movementsFile = pipeline.getMovements();
+            logFile = pipeline.getLog();
+        }
+        if (THREADS > 1 && SERVER == null) {
+            parallel = new ParallelRentals(THREADS, clientsDB, productsDB, logFile);
+        }
+    }
+
+    /**
+     * mètode per a obrir el fitxer de moviments
+     * en mode persistent, si hi ha punt de control la lectura continua després de l'últim moviment aplicat
+     * i no cal buidar les bases de dades; només es pot reprendre un fitxer de text
+     * @return moviments
+     * @throws IOException si el fitxer no és el del punt de control
+     */
+    private MovementSource openMovements() throws IOException {
+        if (CompiledMovementReader.isCompiled(movements)) {
+            if (checkpointDB != null) {
+                throw new IOException("The persistent mode needs a text movements file");
+            }
+            return new CompiledMovementReader(movements);
+        }
+        MovementReader reader = new MovementReader(movements);
+        if (checkpointDB != null && checkpointDB.isValid(Checkpoint.ID)) {
+            Checkpoint checkpoint = checkpointDB.read(Checkpoint.ID);
+            if (!checkpoint.matches(movements)) {
+                reader.close();
+                throw new IOException(movements + " is not the movements file of the checkpoint "
+                        + checkpoint + "; remove " + CHECKPOINT + " to start again");
+            }
+            reader.skipTo(checkpoint.getPosition());
+            readPosition = appliedPosition = checkpoint.getPosition();
+            readLines = appliedLines = checkpoint.getLines();
+            resumed = true;
+            println("Resuming after " + checkpoint.getLines() + " movements");
+        }
+        return reader;
     }
 
     /**
      * mètode per a tancar els fitxers oberts
+     * en tancar les bases de dades s'escriuen els registres pendents de la memòria cau
      * @throws IOException si hi ha un error tancant fitxers
      */
     private void closeFiles() throws IOException {
+        if (server != null) server.close();
+        if (parallel != null) parallel.close();
         if (movementsFile != null) movementsFile.close();
         if (logFile != null) logFile.close();
-        if (productsDB != null) productsDB.close();
-        if (clientsDB != null) clientsDB.close();
+        if (pipeline != null) println(pipeline.toString());
+        if (journal != null) {
+            saveCheckpoint();
+            journal.close();
+            println(journal.toString());
+        }
+        if (checkpointDB != null) checkpointDB.close();
+        if (productsDB != null) {
+            productsDB.close();
+            if (productsDB.getCache() != null) println("Products " + productsDB.getCache());
+            if (productsDB.getStringCache() != null) println("Descriptions " + productsDB.getStringCache());
+        }
+        if (clientsDB != null) {
+            clientsDB.close();
+            if (clientsDB.getCache() != null) println("Clients " + clientsDB.getCache());
+            if (clientsDB.getStringCache() != null) println("Names " + clientsDB.getStringCache());
+        }
+    }
+
+    /**
+     * mètode per a atendre moviments pel socket de prodrent.server fins que s'aturi el programa
+     * l'adreça és un port TCP de localhost o el camí d'un socket Unix
+     * les bases de dades no es buiden i es mantenen obertes entre peticions
+     * en aturar el programa es deixen acabar les peticions en curs i es tanquen els fitxers
+     * @throws IOException
+     */
+    private void serve() throws IOException {
+        server = new MovementServer(SERVER, this::execute);
+        println("Listening on " + server.getAddress());
+        Thread running = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                running.join();
+            } catch (IOException | InterruptedException ex) {
+                ex.printStackTrace();
+            }
+        }, "prodrent-shutdown"));
+        server.serve();
+    }
+
+    /**
+     * mètode per a executar els moviments d'una petició del mode servidor
+     * les peticions s'executen d'una en una i el lot es confirma abans de respondre
+     * les línies de la bitàcora es tornen com a resposta i també s'afegeixen al fitxer bitàcora
+     * @param movement
+     * @return línies de la bitàcora
+     * @throws IOException
+     */
+    private String execute(MovementSource movement) throws IOException {
+        StringWriter response = new StringWriter();
+        executing.lock();
+        try {
+            LogFile file = logFile;
+            logFile = new LogFile(response);
+            try {
+                while (movement.nextLine()) {
+                    processMovement(movement);
+                }
+                commitBatch();
+            } finally {
+                logFile.flush();
+                logFile = file;
+            }
+            logFile.append(response.toString());
+            logFile.flush();
+        } finally {
+            executing.unlock();
+        }
+        return response.toString();
     }
 
     /**
@@ -84,65 +336,215 @@ public class ProdRent extends CommandLineProgram {
     private void resetFiles() throws IOException {
         productsDB.reset();
         clientsDB.reset();
+        if (checkpointDB != null) checkpointDB.reset();
+        if (journal != null) journal.reset();
     }
 
     /**
      * mètode per a processar totes les línies del fitxer de moviments
+     * en mode per lots, els registres modificats es confirmen cada BATCH_SIZE moviments
+     * o cada BATCH_MILLIS mil·lisegons, el que passi primer
      * @throws IOException
      */
     private void processMovements() throws IOException {
-        String line;
-        while((line = movementsFile.readLine()) != null){
-            processMovement(line);
+        int pending = 0;
+        long batchStart = System.currentTimeMillis();
+        while(movementsFile.nextLine()){
+            processMovement(movementsFile);
+            readPosition = movementsFile.getPosition();
+            readLines++;
+            if (parallel == null || parallel.isEmpty()) {
+                appliedPosition = readPosition;
+                appliedLines = readLines;
+            }
+            pending++;
+            if (batchFull(pending, batchStart)) {
+                commitBatch();
+                pending = 0;
+                batchStart = System.currentTimeMillis();
+            }
         }
+        commitBatch();
+    }
+
+    /**
+     * mètode per a saber si cal confirmar el lot actual
+     * @param pending moviments processats des de l'últim lot
+     * @param batchStart instant d'inici del lot
+     * @return cert si s'ha arribat a la mida o al temps màxim del lot
+     */
+    private boolean batchFull(int pending, long batchStart) {
+        if (BATCH_SIZE > 0 && pending >= BATCH_SIZE) {
+            return true;
+        }
+        return BATCH_MILLIS > 0 && System.currentTimeMillis() - batchStart >= BATCH_MILLIS;
+    }
+
+    /**
+     * mètode per a escriure als fitxers els clients i productes del lot actual
+     * abans s'acaben els lloguers i devolucions pendents del mode paral·lel, perquè el lot sigui el mateix
+     * si el diari està actiu, el lot s'hi desa abans d'aplicar-lo, amb el punt de control si n'hi ha
+     * @throws IOException
+     */
+    private void commitBatch() throws IOException {
+        finishParallel();
+        if (journal != null) {
+            saveCheckpoint();
+            journal.commit();
+            return;
+        }
+        clientsDB.commitBatch();
+        productsDB.commitBatch();
+    }
+
+    /**
+     * mètode per a desar tots els canvis pendents abans d'una baixa
+     * si el diari està actiu també es buida, perquè l'esborrat s'hi desa en un grup
+     * que ha de ser l'únic del diari
+     * @throws IOException
+     */
+    @Override
+    public void commitBeforeDelete() throws IOException {
+        commitBatch();
+        if (journal != null) {
+            journal.checkpoint();
+        }
+    }
+
+    /**
+     * mètode per a esborrar un registre després de desar tots els canvis pendents
+     * si el diari està actiu, l'esborrat es desa al diari en el mateix grup que el punt de control
+     * posterior a la línia actual: en reprendre no es torna a aplicar la baixa sobre un registre
+     * que ja s'havia esborrat o reaprofitat
+     * @param file
+     * @param id
+     * @throws IOException id no vàlid
+     */
+    @Override
+    public void delete(FixedRecordFile<?> file, long id) throws IOException {
+        commitBeforeDelete();
+        if (journal == null) {
+            file.delete(id);
+            return;
+        }
+        if (movementsFile != null) {
+            // la línia actual encara no compta a readPosition
+            appliedPosition = movementsFile.getPosition();
+            appliedLines = readLines + 1;
+        }
+        saveCheckpoint();
+        journal.delete(file, id);
+    }
+
+    /**
+     * mètode per a executar els lloguers i devolucions pendents del mode paral·lel
+     * s'ha de cridar abans de qualsevol altre moviment que llegeixi o escrigui les bases de dades o la bitàcora
+     * @throws IOException
+     */
+    private void finishParallel() throws IOException {
+        if (parallel != null) {
+            parallel.finish();
+            // es crida abans de processar la línia actual, que encara no compta a readPosition
+            appliedPosition = readPosition;
+            appliedLines = readLines;
+        }
+    }
+
+    /**
+     * mètode per a afegir al lot el punt de control amb els moviments que ja hi han aplicat tots els efectes
+     * una baixa confirma el lot a mitja línia, i la línia es tornarà a processar si el programa s'atura abans del lot següent
+     * @throws IOException
+     */
+    private void saveCheckpoint() throws IOException {
+        // sense fitxer de moviments obert no se sap fins on s'ha arribat
+        if (checkpointDB == null || movementsFile == null) {
+            return;
+        }
+        long fingerprint = Checkpoint.fingerprint(movements, appliedPosition);
+        checkpointDB.write(new Checkpoint(appliedPosition, appliedLines, fingerprint));
     }
 
     /**
      * mètode per a processar una línia concreta del fitxer de moviments
-     * @param line
+     * l'operació es reconeix sobre els bytes de la línia, o ve ja reconeguda al fitxer compilat,
+     * i l'executa el seu gestor; el nom només es fa servir per a buscar el gestor de les operacions
+     * que Operation no coneix i per a la bitàcora
+     * @param movement lector situat a la línia
      * @throws IOException
      */
-    private void processMovement(String line) throws IOException {
-        var tokenizer = new StringTokenizer(line, ",");
-        if(!tokenizer.hasMoreTokens()) return;
+    private void processMovement(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
 
-        String operation = tokenizer.nextToken().trim().toUpperCase();
+        Operation operation = movement.nextOperation();
+        if (parallel != null && (operation == Operation.ALQUILAR || operation == Operation.DEVOLVER)) {
+            processRentalInParallel(operation, movement);
+            return;
+        }
+        finishParallel();
+        MovementHandler handler = operation != null ? handlers.get(operation) : handlers.getByName(movement.getOperationName());
+        if (handler == null) {
+            logFile.unknownOperation(movement.getOperationName());
+            return;
+        }
         try {
-            if (operation.equals("ALTA_PRODUCTO")) {
-                processAltaProducto(tokenizer);
-            } else if (operation.equals("ALTA_CLIENTE")) {
-                processAltaCliente(tokenizer);
-            } else if (operation.equals("INFO_PRODUCTO")) {
-                processInfoProduct(tokenizer);
-            } else if (operation.equals("INFO_CLIENTE")) {
-                processInfoClient(tokenizer);
-            } else if (operation.equals("ALQUILAR")) {
-                processAlquilar(tokenizer);
-            } else if (operation.equals("DEVOLVER")) {
-                processDevolver(tokenizer);
-            } else {
-                logFile.unknownOperation(operation);
+            handler.execute(movement);
+        } catch (NumberFormatException e) {
+            logFile.errorMalformedNumber(movement.getOperationName());
+        }
+    }
+
+    /**
+     * mètode per a processar un lloguer o una devolució en el mode paral·lel
+     * si el client i el producte són vàlids el moviment s'afegeix al tram de ParallelRentals;
+     * si no, s'acaba el tram i es processa aquí mateix, com en el mode seqüencial
+     * @param operation ALQUILAR o DEVOLVER
+     * @param movement
+     * @throws IOException
+     */
+    private void processRentalInParallel(Operation operation, MovementSource movement) throws IOException {
+        long idClient;
+        long idProduct;
+        try {
+            if(!movement.hasMoreFields()) return;
+            idClient = movement.nextLong();
+
+            if(!movement.hasMoreFields()) return;
+            idProduct = movement.nextLong();
+        } catch (NumberFormatException e) {
+            finishParallel();
+            logFile.errorMalformedNumber(movement.getOperationName());
+            return;
+        }
+        if (clientsDB.isValid(idClient) && productsDB.isValid(idProduct)) {
+            parallel.add(operation, idClient, idProduct);
+            if (parallel.isFull()) {
+                finishParallel();
             }
-        }catch (Exception e){
-            logFile.unknownOperation(operation);
+            return;
+        }
+        finishParallel();
+        if (operation == Operation.ALQUILAR) {
+            rent(idClient, idProduct);
+        } else {
+            giveBack(idClient, idProduct);
         }
     }
 
     /**
      * mètode per a processar l'alta d'un nou producte
      * apliquem filtres i si tot està ok procedim
-     * @param tokenizer
+     * @param movement
      * @throws IOException
      */
-    private void processAltaProducto(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        String description = tokenizer.nextToken();
+    private void processAltaProducto(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        String description = movement.nextString();
 
-        if(!tokenizer.hasMoreTokens()) return;
-        int price = Integer.parseInt(tokenizer.nextToken());
+        if(!movement.hasMoreFields()) return;
+        int price = movement.nextInt();
 
-        if(!tokenizer.hasMoreTokens()) return;
-        int stock = Integer.parseInt(tokenizer.nextToken());
+        if(!movement.hasMoreFields()) return;
+        int stock = movement.nextInt();
 
         if(price <= 0){
             logFile.errorPriceCannotBeNegativeOrZero(description, price);
@@ -155,6 +557,10 @@ public class ProdRent extends CommandLineProgram {
 
         long id = productsDB.nextId();
         var product = new Product(id, description, price, stock);
+        if(!productsDB.fits(product)){
+            logFile.errorTextDoesNotFit(description);
+            return;
+        }
         productsDB.write(product);
         logFile.okNewProduct(product);
     }
@@ -162,35 +568,49 @@ public class ProdRent extends CommandLineProgram {
     /**
      * mètode per a processar l'alta d'un nou client
      * apliquem filtres i si tot està ok procedim
-     * @param tokenizer
+     * opcionalment es pot indicar el nombre de productes diferents que pot llogar (per defecte Client.DEFAULT_CAPACITY)
+     * @param movement
      * @throws IOException
      */
-    private void processAltaCliente(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        String name = tokenizer.nextToken();
+    private void processAltaCliente(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        String name = movement.nextString();
 
-        if(!tokenizer.hasMoreTokens()) return;
-        int balance = Integer.parseInt(tokenizer.nextToken());
+        if(!movement.hasMoreFields()) return;
+        int balance = movement.nextInt();
+
+        int capacity = Client.DEFAULT_CAPACITY;
+        if(movement.hasMoreFields()) {
+            capacity = movement.nextTrimmedInt();
+        }
 
         if(balance <= 0){
             logFile.errorBalanceCannotBeNegativeOrZero(name, balance);
             return;
         }
+        if(capacity < 1 || capacity > Client.MAX_CAPACITY){
+            logFile.errorInvalidCapacity(name, capacity);
+            return;
+        }
 
         long id = clientsDB.nextId();
-        var client = new Client(id, name, balance);
+        var client = new Client(id, name, balance, capacity);
+        if(!clientsDB.fits(client)){
+            logFile.errorTextDoesNotFit(name);
+            return;
+        }
         clientsDB.write(client); // faltava aquesta línia
         logFile.okNewClient(client); // opcional: si vols registrar també l'alta del client
     }
     /**
      * mètode per a mostrar la informació d'un producte
      * mirem si id es vàlida
-     * @param tokenizer
+     * @param movement
      * @throws IOException
      */
-    private void processInfoProduct(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        long id = Long.parseLong(tokenizer.nextToken());
+    private void processInfoProduct(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long id = movement.nextLong();
         if(!productsDB.isValid(id)){
             logFile.errorInvalidProductId(id);
             return;
@@ -199,16 +619,63 @@ public class ProdRent extends CommandLineProgram {
         logFile.infoProduct(product);
     }
 
+    /**
+     * mètode per a mostrar la informació d'un producte a partir de la seva descripció
+     * la cerca passa per l'índex de descripcions, sense distingir majúscules
+     * @param movement
+     * @throws IOException
+     */
+    private void processInfoProductDesc(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        String description = movement.nextString();
+        Product product = productsDB.findByDescription(description);
+        if(product == null){
+            logFile.errorInvalidProductDescription(description);
+            return;
+        }
+        logFile.infoProduct(product);
+    }
+
+    /**
+     * mètode per a buscar els clients amb un nom que comença pel prefix indicat
+     * la cerca passa per l'índex de noms i només es mostren els primers MAX_CLIENTS_LISTED
+     * @param movement
+     * @throws IOException
+     */
+    private void processBuscarCliente(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        String prefix = movement.nextString();
+        List<Long> ids = clientsDB.findByNamePrefix(prefix);
+        var clients = new Client[Math.min(ids.size(), MAX_CLIENTS_LISTED)];
+        for(int i = 0; i < clients.length; i++){
+            clients[i] = clientsDB.read(ids.get(i));
+        }
+        logFile.infoClientsWithNamePrefix(prefix, ids.size(), clients);
+    }
+
+    /**
+     * mètode per a mostrar el resum de tot el catàleg de productes
+     * si no hi ha la còpia en columnes activa, es construeix recorrent el fitxer
+     * @throws IOException
+     */
+    private void processInfoCatalog() throws IOException {
+        ProductTable catalog = productsDB.getColumns();
+        if (catalog == null) {
+            catalog = ProductTable.load(productsDB);
+        }
+        logFile.infoCatalog(catalog);
+    }
+
     /**
      * mètode per a mostrar la informació d'un client i els seus productes llogats
      * mirem si id es vàlida
      * creem array amb les id llogades
-     * @param tokenizer
+     * @param movement
      * @throws IOException
      */
-    private void processInfoClient(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        long id = Long.parseLong(tokenizer.nextToken());
+    private void processInfoClient(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long id = movement.nextLong();
 
         if(!clientsDB.isValid(id)){
             logFile.errorInvalidClientId(id);
@@ -226,22 +693,94 @@ public class ProdRent extends CommandLineProgram {
         logFile.infoClient(client, rentedProducts);
     }
 
+    /**
+     * mètode per a processar la baixa d'un client
+     * només es pot donar de baixa un client que no tingui cap producte llogat
+     * la baixa es fa amb delete, que abans desa els canvis pendents
+     * @param movement
+     * @throws IOException
+     */
+    private void processBajaCliente(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long id = movement.nextLong();
+
+        if(!clientsDB.isValid(id)){
+            logFile.errorInvalidClientId(id);
+            return;
+        }
+        Client client = clientsDB.read(id);
+        if(client.getRentedIds().length > 0){
+            logFile.errorClientCannotBeRemoved(client);
+            return;
+        }
+
+        delete(clientsDB, id);
+        logFile.okRemoveClient(client);
+    }
+
+    /**
+     * mètode per a processar la baixa d'un producte
+     * només es pot donar de baixa un producte que cap client tingui llogat
+     * els clients que l'havien retornat en perden la posició, perquè un producte nou pot rebre el mateix id
+     * la baixa es fa amb delete, que abans desa els canvis pendents
+     * @param movement
+     * @throws IOException
+     */
+    private void processBajaProducto(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long id = movement.nextLong();
+
+        if(!productsDB.isValid(id)){
+            logFile.errorInvalidProductId(id);
+            return;
+        }
+        Product product = productsDB.read(id);
+        boolean[] rented = new boolean[1];
+        List<Long> returned = new ArrayList<>();
+        clientsDB.forEach(client -> {
+            if (client.getRentedUnits(id) > 0) {
+                rented[0] = true;
+            } else if (client.hasProduct(id)) {
+                returned.add(client.getId());
+            }
+        });
+        if(rented[0]){
+            logFile.errorProductCannotBeRemoved(product);
+            return;
+        }
+
+        commitBeforeDelete();
+        // el id es reaprofitarà: els clients que ja l'havien retornat no en poden guardar la posició
+        for (long idClient : returned) {
+            clientsDB.forgetProduct(idClient, id);
+        }
+        delete(productsDB, id);
+        logFile.okRemoveProduct(product);
+    }
+
     /**
      * mètode per a processar el lloguer d'un producte
      * apliquem filtres per comprovar que el client té els requisits necessàris
-     * @param tokenizer
+     * @param movement
      * @throws IOException
      */
-    private void processAlquilar(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        long idClient = Long.parseLong(tokenizer.nextToken());
+    private void processAlquilar(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long idClient = movement.nextLong();
 
-        if(!tokenizer.hasMoreTokens()) return;
-        long idProduct = Long.parseLong(tokenizer.nextToken());
+        if(!movement.hasMoreFields()) return;
+        long idProduct = movement.nextLong();
 
-        Client client = clientsDB.read(idClient);
-        Product product = productsDB.read(idProduct);
+        rent(idClient, idProduct);
+    }
 
+    /**
+     * mètode per a fer el lloguer d'un producte un cop llegits els ids del moviment
+     * @param idClient
+     * @param idProduct
+     * @throws IOException
+     */
+    private void rent(long idClient, long idProduct) throws IOException {
         if(!clientsDB.isValid(idClient)){
             logFile.errorInvalidClientId(idClient);
             return;
@@ -250,19 +789,25 @@ public class ProdRent extends CommandLineProgram {
             logFile.errorInvalidProductId(idProduct);
             return;
         }
-        if(product.getStock() == 0){
-            logFile.errorCannotRentProductWithNoStock(product);
+        clientsDB.read(idClient, clientView);
+        productsDB.read(idProduct, productView);
+
+        if(productView.getStock() == 0){
+            logFile.errorCannotRentProductWithNoStock(productView);
             return;
         }
-        if(client.getBalance() < product.getPrice()){
-            logFile.errorClientHasNotEnoughFundsToRentProduct(client, product);
+        if(clientView.getBalance() < productView.getPrice()){
+            logFile.errorClientHasNotEnoughFundsToRentProduct(clientView, productView);
             return;
         }
-        if(!client.canAddProduct(idProduct)){
-            logFile.errorClientCannotAddProduct(client, product);
+        if(!clientView.canAddProduct(idProduct)){
+            logFile.errorClientCannotAddProduct(clientView, productView);
             return;
         }
 
+        // només els lloguers que es fan construeixen els registres complets
+        Client client = clientView.toClient();
+        Product product = productView.toProduct();
         client.rentProduct(idProduct);
         client.subBalance(product.getPrice());
         product.decrementStock();
@@ -276,22 +821,26 @@ public class ProdRent extends CommandLineProgram {
     /**
      * mètode per a processar la devolució d’un producte per part d’un client
      * mriem si les id son vàlides i si el client té aquell producte
-     * @param tokenizer
+     * @param movement
      * @throws IOException
      */
-    private void processDevolver(StringTokenizer tokenizer) throws IOException {
-        if(!tokenizer.hasMoreTokens()) return;
-        long idClient = Long.parseLong(tokenizer.nextToken());
+    private void processDevolver(MovementSource movement) throws IOException {
+        if(!movement.hasMoreFields()) return;
+        long idClient = movement.nextLong();
 
-        if(!tokenizer.hasMoreTokens()) return;
-        long idProduct = Long.parseLong(tokenizer.nextToken());
+        if(!movement.hasMoreFields()) return;
+        long idProduct = movement.nextLong();
 
-        Client client = clientsDB.read(idClient);
-        Product product = productsDB.read(idProduct);
-
-        long[] rentedIds = client.getRentedIds();
-        var rentedProducts = new Product[rentedIds.length];
+        giveBack(idClient, idProduct);
+    }
 
+    /**
+     * mètode per a fer la devolució d'un producte un cop llegits els ids del moviment
+     * @param idClient
+     * @param idProduct
+     * @throws IOException
+     */
+    private void giveBack(long idClient, long idProduct) throws IOException {
         if(!clientsDB.isValid(idClient)){
             logFile.errorInvalidClientId(idClient);
             return;
@@ -300,11 +849,16 @@ public class ProdRent extends CommandLineProgram {
             logFile.errorInvalidProductId(idProduct);
             return;
         }
-        if (!client.hasProduct(idProduct)) {
-            logFile.errorClientHasNotProduct(client, idProduct);
+        clientsDB.read(idClient, clientView);
+        productsDB.read(idProduct, productView);
+
+        if (!clientView.hasProduct(idProduct)) {
+            logFile.errorClientHasNotProduct(clientView, idProduct);
             return;
         }
 
+        Client client = clientView.toClient();
+        Product product = productView.toProduct();
         client.returnProduct(idProduct);
         product.incrementStock();
 
@@ -0,0 +1,66 @@
+package main;
+
+import acm.program.CommandLineProgram;
+import files.ClientFile;
+import files.FixedRecordFile;
+import files.ProductFile;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Programa per a comprovar les bases de dades de ProdRent fora de línia.
+ *
+ * Cada fitxer es comprova sencer en paral·lel; si els registres porten suma
+ * de verificació es comprova el CRC32C de cadascun, i si no, que cada
+ * registre comenci pel seu identificador.
+ */
+public class Verify extends CommandLineProgram {
+    private static final int MAX_IDS_LISTED = 20;
+
+    public static void main(String[] args) {
+        new Verify().start(args);
+    }
+
+    public void run() {
+        if (new File(ProdRent.JOURNAL).length() > 0) {
+            println("ERROR: the journal " + ProdRent.JOURNAL + " has pending changes, run ProdRent first");
+            return;
+        }
+        try {
+            StorageMode mode = StorageMode.fromName(ProdRent.STORAGE);
+            ProductFile products = new ProductFile(ProdRent.PRODUCTS, mode, ProdRent.FORMAT);
+            try {
+                report("products", products);
+            } finally {
+                products.close();
+            }
+            ClientFile clients = new ClientFile(ProdRent.CLIENTS, mode, ProdRent.FORMAT);
+            try {
+                clients.enableOverflow(ProdRent.CLIENTS_OVERFLOW, mode);
+                report("clients", clients);
+                report("client overflow pages", clients.getOverflowFile());
+            } finally {
+                clients.close();
+            }
+        } catch (IOException ex) {
+            println("ERROR");
+            ex.printStackTrace();
+        }
+    }
+
+    private void report(String name, FixedRecordFile<?> file) throws IOException {
+        long start = System.nanoTime();
+        List<Long> corrupted = file.verify();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        String check = file.hasChecksums() ? "checksums" : "ids";
+        if (corrupted.isEmpty()) {
+            println("Verified " + file.count() + " " + name + " (" + check + ") in " + millis + " ms");
+        } else {
+            println("ERROR: " + corrupted.size() + " corrupted " + name + " (" + check + "): "
+                    + corrupted.subList(0, Math.min(MAX_IDS_LISTED, corrupted.size())));
+        }
+    }
+}
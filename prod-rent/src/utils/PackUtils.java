@@ -1,5 +1,11 @@
 package utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
 /**
  * This class provides static methods for packing and unpacking
  * some primitive types (char, int, long and double) and Strings
@@ -8,11 +14,25 @@ package utils;
  * The ordering of bytes has been chosen to be the same, when possible,
  * to that used by classes java.io.DataOutput and java.io.DataInput.
  *
+ * Multi-byte values are accessed through big-endian byte array views
+ * (VarHandles), which the JIT compiles to a single memory access instead
+ * of one access and shift per byte. The ByteBuffer overloads write the
+ * same bytes whatever the order of the buffer.
+ *
  * @author jmgimeno
  */
 
 public class PackUtils {
 
+    private static final VarHandle SHORT =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle CHAR =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
     /**
      * Writes a boolean in the given position of the given byte array.
      *
@@ -72,8 +92,7 @@ public class PackUtils {
      * @param offset the starting position in the array where the short is written
      */
     public static void packShort(short s, byte[] buffer, int offset ) {
-        buffer[offset    ] = (byte) (s >>  8);
-        buffer[offset + 1] = (byte)  s       ;
+        SHORT.set(buffer, offset, s);
     }
 
     /**
@@ -86,8 +105,7 @@ public class PackUtils {
      * @return the int that has been read
      */
     public static short unpackShort(byte[] buffer, int offset) {
-        return (short) ((buffer[offset    ] <<  8 |
-                (buffer[offset + 1] & 0xFF)));
+        return (short) SHORT.get(buffer, offset);
     }
 
     /**
@@ -101,10 +119,7 @@ public class PackUtils {
      * @param offset the starting position in the array where the int is written
      */
     public static void packInt(int n, byte[] buffer, int offset ) {
-        buffer[offset    ] = (byte) (n >> 24);
-        buffer[offset + 1] = (byte) (n >> 16);
-        buffer[offset + 2] = (byte) (n >>  8);
-        buffer[offset + 3] = (byte)  n       ;
+        INT.set(buffer, offset, n);
     }
 
     /**
@@ -117,10 +132,7 @@ public class PackUtils {
      * @return the int that has been read
      */
     public static int unpackInt(byte[] buffer, int offset) {
-        return  ((buffer[offset    ]       ) << 24) |
-                ((buffer[offset + 1] & 0xFF) << 16) |
-                ((buffer[offset + 2] & 0xFF) <<  8) |
-                ((buffer[offset + 3] & 0xFF)      ) ;
+        return (int) INT.get(buffer, offset);
     }
 
 
@@ -135,18 +147,7 @@ public class PackUtils {
      * @param offset the starting position in the array where the char is written
      */
     public static void packLong(long n, byte[] buffer, int offset)  {
-//        int high = (int) (n >> 32);
-//        int low = (int) n;
-//        packInt(high, buffer, offset);
-//        packInt(low, buffer, offset+4);
-        buffer[offset    ] = (byte) (n >> 56);
-        buffer[offset + 1] = (byte) (n >> 48);
-        buffer[offset + 2] = (byte) (n >> 40);
-        buffer[offset + 3] = (byte) (n >> 32);
-        buffer[offset + 4] = (byte) (n >> 24);
-        buffer[offset + 5] = (byte) (n >> 16);
-        buffer[offset + 6] = (byte) (n >>  8);
-        buffer[offset + 7] = (byte)  n       ;
+        LONG.set(buffer, offset, n);
     }
 
     /**
@@ -159,17 +160,7 @@ public class PackUtils {
      * @return the long that has been read
      */
     public static long unpackLong(byte[] buffer, int offset) {
-//        int high = unpackInt(buffer, offset);
-//        int low = unpackInt(buffer, offset + 4);
-//        return  ((long)high << 32) | (low & 0xFFFFFFFFL);
-        return ((long)(buffer[offset    ]       ) << 56) |
-                ((long)(buffer[offset + 1] & 0xFF) << 48) |
-                ((long)(buffer[offset + 2] & 0xFF) << 40) |
-                ((long)(buffer[offset + 3] & 0xFF) << 32) |
-                ((long)(buffer[offset + 4] & 0xFF) << 24) |
-                ((long)(buffer[offset + 5] & 0xFF) << 16) |
-                ((long)(buffer[offset + 6] & 0xFF) <<  8) |
-                ((long)(buffer[offset + 7] & 0xFF)      ) ;
+        return (long) LONG.get(buffer, offset);
     }
 
     /**
@@ -183,8 +174,7 @@ public class PackUtils {
      * @param offset the starting position in the array where the char is written
      */
     public static void packChar(char c, byte[] buffer, int offset) {
-        buffer[offset    ] = (byte) (c >> 8);
-        buffer[offset + 1] = (byte)  c;
+        CHAR.set(buffer, offset, c);
     }
 
     /**
@@ -197,8 +187,7 @@ public class PackUtils {
      * @return the char that has been read
      */
     public static char unpackChar(byte[] buffer, int offset) {
-        return (char) (buffer[offset    ] << 8 |
-                buffer[offset + 1] & 0xFF);
+        return (char) CHAR.get(buffer, offset);
     }
 
     /**
@@ -229,6 +218,9 @@ public class PackUtils {
      * Reads, at most, maxLenghth characters tarting at the given position in
      * the given array.
      *
+     * The characters are decoded in a single pass into a scratch array, so
+     * the only String created is the result.
+     *
      * @param maxLength the maximum number of characters to consider
      * @param buffer the byte array from where the characters are to be read
      * @param offset the starting position in the array from where the
@@ -238,16 +230,329 @@ public class PackUtils {
     public static String unpackLimitedString(
             int maxLength, byte[] buffer, int offset) {
 
-        String result = "";
-        for (int i = 0; i < maxLength; i++ ) {
-            char c = unpackChar(buffer, offset+2*i);
-            if ( c != '\0' ) {
-                result += c;
-            } else {
+        char[] chars = new char[maxLength];
+        int length = 0;
+        while (length < maxLength) {
+            char c = unpackChar(buffer, offset + 2*length);
+            if (c == '\0') {
+                break;
+            }
+            chars[length++] = c;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Writes a short at the current position of the given buffer, with the
+     * most significant byte first whatever the order of the buffer.
+     *
+     * @param s the short to be written
+     * @param buffer the buffer where the short is written
+     */
+    public static void packShort(short s, ByteBuffer buffer) {
+        buffer.putShort(buffer.order() == ByteOrder.BIG_ENDIAN ? s : Short.reverseBytes(s));
+    }
+
+    /**
+     * Reads a short, laid out with the most significant byte first, from
+     * the current position of the given buffer.
+     *
+     * @param buffer the buffer from where the short is to be read
+     * @return the short that has been read
+     */
+    public static short unpackShort(ByteBuffer buffer) {
+        short s = buffer.getShort();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? s : Short.reverseBytes(s);
+    }
+
+    /**
+     * Writes a char at the current position of the given buffer, with the
+     * most significant byte first whatever the order of the buffer.
+     *
+     * @param c the char to be written
+     * @param buffer the buffer where the char is written
+     */
+    public static void packChar(char c, ByteBuffer buffer) {
+        buffer.putChar(buffer.order() == ByteOrder.BIG_ENDIAN ? c : Character.reverseBytes(c));
+    }
+
+    /**
+     * Reads a char, laid out with the most significant byte first, from
+     * the current position of the given buffer.
+     *
+     * @param buffer the buffer from where the char is to be read
+     * @return the char that has been read
+     */
+    public static char unpackChar(ByteBuffer buffer) {
+        char c = buffer.getChar();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? c : Character.reverseBytes(c);
+    }
+
+    /**
+     * Writes an int at the current position of the given buffer, with the
+     * most significant byte first whatever the order of the buffer.
+     *
+     * @param n the int to be written
+     * @param buffer the buffer where the int is written
+     */
+    public static void packInt(int n, ByteBuffer buffer) {
+        buffer.putInt(buffer.order() == ByteOrder.BIG_ENDIAN ? n : Integer.reverseBytes(n));
+    }
+
+    /**
+     * Reads an int, laid out with the most significant byte first, from
+     * the current position of the given buffer.
+     *
+     * @param buffer the buffer from where the int is to be read
+     * @return the int that has been read
+     */
+    public static int unpackInt(ByteBuffer buffer) {
+        int n = buffer.getInt();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? n : Integer.reverseBytes(n);
+    }
+
+    /**
+     * Writes a long at the current position of the given buffer, with the
+     * most significant byte first whatever the order of the buffer.
+     *
+     * @param n the long to be written
+     * @param buffer the buffer where the long is written
+     */
+    public static void packLong(long n, ByteBuffer buffer) {
+        buffer.putLong(buffer.order() == ByteOrder.BIG_ENDIAN ? n : Long.reverseBytes(n));
+    }
+
+    /**
+     * Reads a long, laid out with the most significant byte first, from
+     * the current position of the given buffer.
+     *
+     * @param buffer the buffer from where the long is to be read
+     * @return the long that has been read
+     */
+    public static long unpackLong(ByteBuffer buffer) {
+        long n = buffer.getLong();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? n : Long.reverseBytes(n);
+    }
+
+    /**
+     * Writes, at most, the first maxLength characters of the String at the
+     * current position of the given buffer, using the same layout as
+     * packLimitedString(String, int, byte[], int). The unused characters
+     * are filled with zeros and the position advances 2*maxLength bytes.
+     *
+     * @param str the string from wich the characters are read
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer where the characters are written
+     */
+    public static void packLimitedString(String str, int maxLength, ByteBuffer buffer) {
+        int length = Math.min(str.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            packChar(str.charAt(i), buffer);
+        }
+        for (int i = length; i < maxLength; i++) {
+            packChar('\0', buffer);
+        }
+    }
+
+    /**
+     * Reads, at most, maxLength characters from the current position of the
+     * given buffer. The position always advances 2*maxLength bytes.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer from where the characters are to be read
+     * @return the String that has been read.
+     */
+    public static String unpackLimitedString(int maxLength, ByteBuffer buffer) {
+        int start = buffer.position();
+        boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+        char[] chars = new char[maxLength];
+        int length = 0;
+        while (length < maxLength) {
+            char c = buffer.getChar(start + 2*length);
+            if (swap) {
+                c = Character.reverseBytes(c);
+            }
+            if (c == '\0') {
                 break;
             }
+            chars[length++] = c;
+        }
+        buffer.position(start + 2*maxLength);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Returns the number of bytes used by a compact string of, at most,
+     * maxLength characters: one byte for its length and maxLength bytes for
+     * its characters.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @return the size of the compact string in bytes
+     */
+    public static int compactStringSize(int maxLength) {
+        return 1 + maxLength;
+    }
+
+    /**
+     * Tells whether the first maxLength characters of the String can be
+     * written as a compact string without losing any of them: they must be
+     * Latin-1, or their UTF-8 form must fit in maxLength bytes.
+     *
+     * @param str the string to check
+     * @param maxLength the maximum number of characters to consider
+     * @return true if packCompactString keeps every character considered
+     */
+    public static boolean fitsCompactString(String str, int maxLength) {
+        int length = Math.min(str.length(), maxLength);
+        if (isLatin1(str, length)) {
+            return true;
+        }
+        int used = 0;
+        int i = 0;
+        while (i < length) {
+            int codePoint = str.codePointAt(i);
+            int chars = Character.charCount(codePoint);
+            if (i + chars > length) {
+                return false;
+            }
+            used += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            i += chars;
+        }
+        return used <= maxLength;
+    }
+
+    /**
+     * Writes, at most, the first maxLength characters of the String starting
+     * at the given position in the given array, using compactStringSize(maxLength)
+     * bytes.
+     *
+     * The first byte holds the number of bytes used by the characters. If
+     * every character fits in Latin-1 the characters are written with one
+     * byte each. Otherwise the high bit of the first byte is set and the
+     * characters are written in UTF-8, keeping only the characters that fit
+     * in maxLength bytes; fitsCompactString tells whether any is dropped.
+     * The unused bytes are filled with zeros.
+     *
+     * @param str the string from wich the characters are read
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the byte array where the characters are written
+     * @param offset the starting position in the array where the string is written
+     */
+    public static void packCompactString(String str, int maxLength, byte[] buffer, int offset) {
+        int length = Math.min(str.length(), maxLength);
+        int used;
+        if (isLatin1(str, length)) {
+            for (int i = 0; i < length; i++) {
+                buffer[offset + 1 + i] = (byte) str.charAt(i);
+            }
+            used = length;
+            buffer[offset] = (byte) used;
+        } else {
+            used = packUtf8(str, length, maxLength, buffer, offset + 1);
+            buffer[offset] = (byte) (0x80 | used);
+        }
+        for (int i = used; i < maxLength; i++) {
+            buffer[offset + 1 + i] = 0;
+        }
+    }
+
+    private static boolean isLatin1(String str, int length) {
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes in UTF-8 the first length characters of the string that fit
+     * in maxBytes bytes, without splitting surrogate pairs.
+     *
+     * @return the number of bytes written
+     */
+    private static int packUtf8(String str, int length, int maxBytes, byte[] buffer, int offset) {
+        int used = 0;
+        int i = 0;
+        while (i < length) {
+            int codePoint = str.codePointAt(i);
+            int chars = Character.charCount(codePoint);
+            int bytes = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (i + chars > length || used + bytes > maxBytes) {
+                break;
+            }
+            if (bytes == 1) {
+                buffer[offset + used] = (byte) codePoint;
+            } else {
+                int shift = 6 * (bytes - 1);
+                buffer[offset + used] = (byte) ((0xF00 >> bytes) | (codePoint >> shift));
+                for (int j = 1; j < bytes; j++) {
+                    shift -= 6;
+                    buffer[offset + used + j] = (byte) (0x80 | ((codePoint >> shift) & 0x3F));
+                }
+            }
+            used += bytes;
+            i += chars;
+        }
+        return used;
+    }
+
+    /**
+     * Reads a compact string written by packCompactString starting at the
+     * given position in the given array.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the byte array from where the string is to be read
+     * @param offset the starting position in the array from where the
+     * string is read.
+     * @return the String that has been read.
+     */
+    public static String unpackCompactString(int maxLength, byte[] buffer, int offset) {
+        int header = buffer[offset] & 0xFF;
+        int used = Math.min(header & 0x7F, maxLength);
+        return new String(buffer, offset + 1, used,
+                (header & 0x80) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a compact string at the current position of the given buffer,
+     * with the same layout as packCompactString(String, int, byte[], int).
+     * The position advances compactStringSize(maxLength) bytes.
+     *
+     * @param str the string from wich the characters are read
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer where the string is written
+     */
+    public static void packCompactString(String str, int maxLength, ByteBuffer buffer) {
+        int size = compactStringSize(maxLength);
+        if (buffer.hasArray()) {
+            packCompactString(str, maxLength, buffer.array(), buffer.arrayOffset() + buffer.position());
+            buffer.position(buffer.position() + size);
+        } else {
+            byte[] field = new byte[size];
+            packCompactString(str, maxLength, field, 0);
+            buffer.put(field);
+        }
+    }
+
+    /**
+     * Reads a compact string from the current position of the given buffer.
+     * The position advances compactStringSize(maxLength) bytes.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer from where the string is to be read
+     * @return the String that has been read.
+     */
+    public static String unpackCompactString(int maxLength, ByteBuffer buffer) {
+        int size = compactStringSize(maxLength);
+        if (buffer.hasArray()) {
+            String str = unpackCompactString(maxLength, buffer.array(), buffer.arrayOffset() + buffer.position());
+            buffer.position(buffer.position() + size);
+            return str;
         }
-        return result;
+        byte[] field = new byte[size];
+        buffer.get(field);
+        return unpackCompactString(maxLength, field, 0);
     }
 
     /**
@@ -0,0 +1,178 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class provides a bounded cache of the limited strings read by
+ * PackUtils, so that names and descriptions that are read again and
+ * again are decoded once and then shared.
+ *
+ * The cache is a two-way set-associative table indexed by a hash of the
+ * encoded field. Each slot keeps a copy of the encoded bytes next to the
+ * decoded String, so a lookup is a hash of the field read as longs and a
+ * vectorized array comparison, and a hit does not allocate anything. A
+ * miss decodes the string and replaces the least recently inserted entry
+ * of its set. Entries are replaced as a whole, so concurrent readers can
+ * share a cache, although the hit and miss counters are then only
+ * approximate.
+ */
+public class StringCache {
+
+    private final Entry[] entries;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    private static final class Entry {
+        private final byte[] key;
+        private final String value;
+
+        private Entry(byte[] key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Creates a cache with, at least, the given number of entries.
+     *
+     * @param capacity the minimum number of entries, rounded up to a power of two
+     */
+    public StringCache(int capacity) {
+        int size = Math.max(2, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        this.entries = new Entry[size];
+        this.mask = size / 2 - 1;
+    }
+
+    /**
+     * Reads, at most, maxLength characters starting at the given position
+     * in the given array, with the same layout as
+     * PackUtils.unpackLimitedString(int, byte[], int).
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the byte array from where the characters are to be read
+     * @param offset the starting position in the array
+     * @return the String that has been read, shared with previous reads
+     */
+    public String unpackLimitedString(int maxLength, byte[] buffer, int offset) {
+        return lookup(maxLength, buffer, offset, false);
+    }
+
+    /**
+     * Reads a compact string starting at the given position in the given
+     * array, with the same layout as
+     * PackUtils.unpackCompactString(int, byte[], int).
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the byte array from where the string is to be read
+     * @param offset the starting position in the array
+     * @return the String that has been read, shared with previous reads
+     */
+    public String unpackCompactString(int maxLength, byte[] buffer, int offset) {
+        return lookup(maxLength, buffer, offset, true);
+    }
+
+    private String lookup(int maxLength, byte[] buffer, int offset, boolean compact) {
+        int size = compact ? PackUtils.compactStringSize(maxLength) : 2 * maxLength;
+        int first = set(hash(buffer, offset, size));
+        for (int slot = first; slot < first + 2; slot++) {
+            Entry entry = entries[slot];
+            if (entry != null && Arrays.equals(entry.key, 0, entry.key.length, buffer, offset, offset + size)) {
+                hits++;
+                return entry.value;
+            }
+        }
+        misses++;
+        String str = compact
+                ? PackUtils.unpackCompactString(maxLength, buffer, offset)
+                : PackUtils.unpackLimitedString(maxLength, buffer, offset);
+        entries[first + 1] = entries[first];
+        entries[first] = new Entry(Arrays.copyOfRange(buffer, offset, offset + size), str);
+        return str;
+    }
+
+    /**
+     * Reads, at most, maxLength characters from the current position of
+     * the given buffer, with the same layout as
+     * PackUtils.unpackLimitedString(int, ByteBuffer). The position always
+     * advances 2*maxLength bytes.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer from where the characters are to be read
+     * @return the String that has been read, shared with previous reads
+     */
+    public String unpackLimitedString(int maxLength, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int start = buffer.position();
+            String str = unpackLimitedString(maxLength, buffer.array(), buffer.arrayOffset() + start);
+            buffer.position(start + 2*maxLength);
+            return str;
+        }
+        // buffers without an accessible array are decoded without caching
+        return PackUtils.unpackLimitedString(maxLength, buffer);
+    }
+
+    /**
+     * Reads a compact string from the current position of the given
+     * buffer, with the same layout as
+     * PackUtils.unpackCompactString(int, ByteBuffer). The position always
+     * advances PackUtils.compactStringSize(maxLength) bytes.
+     *
+     * @param maxLength the maximum number of characters to consider
+     * @param buffer the buffer from where the string is to be read
+     * @return the String that has been read, shared with previous reads
+     */
+    public String unpackCompactString(int maxLength, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int start = buffer.position();
+            String str = unpackCompactString(maxLength, buffer.array(), buffer.arrayOffset() + start);
+            buffer.position(start + PackUtils.compactStringSize(maxLength));
+            return str;
+        }
+        return PackUtils.unpackCompactString(maxLength, buffer);
+    }
+
+    /**
+     * Returns a hash of the given bytes, read eight at a time and mixed
+     * with the finalizer of MurmurHash3.
+     */
+    private static long hash(byte[] buffer, int offset, int size) {
+        long hash = size;
+        int i = 0;
+        for (; i + 8 <= size; i += 8) {
+            hash = Long.rotateLeft(hash ^ PackUtils.unpackLong(buffer, offset + i), 29) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < size; i++) {
+            hash = Long.rotateLeft(hash ^ buffer[offset + i], 29) * 0x9E3779B97F4A7C15L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns the first slot of the set of two slots for the given hash.
+     */
+    private int set(long hash) {
+        return ((int) hash & mask) << 1;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "StringCache{" +
+                "capacity=" + entries.length +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+}
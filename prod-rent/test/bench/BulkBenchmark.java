@@ -0,0 +1,84 @@
+package bench;
+
+import domain.Product;
+import files.ProductFile;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara bolcar i carregar tot el catàleg registre a registre, amb write i read,
+ * i de cop, amb writeAll i readAll, amb els dos tipus d'emmagatzematge.
+ * Es mostra el millor de diverses rondes en MB/s de registres.
+ */
+public class BulkBenchmark {
+
+    private static final String PRODUCTS = "bench_bulk_products.dat";
+    private static final int RECORDS = 500_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<Product> catalog = new ArrayList<>(RECORDS);
+        for (long id = 1; id <= RECORDS; id++) {
+            catalog.add(new Product(id, "Producte " + id, 100, 10));
+        }
+        for (StorageMode mode : StorageMode.values()) {
+            System.out.println(mode);
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int round = 0; round < ROUNDS; round++) {
+                measure(mode, catalog, best);
+            }
+            report("write", best[0]);
+            report("writeAll", best[1]);
+            report("read", best[2]);
+            report("readAll", best[3]);
+            System.out.println();
+        }
+    }
+
+    private static void measure(StorageMode mode, List<Product> catalog, long[] best) throws IOException {
+        new File(PRODUCTS).delete();
+        ProductFile products = new ProductFile(PRODUCTS, mode);
+        try {
+            long start = System.nanoTime();
+            for (Product product : catalog) {
+                products.write(product);
+            }
+            products.flush();
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+
+            products.reset();
+            start = System.nanoTime();
+            products.writeAll(catalog);
+            products.flush();
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+
+            long check = 0;
+            start = System.nanoTime();
+            for (long id = 1; id <= RECORDS; id++) {
+                check += products.read(id).getStock();
+            }
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (Product product : products.readAll()) {
+                check += product.getStock();
+            }
+            best[3] = Math.min(best[3], System.nanoTime() - start);
+            if (check != 20L * RECORDS) {
+                throw new IllegalStateException("Unexpected check " + check);
+            }
+        } finally {
+            products.close();
+            new File(PRODUCTS).delete();
+        }
+    }
+
+    private static void report(String name, long nanos) {
+        double megabytes = (double) RECORDS * Product.COMPACT_SIZE / (1024 * 1024);
+        System.out.printf("%-9s %7.1f ms %8.1f MB/s%n", name, nanos / 1e6, megabytes / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,95 @@
+package bench;
+
+import domain.Product;
+import files.FixedRecordFile;
+import files.ProductCodec;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mesura el cost de les sumes de verificació CRC32C dels registres.
+ * Es comparen escriptures, lectures aleatòries i la comprovació sencera amb verify
+ * de dos fitxers de productes, un amb sumes de verificació i l'altre sense, amb els dos tipus
+ * d'emmagatzematge.
+ * Les mesures dels dos fitxers s'alternen i es mostra la millor de cada una, perquè el soroll
+ * de la màquina afecti igual als dos casos.
+ */
+public class ChecksumBenchmark {
+
+    private static final String PLAIN = "bench_plain.dat";
+    private static final String CHECKED = "bench_checked.dat";
+    private static final int RECORDS = 200_000;
+    private static final int READS = 2_000_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        for (StorageMode mode : StorageMode.values()) {
+            System.out.println(mode);
+            run(mode);
+            System.out.println();
+        }
+    }
+
+    private static void run(StorageMode mode) throws IOException {
+        new File(PLAIN).delete();
+        new File(CHECKED).delete();
+        FixedRecordFile<Product> plain = new FixedRecordFile<>(PLAIN, mode, new ProductCodec(), false);
+        FixedRecordFile<Product> checked = new FixedRecordFile<>(CHECKED, mode, new ProductCodec(), true);
+        try {
+            long[][] best = new long[2][3];
+            for (long[] times : best) {
+                Arrays.fill(times, Long.MAX_VALUE);
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                measure(plain, best[0]);
+                measure(checked, best[1]);
+            }
+            report("plain", best[0]);
+            report("crc32c", best[1]);
+            System.out.printf("overhead: write %+.1f%%  read %+.1f%%  verify %+.1f%%%n",
+                    overhead(best, 0), overhead(best, 1), overhead(best, 2));
+        } finally {
+            plain.close();
+            checked.close();
+            new File(PLAIN).delete();
+            new File(CHECKED).delete();
+        }
+    }
+
+    private static void measure(FixedRecordFile<Product> products, long[] best) throws IOException {
+        long start = System.nanoTime();
+        for (long id = 1; id <= RECORDS; id++) {
+            products.write(new Product(id, "Producte " + id, 100, 10));
+        }
+        best[0] = Math.min(best[0], System.nanoTime() - start);
+
+        long check = 0;
+        long seed = 42;
+        start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            long id = 1 + Long.remainderUnsigned(seed >>> 16, RECORDS);
+            check += products.read(id).getStock();
+        }
+        best[1] = Math.min(best[1], System.nanoTime() - start);
+
+        start = System.nanoTime();
+        check += products.verify().size();
+        best[2] = Math.min(best[2], System.nanoTime() - start);
+        if (check != 10L * READS) {
+            throw new IllegalStateException("Unexpected check " + check);
+        }
+    }
+
+    private static void report(String name, long[] best) {
+        System.out.printf("%-7s write %6.1f ns/record  read %6.1f ns/record  verify %5.1f ms%n",
+                name, (double) best[0] / RECORDS, (double) best[1] / READS, best[2] / 1e6);
+    }
+
+    private static double overhead(long[][] best, int measure) {
+        return 100.0 * (best[1][measure] - best[0][measure]) / best[0][measure];
+    }
+}
@@ -0,0 +1,106 @@
+package bench;
+
+import files.CompiledMovementReader;
+import files.MovementCompiler;
+import files.MovementReader;
+import files.MovementSource;
+import files.Operation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.StringTokenizer;
+
+/**
+ * Compara llegir el fitxer de moviments amb BufferedReader i StringTokenizer,
+ * com ho feia ProdRent, amb MovementReader i compilat amb CompiledMovementReader.
+ * Les línies són lloguers i devolucions, que només tenen números. Es mostra
+ * el millor de diverses rondes i els bytes reservats per línia.
+ */
+public class MovementParserBenchmark {
+
+    private static final String MOVEMENTS = "bench_movements.txt";
+    private static final String COMPILED = "bench_movements.bin";
+    private static final int LINES = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MOVEMENTS))) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write((i % 2 == 0 ? "ALQUILAR," : "devolver,") + (i % 5000 + 1) + "," + (i % 700 + 1));
+                writer.newLine();
+            }
+        }
+        new MovementCompiler().compile(MOVEMENTS, COMPILED);
+        try {
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            long[] allocated = new long[3];
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = allocatedBytes();
+                long start = System.nanoTime();
+                long check = tokenizer();
+                best[0] = Math.min(best[0], System.nanoTime() - start);
+                allocated[0] = allocatedBytes() - before;
+
+                before = allocatedBytes();
+                start = System.nanoTime();
+                if (reader(new MovementReader(MOVEMENTS)) != check) {
+                    throw new IllegalStateException("Different results");
+                }
+                best[1] = Math.min(best[1], System.nanoTime() - start);
+                allocated[1] = allocatedBytes() - before;
+
+                before = allocatedBytes();
+                start = System.nanoTime();
+                if (reader(new CompiledMovementReader(COMPILED)) != check) {
+                    throw new IllegalStateException("Different results");
+                }
+                best[2] = Math.min(best[2], System.nanoTime() - start);
+                allocated[2] = allocatedBytes() - before;
+            }
+            report("StringTokenizer", best[0], allocated[0]);
+            report("MovementReader", best[1], allocated[1]);
+            report("Compiled", best[2], allocated[2]);
+        } finally {
+            new File(MOVEMENTS).delete();
+            new File(COMPILED).delete();
+        }
+    }
+
+    private static long tokenizer() throws IOException {
+        long check = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(MOVEMENTS))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StringTokenizer tokenizer = new StringTokenizer(line, ",");
+                Operation operation = Operation.fromName(tokenizer.nextToken().trim().toUpperCase());
+                check += operation.ordinal() + Long.parseLong(tokenizer.nextToken()) + Long.parseLong(tokenizer.nextToken());
+            }
+        }
+        return check;
+    }
+
+    private static long reader(MovementSource movements) throws IOException {
+        long check = 0;
+        try (MovementSource reader = movements) {
+            while (reader.nextLine()) {
+                Operation operation = reader.nextOperation();
+                check += operation.ordinal() + reader.nextLong() + reader.nextLong();
+            }
+        }
+        return check;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static void report(String name, long nanos, long allocated) {
+        System.out.printf("%-16s %7.1f ms %8.1f ns/line %8.1f bytes/line%n",
+                name, nanos / 1e6, (double) nanos / LINES, (double) allocated / LINES);
+    }
+}
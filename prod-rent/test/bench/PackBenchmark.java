@@ -0,0 +1,142 @@
+package bench;
+
+import domain.Client;
+import utils.PackUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compara l'empaquetat byte a byte amb desplaçaments (l'antiga implementació de PackUtils)
+ * amb les vistes VarHandle de PackUtils i amb les sobrecàrregues de ByteBuffer,
+ * primer amb els camps numèrics d'un registre de client i després amb el registre sencer.
+ */
+public class PackBenchmark {
+
+    private static final int ITERATIONS = 20_000_000;
+    private static final int FIELDS_SIZE = 8 + 4 + 3 * 8 + 3 * 4;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 3; round++) {
+            report("fields shifts", shifts());
+            report("fields varhandle", varHandles());
+            report("fields buffer", buffers());
+            report("client bytes", clientBytes());
+            report("client buffer", clientBuffer());
+            System.out.println();
+        }
+    }
+
+    private static void report(String name, long[] result) {
+        System.out.printf("%-17s %6.1f ns/record (check %d)%n", name, (double) result[0] / ITERATIONS, result[1]);
+    }
+
+    private static long[] shifts() {
+        byte[] bytes = new byte[FIELDS_SIZE];
+        long check = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int offset = 0;
+            legacyPackLong(i, bytes, offset);
+            legacyPackInt(i, bytes, offset += 8);
+            for (int j = 0; j < 3; j++) {
+                legacyPackLong(i + j, bytes, offset += j == 0 ? 4 : 8);
+            }
+            offset += 8;
+            for (int j = 0; j < 3; j++) {
+                legacyPackInt(j, bytes, offset + 4 * j);
+            }
+            check += legacyUnpackLong(bytes, 0) + legacyUnpackInt(bytes, 8) + legacyUnpackLong(bytes, 28)
+                    + legacyUnpackInt(bytes, FIELDS_SIZE - 4);
+        }
+        return new long[]{System.nanoTime() - start, check};
+    }
+
+    private static long[] varHandles() {
+        byte[] bytes = new byte[FIELDS_SIZE];
+        long check = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int offset = 0;
+            PackUtils.packLong(i, bytes, offset);
+            PackUtils.packInt(i, bytes, offset += 8);
+            for (int j = 0; j < 3; j++) {
+                PackUtils.packLong(i + j, bytes, offset += j == 0 ? 4 : 8);
+            }
+            offset += 8;
+            for (int j = 0; j < 3; j++) {
+                PackUtils.packInt(j, bytes, offset + 4 * j);
+            }
+            check += PackUtils.unpackLong(bytes, 0) + PackUtils.unpackInt(bytes, 8) + PackUtils.unpackLong(bytes, 28)
+                    + PackUtils.unpackInt(bytes, FIELDS_SIZE - 4);
+        }
+        return new long[]{System.nanoTime() - start, check};
+    }
+
+    private static long[] buffers() {
+        ByteBuffer buffer = ByteBuffer.allocate(FIELDS_SIZE);
+        long check = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            buffer.clear();
+            PackUtils.packLong(i, buffer);
+            PackUtils.packInt(i, buffer);
+            for (int j = 0; j < 3; j++) {
+                PackUtils.packLong(i + j, buffer);
+            }
+            for (int j = 0; j < 3; j++) {
+                PackUtils.packInt(j, buffer);
+            }
+            check += buffer.getLong(0) + buffer.getInt(8) + buffer.getLong(28) + buffer.getInt(FIELDS_SIZE - 4);
+        }
+        return new long[]{System.nanoTime() - start, check};
+    }
+
+    private static long[] clientBytes() {
+        Client client = new Client(1L, "Client1", 100);
+        client.rentProduct(7L);
+        long check = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            check += Client.fromBytes(client.toBytes()).getBalance();
+        }
+        return new long[]{(System.nanoTime() - start) * 10, check};
+    }
+
+    private static long[] clientBuffer() {
+        Client client = new Client(1L, "Client1", 100);
+        client.rentProduct(7L);
+        ByteBuffer buffer = ByteBuffer.allocate(Client.SIZE);
+        long check = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            buffer.clear();
+            client.encode(buffer);
+            buffer.flip();
+            check += Client.decode(buffer).getBalance();
+        }
+        return new long[]{(System.nanoTime() - start) * 10, check};
+    }
+
+    private static void legacyPackInt(int n, byte[] buffer, int offset) {
+        buffer[offset    ] = (byte) (n >> 24);
+        buffer[offset + 1] = (byte) (n >> 16);
+        buffer[offset + 2] = (byte) (n >>  8);
+        buffer[offset + 3] = (byte)  n       ;
+    }
+
+    private static int legacyUnpackInt(byte[] buffer, int offset) {
+        return  ((buffer[offset    ]       ) << 24) |
+                ((buffer[offset + 1] & 0xFF) << 16) |
+                ((buffer[offset + 2] & 0xFF) <<  8) |
+                ((buffer[offset + 3] & 0xFF)      ) ;
+    }
+
+    private static void legacyPackLong(long n, byte[] buffer, int offset) {
+        legacyPackInt((int) (n >> 32), buffer, offset);
+        legacyPackInt((int) n, buffer, offset + 4);
+    }
+
+    private static long legacyUnpackLong(byte[] buffer, int offset) {
+        return ((long) legacyUnpackInt(buffer, offset) << 32) | (legacyUnpackInt(buffer, offset + 4) & 0xFFFFFFFFL);
+    }
+}
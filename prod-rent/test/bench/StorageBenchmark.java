@@ -0,0 +1,52 @@
+package bench;
+
+import domain.Client;
+import files.ClientFile;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compara el rendiment de ClientFile sobre RandomAccessFile i sobre un fitxer projectat a memòria.
+ * Escriu N clients i després fa lectures i reescriptures aleatòries com les d'un ALQUILAR.
+ */
+public class StorageBenchmark {
+
+    private static final int RECORDS = 100_000;
+    private static final int UPDATES = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        for (int round = 0; round < 3; round++) {
+            for (StorageMode mode : StorageMode.values()) {
+                run(mode);
+            }
+        }
+    }
+
+    private static void run(StorageMode mode) throws IOException {
+        String fileName = "bench_" + mode.name().toLowerCase() + ".dat";
+        ClientFile clients = new ClientFile(fileName, mode);
+        clients.reset();
+        long start = System.nanoTime();
+        for (long id = 1; id <= RECORDS; id++) {
+            clients.write(new Client(id, "Client" + id, 100));
+        }
+        long loaded = System.nanoTime();
+        Random random = new Random(42);
+        for (int i = 0; i < UPDATES; i++) {
+            long id = 1 + random.nextInt(RECORDS);
+            if (clients.isValid(id)) {
+                Client client = clients.read(id);
+                client.addBalance(1);
+                clients.write(client);
+            }
+        }
+        long end = System.nanoTime();
+        clients.close();
+        new File(fileName).delete();
+        System.out.printf("%-13s load %8.0f rec/s  update %8.0f ops/s%n", mode,
+                RECORDS / ((loaded - start) / 1e9), UPDATES / ((end - loaded) / 1e9));
+    }
+}
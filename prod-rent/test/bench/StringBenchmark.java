@@ -0,0 +1,72 @@
+package bench;
+
+import domain.Product;
+import utils.PackUtils;
+import utils.StringCache;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compara la lectura de les descripcions dels productes concatenant caràcter a caràcter
+ * (l'antiga implementació), amb la lectura d'una sola passada i amb la memòria cau de textos.
+ * Es llegeixen moltes vegades unes poques descripcions diferents, com en un catàleg real,
+ * i es mostra el temps i la memòria reservada per cada lectura. La memòria cau té unes
+ * quantes posicions per cada text diferent, perquè les col·lisions no provoquin fallades.
+ */
+public class StringBenchmark {
+
+    private static final int ITERATIONS = 20_000_000;
+    private static final int DISTINCT = 500;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int fieldSize = 2 * Product.DESCRIPTION_LIMIT;
+        byte[] records = new byte[DISTINCT * fieldSize];
+        for (int i = 0; i < DISTINCT; i++) {
+            PackUtils.packLimitedString("Producte num. " + i, Product.DESCRIPTION_LIMIT, records, i * fieldSize);
+        }
+        for (int round = 0; round < 3; round++) {
+            run("concat", records, fieldSize, null, true);
+            run("single pass", records, fieldSize, null, false);
+            run("cached", records, fieldSize, new StringCache(4096), false);
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, byte[] records, int fieldSize, StringCache strings, boolean concat) {
+        long check = 0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int offset = (i % DISTINCT) * fieldSize;
+            String description;
+            if (concat) {
+                description = concatUnpack(Product.DESCRIPTION_LIMIT, records, offset);
+            } else if (strings != null) {
+                description = strings.unpackLimitedString(Product.DESCRIPTION_LIMIT, records, offset);
+            } else {
+                description = PackUtils.unpackLimitedString(Product.DESCRIPTION_LIMIT, records, offset);
+            }
+            check += description.length();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.printf("%-12s %6.1f ns/read %7.1f bytes/read (check %d)%n", name,
+                (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS, check);
+    }
+
+    private static String concatUnpack(int maxLength, byte[] buffer, int offset) {
+        String result = "";
+        for (int i = 0; i < maxLength; i++ ) {
+            char c = PackUtils.unpackChar(buffer, offset+2*i);
+            if ( c != '\0' ) {
+                result += c;
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import domain.Client;
+import domain.ClientView;
+import domain.Product;
+import domain.ProductView;
+import files.ClientFile;
+import files.ProductFile;
+import files.StorageMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compara la validació d'un lloguer que es rebutja per falta de saldo llegint els
+ * registres complets amb read(id) i llegint-los a unes vistes reutilitzades.
+ * Es mostra el temps i la memòria reservada per cada validació.
+ */
+public class ViewBenchmark {
+
+    private static final String CLIENTS = "bench_view_clients.dat";
+    private static final String PRODUCTS = "bench_view_products.dat";
+    private static final int RECORDS = 1_000;
+    private static final int ITERATIONS = 5_000_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        new File(CLIENTS).delete();
+        new File(PRODUCTS).delete();
+        ClientFile clients = new ClientFile(CLIENTS, StorageMode.MAPPED);
+        ProductFile products = new ProductFile(PRODUCTS, StorageMode.MAPPED);
+        try {
+            for (long id = 1; id <= RECORDS; id++) {
+                clients.write(new Client(id, "Client " + id, 1));
+                products.write(new Product(id, "Producte " + id, 100, 10));
+            }
+            for (int round = 0; round < 3; round++) {
+                runRecords(clients, products);
+                runViews(clients, products);
+                System.out.println();
+            }
+        } finally {
+            clients.close();
+            products.close();
+            new File(CLIENTS).delete();
+            new File(PRODUCTS).delete();
+        }
+    }
+
+    private static void runRecords(ClientFile clients, ProductFile products) throws IOException {
+        long rejected = 0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long id = 1 + i % RECORDS;
+            Client client = clients.read(id);
+            Product product = products.read(id);
+            if (product.getStock() > 0 && client.getBalance() < product.getPrice()) {
+                rejected++;
+            }
+        }
+        report("records", start, allocated, rejected);
+    }
+
+    private static void runViews(ClientFile clients, ProductFile products) throws IOException {
+        ClientView client = new ClientView();
+        ProductView product = new ProductView();
+        long rejected = 0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long id = 1 + i % RECORDS;
+            clients.read(id, client);
+            products.read(id, product);
+            if (product.getStock() > 0 && client.getBalance() < product.getPrice()) {
+                rejected++;
+            }
+        }
+        report("views", start, allocated, rejected);
+    }
+
+    private static void report(String name, long start, long allocated, long rejected) {
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.printf("%-8s %6.1f ns/check %7.1f bytes/check (rejected %d)%n", name,
+                (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS, rejected);
+    }
+}
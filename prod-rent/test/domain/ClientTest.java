@@ -1,6 +1,10 @@
 package domain;
 
 import org.junit.jupiter.api.Test;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -108,6 +112,40 @@ class ClientTest {
         assertEquals(1, client.getRentedUnits(2L));
     }
 
+    @Test
+    void forget_returned_product() {
+        Client client = new Client(1L, "Name", 25);
+        client.rentProduct(1L);
+        client.rentProduct(2L);
+        client.rentProduct(3L);
+        assertFalse(client.forgetProduct(2L));
+        assertFalse(client.forgetProduct(4L));
+        client.returnProduct(2L);
+        assertTrue(client.forgetProduct(2L));
+        assertFalse(client.hasProduct(2L));
+        assertFalse(client.returnProduct(2L));
+        assertEquals(1, client.getRentedUnits(3L));
+        assertEquals(2, client.getSlotCount());
+        // la posició queda lliure per a un altre producte
+        assertTrue(client.rentProduct(4L));
+    }
+
+    @Test
+    void forget_product_keeps_the_index() {
+        Client client = new Client(1L, "Name", 100, 100);
+        for (long id = 1; id <= 20; id++) {
+            client.rentProduct(id);
+        }
+        for (long id = 1; id <= 20; id += 2) {
+            client.returnProduct(id);
+            assertTrue(client.forgetProduct(id));
+        }
+        for (long id = 1; id <= 20; id++) {
+            assertEquals(id % 2 == 0, client.hasProduct(id), "product " + id);
+        }
+        assertArrayEquals(new long[]{2, 4, 6, 8, 10, 12, 14, 16, 18, 20}, client.getRentedIds());
+    }
+
     @Test
     void has_product_product() {
         Client client = new Client(1L, "Name", 25);
@@ -153,6 +191,33 @@ class ClientTest {
         assertTrue(client.isEqualTo(recovered));
     }
 
+    @Test
+    void encode_matches_to_bytes() {
+        Client client = new Client(1L, "Name", 25);
+        client.rentProduct(4L);
+        ByteBuffer buffer = ByteBuffer.allocate(Client.SIZE);
+        new Client(9L, "LongerName", 99).encode(buffer);
+        buffer.clear();
+        client.encode(buffer);
+        assertEquals(Client.SIZE, buffer.position());
+        assertArrayEquals(client.toBytes(), Arrays.copyOf(buffer.array(), Client.SIZE));
+        buffer.flip();
+        assertTrue(client.isEqualTo(Client.decode(buffer)));
+    }
+
+    @Test
+    void compact_encoding_round_trip() {
+        Client client = new Client(1L, "Àngel", 25);
+        client.rentProduct(4L);
+        client.rentProduct(4L);
+        ByteBuffer buffer = ByteBuffer.allocate(Client.COMPACT_SIZE);
+        client.encodeCompact(buffer);
+        assertEquals(Client.COMPACT_SIZE, buffer.position());
+        buffer.flip();
+        assertTrue(client.isEqualTo(Client.decodeCompact(buffer, null)));
+        assertTrue(Client.COMPACT_SIZE < Client.SIZE);
+    }
+
     @Test
     void is_equal_to_no_products() {
         Client client = new Client(1L, "Name", 25);
@@ -210,4 +275,118 @@ class ClientTest {
         String expected = "Client{id=1, name='Name', balance=25, productIds=[1, 2, 3], stocks=[1, 2, 1]}";
         assertEquals(expected, client.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void capacity_limits_distinct_products() {
+        Client client = new Client(1L, "Name", 25, 5);
+        for (long id = 1; id <= 5; id++) {
+            assertTrue(client.canAddProduct(id));
+            assertTrue(client.rentProduct(id));
+        }
+        assertFalse(client.canAddProduct(6L));
+        assertFalse(client.rentProduct(6L));
+        assertTrue(client.rentProduct(3L));
+        assertEquals(2, client.getRentedUnits(3L));
+        assertThrows(IllegalArgumentException.class, () -> new Client(1L, "Name", 25, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Client(1L, "Name", 25, Client.MAX_CAPACITY + 1));
+    }
+
+    @Test
+    void many_products() {
+        Client client = new Client(1L, "Name", 25, 1000);
+        for (long id = 1000; id >= 1; id--) {
+            assertTrue(client.rentProduct(id * 7));
+        }
+        assertTrue(client.returnProduct(700L));
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(client.hasProduct(id * 7));
+            assertEquals(id == 100 ? 0 : 1, client.getRentedUnits(id * 7));
+        }
+        assertFalse(client.hasProduct(8L));
+        assertEquals(999, client.getRentedIds().length);
+        assertFalse(client.canAddProduct(8L));
+    }
+
+    @Test
+    void record_with_overflow_is_incomplete_until_its_pages_are_added() {
+        Client client = new Client(1L, "Name", 25, 10);
+        for (long id = 1; id <= 5; id++) {
+            client.rentProduct(id);
+        }
+        client.setOverflowPage(4L);
+        assertEquals(Client.SIZE, client.toBytes().length);
+
+        Client read = Client.fromBytes(client.toBytes());
+        assertEquals(10, read.getCapacity());
+        assertEquals(4L, read.getOverflowPage());
+        assertEquals(5, read.getSlotCount());
+        assertEquals(3, read.getMissingSlots());
+        assertThrows(IllegalStateException.class, () -> read.hasProduct(1L));
+        for (int slot = 2; slot < 5; slot++) {
+            read.addOverflowSlot(client.getSlotId(slot), client.getSlotUnits(slot));
+        }
+        assertEquals(0, read.getMissingSlots());
+        assertTrue(client.isEqualTo(read));
+
+        ByteBuffer buffer = ByteBuffer.allocate(Client.COMPACT_SIZE);
+        client.encodeCompact(buffer);
+        buffer.flip();
+        assertEquals(3, Client.decodeCompact(buffer, null).getMissingSlots());
+    }
+
+    @Test
+    void to_string_shows_other_capacities() {
+        Client client = new Client(1L, "Name", 25, 8);
+        client.rentProduct(2L);
+        String expected = "Client{id=1, name='Name', balance=25, productIds=[2], stocks=[1], capacity=8}";
+        assertEquals(expected, client.toString());
+        assertFalse(client.isEqualTo(new Client(1L, "Name", 25)));
+    }
+
+    @Test
+    void view_getters_match_the_decoded_record() {
+        Client client = new Client(0x0102030405060708L, "Ànima", -77);
+        client.rentProduct(41L);
+        client.rentProduct(41L);
+        client.rentProduct(52L);
+        client.returnProduct(52L);
+        Client full = new Client(6L, "LongerName", 99);
+        for (long id = 61; id <= 60 + Client.INLINE_PRODUCTS; id++) {
+            full.rentProduct(id);
+        }
+        for (boolean compact : new boolean[] {false, true}) {
+            for (StringCache strings : new StringCache[] {null, new StringCache(8)}) {
+                for (Client expected : new Client[] {client, full}) {
+                    int size = compact ? Client.COMPACT_SIZE : Client.SIZE;
+                    // el registre no comença al principi del buffer
+                    ByteBuffer buffer = ByteBuffer.allocate(3 + size);
+                    buffer.position(3);
+                    if (compact) {
+                        expected.encodeCompact(buffer);
+                    } else {
+                        expected.encode(buffer);
+                    }
+                    assertEquals(3 + size, buffer.position());
+                    buffer.position(3);
+                    Client decoded = compact ? Client.decodeCompact(buffer, strings) : Client.decode(buffer, strings);
+                    assertEquals(3 + size, buffer.position());
+                    assertTrue(expected.isEqualTo(decoded));
+
+                    ClientView view = new ClientView();
+                    view.load(Arrays.copyOfRange(buffer.array(), 3, 3 + size), compact, strings);
+                    assertEquals(decoded.getId(), view.getId());
+                    assertEquals(decoded.getName(), view.getName());
+                    assertEquals(decoded.getBalance(), view.getBalance());
+                    assertEquals(0L, view.getOverflowPage());
+                    assertEquals(0, view.getMissingSlots());
+                    for (long id : new long[] {41L, 52L, 61L, 62L, 63L, 99L}) {
+                        assertEquals(decoded.hasProduct(id), view.hasProduct(id));
+                        assertEquals(decoded.getRentedUnits(id), view.getRentedUnits(id));
+                        assertEquals(decoded.canAddProduct(id), view.canAddProduct(id));
+                    }
+                    assertTrue(decoded.isEqualTo(view.toClient()));
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package domain;
 
 import org.junit.jupiter.api.Test;
+import utils.StringCache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,6 +53,31 @@ class ProductTest {
         assertEquals(product.getStock(), recovered.getStock());
     }
 
+    @Test
+    void encode_matches_to_bytes() {
+        Product product = new Product(12L, "ACME Laser Beam", 1234, 4);
+        ByteBuffer buffer = ByteBuffer.allocate(Product.SIZE);
+        new Product(1L, "A much longer description", 1, 1).encode(buffer);
+        buffer.clear();
+        product.encode(buffer);
+        assertArrayEquals(product.toBytes(), Arrays.copyOf(buffer.array(), Product.SIZE));
+        buffer.flip();
+        assertTrue(product.isEqualTo(Product.decode(buffer)));
+    }
+
+    @Test
+    void compact_encoding_truncates_like_to_bytes() {
+        Product product = new Product(12L, "A much longer description", 1234, 4);
+        ByteBuffer buffer = ByteBuffer.allocate(Product.COMPACT_SIZE);
+        product.encodeCompact(buffer);
+        assertEquals(Product.COMPACT_SIZE, buffer.position());
+        buffer.flip();
+        Product recovered = Product.decodeCompact(buffer, null);
+        assertEquals(Product.fromBytes(product.toBytes()).getDescription(), recovered.getDescription());
+        assertEquals(1234, recovered.getPrice());
+        assertEquals(4, recovered.getStock());
+    }
+
     @Test
     void to_string() {
         Product product = new Product(12L, "ACME Laser Beam", 1234, 4);
@@ -75,4 +104,35 @@ class ProductTest {
         assertFalse(different4.isEqualTo(product));
         assertFalse(product.isEqualTo(different4));
     }
-}
\ No newline at end of file
+
+    @Test
+    void view_getters_match_the_decoded_record() {
+        Product product = new Product(0x0102030405060708L, "Làser de l'ACME", 1234, -5);
+        for (boolean compact : new boolean[] {false, true}) {
+            for (StringCache strings : new StringCache[] {null, new StringCache(8)}) {
+                int size = compact ? Product.COMPACT_SIZE : Product.SIZE;
+                // el registre no comença al principi del buffer
+                ByteBuffer buffer = ByteBuffer.allocate(3 + size);
+                buffer.position(3);
+                if (compact) {
+                    product.encodeCompact(buffer);
+                } else {
+                    product.encode(buffer);
+                }
+                assertEquals(3 + size, buffer.position());
+                buffer.position(3);
+                Product decoded = compact ? Product.decodeCompact(buffer, strings) : Product.decode(buffer, strings);
+                assertEquals(3 + size, buffer.position());
+                assertTrue(product.isEqualTo(decoded));
+
+                ProductView view = new ProductView();
+                view.load(Arrays.copyOfRange(buffer.array(), 3, 3 + size), compact, strings);
+                assertEquals(decoded.getId(), view.getId());
+                assertEquals(decoded.getDescription(), view.getDescription());
+                assertEquals(decoded.getPrice(), view.getPrice());
+                assertEquals(decoded.getStock(), view.getStock());
+                assertTrue(decoded.isEqualTo(view.toProduct()));
+            }
+        }
+    }
+}
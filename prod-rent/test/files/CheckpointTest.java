@@ -0,0 +1,67 @@
+package files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+
+    static final String MOVEMENTS_TEST = "checkpoint_movements_test.txt";
+
+    @AfterEach
+    void tearDown() {
+        new File(MOVEMENTS_TEST).delete();
+    }
+
+    @Test
+    void matches_the_same_file_with_appended_movements() throws IOException {
+        String applied = "ALQUILAR,1,2\n".repeat(10000);
+        Files.writeString(Paths.get(MOVEMENTS_TEST), applied);
+        long position = applied.length();
+        Checkpoint checkpoint = new Checkpoint(position, 10000, Checkpoint.fingerprint(MOVEMENTS_TEST, position));
+
+        ByteBuffer buffer = ByteBuffer.allocate(Checkpoint.SIZE);
+        checkpoint.encode(buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        Checkpoint decoded = Checkpoint.decode(buffer);
+        assertEquals(checkpoint.getPosition(), decoded.getPosition());
+        assertEquals(checkpoint.getLines(), decoded.getLines());
+        assertEquals(checkpoint.getFingerprint(), decoded.getFingerprint());
+
+        assertTrue(checkpoint.matches(MOVEMENTS_TEST));
+        Files.writeString(Paths.get(MOVEMENTS_TEST), "DEVOLVER,1,2\n", StandardOpenOption.APPEND);
+        assertTrue(checkpoint.matches(MOVEMENTS_TEST));
+    }
+
+    @Test
+    void rejects_other_files() throws IOException {
+        String applied = "ALQUILAR,1,2\n".repeat(10000);
+        Files.writeString(Paths.get(MOVEMENTS_TEST), applied);
+        Checkpoint checkpoint = new Checkpoint(applied.length(), 10000, Checkpoint.fingerprint(MOVEMENTS_TEST, applied.length()));
+
+        // un canvi al final del que ja s'havia aplicat
+        Files.writeString(Paths.get(MOVEMENTS_TEST), applied.substring(0, applied.length() - 2) + "3\n");
+        assertFalse(checkpoint.matches(MOVEMENTS_TEST));
+        // un fitxer més curt
+        Files.writeString(Paths.get(MOVEMENTS_TEST), applied.substring(1));
+        assertFalse(checkpoint.matches(MOVEMENTS_TEST));
+        assertThrows(IOException.class, () -> Checkpoint.fingerprint(MOVEMENTS_TEST, applied.length()));
+
+        // l'última línia aplicada no s'havia acabat: el que s'hi afegeix en formaria part
+        String partial = "ALQUILAR,1,2\nDEVOLVER,1";
+        Files.writeString(Paths.get(MOVEMENTS_TEST), partial);
+        Checkpoint unfinished = new Checkpoint(partial.length(), 2, Checkpoint.fingerprint(MOVEMENTS_TEST, partial.length()));
+        assertTrue(unfinished.matches(MOVEMENTS_TEST));
+        Files.writeString(Paths.get(MOVEMENTS_TEST), "0\n", StandardOpenOption.APPEND);
+        assertFalse(unfinished.matches(MOVEMENTS_TEST));
+    }
+}
@@ -1,18 +1,23 @@
 package files;
 
 import domain.Client;
+import domain.ClientView;
+import domain.Product;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ClientFileTest {
 
     static final String CLIENT_TEST = "client_test.dat";
+    static final String OVERFLOW_TEST = "client_overflow_test.dat";
+    static final String PRODUCT_TEST = "client_product_test.dat";
 
     ClientFile clients;
 
@@ -32,6 +37,35 @@ class ClientFileTest {
     void tearDown() throws IOException {
         clients.close();
         new File(CLIENT_TEST).delete();
+        new File(OVERFLOW_TEST).delete();
+        new File(PRODUCT_TEST).delete();
+    }
+
+    /**
+     * @param id
+     * @param products productes diferents que lloga el client
+     * @return client de capacitat 100
+     */
+    private Client withProducts(long id, int products) {
+        Client client = new Client(id, "Client" + id, 100, 100);
+        for (long product = 1; product <= products; product++) {
+            client.rentProduct(product * 10);
+        }
+        return client;
+    }
+
+    @Test
+    void new_files_have_format_1_by_default() throws IOException {
+        for (StorageMode mode : StorageMode.values()) {
+            clients.close();
+            new File(CLIENT_TEST).delete();
+            clients = new ClientFile(CLIENT_TEST, mode);
+            assertEquals(FileHeader.VERSION, clients.getCodec().version());
+            // el format 1 guarda qualsevol nom que hi càpiga
+            Client client = new Client(1L, "Дмитрий Ив", 10);
+            clients.write(client);
+            assertTrue(client.isEqualTo(clients.read(1L)));
+        }
     }
 
     @Test
@@ -44,6 +78,189 @@ class ClientFileTest {
         assertTrue(client3.isEqualTo(read3));
     }
 
+    @Test
+    void read_into_view() throws IOException {
+        client2.rentProduct(7L);
+        client2.rentProduct(7L);
+        clients.write(client2);
+        ClientView view = new ClientView();
+        clients.read(2L, view);
+        assertEquals(2L, view.getId());
+        assertEquals(456, view.getBalance());
+        assertTrue(view.hasProduct(7L));
+        assertEquals(2, view.getRentedUnits(7L));
+        assertTrue(view.canAddProduct(8L));
+        assertEquals("Client2", view.getName());
+        assertTrue(client2.isEqualTo(view.toClient()));
+        clients.read(1L, view);
+        assertEquals("Client1", view.getName());
+        assertFalse(view.hasProduct(7L));
+    }
+
+    @Test
+    void view_sees_batched_writes() throws IOException {
+        clients.enableBatching();
+        client3.subBalance(89);
+        clients.write(client3);
+        ClientView view = new ClientView();
+        clients.read(3L, view);
+        assertEquals(700, view.getBalance());
+        assertThrows(IOException.class, () -> clients.read(4L, view));
+    }
+
+    @Test
+    void view_of_a_version_1_file() throws IOException {
+        String name = "client_v1_test.dat";
+        ClientFile old = new ClientFile(name, StorageMode.RANDOM_ACCESS, FileHeader.VERSION);
+        try {
+            client1.rentProduct(5L);
+            old.write(client1);
+            ClientView view = new ClientView();
+            old.read(1L, view);
+            assertEquals("Client1", view.getName());
+            assertEquals(123, view.getBalance());
+            assertEquals(1, view.getRentedUnits(5L));
+            assertTrue(client1.isEqualTo(view.toClient()));
+        } finally {
+            old.close();
+            new File(name).delete();
+        }
+    }
+
+    @Test
+    void overflow_pages_survive_reopen() throws IOException {
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        Client big = withProducts(4L, 40);
+        clients.write(big);
+        assertEquals(3, clients.getOverflowFile().count());
+        clients.close();
+
+        clients = new ClientFile(CLIENT_TEST);
+        assertThrows(IOException.class, () -> clients.read(4L));
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        Client read = clients.read(4L);
+        assertTrue(big.isEqualTo(read));
+        assertTrue(read.rentProduct(400L));
+        clients.write(read);
+        assertTrue(clients.read(4L).hasProduct(400L));
+        assertTrue(client1.isEqualTo(clients.read(1L)));
+        assertEquals(4, clients.count());
+    }
+
+    @Test
+    void overflow_pages_shrink_and_are_freed() throws IOException {
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        clients.write(withProducts(4L, 40));
+        Client small = clients.read(4L).renumber(4L, id -> id <= 100 ? id : 0);
+        small.setOverflowPage(clients.read(4L).getOverflowPage());
+        clients.write(small);
+        assertEquals(1, clients.getOverflowFile().count());
+        assertTrue(small.isEqualTo(clients.read(4L)));
+        clients.delete(4L);
+        assertEquals(0, clients.getOverflowFile().count());
+    }
+
+    @Test
+    void non_latin1_name_at_the_limit_is_not_truncated() throws IOException {
+        Client cyrillic = new Client(4L, "Дмитрий Ив", 100);
+        ClientFile original = new ClientFile(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS, FileHeader.VERSION);
+        try {
+            assertTrue(original.fits(cyrillic));
+            original.write(cyrillic);
+            assertEquals("Дмитрий Ив", original.read(4L).getName());
+        } finally {
+            original.close();
+        }
+        new File(OVERFLOW_TEST).delete();
+
+        ClientFile compact = new ClientFile(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS, FileHeader.COMPACT_VERSION);
+        try {
+            assertFalse(compact.fits(cyrillic));
+            assertThrows(IOException.class, () -> compact.write(cyrillic));
+            assertThrows(IOException.class, () -> compact.writeAll(List.of(cyrillic)));
+            assertFalse(compact.isValid(4L));
+            // deu bytes d'UTF-8, just el límit
+            Client fitting = new Client(4L, "Дмитр", 100);
+            assertTrue(compact.fits(fitting));
+            compact.write(fitting);
+            assertEquals("Дмитр", compact.read(4L).getName());
+        } finally {
+            compact.close();
+        }
+    }
+
+    @Test
+    void forgotten_product_cannot_be_returned_after_its_id_is_reused() throws IOException {
+        // ALTA_PRODUCTO Old, ALQUILAR 1,1, DEVOLVER 1,1, BAJA_PRODUCTO 1, ALTA_PRODUCTO New, DEVOLVER 1,1
+        ProductFile products = new ProductFile(PRODUCT_TEST);
+        try {
+            products.write(new Product(products.nextId(), "Old", 10, 5));
+            Client client = clients.read(1L).copy();
+            client.rentProduct(1L);
+            client.returnProduct(1L);
+            clients.write(client);
+
+            assertTrue(clients.forgetProduct(1L, 1L));
+            assertFalse(clients.forgetProduct(1L, 1L));
+            products.delete(1L);
+            assertEquals(1L, products.nextId());
+            products.write(new Product(1L, "New", 10, 5));
+
+            Client returning = clients.read(1L).copy();
+            assertFalse(returning.hasProduct(1L));
+            assertFalse(returning.returnProduct(1L));
+        } finally {
+            products.close();
+        }
+    }
+
+    @Test
+    void forgotten_product_frees_overflow_pages() throws IOException {
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        Client client = withProducts(4L, 3 + OverflowPage.ENTRIES);
+        long last = (3 + OverflowPage.ENTRIES) * 10L;
+        client.returnProduct(last);
+        clients.write(client);
+        assertEquals(2, clients.getOverflowFile().count());
+        assertFalse(clients.forgetProduct(4L, 10L));
+        assertTrue(clients.forgetProduct(4L, last));
+        assertEquals(1, clients.getOverflowFile().count());
+        assertFalse(clients.read(4L).hasProduct(last));
+        assertEquals(1, clients.read(4L).getRentedUnits(10L));
+    }
+
+    @Test
+    void write_all_writes_overflow_pages() throws IOException {
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        Client big = withProducts(5L, 20);
+        clients.writeAll(List.of(withProducts(4L, 2), big, new Client(6L, "Client6", 1)));
+        assertEquals(6, clients.count());
+        assertEquals(2, clients.getOverflowFile().count());
+        List<Client> all = clients.readAll();
+        assertEquals(6, all.size());
+        assertTrue(big.isEqualTo(all.get(4)));
+        assertTrue(client2.isEqualTo(all.get(1)));
+    }
+
+    @Test
+    void view_reads_overflow_pages() throws IOException {
+        clients.enableOverflow(OVERFLOW_TEST, StorageMode.RANDOM_ACCESS);
+        clients.enableBatching();
+        Client big = withProducts(4L, 30);
+        big.rentProduct(300L);
+        clients.write(big);
+        ClientView view = new ClientView();
+        clients.read(4L, view);
+        assertEquals(2, view.getRentedUnits(300L));
+        assertEquals(1, view.getRentedUnits(10L));
+        assertFalse(view.hasProduct(310L));
+        assertTrue(view.canAddProduct(310L));
+        assertTrue(big.isEqualTo(view.toClient()));
+        clients.read(1L, view);
+        assertFalse(view.hasProduct(300L));
+        assertEquals(0, view.getMissingSlots());
+    }
+
     @Test
     void nextId() throws IOException {
         assertEquals(4, clients.nextId());
@@ -57,6 +274,27 @@ class ClientFileTest {
         assertFalse(clients.isValid(4L));
     }
 
+    @Test
+    void cached_writes_reach_the_file_on_close() throws IOException {
+        clients.enableCache(2);
+        Client cached = clients.read(1L);
+        cached.addBalance(10);
+        clients.write(cached);
+        clients.write(new Client(4L, "Client4", 10));
+        clients.close();
+        clients = new ClientFile(CLIENT_TEST);
+        assertEquals(133, clients.read(1L).getBalance());
+        assertEquals(5, clients.nextId());
+    }
+
+    @Test
+    void records_written_without_saving_header_are_recovered() throws IOException {
+        clients.write(new Client(4L, "Client4", 10));
+        clients = new ClientFile(CLIENT_TEST);
+        assertTrue(clients.isValid(4L));
+        assertEquals(5, clients.nextId());
+    }
+
     @Test
     void reset() throws IOException {
         clients.reset();
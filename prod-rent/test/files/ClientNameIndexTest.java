@@ -0,0 +1,82 @@
+package files;
+
+import domain.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientNameIndexTest {
+
+    static final String CLIENT_TEST = "client_index_test.dat";
+    static final String INDEX_TEST = "client_index_test.idx";
+
+    ClientFile clients;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        clients = new ClientFile(CLIENT_TEST);
+        clients.enableNameIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        clients.write(new Client(1L, "Marta", 10));
+        clients.write(new Client(2L, "Marc", 10));
+        clients.write(new Client(3L, "Anna", 10));
+        clients.write(new Client(4L, "marc", 10));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clients.close();
+        new File(CLIENT_TEST).delete();
+        new File(INDEX_TEST).delete();
+    }
+
+    @Test
+    void prefix_lookup_is_sorted_by_name_and_id() throws IOException {
+        assertEquals(List.of(2L, 4L, 1L), clients.findByNamePrefix("MAR"));
+        assertEquals(List.of(3L), clients.findByNamePrefix("a"));
+        assertTrue(clients.findByNamePrefix("z").isEmpty());
+    }
+
+    @Test
+    void exact_lookup() throws IOException {
+        ClientNameIndex index = new ClientNameIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        assertEquals(List.of(2L, 4L), index.findByName("Marc"));
+        assertTrue(index.findByName("Ma").isEmpty());
+        index.close();
+    }
+
+    @Test
+    void index_survives_reopen_and_is_rebuilt_when_stale() throws IOException {
+        clients.close();
+        clients = new ClientFile(CLIENT_TEST);
+        clients.write(new Client(5L, "Martí", 10));
+        clients.close();
+        clients = new ClientFile(CLIENT_TEST);
+        clients.enableNameIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        assertEquals(List.of(2L, 4L, 1L, 5L), clients.findByNamePrefix("mar"));
+    }
+
+    @Test
+    void scan_without_index_gives_the_same_order() throws IOException {
+        clients.close();
+        clients = new ClientFile(CLIENT_TEST);
+        assertEquals(List.of(2L, 4L, 1L), clients.findByNamePrefix("mar"));
+    }
+
+    @Test
+    void removals_survive_reopen() throws IOException {
+        clients.delete(2L);
+        assertEquals(List.of(4L, 1L), clients.findByNamePrefix("mar"));
+        clients.close();
+        ClientNameIndex index = new ClientNameIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        assertEquals(List.of(4L), index.findByName("Marc"));
+        assertEquals(3L, index.size());
+        index.close();
+        clients = new ClientFile(CLIENT_TEST);
+    }
+}
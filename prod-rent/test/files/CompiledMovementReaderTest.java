@@ -0,0 +1,159 @@
+package files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledMovementReaderTest {
+
+    static final String MOVEMENTS_TEST = "movements_test.txt";
+    static final String COMPILED_TEST = "movements_test.bin";
+
+    static final String[] OPERATIONS = {
+            "ALTA_PRODUCTO", "alta_cliente", " Alquilar ", "DEVOLVER", "INFO_PRODUCTO", "INFO_PRODUCTO_DESC",
+            "INFO_CLIENTE", "BUSCAR_CLIENTE", "INFO_CATALOGO", "BAJA_CLIENTE", "BAJA_PRODUCTO", "BAJA", "", "éxit"
+    };
+    static final String[] FIELDS = {
+            "5", "+5", "-3", "2147483648", "9223372036854775808", "12a", " 7 ", "١٢", "Name", "café", "a b"
+    };
+    static final String[] TERMINATORS = {"\n", "\r\n", "\r", ",\n"};
+
+    @AfterEach
+    void tearDown() {
+        new File(MOVEMENTS_TEST).delete();
+        new File(COMPILED_TEST).delete();
+    }
+
+    @Test
+    void replays_the_same_fields_as_the_text() throws IOException {
+        Random random = new Random(7);
+        Charset charset = Charset.defaultCharset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // prou línies perquè el buffer s'hagi d'omplir diversos cops
+        for (int i = 0; i < 20_000; i++) {
+            if (random.nextInt(20) > 0) {
+                bytes.writeBytes(OPERATIONS[random.nextInt(OPERATIONS.length)].getBytes(charset));
+            }
+            int fields = random.nextInt(5);
+            for (int j = 0; j < fields; j++) {
+                bytes.write(',');
+                bytes.writeBytes(FIELDS[random.nextInt(FIELDS.length)].getBytes(charset));
+            }
+            bytes.writeBytes(TERMINATORS[random.nextInt(TERMINATORS.length)].getBytes(charset));
+        }
+        try (FileOutputStream out = new FileOutputStream(MOVEMENTS_TEST)) {
+            bytes.writeTo(out);
+        }
+
+        long lines = 0;
+        try (MovementSource reader = new MovementReader(MOVEMENTS_TEST)) {
+            while (reader.nextLine()) {
+                lines++;
+            }
+        }
+        MovementCompiler compiler = new MovementCompiler();
+        assertEquals(lines, compiler.compile(MOVEMENTS_TEST, COMPILED_TEST));
+        assertTrue(compiler.getStringCount() < 20);
+        assertFalse(CompiledMovementReader.isCompiled(MOVEMENTS_TEST));
+        assertTrue(CompiledMovementReader.isCompiled(COMPILED_TEST));
+
+        List<String> text;
+        try (MovementSource reader = new MovementReader(MOVEMENTS_TEST)) {
+            text = readLikeProdRent(reader);
+        }
+        try (MovementSource reader = new CompiledMovementReader(COMPILED_TEST)) {
+            assertEquals(text, readLikeProdRent(reader));
+        }
+    }
+
+    @Test
+    void operation_codes_do_not_depend_on_the_declaration_order() {
+        // els fitxers compilats guarden aquests codis: no es poden canviar
+        Operation[] operations = {
+                Operation.ALTA_PRODUCTO, Operation.ALTA_CLIENTE, Operation.INFO_PRODUCTO,
+                Operation.INFO_PRODUCTO_DESC, Operation.INFO_CLIENTE, Operation.BUSCAR_CLIENTE,
+                Operation.INFO_CATALOGO, Operation.BAJA_CLIENTE, Operation.BAJA_PRODUCTO,
+                Operation.ALQUILAR, Operation.DEVOLVER
+        };
+        assertEquals(Operation.values().length, operations.length);
+        for (int i = 0; i < operations.length; i++) {
+            assertEquals(i + 1, operations[i].getCode());
+            assertSame(operations[i], Operation.fromCode(i + 1));
+        }
+        assertNull(Operation.fromCode(MovementCompiler.BLANK));
+        assertNull(Operation.fromCode(MovementCompiler.UNKNOWN));
+        assertNull(Operation.fromCode(operations.length + 1));
+    }
+
+    @Test
+    void rejects_files_that_are_not_compiled() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(MOVEMENTS_TEST)) {
+            out.write("ALQUILAR,1,1\n".getBytes());
+        }
+        assertThrows(IOException.class, () -> new CompiledMovementReader(MOVEMENTS_TEST));
+    }
+
+    /**
+     * llegeix tots els camps d'una operació desconeguda com ho podria fer el gestor d'un Provider,
+     * cadascun amb un tipus diferent
+     */
+    private static void readLikeProvider(MovementSource movement, List<String> result) {
+        String types = "lsti";
+        for (int i = 0; movement.hasMoreFields(); i++) {
+            try {
+                switch (types.charAt(i % types.length())) {
+                    case 's': result.add(movement.nextString()); break;
+                    case 'i': result.add(Integer.toString(movement.nextInt())); break;
+                    case 't': result.add(Integer.toString(movement.nextTrimmedInt())); break;
+                    default: result.add(Long.toString(movement.nextLong()));
+                }
+            } catch (NumberFormatException ex) {
+                result.add("NumberFormatException");
+            }
+        }
+    }
+
+    /**
+     * llegeix els camps de cada línia com ho fa ProdRent: els de l'operació, fins que se
+     * n'acaben o un no és un número vàlid
+     */
+    static List<String> readLikeProdRent(MovementSource movement) throws IOException {
+        List<String> result = new ArrayList<>();
+        while (movement.nextLine()) {
+            if (!movement.hasMoreFields()) {
+                result.add("empty");
+                continue;
+            }
+            Operation operation = movement.nextOperation();
+            result.add(operation + " " + movement.getOperationName());
+            if (operation == null) {
+                readLikeProvider(movement, result);
+                continue;
+            }
+            String fields = operation.getFields();
+            try {
+                for (int i = 0; i < fields.length() && movement.hasMoreFields(); i++) {
+                    switch (fields.charAt(i)) {
+                        case 's': result.add(movement.nextString()); break;
+                        case 'i': result.add(Integer.toString(movement.nextInt())); break;
+                        case 't': result.add(Integer.toString(movement.nextTrimmedInt())); break;
+                        default: result.add(Long.toString(movement.nextLong()));
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                result.add("NumberFormatException");
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package files;
+
+import domain.Client;
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseCompactorTest {
+
+    static final String CLIENT_TEST = "client_compact_test.dat";
+    static final String PRODUCT_TEST = "product_compact_test.dat";
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        ProductFile products = new ProductFile(PRODUCT_TEST);
+        for (long id = 1; id <= 5; id++) {
+            products.write(new Product(id, "Product" + id, 10 * (int) id, 1));
+        }
+        products.delete(1L);
+        products.delete(3L);
+        products.close();
+
+        ClientFile clients = new ClientFile(CLIENT_TEST);
+        Client client1 = new Client(1L, "Client1", 100);
+        Client client2 = new Client(2L, "Client2", 100);
+        client2.rentProduct(4L);
+        client2.rentProduct(4L);
+        client2.rentProduct(5L);
+        Client client3 = new Client(3L, "Client3", 100);
+        client3.rentProduct(2L);
+        clients.write(client1);
+        clients.write(client2);
+        clients.write(client3);
+        clients.delete(1L);
+        clients.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(CLIENT_TEST).delete();
+        new File(PRODUCT_TEST).delete();
+    }
+
+    @Test
+    void removes_holes_and_renumbers_rented_products() throws IOException {
+        var compactor = new DatabaseCompactor(CLIENT_TEST, PRODUCT_TEST, StorageMode.RANDOM_ACCESS);
+        compactor.compact();
+        assertEquals(2L, compactor.getRemovedProducts());
+        assertEquals(1L, compactor.getRemovedClients());
+
+        ProductFile products = new ProductFile(PRODUCT_TEST);
+        assertEquals(4L, products.nextId());
+        assertEquals("Product2", products.read(1L).getDescription());
+        assertEquals("Product4", products.read(2L).getDescription());
+        assertEquals(50, products.read(3L).getPrice());
+        products.close();
+
+        ClientFile clients = new ClientFile(CLIENT_TEST);
+        assertEquals(3L, clients.nextId());
+        Client client2 = clients.read(1L);
+        assertEquals("Client2", client2.getName());
+        assertArrayEquals(new long[]{2L, 3L}, client2.getRentedIds());
+        assertEquals(2, client2.getRentedUnits(2L));
+        assertArrayEquals(new long[]{1L}, clients.read(2L).getRentedIds());
+        clients.close();
+    }
+}
@@ -0,0 +1,75 @@
+package files;
+
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptionIndexTest {
+
+    static final String PRODUCT_TEST = "product_index_test.dat";
+    static final String INDEX_TEST = "product_index_test.idx";
+
+    ProductFile products;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        products = new ProductFile(PRODUCT_TEST);
+        products.enableDescriptionIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        for (long id = 1; id <= 2000; id++) {
+            products.write(new Product(id, "Product" + id, 10, 1));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        products.close();
+        new File(PRODUCT_TEST).delete();
+        new File(INDEX_TEST).delete();
+    }
+
+    @Test
+    void finds_by_normalized_description() throws IOException {
+        assertEquals(1234L, products.findByDescription("product1234").getId());
+        assertEquals(7L, products.findByDescription(" PRODUCT7 ").getId());
+        assertNull(products.findByDescription("Product2001"));
+    }
+
+    @Test
+    void updates_do_not_duplicate_entries() throws IOException {
+        Product product = products.read(5L);
+        product.incrementStock();
+        products.write(product);
+        products.flush();
+        DescriptionIndex index = new DescriptionIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        assertEquals(2000L, index.size());
+        index.close();
+    }
+
+    @Test
+    void index_is_persistent_and_rebuilt_when_stale() throws IOException {
+        products.close();
+        products = new ProductFile(PRODUCT_TEST);
+        products.write(new Product(2001L, "Late product", 1, 1));
+        products.close();
+
+        products = new ProductFile(PRODUCT_TEST);
+        products.enableDescriptionIndex(INDEX_TEST, StorageMode.RANDOM_ACCESS);
+        assertEquals(2001L, products.findByDescription("late product").getId());
+        assertEquals(42L, products.findByDescription("Product42").getId());
+    }
+
+    @Test
+    void deleted_products_are_not_found() throws IOException {
+        products.delete(1234L);
+        assertNull(products.findByDescription("Product1234"));
+        assertEquals(1235L, products.findByDescription("Product1235").getId());
+        products.write(new Product(1234L, "Reused", 10, 1));
+        assertEquals(1234L, products.findByDescription("reused").getId());
+    }
+}
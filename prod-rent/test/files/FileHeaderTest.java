@@ -0,0 +1,195 @@
+package files;
+
+import utils.PackUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileHeaderTest {
+
+    static final String HEADER_TEST = "header_test.dat";
+    static final int RECORD_SIZE = 16;
+
+    @AfterEach
+    void tearDown() {
+        new File(HEADER_TEST).delete();
+    }
+
+    @Test
+    void new_file_is_empty() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        assertEquals(1L, header.nextId());
+        assertFalse(header.isValid(1L));
+        assertEquals(FileHeader.HEADER_SIZE, storage.length());
+        storage.close();
+    }
+
+    @Test
+    void grows_by_extents() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(1L);
+        assertEquals(header.position(FileHeader.EXTENT_RECORDS + 1), storage.length());
+        header.prepareWrite(2L);
+        assertEquals(header.position(FileHeader.EXTENT_RECORDS + 1), storage.length());
+        assertEquals(3L, header.nextId());
+        storage.close();
+    }
+
+    @Test
+    void reserve_grows_without_adding_records() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.reserve(3 * FileHeader.EXTENT_RECORDS + 1);
+        long length = storage.length();
+        assertEquals(header.position(4 * FileHeader.EXTENT_RECORDS + 1), length);
+        assertEquals(1L, header.nextId());
+        header.prepareWrite(3 * FileHeader.EXTENT_RECORDS);
+        assertEquals(length, storage.length());
+        storage.close();
+    }
+
+    @Test
+    void count_survives_reopen() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(5L);
+        header.save();
+        storage.close();
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isValid(5L));
+        assertEquals(6L, header.nextId());
+        storage.close();
+    }
+
+    @Test
+    void checksum_option_survives_reopen() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, FileHeader.VERSION, RECORD_SIZE, FileHeader.CHECKSUMS);
+        assertEquals(RECORD_SIZE + FileHeader.CHECKSUM_SIZE, header.getSlotSize());
+        header.prepareWrite(2L);
+        header.save();
+        storage.close();
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.hasChecksums());
+        assertEquals(FileHeader.HEADER_SIZE + RECORD_SIZE + FileHeader.CHECKSUM_SIZE, header.position(2L));
+        storage.close();
+    }
+
+    @Test
+    void rejects_other_record_size() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader.open(storage, RECORD_SIZE);
+        storage.close();
+        Storage reopened = new RandomAccessStorage(HEADER_TEST);
+        assertThrows(IOException.class, () -> FileHeader.open(reopened, RECORD_SIZE * 2));
+        reopened.close();
+    }
+
+    @Test
+    void freed_records_are_reused_and_survive_reopen() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(4L);
+        header.free(2L);
+        header.free(3L);
+        assertFalse(header.isValid(2L));
+        assertEquals(3L, header.nextId());
+        assertEquals(2L, header.getLiveCount());
+        storage.close();
+
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isDeleted(3L));
+        assertEquals(3L, header.nextId());
+        header.prepareWrite(2L);
+        assertTrue(header.isValid(2L));
+        assertEquals(3L, header.nextId());
+        header.prepareWrite(3L);
+        assertEquals(5L, header.nextId());
+        FileHeader reopened = header;
+        assertThrows(IOException.class, () -> reopened.free(9L));
+        storage.close();
+    }
+
+    @Test
+    void reused_record_leaves_the_saved_free_list() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(4L);
+        header.free(2L);
+        header.free(3L);
+        header.prepareWrite(3L);
+        // el registre s'escriu però la capçalera no es torna a desar, com si el programa s'aturés aquí
+        byte[] record = new byte[RECORD_SIZE];
+        PackUtils.packLong(3L, record, 0);
+        storage.write(header.position(3L), record);
+        storage.close();
+
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isValid(3L));
+        assertTrue(header.isDeleted(2L));
+        assertEquals(2L, header.nextId());
+        storage.close();
+    }
+
+    @Test
+    void reused_record_stays_free_until_the_header_is_saved() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(4L);
+        header.free(2L);
+        header.free(3L);
+        // es reaprofita però el registre no s'arriba a escriure
+        header.prepareWrite(3L);
+        assertTrue(header.isValid(3L));
+        storage.close();
+
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isDeleted(3L));
+        assertTrue(header.isDeleted(2L));
+        assertEquals(3L, header.nextId());
+        storage.close();
+    }
+
+    @Test
+    void free_list_is_rebuilt_around_a_reused_record() throws IOException {
+        Storage storage = new RandomAccessStorage(HEADER_TEST);
+        FileHeader header = FileHeader.open(storage, RECORD_SIZE);
+        header.prepareWrite(5L);
+        header.free(2L);
+        header.free(3L);
+        header.free(4L);
+        // es reaprofita un registre del mig de la llista i s'escriu, però la capçalera no es desa
+        header.prepareWrite(3L);
+        byte[] record = new byte[RECORD_SIZE];
+        PackUtils.packLong(3L, record, 0);
+        storage.write(header.position(3L), record);
+        storage.close();
+
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isValid(3L));
+        assertEquals(3L, header.getLiveCount());
+        assertEquals(4L, header.nextId());
+        header.prepareWrite(4L);
+        assertEquals(2L, header.nextId());
+        header.prepareWrite(2L);
+        assertEquals(6L, header.nextId());
+        storage.close();
+
+        storage = new RandomAccessStorage(HEADER_TEST);
+        header = FileHeader.open(storage, RECORD_SIZE);
+        assertTrue(header.isDeleted(2L));
+        storage.close();
+    }
+}
@@ -0,0 +1,201 @@
+package files;
+
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedRecordFileTest {
+
+    static final String RECORDS_TEST = "records_test.dat";
+    static final int RECORDS = 3000;
+    static final String CHECKSUM_TEST = "checksum_test.dat";
+
+    FixedRecordFile<Product> products;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        products = new FixedRecordFile<>(RECORDS_TEST, StorageMode.RANDOM_ACCESS, new ProductCodec());
+        for (long id = 1; id <= RECORDS; id++) {
+            products.write(new Product(id, "Product" + id, (int) id, 1));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        products.close();
+        new File(RECORDS_TEST).delete();
+    }
+
+    @Test
+    void read_range() throws IOException {
+        List<Product> range = products.readRange(1500L, 10);
+        assertEquals(10, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals(1500L + i, range.get(i).getId());
+            assertEquals("Product" + (1500 + i), range.get(i).getDescription());
+        }
+    }
+
+    @Test
+    void read_range_stops_at_the_end() throws IOException {
+        assertEquals(3, products.readRange(RECORDS - 2, 100).size());
+        assertThrows(IOException.class, () -> products.readRange(RECORDS + 1, 1));
+    }
+
+    @Test
+    void for_each_visits_every_record_in_order() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        products.forEach(product -> ids.add(product.getId()));
+        assertEquals(RECORDS, ids.size());
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals(i + 1L, ids.get(i).longValue());
+        }
+    }
+
+    @Test
+    void scans_see_pending_and_cached_changes() throws IOException {
+        products.enableCache(10);
+        products.enableBatching();
+        Product cached = products.read(2L);
+        cached.incrementStock();
+        products.write(cached);
+        products.commitBatch();
+        Product pending = products.read(5L);
+        pending.incrementStock();
+        products.write(pending);
+        List<Product> range = products.readRange(1L, 5);
+        assertEquals(2, range.get(1).getStock());
+        assertEquals(2, range.get(4).getStock());
+        assertEquals(1, range.get(2).getStock());
+    }
+
+    @Test
+    void write_all_and_read_all() throws IOException {
+        products.delete(10L);
+        products.enableCache(4);
+        products.read(20L);
+        List<Product> changed = new ArrayList<>();
+        for (long id = 1; id <= RECORDS + 500; id++) {
+            if (id % 3 != 0 || id > RECORDS) {
+                changed.add(new Product(id, "Bulk" + id, (int) id, 2));
+            }
+        }
+        products.writeAll(changed);
+        assertEquals(RECORDS + 500, products.lastId());
+        assertEquals("Bulk20", products.read(20L).getDescription());
+
+        List<Product> all = products.readAll();
+        assertEquals(products.count(), all.size());
+        for (Product product : all) {
+            String prefix = product.getId() % 3 == 0 && product.getId() <= RECORDS ? "Product" : "Bulk";
+            assertEquals(prefix + product.getId(), product.getDescription());
+        }
+        assertEquals(RECORDS + 500, all.size());
+        assertEquals(RECORDS + 501, products.nextId());
+    }
+
+    @Test
+    void bulk_codec_round_trip_through_a_direct_buffer() throws IOException {
+        ProductCodec codec = new ProductCodec();
+        List<Product> records = products.readRange(1L, 100);
+        ByteBuffer buffer = codec.encodeAll(records, true);
+        assertTrue(buffer.isDirect());
+        assertEquals(100 * codec.size(), buffer.remaining());
+        List<Product> decoded = codec.decodeAll(buffer);
+        for (int i = 0; i < records.size(); i++) {
+            assertTrue(records.get(i).isEqualTo(decoded.get(i)));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decodeAll(ByteBuffer.allocate(codec.size() + 1)));
+    }
+
+    @Test
+    void checksums_detect_corrupted_records() throws IOException {
+        FixedRecordFile<Product> checked = createChecked(StorageMode.RANDOM_ACCESS);
+        try {
+            checked.close();
+            corrupt(checked, 7L);
+            checked = new FixedRecordFile<>(CHECKSUM_TEST, StorageMode.RANDOM_ACCESS, new ProductCodec());
+            assertTrue(checked.hasChecksums());
+            assertEquals("Product6", checked.read(6L).getDescription());
+            FixedRecordFile<Product> reopened = checked;
+            assertThrows(IOException.class, () -> reopened.read(7L));
+            assertThrows(IOException.class, () -> reopened.readRange(1L, 10));
+            assertEquals(List.of(7L), checked.verify());
+        } finally {
+            checked.close();
+            new File(CHECKSUM_TEST).delete();
+        }
+    }
+
+    @Test
+    void verify_checks_every_block_in_parallel() throws IOException {
+        FixedRecordFile<Product> checked = createChecked(StorageMode.MAPPED);
+        try {
+            checked.delete(100L);
+            assertEquals(List.of(), checked.verify());
+            checked.close();
+            corrupt(checked, 1L);
+            corrupt(checked, 2999L);
+            checked = new FixedRecordFile<>(CHECKSUM_TEST, StorageMode.MAPPED, new ProductCodec());
+            assertEquals(List.of(1L, 2999L), checked.verify());
+        } finally {
+            checked.close();
+            new File(CHECKSUM_TEST).delete();
+        }
+    }
+
+    @Test
+    void verify_without_checksums_checks_ids() throws IOException {
+        assertFalse(products.hasChecksums());
+        assertEquals(List.of(), products.verify());
+    }
+
+    private FixedRecordFile<Product> createChecked(StorageMode mode) throws IOException {
+        new File(CHECKSUM_TEST).delete();
+        FixedRecordFile<Product> checked = new FixedRecordFile<>(CHECKSUM_TEST, mode, new ProductCodec(), true);
+        for (long id = 1; id <= RECORDS; id++) {
+            checked.write(new Product(id, "Product" + id, (int) id, 1));
+        }
+        return checked;
+    }
+
+    /**
+     * canvia un byte de la descripció del registre indicat, com ho faria una escriptura a mitges
+     */
+    @Test
+    void reused_id_stays_deleted_if_the_batch_is_not_committed() throws IOException {
+        products.delete(2L);
+        products.enableBatching();
+        products.write(new Product(products.nextId(), "Reused", 7, 1));
+        assertTrue(products.isValid(2L));
+        // com si el programa s'aturés abans de confirmar el lot
+        FixedRecordFile<Product> reopened = new FixedRecordFile<>(RECORDS_TEST, StorageMode.RANDOM_ACCESS, new ProductCodec());
+        try {
+            assertFalse(reopened.isValid(2L));
+            assertEquals(2L, reopened.nextId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void corrupt(FixedRecordFile<Product> file, long id) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(CHECKSUM_TEST, "rw")) {
+            long position = FileHeader.HEADER_SIZE + (id - 1) * (file.getCodec().size() + FileHeader.CHECKSUM_SIZE) + 20;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0x5A);
+        }
+    }
+}
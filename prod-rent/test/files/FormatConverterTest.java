@@ -0,0 +1,73 @@
+package files;
+
+import domain.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormatConverterTest {
+
+    static final String CLIENT_TEST = "client_convert_test.dat";
+
+    Client client1 = new Client(1L, "Anna", 10);
+    Client client3 = new Client(3L, "Àngel", 30);
+
+    @BeforeEach
+    void createFile() throws IOException {
+        ClientFile clients = new ClientFile(CLIENT_TEST, StorageMode.RANDOM_ACCESS, FileHeader.VERSION);
+        client3.rentProduct(7L);
+        clients.write(client1);
+        clients.write(new Client(2L, "Bernat", 20));
+        clients.write(client3);
+        clients.delete(2L);
+        clients.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(CLIENT_TEST).delete();
+    }
+
+    @Test
+    void old_files_are_read_with_their_own_format() throws IOException {
+        ClientFile clients = new ClientFile(CLIENT_TEST);
+        assertEquals(FileHeader.VERSION, clients.getCodec().version());
+        assertTrue(client3.isEqualTo(clients.read(3L)));
+        clients.close();
+    }
+
+    @Test
+    void converts_keeping_ids_and_deleted_records() throws IOException {
+        long before = new File(CLIENT_TEST).length();
+        var converter = new FormatConverter<>(CLIENT_TEST, StorageMode.RANDOM_ACCESS, new ClientCodec());
+        assertEquals(2L, converter.convert());
+        assertTrue(new File(CLIENT_TEST).length() < before);
+
+        ClientFile clients = new ClientFile(CLIENT_TEST, StorageMode.RANDOM_ACCESS, FileHeader.VERSION);
+        assertEquals(FileHeader.COMPACT_VERSION, clients.getCodec().version());
+        assertTrue(client1.isEqualTo(clients.read(1L)));
+        assertTrue(client3.isEqualTo(clients.read(3L)));
+        assertFalse(clients.isValid(2L));
+        assertEquals(2L, clients.nextId());
+        clients.close();
+
+        assertEquals(-1L, converter.convert());
+    }
+
+    @Test
+    void refuses_to_lose_data() throws IOException {
+        ClientFile clients = new ClientFile(CLIENT_TEST);
+        clients.write(new Client(4L, "日本語の名前", 40));
+        clients.close();
+        var converter = new FormatConverter<>(CLIENT_TEST, StorageMode.RANDOM_ACCESS, new ClientCodec());
+        assertThrows(IOException.class, converter::convert);
+        clients = new ClientFile(CLIENT_TEST);
+        assertEquals("日本語の名前", clients.read(4L).getName());
+        clients.close();
+    }
+}
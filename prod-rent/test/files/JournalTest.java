@@ -0,0 +1,147 @@
+package files;
+
+import domain.Client;
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    static final String JOURNAL_TEST = "journal_test.dat";
+    static final String CLIENT_TEST = "journal_client_test.dat";
+    static final String PRODUCT_TEST = "journal_product_test.dat";
+    static final String[] FILES = {JOURNAL_TEST, CLIENT_TEST, PRODUCT_TEST, "lost_" + CLIENT_TEST, "lost_" + PRODUCT_TEST};
+
+    ClientFile clients;
+    ProductFile products;
+    Journal journal;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        clients = new ClientFile(CLIENT_TEST);
+        products = new ProductFile(PRODUCT_TEST);
+        clients.enableBatching();
+        products.enableBatching();
+        journal = new Journal(JOURNAL_TEST);
+        journal.register(clients);
+        journal.register(products);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clients.close();
+        products.close();
+        for (String file : FILES) {
+            new File(file).delete();
+        }
+    }
+
+    @Test
+    void commit_applies_batches_with_one_sync() throws IOException {
+        clients.write(new Client(1L, "Client1", 100));
+        products.write(new Product(1L, "Product1", 10, 2));
+        journal.commit();
+        journal.commit();
+        assertEquals(1, journal.getSyncs());
+        assertEquals(2, journal.getCommits());
+        assertTrue(new File(JOURNAL_TEST).length() > 0);
+        journal.close();
+        assertEquals(0, new File(JOURNAL_TEST).length());
+        ClientFile reopened = new ClientFile(CLIENT_TEST);
+        assertEquals(100, reopened.read(1L).getBalance());
+        reopened.close();
+    }
+
+    @Test
+    void recover_replays_complete_groups() throws IOException {
+        clients.write(new Client(1L, "Client1", 100));
+        products.write(new Product(1L, "Product1", 10, 2));
+        journal.commit();
+        try (RandomAccessFile raw = new RandomAccessFile(JOURNAL_TEST, "rw")) {
+            // un grup a mig escriure al final del diari
+            raw.seek(raw.length());
+            raw.writeInt(0x4A524E4C);
+            raw.writeInt(1000);
+        }
+
+        // els fitxers on s'havien aplicat els lots s'han perdut
+        ClientFile lostClients = new ClientFile("lost_" + CLIENT_TEST);
+        ProductFile lostProducts = new ProductFile("lost_" + PRODUCT_TEST);
+        Journal reopened = new Journal(JOURNAL_TEST);
+        reopened.register(lostClients);
+        reopened.register(lostProducts);
+        assertEquals(1, reopened.recover());
+        assertTrue(new Client(1L, "Client1", 100).isEqualTo(lostClients.read(1L)));
+        assertTrue(new Product(1L, "Product1", 10, 2).isEqualTo(lostProducts.read(1L)));
+        assertEquals(2L, lostProducts.nextId());
+        reopened.close();
+        lostClients.close();
+        lostProducts.close();
+    }
+
+    @Test
+    void delete_is_replayed_only_if_it_was_not_done() throws IOException {
+        clients.write(new Client(1L, "Client1", 100));
+        clients.write(new Client(2L, "Client2", 200));
+        clients.commitBatch();
+        products.write(new Product(1L, "Product1", 10, 2));
+        // el diari no es buida, com si el programa s'aturés just després d'aplicar l'esborrat
+        Journal crashing = withoutCheckpoints();
+        crashing.register(clients);
+        crashing.register(products);
+        crashing.delete(clients, 2L);
+        assertFalse(clients.isValid(2L));
+        assertTrue(new File(JOURNAL_TEST).length() > 0);
+
+        // sobre els fitxers d'abans de l'esborrat, es torna a fer
+        ClientFile lostClients = new ClientFile("lost_" + CLIENT_TEST);
+        ProductFile lostProducts = new ProductFile("lost_" + PRODUCT_TEST);
+        lostClients.write(new Client(1L, "Client1", 100));
+        lostClients.write(new Client(2L, "Client2", 200));
+        Journal lost = withoutCheckpoints();
+        lost.register(lostClients);
+        lost.register(lostProducts);
+        assertEquals(1, lost.recover());
+        assertTrue(lostClients.isValid(1L));
+        assertFalse(lostClients.isValid(2L));
+        assertTrue(new Product(1L, "Product1", 10, 2).isEqualTo(lostProducts.read(1L)));
+        lostClients.close();
+        lostProducts.close();
+
+        // sobre els fitxers on ja s'havia fet, no es torna a esborrar
+        Journal reopened = new Journal(JOURNAL_TEST);
+        reopened.register(clients);
+        reopened.register(products);
+        assertEquals(1, reopened.recover());
+        assertFalse(clients.isValid(2L));
+        assertEquals(2L, clients.nextId());
+        assertEquals(1L, clients.count());
+        assertEquals(0, new File(JOURNAL_TEST).length());
+    }
+
+    @Test
+    void delete_needs_an_empty_journal() throws IOException {
+        clients.write(new Client(1L, "Client1", 100));
+        journal.commit();
+        assertThrows(IllegalStateException.class, () -> journal.delete(clients, 1L));
+        journal.checkpoint();
+        assertThrows(IOException.class, () -> journal.delete(clients, 2L));
+        journal.delete(clients, 1L);
+        assertFalse(clients.isValid(1L));
+    }
+
+    private static Journal withoutCheckpoints() throws IOException {
+        return new Journal(JOURNAL_TEST) {
+            @Override
+            public void checkpoint() {
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package files;
+
+import domain.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedStorageTest {
+
+    static final String CLIENT_TEST = "client_mapped_test.dat";
+
+    ClientFile clients;
+
+    Client client1 = new Client(1L, "Client1", 123);
+    Client client2 = new Client(2L, "Client2", 456);
+
+    @BeforeEach
+    void createFile() throws IOException {
+        clients = new ClientFile(CLIENT_TEST, StorageMode.MAPPED);
+        clients.write(client2);
+        clients.write(client1);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clients.close();
+        new File(CLIENT_TEST).delete();
+    }
+
+    @Test
+    void read_and_next_id() throws IOException {
+        assertTrue(client1.isEqualTo(clients.read(1L)));
+        assertTrue(client2.isEqualTo(clients.read(2L)));
+        assertEquals(3L, clients.nextId());
+        assertFalse(clients.isValid(3L));
+    }
+
+    @Test
+    void file_is_trimmed_and_reopened() throws IOException {
+        clients.close();
+        long expected = FileHeader.HEADER_SIZE + (long) FileHeader.EXTENT_RECORDS * Client.SIZE;
+        assertEquals(expected, new File(CLIENT_TEST).length());
+        clients = new ClientFile(CLIENT_TEST, StorageMode.MAPPED);
+        assertTrue(client2.isEqualTo(clients.read(2L)));
+        assertEquals(3L, clients.nextId());
+    }
+
+    @Test
+    void reset_and_write_again() throws IOException {
+        clients.reset();
+        assertEquals(1L, clients.nextId());
+        clients.write(client1);
+        assertTrue(client1.isEqualTo(clients.read(1L)));
+        assertEquals(2L, clients.nextId());
+    }
+
+    @Test
+    void record_across_segments() throws IOException {
+        Storage storage = new MappedStorage("segments_test.dat");
+        try {
+            long pos = (1L << 26) - 3;
+            byte[] data = {1, 2, 3, 4, 5, 6, 7};
+            storage.write(pos, data);
+            byte[] read = new byte[data.length];
+            storage.read(pos, read);
+            assertArrayEquals(data, read);
+            assertEquals(pos + data.length, storage.length());
+        } finally {
+            storage.close();
+            new File("segments_test.dat").delete();
+        }
+    }
+
+    @Test
+    void only_writes_grow_the_file() throws IOException {
+        Storage storage = new MappedStorage("segments_test.dat");
+        File file = new File("segments_test.dat");
+        try {
+            storage.write(0, new byte[] {1, 2, 3});
+            long grown = file.length();
+            assertTrue(grown >= 3 && grown < (1L << 26), "file length " + grown);
+            // el que el fitxer encara no té es llegeix com a zeros, sense fer-lo créixer
+            storage.setLength(8L << 20);
+            byte[] read = {9, 9, 9, 9, 9};
+            storage.read(grown - 2, read);
+            assertArrayEquals(new byte[] {0, 0, 0, 0, 0}, read);
+            assertEquals(grown, file.length());
+            storage.write(3L << 20, new byte[] {4});
+            assertTrue(file.length() > (3L << 20) && file.length() < (1L << 26));
+        } finally {
+            storage.close();
+        }
+        try {
+            assertEquals(8L << 20, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void reopening_without_closing_finds_the_records() throws IOException {
+        clients.write(new Client(3L, "Client3", 789));
+        // com si el programa s'hagués aturat: el fitxer no s'ha retallat ni s'ha desat la capçalera
+        long written = new File(CLIENT_TEST).length();
+        assertTrue(written < (1L << 26), "file length " + written);
+        ClientFile reopened = new ClientFile(CLIENT_TEST, StorageMode.MAPPED);
+        try {
+            assertEquals(4L, reopened.nextId());
+            assertTrue(client1.isEqualTo(reopened.read(1L)));
+        } finally {
+            reopened.close();
+        }
+        // l'espai projectat que no es va arribar a fer servir no es conserva
+        long expected = FileHeader.HEADER_SIZE + (long) FileHeader.EXTENT_RECORDS * Client.SIZE;
+        assertEquals(expected, new File(CLIENT_TEST).length());
+    }
+}
@@ -0,0 +1,118 @@
+package files;
+
+import domain.Client;
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementPipelineTest {
+
+    static final String MOVEMENTS_TEST = "pipeline_movements_test.txt";
+    static final String DIRECT_LOG_TEST = "direct_log_test.out";
+    static final String PIPELINE_LOG_TEST = "pipeline_log_test.out";
+
+    @AfterEach
+    void tearDown() {
+        new File(MOVEMENTS_TEST).delete();
+        new File(DIRECT_LOG_TEST).delete();
+        new File(PIPELINE_LOG_TEST).delete();
+    }
+
+    @Test
+    void delivers_the_same_movements_and_log() throws IOException {
+        Random random = new Random(5);
+        // prou línies perquè els blocs i els trossos de bitàcora es reutilitzin
+        int lines = 5 * MovementPipeline.BLOCK_LINES + 17;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MOVEMENTS_TEST))) {
+            for (int i = 0; i < lines; i++) {
+                String[] operations = CompiledMovementReaderTest.OPERATIONS;
+                writer.write(operations[random.nextInt(operations.length)]);
+                int fields = random.nextInt(4);
+                for (int j = 0; j < fields; j++) {
+                    String[] values = CompiledMovementReaderTest.FIELDS;
+                    writer.write("," + values[random.nextInt(values.length)]);
+                }
+                writer.newLine();
+            }
+        }
+        String expected;
+        try (MovementSource reader = new MovementReader(MOVEMENTS_TEST)) {
+            expected = CompiledMovementReaderTest.readLikeProdRent(reader).toString();
+        }
+
+        LogFile direct = new LogFile(DIRECT_LOG_TEST);
+        writeLog(direct, expected);
+        direct.close();
+
+        MovementPipeline pipeline = new MovementPipeline(new MovementReader(MOVEMENTS_TEST),
+                new LogFile(PIPELINE_LOG_TEST), 1);
+        try (MovementSource movements = pipeline.getMovements()) {
+            assertEquals(expected, CompiledMovementReaderTest.readLikeProdRent(movements).toString());
+            assertFalse(movements.nextLine());
+        }
+        writeLog(pipeline.getLog(), expected);
+        pipeline.getLog().close();
+
+        assertEquals(lines, pipeline.getLines());
+        assertArrayEquals(Files.readAllBytes(Paths.get(DIRECT_LOG_TEST)), Files.readAllBytes(Paths.get(PIPELINE_LOG_TEST)));
+        assertTrue(pipeline.toString().contains("lines=" + lines));
+    }
+
+    @Test
+    void stops_reading_when_closed_early() throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MOVEMENTS_TEST))) {
+            for (int i = 0; i < 20 * MovementPipeline.BLOCK_LINES; i++) {
+                writer.write("ALQUILAR," + i + ",1");
+                writer.newLine();
+            }
+        }
+        MovementPipeline pipeline = new MovementPipeline(new MovementReader(MOVEMENTS_TEST),
+                new LogFile(PIPELINE_LOG_TEST), 2);
+        MovementSource movements = pipeline.getMovements();
+        assertTrue(movements.nextLine());
+        assertEquals(Operation.ALQUILAR, movements.nextOperation());
+        assertEquals(0, movements.nextLong());
+        movements.close();
+        assertFalse(movements.nextLine());
+        pipeline.getLog().close();
+        assertEquals(0, Files.size(Paths.get(PIPELINE_LOG_TEST)));
+    }
+
+    @Test
+    void reports_reader_errors_to_the_executor() throws IOException {
+        Files.writeString(Paths.get(MOVEMENTS_TEST), "INFO_CATALOGO\n");
+        MovementSource failing = new MovementReader(MOVEMENTS_TEST) {
+            @Override
+            public boolean nextLine() throws IOException {
+                throw new IOException("Disk error");
+            }
+        };
+        MovementPipeline pipeline = new MovementPipeline(failing, new LogFile(PIPELINE_LOG_TEST), 1);
+        try (MovementSource movements = pipeline.getMovements()) {
+            IOException ex = assertThrows(IOException.class, movements::nextLine);
+            assertEquals("Disk error", ex.getCause().getMessage());
+        }
+        pipeline.getLog().close();
+    }
+
+    /**
+     * escriu una línia de bitàcora per cada caràcter del text, perquè n'hi hagi prou per a omplir
+     * diversos trossos
+     */
+    private static void writeLog(LogFile log, String text) throws IOException {
+        Client client = new Client(1, "Client", 100, Client.DEFAULT_CAPACITY);
+        for (int i = 0; i < text.length(); i++) {
+            log.okRent(client, new Product(text.charAt(i), "Product", 1, 1));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementReaderTest {
+
+    static final String MOVEMENTS_TEST = "movements_test.txt";
+
+    static final String[] OPERATIONS = {
+            "ALQUILAR", "alquilar", " Devolver ", "ALTA_CLIENTE", "alta_producto\t", "INFO_CATALOGO",
+            "BAJA", "alquılar", "", "éxit", "INFO_PRODUCTO_DESC"
+    };
+    static final String[] FIELDS = {
+            "5", "+5", "-0", "0012", "2147483647", "2147483648", "-2147483648", "999999999999999999",
+            "9223372036854775807", "9223372036854775808", "-", "+", "12a", " 7 ", "١٢",
+            "Name", "café", "a b"
+    };
+    static final String[] TERMINATORS = {"\n", "\r\n", "\r", ",\n", ",,\n"};
+
+    @AfterEach
+    void tearDown() {
+        new File(MOVEMENTS_TEST).delete();
+    }
+
+    @Test
+    void same_fields_as_the_tokenizer() throws IOException {
+        writeRandomMovements(new Random(42), 2000);
+        for (int mode = 0; mode < 4; mode++) {
+            assertEquals(legacy(mode), parsed(mode, 16), "mode " + mode);
+            assertEquals(legacy(mode), parsed(mode, 64 * 1024), "mode " + mode);
+        }
+    }
+
+    @Test
+    void long_lines_grow_the_window() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(MOVEMENTS_TEST)) {
+            out.write(("INFO_PRODUCTO_DESC," + "x".repeat(100) + "\r").getBytes());
+            out.write("info_producto,3".getBytes());
+        }
+        try (MovementReader reader = new MovementReader(MOVEMENTS_TEST, 8)) {
+            assertTrue(reader.nextLine());
+            assertEquals(Operation.INFO_PRODUCTO_DESC, reader.nextOperation());
+            assertEquals("x".repeat(100), reader.nextString());
+            assertFalse(reader.hasMoreFields());
+            assertTrue(reader.nextLine());
+            assertEquals(Operation.INFO_PRODUCTO, reader.nextOperation());
+            assertEquals(3L, reader.nextLong());
+            assertFalse(reader.nextLine());
+        }
+    }
+
+    @Test
+    void resumes_at_the_position_of_any_line() throws IOException {
+        writeRandomMovements(new Random(7), 300);
+        try (MovementReader reader = new MovementReader(MOVEMENTS_TEST, 16)) {
+            assertEquals(0, reader.getPosition());
+            for (int line = 0; reader.nextLine(); line++) {
+                if (line % 7 != 0) {
+                    continue;
+                }
+                long position = reader.getPosition();
+                try (MovementReader resumed = new MovementReader(MOVEMENTS_TEST, 16)) {
+                    resumed.skipTo(position);
+                    try (MovementReader rest = new MovementReader(MOVEMENTS_TEST, 64 * 1024)) {
+                        for (int i = 0; i <= line; i++) {
+                            rest.nextLine();
+                        }
+                        assertEquals(position, rest.getPosition());
+                        assertEquals(remaining(rest), remaining(resumed), "line " + line);
+                    }
+                }
+            }
+            assertEquals(new File(MOVEMENTS_TEST).length(), reader.getPosition());
+            assertThrows(IOException.class, () -> reader.skipTo(new File(MOVEMENTS_TEST).length() + 1));
+        }
+    }
+
+    private static List<String> remaining(MovementReader reader) throws IOException {
+        List<String> result = new ArrayList<>();
+        while (reader.nextLine()) {
+            result.add("line");
+            while (reader.hasMoreFields()) {
+                result.add(reader.nextString());
+            }
+        }
+        return result;
+    }
+
+    private void writeRandomMovements(Random random, int lines) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(20) > 0) {
+                bytes.writeBytes(OPERATIONS[random.nextInt(OPERATIONS.length)].getBytes(charset));
+            }
+            int fields = random.nextInt(4);
+            for (int j = 0; j < fields; j++) {
+                bytes.write(',');
+                if (random.nextInt(30) == 0) {
+                    // un byte que no és UTF-8 vàlid
+                    bytes.write(0xFF);
+                }
+                bytes.writeBytes(FIELDS[random.nextInt(FIELDS.length)].getBytes(charset));
+            }
+            if (i < lines - 1 || random.nextBoolean()) {
+                bytes.writeBytes(TERMINATORS[random.nextInt(TERMINATORS.length)].getBytes(charset));
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(MOVEMENTS_TEST)) {
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * llegeix el fitxer com ho feia ProdRent, amb readLine, StringTokenizer i parseInt/parseLong
+     * @param mode 0 textos, 1 long, 2 int, 3 int sense espais als extrems
+     */
+    private static List<String> legacy(int mode) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(MOVEMENTS_TEST))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StringTokenizer tokenizer = new StringTokenizer(line, ",");
+                if (!tokenizer.hasMoreTokens()) {
+                    result.add("empty");
+                    continue;
+                }
+                String operation = tokenizer.nextToken().trim().toUpperCase();
+                result.add(Operation.fromName(operation) + " " + operation);
+                while (tokenizer.hasMoreTokens()) {
+                    String field = tokenizer.nextToken();
+                    try {
+                        switch (mode) {
+                            case 0: result.add(field); break;
+                            case 1: result.add(Long.toString(Long.parseLong(field))); break;
+                            case 2: result.add(Integer.toString(Integer.parseInt(field))); break;
+                            default: result.add(Integer.toString(Integer.parseInt(field.trim())));
+                        }
+                    } catch (NumberFormatException ex) {
+                        result.add("NumberFormatException");
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> parsed(int mode, int windowBytes) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (MovementReader reader = new MovementReader(MOVEMENTS_TEST, windowBytes)) {
+            while (reader.nextLine()) {
+                if (!reader.hasMoreFields()) {
+                    result.add("empty");
+                    continue;
+                }
+                Operation operation = reader.nextOperation();
+                result.add(operation + " " + reader.getOperationName());
+                while (reader.hasMoreFields()) {
+                    try {
+                        switch (mode) {
+                            case 0: result.add(reader.nextString()); break;
+                            case 1: result.add(Long.toString(reader.nextLong())); break;
+                            case 2: result.add(Integer.toString(reader.nextInt())); break;
+                            default: result.add(Integer.toString(reader.nextTrimmedInt()));
+                        }
+                    } catch (NumberFormatException ex) {
+                        result.add("NumberFormatException");
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package files;
+
+import domain.Client;
+import domain.ClientView;
+import domain.Product;
+import domain.ProductView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelRentalsTest {
+
+    static final String[] SEQUENTIAL = {"seq_clients_test.dat", "seq_overflow_test.dat", "seq_products_test.dat", "seq_log_test.out"};
+    static final String[] PARALLEL = {"par_clients_test.dat", "par_overflow_test.dat", "par_products_test.dat", "par_log_test.out"};
+
+    static final int CLIENTS = 40;
+    static final int PRODUCTS = 25;
+
+    @AfterEach
+    void tearDown() {
+        for (int i = 0; i < SEQUENTIAL.length; i++) {
+            new File(SEQUENTIAL[i]).delete();
+            new File(PARALLEL[i]).delete();
+        }
+    }
+
+    @Test
+    void same_files_as_the_sequential_execution() throws IOException {
+        long[][] movements = randomMovements(new Random(11), 6000);
+        runSequential(movements);
+        runParallel(movements, 3, 700);
+        for (int i = 0; i < SEQUENTIAL.length; i++) {
+            assertArrayEquals(Files.readAllBytes(Paths.get(SEQUENTIAL[i])), Files.readAllBytes(Paths.get(PARALLEL[i])),
+                    SEQUENTIAL[i]);
+        }
+        String log = Files.readString(Paths.get(SEQUENTIAL[3]));
+        assertTrue(log.contains("successfully"));
+        assertTrue(log.contains("has not product"));
+        assertTrue(log.contains("cannot rent product"));
+    }
+
+    /**
+     * @return moviments: 1 per a ALQUILAR o 0 per a DEVOLVER, client i producte; els clients
+     * i productes més actius són els primers perquè hi hagi molts moviments sobre els mateixos
+     */
+    private static long[][] randomMovements(Random random, int count) {
+        long[][] movements = new long[count][];
+        for (int i = 0; i < count; i++) {
+            long client = 1 + Math.min(random.nextInt(CLIENTS), random.nextInt(CLIENTS));
+            long product = 1 + Math.min(random.nextInt(PRODUCTS), random.nextInt(PRODUCTS));
+            movements[i] = new long[]{random.nextInt(10) < 6 ? 1 : 0, client, product};
+        }
+        return movements;
+    }
+
+    private static ClientFile createDatabases(String[] files, ProductFile[] products) throws IOException {
+        ClientFile clients = new ClientFile(files[0]);
+        clients.enableOverflow(files[1], StorageMode.RANDOM_ACCESS);
+        products[0] = new ProductFile(files[2]);
+        Random random = new Random(3);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            products[0].write(new Product(id, "Product" + id, 1 + random.nextInt(40), 1 + random.nextInt(3)));
+        }
+        for (long id = 1; id <= CLIENTS; id++) {
+            int capacity = id % 4 == 0 ? 20 : id % 7 == 0 ? 1 : Client.DEFAULT_CAPACITY;
+            clients.write(new Client(id, "Client" + id, 50 + random.nextInt(1000), capacity));
+        }
+        return clients;
+    }
+
+    /**
+     * executa els moviments com ProdRent en el mode seqüencial
+     */
+    private static void runSequential(long[][] movements) throws IOException {
+        ProductFile[] products = new ProductFile[1];
+        ClientFile clients = createDatabases(SEQUENTIAL, products);
+        LogFile log = new LogFile(SEQUENTIAL[3]);
+        ClientView clientView = new ClientView();
+        ProductView productView = new ProductView();
+        for (long[] movement : movements) {
+            long idClient = movement[1];
+            long idProduct = movement[2];
+            clients.read(idClient, clientView);
+            products[0].read(idProduct, productView);
+            Client client = clientView.toClient();
+            Product product = productView.toProduct();
+            if (movement[0] == 1) {
+                if (productView.getStock() == 0) {
+                    log.errorCannotRentProductWithNoStock(productView);
+                    continue;
+                }
+                if (clientView.getBalance() < productView.getPrice()) {
+                    log.errorClientHasNotEnoughFundsToRentProduct(clientView, productView);
+                    continue;
+                }
+                if (!clientView.canAddProduct(idProduct)) {
+                    log.errorClientCannotAddProduct(clientView, productView);
+                    continue;
+                }
+                client.rentProduct(idProduct);
+                client.subBalance(product.getPrice());
+                product.decrementStock();
+            } else {
+                if (!clientView.hasProduct(idProduct)) {
+                    log.errorClientHasNotProduct(clientView, idProduct);
+                    continue;
+                }
+                client.returnProduct(idProduct);
+                product.incrementStock();
+            }
+            clients.write(client);
+            products[0].write(product);
+            log.okRent(client, product);
+        }
+        log.close();
+        clients.close();
+        products[0].close();
+    }
+
+    private static void runParallel(long[][] movements, int threads, int segment) throws IOException {
+        ProductFile[] products = new ProductFile[1];
+        ClientFile clients = createDatabases(PARALLEL, products);
+        LogFile log = new LogFile(PARALLEL[3]);
+        try (ParallelRentals parallel = new ParallelRentals(threads, clients, products[0], log)) {
+            for (int i = 0; i < movements.length; i++) {
+                Operation operation = movements[i][0] == 1 ? Operation.ALQUILAR : Operation.DEVOLVER;
+                parallel.add(operation, movements[i][1], movements[i][2]);
+                if ((i + 1) % segment == 0) {
+                    parallel.finish();
+                }
+            }
+            parallel.finish();
+        }
+        log.close();
+        clients.close();
+        products[0].close();
+    }
+}
@@ -1,12 +1,14 @@
 package files;
 
 import domain.Product;
+import domain.ProductView;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +36,19 @@ class ProductFileTest {
         new File(PRODUCT_TEST).delete();
     }
 
+    @Test
+    void new_files_have_format_1_by_default() throws IOException {
+        for (StorageMode mode : StorageMode.values()) {
+            products.close();
+            new File(PRODUCT_TEST).delete();
+            products = new ProductFile(PRODUCT_TEST, mode);
+            assertEquals(FileHeader.VERSION, products.getCodec().version());
+            Product product = new Product(1L, "Лазерный луч ACME", 10, 1);
+            products.write(product);
+            assertTrue(product.isEqualTo(products.read(1L)));
+        }
+    }
+
     @Test
     void read() throws IOException {
         Product read3 = products.read(3L);
@@ -44,6 +59,21 @@ class ProductFileTest {
         assertTrue(product3.isEqualTo(read3));
     }
 
+    @Test
+    void read_into_view() throws IOException {
+        ProductView view = new ProductView();
+        products.read(2L, view);
+        assertEquals(2L, view.getId());
+        assertEquals(456, view.getPrice());
+        assertEquals(2, view.getStock());
+        assertEquals("Product2", view.getDescription());
+        assertTrue(product2.isEqualTo(view.toProduct()));
+        products.read(3L, view);
+        assertEquals(789, view.getPrice());
+        assertEquals(3, view.getStock());
+        assertThrows(IOException.class, () -> products.read(0L, view));
+    }
+
     @Test
     void nextId() throws IOException {
         assertEquals(4, products.nextId());
@@ -57,9 +87,62 @@ class ProductFileTest {
         assertFalse(products.isValid(4L));
     }
 
+    @Test
+    void batched_writes_are_visible_before_commit() throws IOException {
+        products.enableBatching();
+        Product product = products.read(2L);
+        product.incrementStock();
+        products.write(product);
+        products.write(new Product(4L, "Product4 with a long description", 10, 1));
+        assertEquals(3, products.read(2L).getStock());
+        assertEquals("Product4 with a long", products.read(4L).getDescription());
+        assertEquals(5L, products.nextId());
+        products.commitBatch();
+        products.close();
+        products = new ProductFile(PRODUCT_TEST);
+        assertEquals(3, products.read(2L).getStock());
+        assertTrue(products.isValid(4L));
+    }
+
     @Test
     void reset() throws IOException {
         products.reset();
         assertEquals(1L, products.nextId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleted_products_are_skipped_and_their_id_reused() throws IOException {
+        products.enableColumns();
+        products.delete(2L);
+        assertFalse(products.isValid(2L));
+        assertThrows(IOException.class, () -> products.read(2L));
+        assertEquals(2L, products.count());
+        assertEquals(2, products.readRange(1L, 3).size());
+        assertEquals(2, products.getColumns().count());
+        assertEquals(2L, products.nextId());
+        products.write(new Product(2L, "Product4", 1, 1));
+        assertEquals(4L, products.nextId());
+        assertEquals("Product4", products.read(2L).getDescription());
+    }
+
+    @Test
+    void write_all_updates_columns_and_description_index() throws IOException {
+        String index = "product_test_desc.idx";
+        try {
+            products.enableColumns();
+            products.enableDescriptionIndex(index, StorageMode.RANDOM_ACCESS);
+            products.enableBatching();
+            products.writeAll(List.of(new Product(2L, "Product2", 456, 20),
+                    new Product(4L, "Product4", 10, 4), new Product(5L, "Product5", 10, 5)));
+            assertEquals(5, products.getColumns().count());
+            assertEquals(33L, products.getColumns().totalStock());
+            assertEquals(4L, products.findByDescription("product4").getId());
+            products.commitBatch();
+            assertEquals(20, products.read(2L).getStock());
+        } finally {
+            products.close();
+            new File(index).delete();
+            products = new ProductFile(PRODUCT_TEST);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package files;
+
+import domain.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductTableTest {
+
+    static final String PRODUCT_TEST = "product_table_test.dat";
+
+    ProductFile products;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        products = new ProductFile(PRODUCT_TEST);
+        products.write(new Product(1L, "Product1", 10, 2));
+        products.write(new Product(2L, "Product2", 5, 0));
+        products.write(new Product(3L, "Product3", 7, 3));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        products.close();
+        new File(PRODUCT_TEST).delete();
+    }
+
+    @Test
+    void loads_columns_from_file() throws IOException {
+        products.enableColumns();
+        ProductTable table = products.getColumns();
+        assertEquals(3, table.size());
+        assertEquals(5L, table.totalStock());
+        assertEquals(41L, table.catalogValue());
+        assertArrayEquals(new long[]{2L}, table.outOfStockIds());
+        assertEquals("Product3", table.getDescription(2));
+    }
+
+    @Test
+    void stays_in_sync_with_writes() throws IOException {
+        products.enableColumns();
+        Product product = products.read(2L);
+        product.incrementStock();
+        products.write(product);
+        products.write(new Product(4L, "A product with a very long description", 1, 1));
+        ProductTable table = products.getColumns();
+        assertEquals(4, table.size());
+        assertEquals(0, table.countBelowStock(1));
+        assertEquals(1, table.getStock(1));
+        assertEquals("A product with a ver", table.getDescription(3));
+        products.reset();
+        assertEquals(0, table.size());
+    }
+}
@@ -0,0 +1,55 @@
+package files;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCacheTest {
+
+    List<String> written = new ArrayList<>();
+    RecordCache<String> cache = new RecordCache<>(2, written::add);
+
+    @Test
+    void hits_and_misses() throws IOException {
+        assertNull(cache.get(1L));
+        cache.put(1L, "one", false);
+        assertEquals("one", cache.get(1L));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void evicts_least_recently_used() throws IOException {
+        cache.put(1L, "one", true);
+        cache.put(2L, "two", true);
+        cache.get(1L);
+        cache.put(3L, "three", false);
+        assertNull(cache.get(2L));
+        assertEquals("one", cache.get(1L));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(List.of("two"), written);
+    }
+
+    @Test
+    void clean_entries_are_not_written_back() throws IOException {
+        cache.put(1L, "one", false);
+        cache.put(2L, "two", false);
+        cache.put(3L, "three", false);
+        cache.flush();
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void flush_writes_dirty_entries_in_id_order() throws IOException {
+        cache.put(2L, "two", true);
+        cache.put(1L, "one", true);
+        cache.flush();
+        assertEquals(List.of("one", "two"), written);
+        cache.flush();
+        assertEquals(2, written.size());
+    }
+}
@@ -0,0 +1,28 @@
+package files;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBatchTest {
+
+    List<String> written = new ArrayList<>();
+    WriteBatch<String> batch = new WriteBatch<>(written::add);
+
+    @Test
+    void each_record_is_written_once_in_id_order() throws IOException {
+        batch.put(3L, "three");
+        batch.put(1L, "one");
+        batch.put(3L, "three again");
+        assertEquals(2, batch.size());
+        assertEquals("three again", batch.get(3L));
+        batch.commit();
+        assertEquals(List.of("one", "three again"), written);
+        assertEquals(0, batch.size());
+        assertNull(batch.get(1L));
+    }
+}
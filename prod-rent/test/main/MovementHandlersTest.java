@@ -0,0 +1,129 @@
+package main;
+
+import files.ClientFile;
+import files.CompiledMovementReader;
+import files.FixedRecordFile;
+import files.LogFile;
+import files.MovementCompiler;
+import files.MovementReader;
+import files.MovementSource;
+import files.Operation;
+import files.ProductFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementHandlersTest {
+
+    static final String MOVEMENTS_TEST = "handlers_test.txt";
+    static final String COMPILED_TEST = "handlers_test.bin";
+
+    @AfterEach
+    void tearDown() {
+        new File(MOVEMENTS_TEST).delete();
+        new File(COMPILED_TEST).delete();
+    }
+
+    @Test
+    void finds_the_handler_of_each_operation() {
+        MovementHandlers handlers = new MovementHandlers();
+        MovementHandler rent = movement -> { };
+        MovementHandler giveBack = movement -> { };
+        handlers.register(Operation.ALQUILAR, rent);
+        handlers.register(Operation.DEVOLVER, giveBack);
+        assertSame(rent, handlers.get(Operation.ALQUILAR));
+        assertSame(giveBack, handlers.get(Operation.DEVOLVER));
+        assertNull(handlers.get(Operation.INFO_CATALOGO));
+        // una operació desconeguda no té gestor
+        assertNull(handlers.get(null));
+    }
+
+    @Test
+    void rejects_a_second_handler_for_the_same_operation() {
+        MovementHandlers handlers = new MovementHandlers();
+        MovementHandler first = movement -> { };
+        handlers.register(Operation.BAJA_CLIENTE, first);
+        assertThrows(IllegalArgumentException.class, () -> handlers.register(Operation.BAJA_CLIENTE, movement -> { }));
+        assertSame(first, handlers.get(Operation.BAJA_CLIENTE));
+    }
+
+    @Test
+    void registers_keywords_without_distinguishing_case() {
+        MovementHandlers handlers = new MovementHandlers();
+        MovementHandler info = movement -> { };
+        MovementHandler report = movement -> { };
+        // la paraula clau d'una operació coneguda fa servir el seu gestor
+        handlers.register(" info_catalogo", info);
+        assertSame(info, handlers.get(Operation.INFO_CATALOGO));
+        assertNull(handlers.getByName("INFO_CATALOGO"));
+        handlers.register("Informe", report);
+        assertSame(report, handlers.getByName("INFORME"));
+        assertNull(handlers.getByName("Informe"));
+        assertNull(handlers.getByName(null));
+        assertThrows(IllegalArgumentException.class, () -> handlers.register("INFORME ", movement -> { }));
+        assertThrows(IllegalArgumentException.class, () -> handlers.register("Info_Catalogo", movement -> { }));
+        assertThrows(IllegalArgumentException.class, () -> handlers.register(" ", movement -> { }));
+        assertThrows(IllegalArgumentException.class, () -> handlers.register("A,B", movement -> { }));
+    }
+
+    @Test
+    void loads_a_provider_and_runs_its_new_movement() throws IOException {
+        StringWriter log = new StringWriter();
+        LogFile logFile = new LogFile(log);
+        MovementHandlers handlers = new MovementHandlers();
+        handlers.load(new MovementHandler.Context() {
+            @Override
+            public ProductFile getProducts() {
+                return null;
+            }
+
+            @Override
+            public ClientFile getClients() {
+                return null;
+            }
+
+            @Override
+            public LogFile getLog() {
+                return logFile;
+            }
+
+            @Override
+            public void commitBeforeDelete() {
+            }
+
+            @Override
+            public void delete(FixedRecordFile<?> file, long id) {
+            }
+        });
+        try (FileOutputStream out = new FileOutputStream(MOVEMENTS_TEST)) {
+            out.write(" suma ,2,3,-1\nSUMA\nsuma,1,dos\n".getBytes());
+        }
+        new MovementCompiler().compile(MOVEMENTS_TEST, COMPILED_TEST);
+        // els camps de l'operació nova arriben igual del fitxer de text i del compilat
+        for (String file : new String[] {MOVEMENTS_TEST, COMPILED_TEST}) {
+            try (MovementSource movement = file.equals(COMPILED_TEST)
+                    ? new CompiledMovementReader(file) : new MovementReader(file)) {
+                while (movement.nextLine()) {
+                    assertNull(movement.nextOperation());
+                    MovementHandler handler = handlers.getByName(movement.getOperationName());
+                    assertNotNull(handler);
+                    try {
+                        handler.execute(movement);
+                    } catch (NumberFormatException ex) {
+                        logFile.errorMalformedNumber(movement.getOperationName());
+                    }
+                }
+            }
+        }
+        logFile.flush();
+        String expected = "SUMA 4\nSUMA 0\nERROR: Malformed number in operation SUMA\n";
+        assertEquals(expected + expected, log.toString().replace(System.lineSeparator(), "\n"));
+        assertThrows(IllegalArgumentException.class, () -> handlers.register("suma", movement -> { }));
+    }
+}
@@ -0,0 +1,159 @@
+package main;
+
+import files.MovementSource;
+import files.Operation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementServerTest {
+
+    static final String SOCKET_TEST = "server_test.sock";
+
+    // total de les peticions, que el Handler ha de protegir
+    private long total;
+
+    @AfterEach
+    void tearDown() {
+        new File(SOCKET_TEST).delete();
+    }
+
+    /**
+     * respon cada línia amb l'operació i la suma dels seus dos números, com ho faria la bitàcora
+     */
+    private synchronized String sum(MovementSource movements) throws IOException {
+        StringBuilder response = new StringBuilder();
+        while (movements.nextLine()) {
+            if (!movements.hasMoreFields()) continue;
+            Operation operation = movements.nextOperation();
+            long value = movements.nextLong() + movements.nextLong();
+            total += value;
+            response.append("OK: ").append(operation).append(' ').append(value).append('\n');
+        }
+        return response.toString();
+    }
+
+    /**
+     * comença a acceptar connexions en un fil nou
+     */
+    private static Thread start(MovementServer server) {
+        Thread accepting = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        accepting.start();
+        return accepting;
+    }
+
+    @Test
+    void answers_each_connection_in_order() throws Exception {
+        int clients = 8;
+        int requests = 200;
+        MovementServer server = new MovementServer("0", this::sum);
+        Thread accepting = start(server);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                long client = c;
+                futures.add(pool.submit(() -> {
+                    try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                        OutputStream out = Channels.newOutputStream(channel);
+                        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel)));
+                        for (int i = 0; i < requests; i++) {
+                            out.write(("alquilar," + client + "," + i + "\r\n").getBytes());
+                            assertEquals("OK: ALQUILAR " + (client + i), in.readLine());
+                            assertEquals("", in.readLine());
+                        }
+                        // una petició sense moviments també té resposta
+                        out.write("\n".getBytes());
+                        assertEquals("", in.readLine());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+            server.close();
+        }
+        accepting.join();
+        long expected = 0;
+        for (int c = 0; c < clients; c++) {
+            expected += (long) requests * c + (long) requests * (requests - 1) / 2;
+        }
+        assertEquals(expected, total);
+    }
+
+    @Test
+    void listens_on_a_unix_socket_and_rejects_long_requests() throws Exception {
+        MovementServer server = new MovementServer(SOCKET_TEST, this::sum);
+        Thread accepting = start(server);
+        SocketAddress address = UnixDomainSocketAddress.of(SOCKET_TEST);
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(address);
+            OutputStream out = Channels.newOutputStream(channel);
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel)));
+            out.write("DEVOLVER,2,3\nDEVOLVER,".getBytes());
+            out.write(new byte[MovementServer.MAX_REQUEST_BYTES]);
+            assertEquals("OK: DEVOLVER 5", in.readLine());
+            assertEquals("", in.readLine());
+            assertTrue(in.readLine().startsWith("ERROR: Request longer than"));
+            assertEquals("", in.readLine());
+            assertNull(in.readLine());
+        }
+        server.close();
+        accepting.join();
+        assertFalse(new File(SOCKET_TEST).exists());
+    }
+
+    @Test
+    void answers_an_error_when_the_handler_fails() throws Exception {
+        List<Exception> failures = List.of(new IOException("Disk full\nretry"), new IllegalStateException("Broken"));
+        for (Exception failure : failures) {
+            MovementServer server = new MovementServer("0", movements -> {
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                throw (RuntimeException) failure;
+            });
+            Thread accepting = start(server);
+            try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                OutputStream out = Channels.newOutputStream(channel);
+                BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel)));
+                out.write("ALQUILAR,1,2\nALQUILAR,3,4\n".getBytes());
+                String expected = "ERROR: Request failed: " + failure.getClass().getName() + ": "
+                        + failure.getMessage().replace('\n', ' ');
+                assertEquals(expected, in.readLine());
+                assertEquals("", in.readLine());
+                // la connexió es tanca sense atendre la petició següent
+                assertNull(in.readLine());
+            } finally {
+                server.close();
+            }
+            accepting.join();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package main;
+
+/**
+ * Provider de prova d'una operació nova, SUMA, que escriu a la bitàcora la
+ * suma dels seus camps. Es declara a META-INF/services dels tests.
+ */
+public class SumProvider implements MovementHandler.Provider {
+
+    @Override
+    public String getKeyword() {
+        return "Suma";
+    }
+
+    @Override
+    public MovementHandler create(MovementHandler.Context context) {
+        return movement -> {
+            long total = 0;
+            while (movement.hasMoreFields()) {
+                total += movement.nextLong();
+            }
+            context.getLog().append("SUMA " + total + "\n");
+        };
+    }
+}
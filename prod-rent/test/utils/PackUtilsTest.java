@@ -0,0 +1,156 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackUtilsTest {
+
+    static final long[] LONGS = {0L, 1L, -1L, 255L, 256L, Long.MIN_VALUE, Long.MAX_VALUE, 0x0123456789ABCDEFL};
+    static final int[] INTS = {0, 1, -1, 255, 256, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x01234567};
+
+    static long[] longs() {
+        Random random = new Random(42);
+        long[] values = new long[LONGS.length + 1000];
+        System.arraycopy(LONGS, 0, values, 0, LONGS.length);
+        for (int i = LONGS.length; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        return values;
+    }
+
+    @Test
+    void byte_array_layout_matches_data_output() throws IOException {
+        for (long n : longs()) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(expected);
+            out.writeLong(n);
+            out.writeInt((int) n);
+            out.writeShort((short) n);
+            out.writeChar((char) n);
+
+            byte[] bytes = new byte[16];
+            PackUtils.packLong(n, bytes, 0);
+            PackUtils.packInt((int) n, bytes, 8);
+            PackUtils.packShort((short) n, bytes, 12);
+            PackUtils.packChar((char) n, bytes, 14);
+            assertArrayEquals(expected.toByteArray(), bytes);
+
+            assertEquals(n, PackUtils.unpackLong(bytes, 0));
+            assertEquals((int) n, PackUtils.unpackInt(bytes, 8));
+            assertEquals((short) n, PackUtils.unpackShort(bytes, 12));
+            assertEquals((char) n, PackUtils.unpackChar(bytes, 14));
+        }
+    }
+
+    @Test
+    void byte_buffer_layout_matches_byte_array_in_any_order() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (long n : longs()) {
+                byte[] bytes = new byte[16];
+                PackUtils.packLong(n, bytes, 0);
+                PackUtils.packInt((int) n, bytes, 8);
+                PackUtils.packShort((short) n, bytes, 12);
+                PackUtils.packChar((char) n, bytes, 14);
+
+                ByteBuffer buffer = ByteBuffer.allocate(16).order(order);
+                PackUtils.packLong(n, buffer);
+                PackUtils.packInt((int) n, buffer);
+                PackUtils.packShort((short) n, buffer);
+                PackUtils.packChar((char) n, buffer);
+                assertArrayEquals(bytes, buffer.array());
+
+                buffer.flip();
+                assertEquals(n, PackUtils.unpackLong(buffer));
+                assertEquals((int) n, PackUtils.unpackInt(buffer));
+                assertEquals((short) n, PackUtils.unpackShort(buffer));
+                assertEquals((char) n, PackUtils.unpackChar(buffer));
+            }
+        }
+    }
+
+    @Test
+    void unaligned_offsets() {
+        byte[] bytes = new byte[13];
+        for (int n : INTS) {
+            PackUtils.packInt(n, bytes, 1);
+            PackUtils.packLong(n, bytes, 5);
+            assertEquals(n, PackUtils.unpackInt(bytes, 1));
+            assertEquals(n, PackUtils.unpackLong(bytes, 5));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> PackUtils.packLong(1L, bytes, 6));
+    }
+
+    @Test
+    void limited_strings_have_the_same_layout() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (String str : new String[]{"", "Anna", "Exactament", "Massa llarg per cabre"}) {
+                byte[] bytes = new byte[20];
+                PackUtils.packLimitedString(str, 10, bytes, 0);
+                ByteBuffer buffer = ByteBuffer.allocate(20).order(order);
+                PackUtils.packLimitedString(str, 10, buffer);
+                assertArrayEquals(bytes, buffer.array());
+                buffer.flip();
+                assertEquals(PackUtils.unpackLimitedString(10, bytes, 0), PackUtils.unpackLimitedString(10, buffer));
+                assertEquals(20, buffer.position());
+            }
+        }
+    }
+
+    @Test
+    void compact_strings_round_trip() {
+        String[] strings = {"", "Anna", "Àngel", "Exactament", "Massa llarg per cabre", "Ωmega", "日本語"};
+        for (String str : strings) {
+            byte[] bytes = new byte[1 + PackUtils.compactStringSize(10)];
+            PackUtils.packCompactString(str, 10, bytes, 1);
+            String expected = str.length() > 10 ? str.substring(0, 10) : str;
+            assertEquals(expected, PackUtils.unpackCompactString(10, bytes, 1));
+        }
+    }
+
+    @Test
+    void compact_strings_use_latin1_when_possible() {
+        byte[] bytes = new byte[PackUtils.compactStringSize(10)];
+        PackUtils.packCompactString("Àngel", 10, bytes, 0);
+        assertEquals(5, bytes[0]);
+        assertEquals((byte) 0xC0, bytes[1]);
+        PackUtils.packCompactString("Ωmega", 10, bytes, 0);
+        assertEquals((byte) (0x80 | 6), bytes[0]);
+        assertEquals(0, bytes[10]);
+    }
+
+    @Test
+    void compact_strings_keep_the_characters_that_fit() {
+        ByteBuffer buffer = ByteBuffer.allocate(PackUtils.compactStringSize(10));
+        // each character takes three bytes in UTF-8 and surrogate pairs are never split
+        PackUtils.packCompactString("日本語日本語", 10, buffer);
+        assertEquals(PackUtils.compactStringSize(10), buffer.position());
+        buffer.flip();
+        assertEquals("日本語", PackUtils.unpackCompactString(10, buffer));
+        buffer.clear();
+        PackUtils.packCompactString("a\uD83D\uDE00\uD83D\uDE00\uD83D\uDE00", 10, buffer);
+        buffer.flip();
+        assertEquals("a\uD83D\uDE00\uD83D\uDE00", PackUtils.unpackCompactString(10, buffer));
+    }
+
+    @Test
+    void compact_strings_tell_when_characters_would_be_lost() {
+        assertTrue(PackUtils.fitsCompactString("Exactament", 10));
+        assertTrue(PackUtils.fitsCompactString("Àngel", 10));
+        // only the first maxLength characters are ever stored
+        assertTrue(PackUtils.fitsCompactString("Massa llarg per cabre", 10));
+        // ten bytes of UTF-8: the limit
+        assertTrue(PackUtils.fitsCompactString("Дмитр", 10));
+        assertFalse(PackUtils.fitsCompactString("Дмитрий", 10));
+        assertFalse(PackUtils.fitsCompactString("日本語日", 10));
+        // a surrogate pair split by the character limit
+        assertFalse(PackUtils.fitsCompactString("abcdefghi\uD83D\uDE00", 10));
+    }
+}
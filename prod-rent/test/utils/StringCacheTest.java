@@ -0,0 +1,58 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringCacheTest {
+
+    static byte[] pack(String str) {
+        byte[] bytes = new byte[2 + 20];
+        PackUtils.packLimitedString(str, 10, bytes, 2);
+        return bytes;
+    }
+
+    @Test
+    void repeated_strings_are_shared() {
+        StringCache strings = new StringCache(16);
+        String first = strings.unpackLimitedString(10, pack("Anna"), 2);
+        String second = strings.unpackLimitedString(10, pack("Anna"), 2);
+        assertEquals("Anna", first);
+        assertSame(first, second);
+        assertEquals(1L, strings.getHits());
+        assertEquals(1L, strings.getMisses());
+    }
+
+    @Test
+    void decodes_like_pack_utils() {
+        StringCache strings = new StringCache(1);
+        for (String str : new String[]{"", "Anna", "Anna", "Exactament", "Massa llarg per cabre", "Àngel", ""}) {
+            byte[] bytes = pack(str);
+            assertEquals(PackUtils.unpackLimitedString(10, bytes, 2), strings.unpackLimitedString(10, bytes, 2));
+        }
+    }
+
+    @Test
+    void colliding_strings_are_not_confused() {
+        // "Aa" and "BB" have the same hash
+        StringCache strings = new StringCache(2);
+        assertEquals("Aa", strings.unpackLimitedString(10, pack("Aa"), 2));
+        assertEquals("BB", strings.unpackLimitedString(10, pack("BB"), 2));
+        assertEquals("Aa", strings.unpackLimitedString(10, pack("Aa"), 2));
+    }
+
+    @Test
+    void buffer_position_advances_the_whole_field() {
+        StringCache strings = new StringCache(16);
+        ByteBuffer buffer = ByteBuffer.wrap(pack("Anna"));
+        buffer.position(2);
+        assertEquals("Anna", strings.unpackLimitedString(10, buffer));
+        assertEquals(22, buffer.position());
+        ByteBuffer direct = ByteBuffer.allocateDirect(22);
+        direct.put(pack("Anna")).position(2);
+        assertEquals("Anna", strings.unpackLimitedString(10, direct));
+        assertEquals(22, direct.position());
+    }
+}